@@ -1,30 +1,40 @@
 package se.kth.iv1350.storesalessystem.controller;
 
 import se.kth.iv1350.storesalessystem.integration.*;
-import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.*;
+import se.kth.iv1350.storesalessystem.util.SaleIdGenerator;
+import se.kth.iv1350.storesalessystem.util.SnowflakeSaleIdGenerator;
 import se.kth.iv1350.storesalessystem.view.TotalRevenueFileOutput;
 import se.kth.iv1350.storesalessystem.view.TotalRevenueView;
 
+import java.util.List;
+
 /**
  * The Controller manages the main interactions between the external systems, sale process,
  * and overall coordination within the application.
  * It handles the execution of a sale, including item addition, discount requests,
  * payment processing, and interaction with external systems such as inventory and accounting.
+ * <p>
+ * Every call to {@link #startSale()} returns a {@link SaleSession} bound to its own sale, so that
+ * many checkout lanes can share one controller, inventory and cash register. The remaining methods
+ * of this class operate on the most recently started session, for callers serving a single lane.
  */
 public class Controller {
     private final InventorySystem inventorySystem;
-    private final DiscountDatabase discountDatabase;
+    private final DiscountCache discountCache;
     private final CashRegister cashRegister;
     private final ReceiptPrinter receiptPrinter;
     private final SaleLogger saleLogger;
-    private Sale currentSale;
+    private final SaleIdGenerator saleIdGenerator;
+    private final PromotionEngine promotionEngine;
+    private volatile SaleSession currentSession;
 
     /**
      * Creates a new instance of the Controller class, which coordinates actions
      * between the sale process, inventory system, discount database, accounting system,
-     * and receipt printing.
+     * and receipt printing. The total revenue is reported to the console and to a file,
+     * and sale IDs are generated by a {@link SnowflakeSaleIdGenerator} for node 0.
      *
      * @param inventorySystem  The system handling the store's inventory.
      * @param accountingSystem The system managing accounting and financial records.
@@ -33,37 +43,40 @@ public class Controller {
      *                         Note: The discount database is accessed through its singleton instance.
      */
     public Controller(InventorySystem inventorySystem, AccountingSystem accountingSystem, Printer printer) {
-        this.inventorySystem = inventorySystem;
-        this.discountDatabase = DiscountDatabase.getInstance();
-        this.cashRegister = new CashRegister();
-        this.receiptPrinter = new ReceiptPrinter(printer);
-        this.saleLogger = new SaleLogger(accountingSystem, inventorySystem);
+        this(new Builder(inventorySystem, new SaleLogger(accountingSystem, inventorySystem)).printer(printer));
 
         cashRegister.addObserver(new TotalRevenueView());
         cashRegister.addObserver(new TotalRevenueFileOutput());
     }
 
-    /**
-     * Initiates a new sale process by creating a new {@link Sale} instance and
-     * assigning it a unique sale ID.
-     * This method generates a unique identifier for the sale and initializes the
-     * {@code currentSale} field, which tracks the ongoing sale.
-     * The {@link Sale} instance created will be used throughout the sale process
-     * to manage items, calculate totals, apply discounts, and handle payment.
-     */
-    public void startSale() {
-        int saleID = generateUniqueID();
-        currentSale = new Sale(saleID);
+    private Controller(Builder builder) {
+        this.inventorySystem = builder.inventorySystem;
+        this.discountCache = new DiscountCache(
+                builder.discountSource != null ? builder.discountSource : DiscountDatabase.getInstance(),
+                builder.discountCacheSize, builder.discountCacheTimeToLiveMillis);
+        this.cashRegister = builder.cashRegister != null ? builder.cashRegister : new CashRegister();
+        this.receiptPrinter = builder.receiptPrinter != null ? builder.receiptPrinter : new ReceiptPrinter(new Printer());
+        this.saleLogger = builder.saleLogger;
+        this.saleIdGenerator = builder.saleIdGenerator != null ? builder.saleIdGenerator : new SnowflakeSaleIdGenerator();
+        this.promotionEngine = builder.promotionEngine != null ? builder.promotionEngine
+                : new PromotionEngine(List.of());
     }
 
     /**
-     * Generates a unique identifier by using the current system time
-     * in milliseconds and applying a modulo operation to constrain the result.
+     * Initiates a new sale process by creating a new {@link Sale} instance,
+     * assigning it a unique sale ID and binding it to a new {@link SaleSession}.
+     * The returned session is used throughout the sale process to manage items,
+     * calculate totals, apply discounts, and handle payment. It also becomes the
+     * current session used by the single-lane methods of this controller.
      *
-     * @return A unique identifier as an integer, generated based on the current system time.
+     * @return The session handling the newly started sale.
      */
-    private int generateUniqueID() {
-        return (int) (System.currentTimeMillis() % 100000);
+    public SaleSession startSale() {
+        long saleID = saleIdGenerator.nextSaleID();
+        SaleSession session = new SaleSession(new Sale(saleID, promotionEngine), inventorySystem, discountCache,
+                cashRegister, receiptPrinter, saleLogger);
+        currentSession = session;
+        return session;
     }
 
     /**
@@ -78,16 +91,7 @@ public class Controller {
      * @throws DatabaseException   If there is an issue accessing the inventory system or database.
      */
     public ItemDTO enterItem(String itemID, int quantity) throws IdentifierException, DatabaseException {
-        ItemDTO itemInfo = inventorySystem.getItemInfo(itemID);
-
-        try {
-            currentSale.findItemByID(itemID);
-            currentSale.increaseItemQuantity(itemID, quantity);
-        } catch (IdentifierException e) {
-            currentSale.addItem(itemInfo, quantity);
-        }
-
-        return itemInfo;
+        return currentSession.enterItem(itemID, quantity);
     }
 
     /**
@@ -98,9 +102,7 @@ public class Controller {
      * @param customerID The unique identifier of the customer for whom the discount is requested.
      */
     public void requestDiscount(int customerID) {
-        currentSale.setCustomerID(customerID);
-        DiscountInfoDTO discountInfo = discountDatabase.findDiscount(customerID, currentSale.getSaleInfo());
-        currentSale.applySaleDiscount(discountInfo);
+        currentSession.requestDiscount(customerID);
     }
 
 
@@ -114,20 +116,7 @@ public class Controller {
      *                           during the sale logging or inventory update process.
      */
     public Amount makePayment(Amount paidAmount) throws DatabaseException {
-
-        Amount total = currentSale.getTotalAfterDiscount();
-        Amount change = paidAmount.minus(total);
-
-
-        cashRegister.addPayment(total);
-
-
-        saleLogger.logCompletedSale(currentSale);
-
-
-        receiptPrinter.printReceipt(currentSale, paidAmount);
-
-        return change;
+        return currentSession.makePayment(paidAmount);
     }
 
     /**
@@ -136,7 +125,7 @@ public class Controller {
      * @return The total VAT amount as an {@code Amount}.
      */
     public Amount getTotalVAT() {
-        return currentSale.getTotalVAT();
+        return currentSession.getTotalVAT();
     }
 
     /**
@@ -145,7 +134,7 @@ public class Controller {
      * @return The current total amount as an {@code Amount}.
      */
     public Amount getCurrentTotal() {
-        return currentSale.getTotalAfterDiscount();
+        return currentSession.getCurrentTotal();
     }
 
 
@@ -157,7 +146,7 @@ public class Controller {
      * @return The total amount payable for the current sale after discounts, as an {@code Amount}.
      */
     public Amount endSale() {
-        return currentSale.getTotalAfterDiscount();
+        return currentSession.endSale();
     }
 
     /**
@@ -166,7 +155,7 @@ public class Controller {
      * @return A string describing the current discount.
      */
     public String getDiscountDescription() {
-        return currentSale.getDiscountDescription();
+        return currentSession.getDiscountDescription();
     }
 
     /**
@@ -175,6 +164,139 @@ public class Controller {
      * @return The original total as an Amount object.
      */
     public Amount getOriginalTotal() {
-        return currentSale.getRunningTotal();
+        return currentSession.getOriginalTotal();
+    }
+
+    /**
+     * Collects the parts and the tuning of a controller. Only the inventory system and the sale logger
+     * must be given; every other part has a default, and no revenue observers are added, so the caller
+     * registers the observers it needs on the cash register. A builder builds one controller.
+     */
+    public static final class Builder {
+        /**
+         * The number of customers whose discounts are cached, unless set otherwise.
+         */
+        public static final int DEFAULT_DISCOUNT_CACHE_SIZE = 10_000;
+        /**
+         * The time after which a cached discount is looked up again, unless set otherwise.
+         */
+        public static final long DEFAULT_DISCOUNT_CACHE_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+
+        private final InventorySystem inventorySystem;
+        private final SaleLogger saleLogger;
+        private DiscountSource discountSource;
+        private PromotionEngine promotionEngine;
+        private ReceiptPrinter receiptPrinter;
+        private CashRegister cashRegister;
+        private SaleIdGenerator saleIdGenerator;
+        private int discountCacheSize = DEFAULT_DISCOUNT_CACHE_SIZE;
+        private long discountCacheTimeToLiveMillis = DEFAULT_DISCOUNT_CACHE_TIME_TO_LIVE_MILLIS;
+
+        /**
+         * Starts a controller using the specified inventory system and sale logger.
+         *
+         * @param inventorySystem The system handling the store's inventory.
+         * @param saleLogger      The logger recording completed sales in the external systems, for example
+         *                        one delivering the sales through a {@link PostSalePipeline}.
+         */
+        public Builder(InventorySystem inventorySystem, SaleLogger saleLogger) {
+            this.inventorySystem = inventorySystem;
+            this.saleLogger = saleLogger;
+        }
+
+        /**
+         * Sets the source of the customer discounts, which is accessed through a cache. By default the
+         * store's discount database is used.
+         *
+         * @param discountSource The source of the customer discounts.
+         * @return This builder.
+         */
+        public Builder discountSource(DiscountSource discountSource) {
+            this.discountSource = discountSource;
+            return this;
+        }
+
+        /**
+         * Sets the engine holding the item-level promotions given in all sales. By default there are
+         * no promotions.
+         *
+         * @param promotionEngine The engine holding the store's item-level promotions.
+         * @return This builder.
+         */
+        public Builder promotionEngine(PromotionEngine promotionEngine) {
+            this.promotionEngine = promotionEngine;
+            return this;
+        }
+
+        /**
+         * Sets the printer on which receipts are printed while the payment waits. By default receipts
+         * are printed on a {@link Printer}.
+         *
+         * @param printer The printer used to print sale receipts.
+         * @return This builder.
+         */
+        public Builder printer(Printer printer) {
+            this.receiptPrinter = new ReceiptPrinter(printer);
+            return this;
+        }
+
+        /**
+         * Sets the receipt printer used when a sale is paid, for example one printing through a
+         * {@link PrintQueue} so that payments do not wait for a slow printer.
+         *
+         * @param receiptPrinter The receipt printer used when a sale is paid.
+         * @return This builder.
+         */
+        public Builder receiptPrinter(ReceiptPrinter receiptPrinter) {
+            this.receiptPrinter = receiptPrinter;
+            return this;
+        }
+
+        /**
+         * Sets the cash register shared by all sales started by the controller. By default the controller
+         * has a cash register of its own.
+         *
+         * @param cashRegister The cash register recording the payments.
+         * @return This builder.
+         */
+        public Builder cashRegister(CashRegister cashRegister) {
+            this.cashRegister = cashRegister;
+            return this;
+        }
+
+        /**
+         * Sets the generator of the IDs of all sales started by the controller. By default sale IDs are
+         * generated by a {@link SnowflakeSaleIdGenerator} for node 0.
+         *
+         * @param saleIdGenerator The generator of the sale IDs.
+         * @return This builder.
+         */
+        public Builder saleIdGenerator(SaleIdGenerator saleIdGenerator) {
+            this.saleIdGenerator = saleIdGenerator;
+            return this;
+        }
+
+        /**
+         * Sets the size of the discount cache and the time after which a cached discount is looked up
+         * again, see {@link DiscountCache}.
+         *
+         * @param maxEntries       The maximum number of customers in the cache.
+         * @param timeToLiveMillis The time after which a cached customer is looked up again.
+         * @return This builder.
+         */
+        public Builder discountCache(int maxEntries, long timeToLiveMillis) {
+            this.discountCacheSize = maxEntries;
+            this.discountCacheTimeToLiveMillis = timeToLiveMillis;
+            return this;
+        }
+
+        /**
+         * Creates the controller.
+         *
+         * @return The controller with the parts and tuning of this builder.
+         */
+        public Controller build() {
+            return new Controller(this);
+        }
     }
 }
@@ -0,0 +1,153 @@
+package se.kth.iv1350.storesalessystem.controller;
+
+import se.kth.iv1350.storesalessystem.integration.DatabaseException;
+import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.*;
+
+/**
+ * A handle to one ongoing sale, as served by a single checkout lane.
+ * All operations of the sale process are bound to the sale owned by this session, so any number
+ * of sessions can be active at the same time while sharing the inventory, discount database,
+ * cash register and sale logging of the {@link Controller} that started them.
+ * Each session is meant to be driven by one lane; its methods are nevertheless synchronized
+ * so that a session handed between threads always sees a consistent sale.
+ */
+public class SaleSession {
+    private final InventorySystem inventorySystem;
+    private final DiscountCache discountCache;
+    private final CashRegister cashRegister;
+    private final ReceiptPrinter receiptPrinter;
+    private final SaleLogger saleLogger;
+    private final Sale sale;
+
+    /**
+     * Creates a new session for the specified sale. Sessions are only created by
+     * {@link Controller#startSale()}, which supplies the collaborators shared by all lanes.
+     *
+     * @param sale             The sale handled by this session.
+     * @param inventorySystem  The shared inventory system.
+     * @param discountCache    The shared cache of the discount database.
+     * @param cashRegister     The shared cash register receiving the payments.
+     * @param receiptPrinter   The receipt printer used when the sale is paid.
+     * @param saleLogger       The logger recording the sale once it is completed.
+     */
+    SaleSession(Sale sale, InventorySystem inventorySystem, DiscountCache discountCache,
+                CashRegister cashRegister, ReceiptPrinter receiptPrinter, SaleLogger saleLogger) {
+        this.sale = sale;
+        this.inventorySystem = inventorySystem;
+        this.discountCache = discountCache;
+        this.cashRegister = cashRegister;
+        this.receiptPrinter = receiptPrinter;
+        this.saleLogger = saleLogger;
+    }
+
+    /**
+     * Adds or updates an item in the sale of this session based on the specified item ID and quantity.
+     * If the item already exists in the sale, its quantity is increased.
+     * If the item does not exist, it is added with the given quantity.
+     *
+     * @param itemID   The unique identifier of the item to be added or updated in the sale.
+     * @param quantity The number of units of the item to add or update.
+     * @return An {@code ItemDTO} object containing detailed information about the item.
+     * @throws IdentifierException If the specified item ID is not found in the inventory system.
+     * @throws DatabaseException   If there is an issue accessing the inventory system or database.
+     */
+    public synchronized ItemDTO enterItem(String itemID, int quantity) throws IdentifierException, DatabaseException {
+        ItemDTO itemInfo = inventorySystem.getItemInfo(itemID);
+        sale.addOrIncreaseItem(itemInfo, quantity);
+        return itemInfo;
+    }
+
+    /**
+     * Requests a discount for the sale of this session based on the provided customer ID.
+     * The discount applicable to the specified customer is retrieved, through the discount cache,
+     * and applied to the sale.
+     *
+     * @param customerID The unique identifier of the customer for whom the discount is requested.
+     */
+    public synchronized void requestDiscount(int customerID) {
+        sale.setCustomerID(customerID);
+        DiscountStrategy discountStrategy = discountCache.findDiscountStrategy(customerID, sale.getSaleInfo());
+        sale.applyDiscountStrategy(discountStrategy);
+    }
+
+    /**
+     * Processes the payment for the sale of this session by calculating the change,
+     * logging the sale, updating the shared cash register, and printing the receipt.
+     * The sale is logged first, so that a payment is never added to the cash register
+     * for a sale that could not be journaled.
+     *
+     * @param paidAmount The amount paid by the customer for the sale.
+     * @return The change to be returned to the customer as an {@code Amount}.
+     * @throws DatabaseException If there is an issue accessing the database
+     *                           during the sale logging or inventory update process.
+     *                           The cash register is then left unchanged.
+     */
+    public synchronized Amount makePayment(Amount paidAmount) throws DatabaseException {
+        Amount total = sale.getTotalAfterDiscount();
+        Amount change = paidAmount.minus(total);
+
+        saleLogger.logCompletedSale(sale);
+
+        cashRegister.addPayment(total);
+
+        receiptPrinter.printReceipt(sale, paidAmount);
+
+        return change;
+    }
+
+    /**
+     * Finalizes the sale of this session and retrieves the total amount after applying any discounts.
+     *
+     * @return The total amount payable for the sale after discounts, as an {@code Amount}.
+     */
+    public synchronized Amount endSale() {
+        return sale.getTotalAfterDiscount();
+    }
+
+    /**
+     * Retrieves the total VAT amount for the sale of this session.
+     *
+     * @return The total VAT amount as an {@code Amount}.
+     */
+    public synchronized Amount getTotalVAT() {
+        return sale.getTotalVAT();
+    }
+
+    /**
+     * Retrieves the current total amount for the sale of this session after any applied discount.
+     *
+     * @return The current total amount as an {@code Amount}.
+     */
+    public synchronized Amount getCurrentTotal() {
+        return sale.getTotalAfterDiscount();
+    }
+
+    /**
+     * Gets the original total amount before applying any discounts.
+     *
+     * @return The original total as an Amount object.
+     */
+    public synchronized Amount getOriginalTotal() {
+        return sale.getRunningTotal();
+    }
+
+    /**
+     * Gets the description of the discount applied to the sale of this session.
+     *
+     * @return A string describing the current discount.
+     */
+    public synchronized String getDiscountDescription() {
+        return sale.getDiscountDescription();
+    }
+
+    /**
+     * Retrieves the unique identifier of the sale handled by this session.
+     *
+     * @return The sale ID.
+     */
+    public long getSaleID() {
+        return sale.getSaleID();
+    }
+}
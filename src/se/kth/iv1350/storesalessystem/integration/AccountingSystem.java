@@ -1,13 +1,89 @@
 package se.kth.iv1350.storesalessystem.integration;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
 
 /**
  * Handles interactions with the external accounting system.
  * This class simulates connecting and sending sale information
  * to an accounting system that tracks financial data.
+ * <p>
+ * An accounting system created with the address of an accounting server is a client of that
+ * server. Completed sales are then encoded by the thread handing them over and sent in the background,
+ * over a single connection, in compressed batches. A batch is started as soon as a sale arrives and is
+ * sent when it holds the maximum batch size or when the linger time has passed. Several batches may be
+ * in flight at the same time, so the client does not wait a round trip for every batch.
+ * <p>
+ * The server acknowledges every batch by its number. A batch that is not acknowledged in time, for
+ * example because the connection was lost, is sent again, over a new connection if needed. The server
+ * records every sale once by its sale ID, so a batch sent twice does not record its sales twice.
+ * A sale is only recorded once the server has acknowledged it, and {@link #updateAccounting(List)}
+ * tells when that has happened. When the queue of unsent sales is full, the thread handing over a sale
+ * waits until there is room.
+ * <p>
+ * Sending is retried until the client is closed and the time given to {@link #close(long)} runs out.
+ * The sales that have then not been acknowledged are abandoned, so their futures fail.
+ * <p>
+ * A batch is framed as its number, the number of sales in it, the length of the compressed sales and
+ * the compressed sales, as written by {@code SaleInfoCodec.compressBatch}. An acknowledgement is the
+ * number of the batch.
  */
-public class AccountingSystem {
+public class AccountingSystem implements AutoCloseable {
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+    private static final long IDLE_POLL_MILLIS = 10;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int SOCKET_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private final InetSocketAddress serverAddress;
+    private final BlockingQueue<QueuedSale> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long ackTimeoutNanos;
+    private final long retryDelayMillis;
+    private final Semaphore inFlightSlots;
+    private final Map<Long, InFlightBatch> inFlightBatches = new ConcurrentHashMap<>();
+    private final Deflater deflater;
+    private final Thread sender;
+    private final CountDownLatch abandoned = new CountDownLatch(1);
+    private final AtomicLong submittedSales = new AtomicLong();
+    private final LongAdder acknowledgedSales = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder retransmittedBatches = new LongAdder();
+    private final LongAdder blockedSales = new LongAdder();
+    private final LongAdder abandonedSales = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder acknowledgedBatches = new LongAdder();
+    private final LongAdder ackLatencyNanos = new LongAdder();
+    private final AtomicLong maxAckLatencyNanos = new AtomicLong();
+    private final Object ackMonitor = new Object();
+    private long nextBatchID;
+    private Socket socket;
+    private DataOutputStream out;
+    private volatile boolean closed;
+    private volatile boolean stopped;
 
     /**
      * Creates a new instance of the AccountingSystem.
@@ -15,16 +91,513 @@ public class AccountingSystem {
      * interactions with an external accounting system that manages financial data.
      */
     public AccountingSystem(){
+        this.serverAddress = null;
+        this.queue = null;
+        this.batchSize = 0;
+        this.lingerNanos = 0;
+        this.ackTimeoutNanos = 0;
+        this.retryDelayMillis = 0;
+        this.inFlightSlots = null;
+        this.deflater = null;
+        this.sender = null;
+    }
+
+    /**
+     * Creates a client of the accounting server at the specified address and starts the thread sending
+     * the sales. The connection is opened when the first batch is sent.
+     *
+     * @param serverAddress      The address of the accounting server.
+     * @param capacity           The maximum number of sales waiting to be sent.
+     * @param batchSize          The maximum number of sales sent in one batch.
+     * @param lingerMillis       The longest time a batch waits for more sales before it is sent.
+     * @param maxInFlightBatches The maximum number of batches sent but not yet acknowledged.
+     * @param ackTimeoutMillis   The time after which a batch that has not been acknowledged is sent again.
+     * @param retryDelayMillis   The time before a failed connection is first retried. The delay doubles
+     *                           with every further failure, up to one second.
+     */
+    public AccountingSystem(InetSocketAddress serverAddress, int capacity, int batchSize, long lingerMillis,
+                            int maxInFlightBatches, long ackTimeoutMillis, long retryDelayMillis) {
+        this.serverAddress = serverAddress;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.ackTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMillis);
+        this.retryDelayMillis = retryDelayMillis;
+        this.inFlightSlots = new Semaphore(maxInFlightBatches);
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.sender = new Thread(this::sendBatches, "accounting-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
     }
 
     /**
      * Updates the accounting system with information about a completed sale.
      * This method simulates the process of connecting to an external accounting
      * system to log financial data for the specified sale.
+     * <p>
+     * A client of an accounting server encodes the sale and places it in the queue of sales to send.
+     * If the queue is full, this method waits until there is room in it.
      *
      * @param saleInfoAccounting The information about the completed sale, including
      *                           details such as running total, customer ID, and total VAT.
+     * @throws IllegalStateException If the client has been closed.
      */
     public void updateAccounting(SaleInfoDTO saleInfoAccounting){
+        if (sender == null) {
+            return;
+        }
+        enqueue(saleInfoAccounting);
+    }
+
+    /**
+     * Updates the accounting system with a batch of completed sales. Without an accounting server,
+     * every sale is passed to {@link #updateAccounting(SaleInfoDTO)} and the returned future is already
+     * completed. A client of an accounting server queues the sales, which leave in the compressed
+     * batches the client sends, and the returned future completes when the server has acknowledged
+     * every sale of the batch. It fails if the client is closed before that. Since the accounting
+     * system records every sale once by its sale ID, a batch that fails partway may be passed again in full.
+     *
+     * @param sales The completed sales.
+     * @return A future that completes when the accounting system has recorded every sale.
+     * @throws IllegalStateException If the client has been closed.
+     */
+    public CompletableFuture<Void> updateAccounting(List<SaleInfoDTO> sales) {
+        if (sender == null) {
+            for (SaleInfoDTO sale : sales) {
+                updateAccounting(sale);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?>[] recorded = new CompletableFuture<?>[sales.size()];
+        for (int i = 0; i < recorded.length; i++) {
+            recorded[i] = enqueue(sales.get(i));
+        }
+        return CompletableFuture.allOf(recorded);
+    }
+
+    /**
+     * Waits until the server has acknowledged every sale handed to this client.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return {@code true} if all sales were acknowledged, {@code false} if the time ran out first.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean awaitAcknowledged(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (ackMonitor) {
+            while (acknowledgedSales.sum() < submittedSales.get()) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                ackMonitor.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting new sales, sends the sales that are already queued, waits at most ten seconds
+     * until the server has acknowledged all of them and closes the connection. See {@link #close(long)}.
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops accepting new sales, sends the sales that are already queued, waits until the server has
+     * acknowledged all of them and closes the connection. If the time runs out first, for example
+     * because the server cannot be reached, the remaining sales are abandoned and their futures fail.
+     * Does nothing if this accounting system is not a client of a server.
+     *
+     * @param timeoutMillis The longest time to wait for the queued sales to be acknowledged.
+     * @return {@code true} if all sales were acknowledged, {@code false} if sales were abandoned.
+     */
+    public boolean close(long timeoutMillis) {
+        if (sender == null) {
+            return true;
+        }
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean interrupted = false;
+        while (sender.isAlive()) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                if (remainingMillis > 0) {
+                    sender.join(remainingMillis);
+                } else {
+                    abandoned.countDown();
+                    sender.join();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return abandonedSales.sum() == 0;
+    }
+
+    /**
+     * Gets the number of sales that were abandoned when the client was closed.
+     *
+     * @return The number of sales never acknowledged by the server.
+     */
+    public long getAbandonedCount() {
+        return abandonedSales.sum();
+    }
+
+    /**
+     * Gets the number of sales that the server has acknowledged.
+     *
+     * @return The number of acknowledged sales.
+     */
+    public long getAcknowledgedCount() {
+        return acknowledgedSales.sum();
+    }
+
+    /**
+     * Gets the number of batches that have been sent, not counting batches sent again.
+     *
+     * @return The number of sent batches.
+     */
+    public long getBatchCount() {
+        return sentBatches.sum();
+    }
+
+    /**
+     * Gets the number of times a batch was sent again because it was not acknowledged in time.
+     *
+     * @return The number of retransmitted batches.
+     */
+    public long getRetransmitCount() {
+        return retransmittedBatches.sum();
+    }
+
+    /**
+     * Gets the number of sales that had to wait because the queue was full.
+     *
+     * @return The number of sales that were subject to backpressure.
+     */
+    public long getBlockedCount() {
+        return blockedSales.sum();
+    }
+
+    /**
+     * Gets the number of batches sent but not yet acknowledged.
+     *
+     * @return The number of batches in flight.
+     */
+    public int getInFlightCount() {
+        return inFlightBatches.size();
+    }
+
+    /**
+     * Gets the number of bytes of the encoded sales, before they were compressed.
+     *
+     * @return The number of uncompressed bytes in all sent batches.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Gets the number of bytes of the compressed sales, as they were sent.
+     *
+     * @return The number of compressed bytes in all sent batches.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Gets the average time from a batch first being sent until it was acknowledged.
+     *
+     * @return The average acknowledgement latency in nanoseconds, or zero if no batch has been acknowledged.
+     */
+    public long getAverageAckLatencyNanos() {
+        long batches = acknowledgedBatches.sum();
+        return batches == 0 ? 0 : ackLatencyNanos.sum() / batches;
+    }
+
+    /**
+     * Gets the longest time from a batch first being sent until it was acknowledged.
+     *
+     * @return The maximum acknowledgement latency in nanoseconds.
+     */
+    public long getMaxAckLatencyNanos() {
+        return maxAckLatencyNanos.get();
+    }
+
+    private CompletableFuture<Void> enqueue(SaleInfoDTO saleInfo) {
+        if (closed) {
+            throw new IllegalStateException("The accounting client has been closed.");
+        }
+        QueuedSale sale = new QueuedSale(SaleInfoCodec.encode(saleInfo), new CompletableFuture<>());
+        submittedSales.incrementAndGet();
+        if (!queue.offer(sale)) {
+            blockedSales.increment();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(sale);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stopped && queue.remove(sale)) {
+            abandon(List.of(sale.recorded()));
+        }
+        return sale.recorded();
+    }
+
+    private void sendBatches() {
+        List<QueuedSale> batch = new ArrayList<>(batchSize);
+        while ((!closed || !queue.isEmpty() || !inFlightBatches.isEmpty()) && abandoned.getCount() > 0) {
+            retransmitExpiredBatches();
+            if (!awaitInFlightSlot()) {
+                continue;
+            }
+            collectBatch(batch);
+            if (batch.isEmpty()) {
+                inFlightSlots.release();
+                continue;
+            }
+            InFlightBatch inFlightBatch = compress(batch);
+            inFlightBatches.put(inFlightBatch.batchID, inFlightBatch);
+            sentBatches.increment();
+            send(inFlightBatch);
+            batch.clear();
+        }
+        stopped = true;
+        closeConnection();
+        deflater.end();
+        abandonRemaining();
+    }
+
+    /**
+     * Fails the sales that were never acknowledged, once the sender has stopped.
+     */
+    private void abandonRemaining() {
+        for (Long batchID : List.copyOf(inFlightBatches.keySet())) {
+            InFlightBatch batch = inFlightBatches.remove(batchID);
+            if (batch != null) {
+                abandon(batch.recorded);
+            }
+        }
+        List<QueuedSale> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        for (QueuedSale sale : unsent) {
+            abandon(List.of(sale.recorded()));
+        }
+        if (abandonedSales.sum() > 0) {
+            AsyncLogger.getInstance().logException(new IllegalStateException(abandonedSales.sum()
+                    + " sales were not acknowledged"), "Closing the accounting client");
+        }
+    }
+
+    private void abandon(List<CompletableFuture<Void>> recorded) {
+        abandonedSales.add(recorded.size());
+        IllegalStateException failure = new IllegalStateException(
+                "The accounting client was closed before the sale was acknowledged.");
+        for (CompletableFuture<Void> sale : recorded) {
+            sale.completeExceptionally(failure);
+        }
+    }
+
+    private boolean awaitInFlightSlot() {
+        try {
+            return inFlightSlots.tryAcquire(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private void collectBatch(List<QueuedSale> batch) {
+        try {
+            QueuedSale first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + lingerNanos;
+            while (batch.size() < batchSize) {
+                QueuedSale next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Send whatever has been collected without lingering.
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+    }
+
+    private InFlightBatch compress(List<QueuedSale> batch) {
+        List<byte[]> encodedSales = new ArrayList<>(batch.size());
+        List<CompletableFuture<Void>> recorded = new ArrayList<>(batch.size());
+        long uncompressed = 0;
+        for (QueuedSale sale : batch) {
+            encodedSales.add(sale.encodedSale());
+            recorded.add(sale.recorded());
+            uncompressed += Integer.BYTES + sale.encodedSale().length;
+        }
+        byte[] compressed = SaleInfoCodec.compressBatch(encodedSales, deflater);
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed.length);
+        return new InFlightBatch(nextBatchID++, recorded, compressed, System.nanoTime());
+    }
+
+    private void retransmitExpiredBatches() {
+        long now = System.nanoTime();
+        for (InFlightBatch batch : inFlightBatches.values()) {
+            if (now - batch.sentNanos >= ackTimeoutNanos && inFlightBatches.containsKey(batch.batchID)) {
+                retransmittedBatches.increment();
+                if (!send(batch)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the batch to the server, connecting first if there is no connection. A failed write
+     * drops the connection and is retried over a new one, with a growing delay, until it succeeds
+     * or the sales are abandoned by {@link #close(long)}.
+     *
+     * @return {@code true} if the batch was written, {@code false} if the sales were abandoned.
+     */
+    private boolean send(InFlightBatch batch) {
+        long delay = retryDelayMillis;
+        while (true) {
+            try {
+                if (out == null) {
+                    connect();
+                }
+                out.writeLong(batch.batchID);
+                out.writeInt(batch.recorded.size());
+                out.writeInt(batch.compressed.length);
+                out.write(batch.compressed);
+                out.flush();
+                batch.sentNanos = System.nanoTime();
+                return true;
+            } catch (IOException e) {
+                AsyncLogger.getInstance().logException(e, "Sending accounting batch " + batch.batchID);
+                closeConnection();
+            }
+            if (waitBeforeRetry(delay)) {
+                return false;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket newSocket = new Socket();
+        try {
+            newSocket.setTcpNoDelay(true);
+            newSocket.connect(serverAddress, CONNECT_TIMEOUT_MILLIS);
+            out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream(), SOCKET_BUFFER_SIZE));
+        } catch (IOException e) {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+        Thread receiver = new Thread(() -> receiveAcknowledgements(newSocket), "accounting-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private void closeConnection() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            AsyncLogger.getInstance().logException(e, "Closing accounting connection");
+        }
+        socket = null;
+        out = null;
+    }
+
+    private void receiveAcknowledgements(Socket connection) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            while (true) {
+                acknowledge(in.readLong());
+            }
+        } catch (IOException e) {
+            if (!connection.isClosed()) {
+                AsyncLogger.getInstance().logException(e, "Receiving accounting acknowledgements");
+            }
+        }
+    }
+
+    private void acknowledge(long batchID) {
+        InFlightBatch batch = inFlightBatches.remove(batchID);
+        if (batch == null) {
+            return;
+        }
+        inFlightSlots.release();
+        long latency = System.nanoTime() - batch.firstSentNanos;
+        ackLatencyNanos.add(latency);
+        maxAckLatencyNanos.accumulateAndGet(latency, Math::max);
+        acknowledgedBatches.increment();
+        acknowledgedSales.add(batch.recorded.size());
+        for (CompletableFuture<Void> sale : batch.recorded) {
+            sale.complete(null);
+        }
+        synchronized (ackMonitor) {
+            ackMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Waits before a failed write is retried, returning early if the sales are abandoned.
+     *
+     * @return {@code true} if the sales have been abandoned.
+     */
+    private boolean waitBeforeRetry(long delayMillis) {
+        try {
+            return abandoned.await(delayMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return abandoned.getCount() == 0;
+        }
+    }
+
+    /**
+     * An encoded sale waiting to be sent, with the future completed when the server acknowledges it.
+     */
+    private record QueuedSale(byte[] encodedSale, CompletableFuture<Void> recorded) {
+    }
+
+    /**
+     * A batch that has been sent but not yet acknowledged. It is acknowledged by its number,
+     * which stays the same when the batch is sent again.
+     */
+    private static final class InFlightBatch {
+        private final long batchID;
+        private final List<CompletableFuture<Void>> recorded;
+        private final byte[] compressed;
+        private final long firstSentNanos;
+        private volatile long sentNanos;
+
+        private InFlightBatch(long batchID, List<CompletableFuture<Void>> recorded, byte[] compressed,
+                              long firstSentNanos) {
+            this.batchID = batchID;
+            this.recorded = recorded;
+            this.compressed = compressed;
+            this.firstSentNanos = firstSentNanos;
+            this.sentNanos = firstSentNanos;
+        }
     }
 }
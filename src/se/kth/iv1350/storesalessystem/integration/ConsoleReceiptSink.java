@@ -0,0 +1,22 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ReceiptSink} writing receipts to the standard output, which is where receipts are printed
+ * unless the {@link Printer} is given another sink.
+ */
+public class ConsoleReceiptSink implements ReceiptSink {
+
+    /**
+     * Writes the receipt to the standard output and flushes it.
+     *
+     * @param receipt The rendered receipt.
+     */
+    @Override
+    public void write(ByteBuffer receipt) {
+        System.out.write(receipt.array(), receipt.arrayOffset() + receipt.position(), receipt.remaining());
+        System.out.flush();
+        receipt.position(receipt.limit());
+    }
+}
@@ -1,7 +1,7 @@
 package se.kth.iv1350.storesalessystem.integration;
 
 
-import se.kth.iv1350.storesalessystem.util.ErrorLogger;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
 
 /**
  * Represents an exception that occurs during database operations. This class encapsulates
@@ -9,7 +9,6 @@ import se.kth.iv1350.storesalessystem.util.ErrorLogger;
  */
 public class DatabaseException extends Exception {
     private final String operation;
-    private final ErrorLogger logger;
 
     /**
      * Creates a new instance of DatabaseException.
@@ -23,17 +22,28 @@ public class DatabaseException extends Exception {
     public DatabaseException(String operation) {
         super("Database operation failed: " + operation + " - Database server is unavailable");
         this.operation = operation;
-        this.logger = new ErrorLogger();
+    }
+
+    /**
+     * Creates a new instance of DatabaseException caused by the specified failure.
+     *
+     * @param operation The name or description of the database operation that failed.
+     * @param cause     The failure that made the operation fail.
+     */
+    public DatabaseException(String operation, Throwable cause) {
+        super("Database operation failed: " + operation + " - Database server is unavailable", cause);
+        this.operation = operation;
     }
 
     /**
      * Logs an error message with contextual information about a failed database operation.
      * This method captures the details of the operation that failed and documents the error
      * in a log for further analysis. The logged information includes an exception and
-     * a message explaining the nature of the failure.
+     * a message explaining the nature of the failure. The entry is written in the background
+     * by the process-wide {@code AsyncLogger}.
      */
     public void logError() {
-        logger.logException(new Exception(), "Database operation failed: " + operation + " - Database server is unavailable");
+        AsyncLogger.getInstance().logException(this, "Database operation failed: " + operation + " - Database server is unavailable");
     }
 
     /**
@@ -46,4 +56,13 @@ public class DatabaseException extends Exception {
     public String getOperation() {
         return operation;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves a message describing the error in a way that is suitable to show to the user.
+     *
+     * @return A user-friendly description of the error.
+     */
+    public String getUserFriendlyMessage() {
+        return "The system is temporarily unavailable. Please try again later or contact assistance";
+    }
+}
@@ -4,62 +4,246 @@ import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 
 /**
  * Handles retrieval of discount information from an external discount database.
  * This class is responsible for providing discount details applicable to specific
  * customers and sales, based on customer and sale data.
- * This class implements the Singleton pattern to ensure only one instance exists.
+ * The store's database is a singleton, created the first time it is requested; databases with
+ * other rules may be created for other stores or for tests.
+ * <p>
+ * The discounts are given by campaign rules, see {@link DiscountRule}, which are compiled into an
+ * interval tree keyed by customer ID so that the rules of a customer are found without going through
+ * all rules. The rules can be reloaded from a file while the database is in use: a new index is built
+ * on the side and then replaces the old one, so lookups never wait for a reload and always see either
+ * all old or all new rules.
+ * <p>
+ * A rule file holds one rule per line, with the fields separated by commas:
+ * <pre>
+ * fromCustomerID,toCustomerID,requiredItemIDs,minimumTotal,validFrom,validUntil,discountAmount,discountPercentage,description
+ * </pre>
+ * The required item IDs are separated by semicolons, the amounts are in SEK with at most two decimals
+ * and the validity period is given as ISO-8601 instants. Empty item, total and time fields put no
+ * condition on the sale. Empty lines and lines starting with {@code #} are ignored. When several rules
+ * apply, the first one is used.
  */
-public class DiscountDatabase {
+public class DiscountDatabase implements VersionedDiscountSource {
+    private static final DiscountInfoDTO NO_DISCOUNT = new DiscountInfoDTO();
+    private static final int RULE_FIELD_COUNT = 9;
 
-    private static DiscountDatabase instance;
+    private volatile DiscountRuleIndex ruleIndex;
+    private volatile long rulesVersion;
 
     /**
      * Private constructor to prevent instantiation from outside the class.
-     * Part of the Singleton pattern implementation.
+     * Part of the Singleton pattern implementation. The database starts with the store's
+     * standard customer discounts.
      */
     private DiscountDatabase() {
+        this(defaultRules());
+    }
 
+    /**
+     * Creates a discount database holding the specified rules, independent of the singleton
+     * instance, for example for a store with its own campaigns.
+     *
+     * @param rules The discount rules, in order of priority.
+     */
+    public DiscountDatabase(List<DiscountRule> rules) {
+        this.ruleIndex = new DiscountRuleIndex(rules);
     }
 
     /**
      * Gets the single instance of the DiscountDatabase.
-     * If no instance exists, one is created.
+     * The instance is created the first time it is requested. Since it is held by a nested class that
+     * the JVM initializes once, later calls read the instance without taking any lock.
      *
      * @return The singleton instance of DiscountDatabase
      */
-    public static synchronized DiscountDatabase getInstance() {
-        if (instance == null) {
-            instance = new DiscountDatabase();
-        }
-        return instance;
+    public static DiscountDatabase getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
     /**
      * Retrieves discount information applicable to a specific customer and their ongoing sale.
-     * The method interacts with an external database to fetch the discount details based
-     * on customer ID and sale information. This is a placeholder for the real implementation.
+     * The first rule covering the customer whose conditions are met by the sale gives the discount.
      *
      * @param customerID The unique identifier of the customer for whom the discount is being retrieved.
      * @param saleInfo   The data transfer object containing details about the current sale,
      *                   including total amount, VAT, and customer information.
      * @return A {@code DiscountInfoDTO} object containing the applicable discount details for the specified customer and sale.
      */
+    @Override
     public DiscountInfoDTO findDiscount(int customerID, SaleInfoDTO saleInfo) {
+        return findDiscount(customerID, saleInfo, Instant.now());
+    }
+
+    /**
+     * Retrieves the discount information applicable to a specific customer and their sale, made at the
+     * specified instant.
+     *
+     * @param customerID The unique identifier of the customer for whom the discount is being retrieved.
+     * @param saleInfo   The data transfer object containing details about the current sale.
+     * @param at         The instant at which the discount is requested.
+     * @return The applicable discount, or a discount of nothing if no rule applies.
+     */
+    public DiscountInfoDTO findDiscount(int customerID, SaleInfoDTO saleInfo, Instant at) {
+        DiscountRule rule = ruleIndex.findFirst(customerID, candidate -> candidate.appliesTo(saleInfo, at));
+        return rule == null ? NO_DISCOUNT : rule.discount();
+    }
+
+    /**
+     * Finds the rules whose customer range covers the specified customer, without checking
+     * their other conditions.
+     *
+     * @param customerID The unique identifier of the customer.
+     * @return The covering rules, in order of priority.
+     */
+    public List<DiscountRule> findCandidateRules(int customerID) {
+        return List.copyOf(ruleIndex.rulesFor(customerID));
+    }
+
+    /**
+     * Checks whether any rule covering the specified customer has item, total or time conditions.
+     *
+     * @param customerID The unique identifier of the customer.
+     * @return {@code true} if the discount of the customer may depend on the sale.
+     */
+    @Override
+    public boolean dependsOnSale(int customerID) {
+        return ruleIndex.findFirst(customerID, DiscountRule::hasSaleConditions) != null;
+    }
+
+    /**
+     * Gets the number of rules in the database.
+     *
+     * @return The number of rules.
+     */
+    public int getRuleCount() {
+        return ruleIndex.size();
+    }
 
-        if (customerID >= 10000 && customerID < 20000) {
-            return new DiscountInfoDTO(new Amount(0), 10, "Percentage Discount");
+    /**
+     * Replaces all rules with the specified rules. Lookups that are in progress finish with the old rules.
+     *
+     * @param rules The new discount rules, in order of priority.
+     */
+    public synchronized void replaceRules(List<DiscountRule> rules) {
+        ruleIndex = new DiscountRuleIndex(rules);
+        rulesVersion++;
+    }
+
+    /**
+     * Gets the version of the rules, which changes every time the rules are replaced. Anything derived
+     * from the rules of an older version is outdated.
+     *
+     * @return The current rules version.
+     */
+    @Override
+    public long getRulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * Replaces all rules with the rules in the specified file. If the file cannot be read or holds
+     * a malformed rule, the current rules are kept.
+     *
+     * @param ruleFile The file holding the new rules.
+     * @return The number of loaded rules.
+     * @throws IOException If the file cannot be read or holds a malformed rule.
+     */
+    public int reloadRules(Path ruleFile) throws IOException {
+        List<DiscountRule> rules = readRules(ruleFile);
+        replaceRules(rules);
+        return rules.size();
+    }
+
+    /**
+     * Reads discount rules from the specified file, in the format described for this class.
+     *
+     * @param ruleFile The file holding the rules.
+     * @return The rules, in the order they appear in the file.
+     * @throws IOException If the file cannot be read or holds a malformed rule.
+     */
+    public static List<DiscountRule> readRules(Path ruleFile) throws IOException {
+        List<DiscountRule> rules = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(ruleFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    rules.add(parseRule(trimmed));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    throw new IOException("Malformed discount rule on line " + lineNumber + " of " + ruleFile
+                            + ": " + e.getMessage(), e);
+                }
+            }
         }
+        return rules;
+    }
 
-        if (customerID >= 20000 && customerID < 30000) {
-            return new DiscountInfoDTO(new Amount(50), 0, "Fixed Discount");
+    private static DiscountRule parseRule(String line) {
+        String[] fields = line.split(",", RULE_FIELD_COUNT);
+        if (fields.length != RULE_FIELD_COUNT) {
+            throw new IllegalArgumentException("expected " + RULE_FIELD_COUNT + " fields but found " + fields.length);
+        }
+        Set<String> requiredItemIDs = new HashSet<>();
+        for (String itemID : fields[2].split(";")) {
+            if (!itemID.isBlank()) {
+                requiredItemIDs.add(itemID.strip());
+            }
         }
+        long minimumTotalCents = fields[3].isBlank() ? 0 : toCents(fields[3]);
+        Instant validFrom = fields[4].isBlank() ? Instant.MIN : Instant.parse(fields[4].strip());
+        Instant validUntil = fields[5].isBlank() ? Instant.MAX : Instant.parse(fields[5].strip());
+        Amount discountAmount = Amount.ofCents(fields[6].isBlank() ? 0 : toCents(fields[6]));
+        int discountPercentage = fields[7].isBlank() ? 0 : Integer.parseInt(fields[7].strip());
+        DiscountInfoDTO discount = new DiscountInfoDTO(discountAmount, discountPercentage, fields[8].strip());
+        return new DiscountRule(Integer.parseInt(fields[0].strip()), Integer.parseInt(fields[1].strip()),
+                requiredItemIDs, minimumTotalCents, validFrom, validUntil, discount);
+    }
 
-        if (customerID >= 30000 && customerID < 40000) {
-            return new DiscountInfoDTO(new Amount(25), 5, "Premium Discount");
+    private static long toCents(String amount) {
+        BigDecimal value = new BigDecimal(amount.strip());
+        if (value.scale() > 2) {
+            throw new IllegalArgumentException("amount has more than two decimals: " + amount.strip());
         }
+        try {
+            return value.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("amount is out of range: " + amount.strip(), e);
+        }
+    }
+
+    private static List<DiscountRule> defaultRules() {
+        return List.of(
+                new DiscountRule(10000, 19999, new DiscountInfoDTO(new Amount(0), 10, "Percentage Discount")),
+                new DiscountRule(20000, 29999, new DiscountInfoDTO(new Amount(50), 0, "Fixed Discount")),
+                new DiscountRule(30000, 39999, new DiscountInfoDTO(new Amount(25), 5, "Premium Discount")));
+    }
 
-        return new DiscountInfoDTO();
+    /**
+     * Creates the singleton instance the first time it is requested.
+     */
+    private static class InstanceHolder {
+        private static final DiscountDatabase INSTANCE = new DiscountDatabase();
     }
 }
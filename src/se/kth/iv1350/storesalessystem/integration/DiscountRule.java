@@ -0,0 +1,107 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.time.Instant;
+import java.util.Set;
+
+import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+/**
+ * A campaign rule in the discount database. A rule gives its discount to the customers whose IDs
+ * are within its customer range, provided that the sale holds all of the rule's required items,
+ * that the running total of the sale reaches the rule's minimum total, and that the sale is made
+ * within the rule's validity period. This class is immutable.
+ *
+ * @param fromCustomerID    The lowest customer ID covered by the rule.
+ * @param toCustomerID      The highest customer ID covered by the rule.
+ * @param requiredItemIDs   The IDs of the items that must all be in the sale. Empty if any sale qualifies.
+ * @param minimumTotalCents The lowest running total, in cents, of a qualifying sale.
+ * @param validFrom         The first instant at which the rule applies.
+ * @param validUntil        The instant from which the rule no longer applies.
+ * @param discount          The discount given by the rule.
+ */
+public record DiscountRule(int fromCustomerID, int toCustomerID, Set<String> requiredItemIDs, long minimumTotalCents,
+                           Instant validFrom, Instant validUntil, DiscountInfoDTO discount) {
+
+    /**
+     * Creates a new rule with the specified conditions and discount.
+     *
+     * @param fromCustomerID    The lowest customer ID covered by the rule.
+     * @param toCustomerID      The highest customer ID covered by the rule.
+     * @param requiredItemIDs   The IDs of the items that must all be in the sale. Empty if any sale qualifies.
+     * @param minimumTotalCents The lowest running total, in cents, of a qualifying sale.
+     * @param validFrom         The first instant at which the rule applies.
+     * @param validUntil        The instant from which the rule no longer applies.
+     * @param discount          The discount given by the rule.
+     * @throws IllegalArgumentException If the customer range or the validity period is empty.
+     */
+    public DiscountRule {
+        if (toCustomerID < fromCustomerID) {
+            throw new IllegalArgumentException("Empty customer range " + fromCustomerID + "-" + toCustomerID);
+        }
+        if (!validFrom.isBefore(validUntil)) {
+            throw new IllegalArgumentException("Empty validity period " + validFrom + "-" + validUntil);
+        }
+        requiredItemIDs = Set.copyOf(requiredItemIDs);
+    }
+
+    /**
+     * Creates a rule that gives its discount to every sale of the customers in the specified range.
+     *
+     * @param fromCustomerID The lowest customer ID covered by the rule.
+     * @param toCustomerID   The highest customer ID covered by the rule.
+     * @param discount       The discount given by the rule.
+     */
+    public DiscountRule(int fromCustomerID, int toCustomerID, DiscountInfoDTO discount) {
+        this(fromCustomerID, toCustomerID, Set.of(), 0, Instant.MIN, Instant.MAX, discount);
+    }
+
+    /**
+     * Checks whether the specified customer is within the customer range of this rule.
+     *
+     * @param customerID The ID of the customer.
+     * @return {@code true} if the customer is covered by this rule.
+     */
+    public boolean coversCustomer(int customerID) {
+        return customerID >= fromCustomerID && customerID <= toCustomerID;
+    }
+
+    /**
+     * Checks whether the specified sale, made at the specified instant, meets the item, total and time
+     * conditions of this rule. The customer range is not checked.
+     *
+     * @param saleInfo The sale for which a discount is requested.
+     * @param at       The instant at which the discount is requested.
+     * @return {@code true} if the sale qualifies for the discount of this rule.
+     */
+    public boolean appliesTo(SaleInfoDTO saleInfo, Instant at) {
+        if (at.isBefore(validFrom) || !at.isBefore(validUntil)) {
+            return false;
+        }
+        if (saleInfo.runningTotal().getCents() < minimumTotalCents) {
+            return false;
+        }
+        if (requiredItemIDs.isEmpty()) {
+            return true;
+        }
+        int found = 0;
+        for (ItemDTO item : saleInfo.items()) {
+            if (requiredItemIDs.contains(item.itemID())) {
+                found++;
+            }
+        }
+        return found == requiredItemIDs.size();
+    }
+
+    /**
+     * Checks whether this rule has any item, total or time condition, so that whether it applies
+     * depends on the sale and not only on the customer.
+     *
+     * @return {@code true} if the rule does not apply to every sale of the covered customers.
+     */
+    public boolean hasSaleConditions() {
+        return !requiredItemIDs.isEmpty() || minimumTotalCents > 0
+                || !validFrom.equals(Instant.MIN) || !validUntil.equals(Instant.MAX);
+    }
+}
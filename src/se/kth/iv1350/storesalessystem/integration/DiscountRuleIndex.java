@@ -0,0 +1,192 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The discount rules compiled into a centered interval tree keyed by customer ID. Every node holds a
+ * customer ID, its center, and the rules whose customer range covers the center, sorted once by the
+ * start, once by the end of their range and once by priority. The rules entirely below the center are
+ * kept in the left subtree and those entirely above it in the right subtree. The center is the median of the range
+ * boundaries, so the tree is balanced and every rule is kept in exactly one node: the index takes memory
+ * in proportion to the number of rules, however much their ranges overlap. Finding the rules of a
+ * customer follows one path from the root, and only reads the rules of each node that cover the customer.
+ * When all rules of a node cover the customer, as when most rules span most customers, they are read in
+ * order of priority and the search of the node stops at the first rule that applies.
+ * <p>
+ * An index is never changed after it has been built, so it can be searched by many threads while a new
+ * index is being built.
+ */
+final class DiscountRuleIndex {
+    private static final Comparator<Entry> BY_FROM = Comparator.comparingInt(entry -> entry.rule().fromCustomerID());
+    private static final Comparator<Entry> BY_TO_DESCENDING =
+            Comparator.comparingInt((Entry entry) -> entry.rule().toCustomerID()).reversed();
+
+    private final int ruleCount;
+    private final Node root;
+
+    /**
+     * Compiles the specified rules into an index.
+     *
+     * @param rules The rules, in order of priority.
+     */
+    DiscountRuleIndex(List<DiscountRule> rules) {
+        this.ruleCount = rules.size();
+        List<Entry> entries = new ArrayList<>(rules.size());
+        for (int priority = 0; priority < rules.size(); priority++) {
+            entries.add(new Entry(rules.get(priority), priority));
+        }
+        this.root = build(entries);
+    }
+
+    /**
+     * Finds the rule with the highest priority that covers the specified customer and meets the
+     * specified condition. The condition is only checked for rules that would have a higher priority
+     * than the best rule found so far.
+     *
+     * @param customerID The ID of the customer.
+     * @param condition  The condition the rule must meet.
+     * @return The first rule in order of priority that covers the customer and meets the condition, or
+     *         {@code null} if there is none.
+     */
+    DiscountRule findFirst(int customerID, Predicate<DiscountRule> condition) {
+        Entry best = null;
+        Node node = root;
+        while (node != null) {
+            if (node.coversAll(customerID)) {
+                for (Entry entry : node.byPriority) {
+                    if (best != null && entry.priority() > best.priority()) {
+                        break;
+                    }
+                    if (condition.test(entry.rule())) {
+                        best = entry;
+                        break;
+                    }
+                }
+                node = customerID < node.center ? node.left : customerID > node.center ? node.right : null;
+            } else if (customerID < node.center) {
+                for (Entry entry : node.byFrom) {
+                    if (entry.rule().fromCustomerID() > customerID) {
+                        break;
+                    }
+                    if ((best == null || entry.priority() < best.priority()) && condition.test(entry.rule())) {
+                        best = entry;
+                    }
+                }
+                node = node.left;
+            } else {
+                for (Entry entry : node.byToDescending) {
+                    if (entry.rule().toCustomerID() < customerID) {
+                        break;
+                    }
+                    if ((best == null || entry.priority() < best.priority()) && condition.test(entry.rule())) {
+                        best = entry;
+                    }
+                }
+                node = customerID > node.center ? node.right : null;
+            }
+        }
+        return best == null ? null : best.rule();
+    }
+
+    /**
+     * Finds the rules whose customer range covers the specified customer.
+     *
+     * @param customerID The ID of the customer.
+     * @return The covering rules in order of priority.
+     */
+    List<DiscountRule> rulesFor(int customerID) {
+        List<Entry> covering = new ArrayList<>();
+        Node node = root;
+        while (node != null) {
+            for (Entry entry : node.byFrom) {
+                if (entry.rule().fromCustomerID() > customerID) {
+                    break;
+                }
+                if (entry.rule().toCustomerID() >= customerID) {
+                    covering.add(entry);
+                }
+            }
+            if (customerID == node.center) {
+                break;
+            }
+            node = customerID < node.center ? node.left : node.right;
+        }
+        covering.sort(Comparator.comparingInt(Entry::priority));
+        List<DiscountRule> rules = new ArrayList<>(covering.size());
+        for (Entry entry : covering) {
+            rules.add(entry.rule());
+        }
+        return rules;
+    }
+
+    /**
+     * Gets the number of rules in this index.
+     *
+     * @return The number of rules.
+     */
+    int size() {
+        return ruleCount;
+    }
+
+    /**
+     * Builds the subtree holding the specified rules, centered on the median of their range boundaries.
+     *
+     * @return The root of the subtree, or {@code null} if there are no rules.
+     */
+    private static Node build(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        int[] boundaries = new int[entries.size() * 2];
+        for (int i = 0; i < entries.size(); i++) {
+            boundaries[2 * i] = entries.get(i).rule().fromCustomerID();
+            boundaries[2 * i + 1] = entries.get(i).rule().toCustomerID();
+        }
+        Arrays.sort(boundaries);
+        int center = boundaries[entries.size()];
+
+        List<Entry> below = new ArrayList<>();
+        List<Entry> above = new ArrayList<>();
+        List<Entry> covering = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.rule().toCustomerID() < center) {
+                below.add(entry);
+            } else if (entry.rule().fromCustomerID() > center) {
+                above.add(entry);
+            } else {
+                covering.add(entry);
+            }
+        }
+        Entry[] byFrom = covering.toArray(new Entry[0]);
+        Arrays.sort(byFrom, BY_FROM);
+        Entry[] byToDescending = covering.toArray(new Entry[0]);
+        Arrays.sort(byToDescending, BY_TO_DESCENDING);
+        Entry[] byPriority = covering.toArray(new Entry[0]);
+        return new Node(center, byFrom, byToDescending, byPriority, build(below), build(above));
+    }
+
+    /**
+     * A rule and its position in the order of priority, lowest first.
+     */
+    private record Entry(DiscountRule rule, int priority) {
+    }
+
+    /**
+     * A node of the tree, with the rules covering its center and the subtrees of the rules below and above it.
+     */
+    private record Node(int center, Entry[] byFrom, Entry[] byToDescending, Entry[] byPriority, Node left,
+                        Node right) {
+        /**
+         * Checks whether every rule of this node covers the specified customer, in which case the rules
+         * can be searched in order of priority.
+         */
+        private boolean coversAll(int customerID) {
+            return customerID >= byFrom[byFrom.length - 1].rule().fromCustomerID()
+                    && customerID <= byToDescending[byToDescending.length - 1].rule().toCustomerID();
+        }
+    }
+}
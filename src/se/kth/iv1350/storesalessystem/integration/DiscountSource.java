@@ -0,0 +1,22 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+/**
+ * A source of customer discounts, such as the {@link DiscountDatabase} or a remote discount service.
+ * The sale process depends only on this interface, so that the source can be chosen when the
+ * application is started, or replaced in tests.
+ */
+public interface DiscountSource {
+
+    /**
+     * Retrieves the discount applicable to a specific customer and their ongoing sale.
+     *
+     * @param customerID The unique identifier of the customer for whom the discount is being retrieved.
+     * @param saleInfo   The data transfer object containing details about the current sale.
+     * @return The applicable discount, or a discount of nothing if no discount applies.
+     */
+    DiscountInfoDTO findDiscount(int customerID, SaleInfoDTO saleInfo);
+
+}
@@ -0,0 +1,49 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link ReceiptSink} appending receipts to a file, for example to keep a copy of every receipt.
+ * Each receipt is written to the file with one write, directly from the render buffer.
+ */
+public class FileReceiptSink implements ReceiptSink, AutoCloseable {
+    private final FileChannel channel;
+
+    /**
+     * Opens the specified file for appending receipts, creating it if it does not exist.
+     *
+     * @param file The file the receipts are appended to.
+     * @throws IOException If the file cannot be opened.
+     */
+    public FileReceiptSink(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends the receipt to the file.
+     *
+     * @param receipt The rendered receipt.
+     * @throws IOException If the receipt cannot be written.
+     */
+    @Override
+    public void write(ByteBuffer receipt) throws IOException {
+        while (receipt.hasRemaining()) {
+            channel.write(receipt);
+        }
+    }
+
+    /**
+     * Closes the file. Receipts can no longer be written.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
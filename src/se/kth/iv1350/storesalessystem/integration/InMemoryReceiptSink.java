@@ -0,0 +1,52 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link ReceiptSink} keeping all receipts in memory, for example to show them on a customer
+ * display or to check them in tests.
+ */
+public class InMemoryReceiptSink implements ReceiptSink {
+    private final ByteArrayOutputStream receipts = new ByteArrayOutputStream();
+    private int receiptCount;
+
+    /**
+     * Adds the receipt to the receipts kept in memory.
+     *
+     * @param receipt The rendered receipt.
+     */
+    @Override
+    public synchronized void write(ByteBuffer receipt) {
+        receipts.write(receipt.array(), receipt.arrayOffset() + receipt.position(), receipt.remaining());
+        receipt.position(receipt.limit());
+        receiptCount++;
+    }
+
+    /**
+     * Gets the text of all receipts written so far.
+     *
+     * @return The receipts, one after the other.
+     */
+    public synchronized String getContents() {
+        return receipts.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of receipts written so far.
+     *
+     * @return The number of receipts.
+     */
+    public synchronized int getReceiptCount() {
+        return receiptCount;
+    }
+
+    /**
+     * Removes all receipts written so far.
+     */
+    public synchronized void clear() {
+        receipts.reset();
+        receiptCount = 0;
+    }
+}
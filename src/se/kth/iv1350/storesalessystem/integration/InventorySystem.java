@@ -1,20 +1,36 @@
 package se.kth.iv1350.storesalessystem.integration;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.IdentifierException;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
 
 /**
  * Represents the inventory system of a sales application. This class serves as a centralized
  * storage and management system for tracking items available for sale. It enables operations
  * such as retrieving item information, adding new items, and updating inventory based on
- * sales data.
+ * sales data. The inventory may be shared by several checkout lanes and is safe for concurrent use.
+ * Items are looked up among the items added with {@link #addItem(ItemDTO)} first, and then in the
+ * {@link ItemCatalog} backing the inventory, if any.
+ * <p>
+ * The inventory keeps the stock level of every item for which a level has been set with
+ * {@link #setStockLevel(String, long)}. Each level is an atomic counter of its own, so completed
+ * sales from many lanes are committed without a common lock, and sales touching different items
+ * never contend. Selling more units than are in stock is not prevented, since the goods have
+ * already left the store, but the units sold beyond the stock level are counted as oversold.
  */
 public class InventorySystem {
     private final Map<String, ItemDTO> inventory;
+    private final Map<String, AtomicLong> stockLevels;
+    private final LongAdder oversoldUnits;
+    private final ItemCatalog catalog;
     private static final String DATABASE_FAILURE_TRIGGER_ID = "DB-ERROR-999";
 
     /**
@@ -24,7 +40,21 @@ public class InventorySystem {
      * available for sale in the sales application.
      */
     public InventorySystem() {
-        this.inventory = new HashMap<>();
+        this(itemID -> null);
+    }
+
+    /**
+     * Creates a new instance of the InventorySystem class backed by the specified catalog,
+     * for example a {@link MappedItemCatalog} holding the store's complete assortment.
+     * Items added with {@link #addItem(ItemDTO)} take precedence over the catalog.
+     *
+     * @param catalog The catalog in which items that have not been added are looked up.
+     */
+    public InventorySystem(ItemCatalog catalog) {
+        this.inventory = new ConcurrentHashMap<>();
+        this.stockLevels = new ConcurrentHashMap<>();
+        this.oversoldUnits = new LongAdder();
+        this.catalog = catalog;
     }
 
     /**
@@ -45,6 +75,9 @@ public class InventorySystem {
         }
 
         ItemDTO item = inventory.get(itemID);
+        if (item == null) {
+            item = catalog.findItem(itemID);
+        }
         if (item == null) {
             throw new IdentifierException(itemID);
         }
@@ -64,12 +97,97 @@ public class InventorySystem {
     }
 
     /**
-     * Updates the inventory based on the provided sale information. This method adjusts
-     * the inventory quantities to reflect the items sold in the specified sale.
+     * Sets the number of units in stock of the specified item. Only items with a stock level
+     * are tracked when the inventory is updated after a sale.
+     *
+     * @param itemID   The unique identifier of the item.
+     * @param quantity The number of units of the item in stock.
+     */
+    public void setStockLevel(String itemID, long quantity) {
+        stockLevels.computeIfAbsent(itemID, id -> new AtomicLong()).set(quantity);
+    }
+
+    /**
+     * Adds the specified number of units to the stock of an item, for example when a delivery
+     * arrives. If the item has no stock level yet, its level starts at zero.
+     *
+     * @param itemID   The unique identifier of the item.
+     * @param quantity The number of units that are added to the stock.
+     */
+    public void addStock(String itemID, long quantity) {
+        stockLevels.computeIfAbsent(itemID, id -> new AtomicLong()).addAndGet(quantity);
+    }
+
+    /**
+     * Gets the number of units in stock of the specified item. The level is negative if more
+     * units have been sold than were in stock.
+     *
+     * @param itemID The unique identifier of the item.
+     * @return The stock level of the item, or zero if the item's stock is not tracked.
+     */
+    public long getStockLevel(String itemID) {
+        AtomicLong level = stockLevels.get(itemID);
+        return level == null ? 0 : level.get();
+    }
+
+    /**
+     * Gets the total number of units that have been sold beyond the stock level of their items.
+     *
+     * @return The number of oversold units.
+     */
+    public long getOversoldUnits() {
+        return oversoldUnits.sum();
+    }
+
+    /**
+     * Updates the inventory based on the provided sale information. This method decreases the
+     * stock level of each tracked item by the quantity sold in the specified sale. Items whose
+     * stock is not tracked are skipped. Units sold beyond an item's stock level are counted as
+     * oversold, see {@link #getOversoldUnits()}.
      *
      * @param saleInfoDTO The data transfer object containing information about the completed sale.
      *                    This includes details such as the sold items, total amount, and VAT.
      */
     public void updateInventory(SaleInfoDTO saleInfoDTO) {
+        SaleLines lines = saleInfoDTO.lines();
+        for (int i = 0; i < lines.size(); i++) {
+            AtomicLong level = stockLevels.get(lines.getItem(i).itemID());
+            if (level == null) {
+                continue;
+            }
+            long quantity = lines.getQuantity(i);
+            long previous = level.getAndAdd(-quantity);
+            if (previous < quantity) {
+                oversoldUnits.add(quantity - Math.max(previous, 0));
+            }
+        }
+    }
+
+    /**
+     * Updates the inventory with a batch of completed sales, as if each sale had been passed to
+     * {@link #updateInventory(SaleInfoDTO)}. The quantities sold of each item are added up over the
+     * whole batch first, so the stock level of an item is updated once per batch. Since nothing in the
+     * update can fail, a batch is either applied in full or, if the sales are invalid, not at all.
+     *
+     * @param sales The completed sales.
+     */
+    public void updateInventory(List<SaleInfoDTO> sales) {
+        Map<AtomicLong, long[]> soldUnits = new HashMap<>();
+        for (SaleInfoDTO sale : sales) {
+            SaleLines lines = sale.lines();
+            for (int i = 0; i < lines.size(); i++) {
+                AtomicLong level = stockLevels.get(lines.getItem(i).itemID());
+                if (level != null) {
+                    soldUnits.computeIfAbsent(level, unused -> new long[1])[0] += lines.getQuantity(i);
+                }
+            }
+        }
+        for (Map.Entry<AtomicLong, long[]> sold : soldUnits.entrySet()) {
+            long quantity = sold.getValue()[0];
+            long previous = sold.getKey().getAndAdd(-quantity);
+            if (previous < quantity) {
+                oversoldUnits.add(quantity - Math.max(previous, 0));
+            }
+        }
     }
 }
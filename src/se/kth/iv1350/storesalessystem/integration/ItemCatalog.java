@@ -0,0 +1,18 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+
+/**
+ * Represents a read-only source of item information that backs the {@link InventorySystem}.
+ * Implementations must be safe for concurrent lookups from several checkout lanes.
+ */
+public interface ItemCatalog {
+
+    /**
+     * Looks up the item with the specified identifier.
+     *
+     * @param itemID The unique identifier of the item.
+     * @return The item, or {@code null} if the catalog does not contain the item.
+     */
+    ItemDTO findItem(String itemID);
+}
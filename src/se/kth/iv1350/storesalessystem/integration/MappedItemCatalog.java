@@ -0,0 +1,287 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+
+/**
+ * An item catalog stored in a compact binary file that is memory-mapped when opened.
+ * Neither the items nor the index are loaded onto the heap: the file contains an open-addressing
+ * hash table from item ID to record offset, which is probed directly in the mapped memory, and an
+ * {@code ItemDTO} is only created for the items that are actually looked up. Opening a catalog
+ * therefore takes the same time regardless of its size.
+ * <p>
+ * The file consists of a header, the index and the records. The header holds a magic number,
+ * the format version, the number of items, the number of index slots and the offsets of the index
+ * and the records. Each index slot holds the hash of an item ID and the offset of its record, where
+ * offset zero marks an empty slot. Each record holds the item ID, name and description as
+ * length-prefixed UTF-8, the VAT rate in basis points and the price in öre.
+ * Catalog files are limited to 2 GB, the largest region that can be mapped at once.
+ */
+public class MappedItemCatalog implements ItemCatalog {
+    private static final int MAGIC = 0x49544D43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 8;
+
+    private final MappedByteBuffer catalog;
+    private final int itemCount;
+    private final int slotMask;
+    private final int indexOffset;
+
+    /**
+     * Opens and maps the specified catalog file.
+     *
+     * @param catalogFile The catalog file, as created by {@link #write(Collection, Path)}.
+     * @throws IOException If the file cannot be read or is not a valid catalog file, including a header
+     *                     whose index is not a power-of-two number of slots inside the file.
+     */
+    public MappedItemCatalog(Path catalogFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(catalogFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog file is larger than 2 GB: " + catalogFile);
+            }
+            this.catalog = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (catalog.capacity() < HEADER_SIZE || catalog.getInt(0) != MAGIC || catalog.getInt(4) != VERSION) {
+            throw new IOException("Not a catalog file: " + catalogFile);
+        }
+        int slotCount = catalog.getInt(12);
+        long index = catalog.getLong(16);
+        long records = catalog.getLong(24);
+        this.itemCount = catalog.getInt(8);
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1 || itemCount < 0 || itemCount >= slotCount) {
+            throw new IOException("Catalog file has an invalid index size: " + catalogFile);
+        }
+        if (index < HEADER_SIZE || records < index + (long) slotCount * SLOT_SIZE || records > catalog.capacity()) {
+            throw new IOException("Catalog file has an index outside the file: " + catalogFile);
+        }
+        this.slotMask = slotCount - 1;
+        this.indexOffset = (int) index;
+    }
+
+    /**
+     * Looks up an item by probing the mapped index. Only absolute reads are made on the
+     * mapped buffer, so lookups may run concurrently.
+     *
+     * @param itemID The unique identifier of the item.
+     * @return The item, or {@code null} if the catalog does not contain the item.
+     */
+    @Override
+    public ItemDTO findItem(String itemID) {
+        byte[] key = itemID.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+            int slotOffset = indexOffset + slot * SLOT_SIZE;
+            int recordOffset = catalog.getInt(slotOffset + 4);
+            if (recordOffset == 0) {
+                return null;
+            }
+            if (catalog.getInt(slotOffset) == hash && keyEquals(recordOffset, key)) {
+                return readItem(recordOffset);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of items in this catalog.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * Writes the specified items to a new catalog file, replacing any existing file.
+     *
+     * @param items       The items of the catalog. Item IDs must be unique.
+     * @param catalogFile The file to write.
+     * @throws IOException If the file cannot be written or would be larger than 2 GB.
+     */
+    public static void write(Collection<ItemDTO> items, Path catalogFile) throws IOException {
+        int slotCount = Integer.highestOneBit(Math.max(2, items.size() * 2 - 1)) << 1;
+        long recordsOffset = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        List<byte[]> records = new ArrayList<>(items.size());
+        int[] hashes = new int[items.size()];
+        long[] offsets = new long[items.size()];
+        long offset = recordsOffset;
+        for (ItemDTO item : items) {
+            byte[] record = encode(item);
+            hashes[records.size()] = hash(item.itemID().getBytes(StandardCharsets.UTF_8));
+            offsets[records.size()] = offset;
+            records.add(record);
+            offset += record.length;
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Catalog would be larger than 2 GB");
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + slotCount * SLOT_SIZE);
+        index.putInt(MAGIC).putInt(VERSION).putInt(items.size()).putInt(slotCount)
+                .putLong(HEADER_SIZE).putLong(recordsOffset);
+        for (int i = 0; i < hashes.length; i++) {
+            int slot = hashes[i] & (slotCount - 1);
+            while (index.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4) != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            index.putInt(HEADER_SIZE + slot * SLOT_SIZE, hashes[i]);
+            index.putInt(HEADER_SIZE + slot * SLOT_SIZE + 4, (int) offsets[i]);
+        }
+        index.position(0);
+
+        try (FileChannel channel = FileChannel.open(catalogFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (index.hasRemaining()) {
+                channel.write(index);
+            }
+            for (byte[] record : records) {
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a catalog file from a CSV file with one item per line, in the format
+     * {@code itemID,name,description,VAT rate,price}, for example {@code H2O,Water,1 Liter,0.06,19.50}.
+     * Fields containing commas can be enclosed in double quotes. Empty lines and lines
+     * starting with {@code #} are ignored.
+     *
+     * @param csvFile     The CSV file to read.
+     * @param catalogFile The catalog file to write.
+     * @return The number of items written to the catalog.
+     * @throws IOException If a file cannot be read or written, or if a line is malformed.
+     */
+    public static int buildFromCsv(Path csvFile, Path catalogFile) throws IOException {
+        List<ItemDTO> items = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                List<String> fields = splitCsvLine(line);
+                if (fields.size() != 5) {
+                    throw new IOException("Line " + lineNumber + " should have 5 fields but has " + fields.size());
+                }
+                try {
+                    items.add(new ItemDTO(fields.get(0), fields.get(1), fields.get(2),
+                            Double.parseDouble(fields.get(3)), new Amount(Double.parseDouble(fields.get(4)))));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + " has an invalid VAT rate or price", e);
+                }
+            }
+        }
+        write(items, catalogFile);
+        return items.size();
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static byte[] encode(ItemDTO item) {
+        byte[] id = item.itemID().getBytes(StandardCharsets.UTF_8);
+        byte[] name = item.name().getBytes(StandardCharsets.UTF_8);
+        byte[] description = item.description().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(3 * Short.BYTES + id.length + name.length + description.length
+                + Integer.BYTES + Long.BYTES);
+        putString(record, id);
+        putString(record, name);
+        putString(record, description);
+        record.putInt((int) Amount.toBasisPoints(item.tax()));
+        record.putLong(item.price().getCents());
+        return record.array();
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value.length > 0xFFFF) {
+            throw new IllegalArgumentException("Catalog fields are limited to 65535 bytes");
+        }
+        record.putShort((short) value.length);
+        record.put(value);
+    }
+
+    private ItemDTO readItem(int offset) {
+        int idLength = Short.toUnsignedInt(catalog.getShort(offset));
+        String itemID = readString(offset + 2, idLength);
+        offset += 2 + idLength;
+        int nameLength = Short.toUnsignedInt(catalog.getShort(offset));
+        String name = readString(offset + 2, nameLength);
+        offset += 2 + nameLength;
+        int descriptionLength = Short.toUnsignedInt(catalog.getShort(offset));
+        String description = readString(offset + 2, descriptionLength);
+        offset += 2 + descriptionLength;
+        double tax = (double) catalog.getInt(offset) / Amount.BASIS_POINTS;
+        long priceCents = catalog.getLong(offset + Integer.BYTES);
+        return new ItemDTO(itemID, name, description, tax, Amount.ofCents(priceCents));
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        catalog.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean keyEquals(int recordOffset, byte[] key) {
+        if (Short.toUnsignedInt(catalog.getShort(recordOffset)) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (catalog.get(recordOffset + 2 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the 32-bit FNV-1a hash of an item ID, with the bits mixed so that the
+     * lowest bits, which select the index slot, depend on all bytes of the ID.
+     */
+    private static int hash(byte[] key) {
+        int hash = 0x811C9DC5;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,72 +1,80 @@
 package se.kth.iv1350.storesalessystem.integration;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import se.kth.iv1350.storesalessystem.model.dto.ReceiptItemDTO;
+import se.kth.iv1350.storesalessystem.model.Receipt;
 import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
 
 /**
  * The Printer class is responsible for generating and printing receipts.
+ * Receipts printed from different checkout lanes are never interleaved.
+ * <p>
+ * A receipt is first rendered in full into a buffer reused by the printing thread, and then handed to
+ * the printer's {@link ReceiptSink} in a single write. Only the write is done one lane at a time.
  */
 public class Printer {
+    private final ReceiptSink sink;
+
+    /**
+     * Creates a new printer that prints receipts to the standard output.
+     */
     public Printer() {
+        this(new ConsoleReceiptSink());
+    }
 
+    /**
+     * Creates a new printer that prints receipts to the specified sink.
+     *
+     * @param sink The destination of the printed receipts.
+     */
+    public Printer(ReceiptSink sink) {
+        this.sink = sink;
     }
 
     /**
      * Prints the receipt details for a sale, including the items purchased,
-     * total amount, VAT, payment, and change.
+     * total amount, VAT, payment, and change. A receipt that cannot be written is logged and skipped.
      *
      * @param receiptData A {@link ReceiptDTO} object containing the sale information,
      *                    including the date and time, items purchased, total amount, VAT, total paid, and change.
      */
     public void printReceipt(ReceiptDTO receiptData) {
-        System.out.println("------------------------ Begin receipt ------------------------");
-        System.out.println("Time of Sale: " + formatDateTime(receiptData.dateTime()) + "\n");
-
-        List<ReceiptItemDTO> items = receiptData.items();
-        for (ReceiptItemDTO item : items) {
-            System.out.printf("%s\t\t %d x %.2f\t\t %s SEK%n",
-                    item.item().name(),
-                    item.quantity(),
-                    item.item().price().getAmount(),
-                    formatAmount(item.getTotalPrice().getAmount()));
-        }
-        System.out.println();
-        System.out.println("Total: " + formatAmount(receiptData.totalAmount().getAmount()) + " SEK");
-        System.out.println("VAT: " + formatAmount(receiptData.totalVAT().getAmount()) + " SEK");
-
-        if (receiptData.discountDescription() != null && !receiptData.discountDescription().equals("No discount")) {
-            System.out.println("Discount applied: " + receiptData.discountDescription());
-        }
-
-        System.out.println();
-        System.out.println("Cash: " + formatAmount(receiptData.totalPaid().getAmount()) + " SEK");
-        System.out.println("Change: " + formatAmount(receiptData.change().getAmount()) + " SEK");
-        System.out.println("------------------------ End receipt --------------------------");
+        write(ReceiptRenderer.render(receiptData));
     }
 
     /**
-     * Formats a given monetary amount into a string representation with two decimal places,
-     * replacing the decimal point with a colon.
+     * Prints the specified receipt, reading the lines straight from its sale without copying them.
+     * A receipt that cannot be written is logged and skipped.
      *
-     * @param amount The monetary amount to be formatted.
-     * @return A string representing the formatted amount, with two decimal places and a colon
-     * instead of a decimal point.
+     * @param receipt The receipt of a completed sale.
      */
-    private String formatAmount(double amount) {
-        return String.format("%.2f", amount).replace(".", ":");
+    public void printReceipt(Receipt receipt) {
+        write(ReceiptRenderer.render(receipt));
     }
 
     /**
-     * Formats a given date and time string into a specific format.
-     * The output format is "YYYY-MM-DD HH:MM", where the date and time components
-     * are extracted from the input string.
+     * Prints the specified receipt, like {@link #printReceipt(ReceiptDTO)}, but reports a receipt that
+     * cannot be written to the caller instead of logging it, so that printing can be retried.
      *
-     * @param dateTime The original date and time string, expected in the format "YYYY-MM-DDTHH:MM:SS".
-     * @return A formatted string representing the date and time in the format "YYYY-MM-DD HH:MM".
+     * @param receiptData The receipt of a completed sale.
+     * @throws IOException If the receipt cannot be written.
      */
-    private String formatDateTime(String dateTime) {
-        return dateTime.substring(0, 10) + " " + dateTime.substring(11, 16);
+    public void tryPrintReceipt(ReceiptDTO receiptData) throws IOException {
+        ByteBuffer rendered = ReceiptRenderer.render(receiptData);
+        synchronized (this) {
+            sink.write(rendered);
+        }
+    }
+
+    private void write(ByteBuffer receipt) {
+        synchronized (this) {
+            try {
+                sink.write(receipt);
+            } catch (IOException e) {
+                AsyncLogger.getInstance().logException(e, "Printing receipt");
+            }
+        }
     }
 }
@@ -0,0 +1,191 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.Receipt;
+import se.kth.iv1350.storesalessystem.model.SaleItem;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptItemDTO;
+
+/**
+ * Renders receipts as UTF-8 text, without creating any objects once a thread has rendered its first
+ * receipts. Every thread renders into a text buffer and a byte buffer of its own, which are reused
+ * for all receipts of the thread and only grow when a receipt does not fit. Amounts are formatted
+ * directly from their cents.
+ * <p>
+ * Totals are written with a colon between SEK and öre, and unit prices with a point. The item-level
+ * promotions of the sale are listed after the items, followed by their total reduction.
+ */
+final class ReceiptRenderer {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private ReceiptRenderer() {
+    }
+
+    /**
+     * Renders the specified receipt into the buffer of the calling thread.
+     *
+     * @param receiptData The receipt to render.
+     * @return The rendered receipt, between the position and the limit of the buffer. The buffer is
+     * overwritten by the next receipt rendered by the same thread.
+     */
+    static ByteBuffer render(ReceiptDTO receiptData) {
+        RenderBuffer buffer = BUFFERS.get();
+        StringBuilder text = buffer.text;
+        text.setLength(0);
+
+        appendHeader(text, receiptData.dateTime());
+        for (ReceiptItemDTO item : receiptData.items()) {
+            appendLine(text, item.item(), item.quantity());
+        }
+        appendPromotions(text, receiptData.appliedPromotions(), receiptData.promotionReduction());
+        appendFooter(text, receiptData.totalAmount(), receiptData.totalVAT(), receiptData.discountDescription(),
+                receiptData.totalPaid(), receiptData.change());
+        return buffer.encode();
+    }
+
+    /**
+     * Renders the specified receipt into the buffer of the calling thread, reading the lines
+     * straight from the sale of the receipt.
+     *
+     * @param receipt The receipt to render.
+     * @return The rendered receipt, between the position and the limit of the buffer. The buffer is
+     * overwritten by the next receipt rendered by the same thread.
+     */
+    static ByteBuffer render(Receipt receipt) {
+        RenderBuffer buffer = BUFFERS.get();
+        StringBuilder text = buffer.text;
+        text.setLength(0);
+
+        appendHeader(text, receipt.getDateTime());
+        for (SaleItem line : receipt.getLines()) {
+            appendLine(text, line.getItemDTO(), line.getQuantity());
+        }
+        List<String> appliedPromotions = receipt.getAppliedPromotions();
+        if (!appliedPromotions.isEmpty()) {
+            appendPromotions(text, appliedPromotions, receipt.getPromotionReduction());
+        }
+        appendFooter(text, receipt.getTotalAmount(), receipt.getTotalVAT(), receipt.getDiscountDescription(),
+                receipt.getAmountPaid(), receipt.getChange());
+        return buffer.encode();
+    }
+
+    private static void appendHeader(StringBuilder text, String dateTime) {
+        text.append("------------------------ Begin receipt ------------------------").append(LINE_SEPARATOR);
+        text.append("Time of Sale: ").append(dateTime, 0, 10).append(' ').append(dateTime, 11, 16)
+                .append('\n').append(LINE_SEPARATOR);
+    }
+
+    private static void appendLine(StringBuilder text, ItemDTO item, int quantity) {
+        long unitPriceCents = item.price().getCents();
+        text.append(item.name()).append("\t\t ").append(quantity).append(" x ");
+        appendAmount(text, unitPriceCents, '.');
+        text.append("\t\t ");
+        appendAmount(text, Math.multiplyExact(unitPriceCents, quantity), ':');
+        text.append(" SEK").append(LINE_SEPARATOR);
+    }
+
+    private static void appendPromotions(StringBuilder text, List<String> appliedPromotions, Amount reduction) {
+        if (appliedPromotions.isEmpty()) {
+            return;
+        }
+        text.append(LINE_SEPARATOR);
+        for (int i = 0; i < appliedPromotions.size(); i++) {
+            text.append("Promotion: ").append(appliedPromotions.get(i)).append(LINE_SEPARATOR);
+        }
+        appendTotal(text, "Promotion reduction: ", -reduction.getCents());
+    }
+
+    private static void appendFooter(StringBuilder text, Amount total, Amount totalVAT, String discountDescription,
+                                     Amount totalPaid, Amount change) {
+        text.append(LINE_SEPARATOR);
+        appendTotal(text, "Total: ", total.getCents());
+        appendTotal(text, "VAT: ", totalVAT.getCents());
+        if (discountDescription != null && !discountDescription.equals("No discount")) {
+            text.append("Discount applied: ").append(discountDescription).append(LINE_SEPARATOR);
+        }
+        text.append(LINE_SEPARATOR);
+        appendTotal(text, "Cash: ", totalPaid.getCents());
+        appendTotal(text, "Change: ", change.getCents());
+        text.append("------------------------ End receipt --------------------------").append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Appends an amount with two decimals, such as {@code 12:50} for 1250 öre with a colon as separator.
+     *
+     * @param text      The text the amount is appended to.
+     * @param cents     The amount in öre.
+     * @param separator The character between SEK and öre.
+     */
+    static void appendAmount(StringBuilder text, long cents, char separator) {
+        if (cents < 0) {
+            text.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        text.append(units).append(separator);
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+
+    private static void appendTotal(StringBuilder text, String label, long cents) {
+        text.append(label);
+        appendAmount(text, cents, ':');
+        text.append(" SEK").append(LINE_SEPARATOR);
+    }
+
+    /**
+     * The reusable buffers of one thread.
+     */
+    private static final class RenderBuffer {
+        private final StringBuilder text = new StringBuilder(INITIAL_BUFFER_SIZE);
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private ByteBuffer byteView = ByteBuffer.wrap(bytes);
+
+        /**
+         * Encodes the text as UTF-8 into the byte buffer, making it larger if the text does not fit.
+         *
+         * @return The encoded text.
+         */
+        private ByteBuffer encode() {
+            int maxLength = text.length() * 3;
+            if (bytes.length < maxLength) {
+                bytes = new byte[Math.max(maxLength, bytes.length * 2)];
+                byteView = ByteBuffer.wrap(bytes);
+            }
+            int length = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | c >> 6);
+                    bytes[length++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | c >> 12);
+                    bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            byteView.clear();
+            byteView.limit(length);
+            return byteView;
+        }
+    }
+}
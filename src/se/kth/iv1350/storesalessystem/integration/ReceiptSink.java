@@ -0,0 +1,21 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The destination of the receipts printed by a {@link Printer}, such as the console, a file, or
+ * memory. Every receipt is handed over whole, already rendered as UTF-8 text, in a single call.
+ * The {@code Printer} never writes two receipts to its sink at the same time.
+ */
+public interface ReceiptSink {
+
+    /**
+     * Writes one rendered receipt. The bytes between the position and the limit of the buffer are
+     * written. The buffer is reused for the next receipt, so it must not be kept after this call.
+     *
+     * @param receipt The rendered receipt.
+     * @throws IOException If the receipt cannot be written.
+     */
+    void write(ByteBuffer receipt) throws IOException;
+}
@@ -0,0 +1,137 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.SaleItem;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
+
+/**
+ * Converts information about completed sales to and from a compact binary form, used wherever
+ * a sale is stored or sent outside the process. Amounts are stored as exact cents and tax rates
+ * as the exact bits of their value, so a decoded sale equals the encoded one. The VAT of every line
+ * is not stored, since it is calculated from the item and the quantity in the same way as in the sale.
+ * The promotion reduction is stored after the lines. A sale encoded before the reduction was stored
+ * is decoded without a reduction.
+ * <p>
+ * Several encoded sales can be compressed together into a batch, in which every sale is preceded
+ * by its length.
+ */
+final class SaleInfoCodec {
+
+    private SaleInfoCodec() {
+    }
+
+    /**
+     * Encodes the specified sale.
+     *
+     * @param saleInfo The sale to encode.
+     * @return The binary form of the sale.
+     */
+    static byte[] encode(SaleInfoDTO saleInfo) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 48 * saleInfo.lines().size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(saleInfo.saleID());
+            out.writeInt(saleInfo.customerID());
+            out.writeLong(saleInfo.runningTotal().getCents());
+            out.writeLong(saleInfo.totalVAT().getCents());
+            SaleLines lines = saleInfo.lines();
+            out.writeInt(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                ItemDTO item = lines.getItem(i);
+                out.writeUTF(item.itemID());
+                out.writeUTF(item.name());
+                out.writeUTF(item.description());
+                out.writeDouble(item.tax());
+                out.writeLong(item.price().getCents());
+                out.writeInt(lines.getQuantity(i));
+            }
+            out.writeLong(saleInfo.promotionReduction().getCents());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a sale encoded by {@link #encode(SaleInfoDTO)}.
+     *
+     * @param encoded The binary form of the sale.
+     * @return The decoded sale.
+     * @throws IOException If the data is not a complete encoded sale.
+     */
+    static SaleInfoDTO decode(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        long saleID = in.readLong();
+        int customerID = in.readInt();
+        Amount runningTotal = Amount.ofCents(in.readLong());
+        Amount totalVAT = Amount.ofCents(in.readLong());
+        int lineCount = in.readInt();
+        SaleLines.Builder lines = new SaleLines.Builder(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            ItemDTO item = new ItemDTO(in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble(),
+                    Amount.ofCents(in.readLong()));
+            lines.add(new SaleItem(item, in.readInt()));
+        }
+        if (in.available() == 0) {
+            return new SaleInfoDTO(saleID, runningTotal, customerID, totalVAT, lines.build());
+        }
+        return new SaleInfoDTO(saleID, runningTotal, customerID, totalVAT, lines.build(), Amount.ofCents(in.readLong()));
+    }
+
+    /**
+     * Compresses the specified encoded sales into one batch.
+     *
+     * @param encodedSales The sales, each encoded by {@link #encode(SaleInfoDTO)}.
+     * @param deflater     The deflater compressing the batch. It is reset before it is used.
+     * @return The compressed batch.
+     */
+    static byte[] compressBatch(List<byte[]> encodedSales, Deflater deflater) {
+        deflater.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + 16 * encodedSales.size());
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 8192))) {
+            for (byte[] encodedSale : encodedSales) {
+                out.writeInt(encodedSale.length);
+                out.write(encodedSale);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decompresses and decodes a batch compressed by {@link #compressBatch(List, Deflater)}.
+     *
+     * @param compressed The compressed batch.
+     * @param saleCount  The number of sales in the batch.
+     * @param inflater   The inflater decompressing the batch. It is reset before it is used.
+     * @return The decoded sales, in the order they were compressed.
+     * @throws IOException If the data is not a complete compressed batch.
+     */
+    static List<SaleInfoDTO> decompressBatch(byte[] compressed, int saleCount, Inflater inflater) throws IOException {
+        inflater.reset();
+        DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(compressed), inflater, 8192));
+        List<SaleInfoDTO> sales = new ArrayList<>(saleCount);
+        for (int i = 0; i < saleCount; i++) {
+            byte[] encodedSale = new byte[in.readInt()];
+            in.readFully(encodedSale);
+            sales.add(decode(encodedSale));
+        }
+        return sales;
+    }
+}
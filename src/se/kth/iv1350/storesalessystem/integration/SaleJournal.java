@@ -0,0 +1,797 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
+
+/**
+ * An append-only journal of completed sales, kept in a file so that no paid sale is lost if the
+ * application stops before the sale has reached the accounting and inventory systems.
+ * <p>
+ * A completed sale is journaled as a commit record before the customer leaves, and a delivered
+ * record is appended for each external system, see {@link Destination}, once that system has received
+ * the sale. A sale that reached the inventory system but not the accounting system before the
+ * application stopped is therefore only fed to the accounting system again. Every record holds its
+ * length and a CRC32 checksum, so a record that was only partly written when the application
+ * stopped is detected and discarded when the journal is opened. The sales that were committed
+ * but never delivered everywhere can then be fed to the external systems again with
+ * {@link #replay(AccountingSystem, InventorySystem)}.
+ * <p>
+ * Records appended by many lanes at the same time are written together, and share one sync
+ * of the file when the {@link FsyncPolicy} requires it.
+ * <p>
+ * The journal is kept in segments. Records are appended to the journal file, and when it has grown
+ * beyond the maximum segment size it is synced and sealed by renaming it to the journal file name
+ * followed by a sequence number, such as {@code sales.journal.3}, and a new, empty journal file is
+ * started. A sealed segment is deleted once every sale committed in it has been delivered everywhere,
+ * and so has every sale of the segments before it, since a segment may hold the delivered records of
+ * sales committed in earlier segments. Opening the journal therefore only reads the segments from the
+ * oldest sale that was not delivered everywhere onwards, and the files stay bounded as long as sales
+ * are delivered. A sale that is never delivered keeps its segment and all later segments until it
+ * is replayed.
+ * <p>
+ * If a group of records cannot be written, every appender of that group gets the exception, and
+ * the file is truncated to the end of the last written group, so that no partly written record is
+ * left for later records to follow. The journal can then be used again. Only if the file cannot be
+ * truncated either does the journal stay failed, and every later append throws the same exception
+ * until the journal is closed and opened again, which discards whatever was partly written.
+ */
+public final class SaleJournal implements AutoCloseable {
+    /**
+     * The size beyond which the journal file is sealed as a segment, unless another size is given.
+     */
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final byte COMMIT = 1;
+    private static final byte DELIVERED = 2;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The external systems that receive every completed sale. The journal keeps track of the sale
+     * being delivered to each of them separately.
+     */
+    public enum Destination {
+        /**
+         * The inventory system, see {@link InventorySystem#updateInventory(List)}.
+         */
+        INVENTORY,
+        /**
+         * The accounting system, see {@link AccountingSystem#updateAccounting(List)}.
+         */
+        ACCOUNTING
+    }
+
+    /**
+     * Decides when appended records are forced to the storage device.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Force every group of records before any of their appenders return. No committed sale is lost
+         * even if the whole machine stops.
+         */
+        EVERY_COMMIT,
+        /**
+         * Force at most once per sync interval. Records are forced by the next append once the interval
+         * has passed, or by a timer one interval after they were written if nothing more is appended.
+         * Sales committed within the last interval may be lost if the machine stops, but not if only the
+         * application stops.
+         */
+        INTERVAL,
+        /**
+         * Never force, but leave it to the operating system when the records reach the storage device.
+         */
+        NEVER
+    }
+
+    private final Path journalFile;
+    private final FsyncPolicy fsyncPolicy;
+    private final long syncIntervalNanos;
+    private final long maxSegmentBytes;
+    private final Map<Long, PendingSale> undeliveredSales = new LinkedHashMap<>();
+    private final Map<Long, OutstandingSale> outstandingSales = new HashMap<>();
+    private final Deque<Segment> sealedSegments = new ArrayDeque<>();
+    private final long discardedBytes;
+    private final Object lock = new Object();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder deletedSegments = new LongAdder();
+    private final ScheduledFuture<?> syncTimer;
+    private FileChannel channel;
+    private Segment activeSegment;
+    private long nextSegmentNumber = 1;
+    private Group pendingGroup = new Group();
+    private long appendedRecords;
+    private boolean writing;
+    private IOException failure;
+    private long writtenEnd;
+    private long lastSyncNanos;
+    private boolean unsynced;
+
+    /**
+     * Opens the journal in the specified file, creating the file if it does not exist, with segments
+     * of {@link #DEFAULT_MAX_SEGMENT_BYTES}. See {@link #SaleJournal(Path, FsyncPolicy, long, long)}.
+     *
+     * @param journalFile        The file holding the journal.
+     * @param fsyncPolicy        Decides when appended records are forced to the storage device.
+     * @param syncIntervalMillis The shortest time between two syncs when the policy is {@link FsyncPolicy#INTERVAL}.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public SaleJournal(Path journalFile, FsyncPolicy fsyncPolicy, long syncIntervalMillis) throws IOException {
+        this(journalFile, fsyncPolicy, syncIntervalMillis, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the journal in the specified file, creating the file if it does not exist. The records
+     * in the sealed segments and in the file are read, oldest first, to find the sales that were not
+     * delivered everywhere. A partly written or damaged record at the end of the file, and everything
+     * after it, is discarded. A damaged record in a sealed segment ends the reading of that segment.
+     *
+     * @param journalFile        The file holding the journal. Sealed segments are kept next to it.
+     * @param fsyncPolicy        Decides when appended records are forced to the storage device.
+     * @param syncIntervalMillis The shortest time between two syncs when the policy is {@link FsyncPolicy#INTERVAL}.
+     * @param maxSegmentBytes    The size beyond which the journal file is sealed as a segment.
+     * @throws IOException If a file cannot be opened or read.
+     */
+    public SaleJournal(Path journalFile, FsyncPolicy fsyncPolicy, long syncIntervalMillis, long maxSegmentBytes)
+            throws IOException {
+        this.journalFile = journalFile;
+        this.fsyncPolicy = fsyncPolicy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.lastSyncNanos = System.nanoTime();
+        long discarded = 0;
+        for (Map.Entry<Long, Path> sealedFile : findSealedSegments().entrySet()) {
+            Segment segment = new Segment(sealedFile.getValue());
+            try (FileChannel sealed = FileChannel.open(sealedFile.getValue(), StandardOpenOption.READ)) {
+                discarded += sealed.size() - readRecords(sealed, segment);
+            }
+            sealedSegments.add(segment);
+            nextSegmentNumber = sealedFile.getKey() + 1;
+        }
+        this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.activeSegment = new Segment(journalFile);
+        long validEnd = readRecords(channel, activeSegment);
+        this.discardedBytes = discarded + channel.size() - validEnd;
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        this.writtenEnd = validEnd;
+        if (writtenEnd >= maxSegmentBytes) {
+            sealActiveSegment();
+        }
+        deleteDeliveredSegments();
+        this.syncTimer = fsyncPolicy == FsyncPolicy.INTERVAL && syncIntervalMillis > 0
+                ? SyncTimerHolder.TIMER.scheduleWithFixedDelay(this::syncWrittenRecords, syncIntervalMillis,
+                        syncIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Appends a commit record for the specified completed sale. Depending on the {@link FsyncPolicy},
+     * this method returns when the record has been written or when it has also been forced to the
+     * storage device.
+     *
+     * @param saleInfo The completed sale.
+     * @throws IOException If the record cannot be written, or the journal has failed and could not
+     *                     be recovered.
+     */
+    public void commit(SaleInfoDTO saleInfo) throws IOException {
+        append(List.of(new JournalRecord(frame(COMMIT, SaleInfoCodec.encode(saleInfo)), COMMIT, saleInfo.saleID(),
+                null)));
+    }
+
+    /**
+     * Appends a record telling that the specified sale has been received by the specified external
+     * system, so that it is not fed to that system again when the journal is opened again.
+     *
+     * @param saleID      The ID of the delivered sale.
+     * @param destination The external system that has received the sale.
+     * @throws IOException If the record cannot be written, or the journal has failed and could not
+     *                     be recovered.
+     */
+    public void markDelivered(long saleID, Destination destination) throws IOException {
+        markDelivered(List.of(saleID), destination);
+    }
+
+    /**
+     * Appends a record for each of the specified sales, telling that it has been received by the
+     * specified external system. The records are written together, and share one sync of the file
+     * when the {@link FsyncPolicy} requires it.
+     *
+     * @param saleIDs     The IDs of the delivered sales.
+     * @param destination The external system that has received the sales.
+     * @throws IOException If the records cannot be written, or the journal has failed and could not
+     *                     be recovered.
+     */
+    public void markDelivered(List<Long> saleIDs, Destination destination) throws IOException {
+        List<JournalRecord> records = new ArrayList<>(saleIDs.size());
+        for (long saleID : saleIDs) {
+            records.add(new JournalRecord(frame(DELIVERED, ByteBuffer.allocate(Long.BYTES + 1).putLong(saleID)
+                    .put((byte) destination.ordinal()).array()), DELIVERED, saleID, destination));
+        }
+        append(records);
+    }
+
+    /**
+     * Gets the sales that were committed but not delivered to every external system when the journal
+     * was opened, in the order they were committed.
+     *
+     * @return The undelivered sales.
+     */
+    public List<SaleInfoDTO> getUndeliveredSales() {
+        synchronized (undeliveredSales) {
+            List<SaleInfoDTO> sales = new ArrayList<>(undeliveredSales.size());
+            for (PendingSale pending : undeliveredSales.values()) {
+                sales.add(pending.saleInfo());
+            }
+            return sales;
+        }
+    }
+
+    /**
+     * Feeds every sale that was committed but not delivered when the journal was opened to the
+     * external systems that have not received it, and marks it as delivered to them. The inventory
+     * system is fed first, so a sale whose inventory update was marked before the application stopped
+     * only reaches the accounting system. A sale that was delivered to a system just before the
+     * application stopped, but not yet marked, is delivered to that system once more.
+     * <p>
+     * The sales are marked as delivered to the accounting system when it has recorded them, which
+     * for a client of an accounting server is when the server has acknowledged them. This method does
+     * not wait for that. A sale that is never acknowledged stays undelivered in the journal.
+     *
+     * @param accountingSystem The accounting system that receives the undelivered sales.
+     * @param inventorySystem  The inventory system that is updated with the undelivered sales.
+     * @return The number of replayed sales.
+     * @throws IOException If a delivered record cannot be written.
+     */
+    public int replay(AccountingSystem accountingSystem, InventorySystem inventorySystem) throws IOException {
+        List<PendingSale> pendingSales;
+        synchronized (undeliveredSales) {
+            pendingSales = List.copyOf(undeliveredSales.values());
+        }
+        replayTo(Destination.INVENTORY, pendingSales, sales -> {
+            inventorySystem.updateInventory(sales);
+            return CompletableFuture.completedFuture(null);
+        });
+        replayTo(Destination.ACCOUNTING, pendingSales, accountingSystem::updateAccounting);
+        synchronized (undeliveredSales) {
+            for (PendingSale pending : pendingSales) {
+                undeliveredSales.remove(pending.saleInfo().saleID());
+            }
+        }
+        return pendingSales.size();
+    }
+
+    /**
+     * Gets the number of bytes at the end of the file and of the sealed segments that were discarded
+     * when the journal was opened, because they did not form complete and undamaged records.
+     *
+     * @return The number of discarded bytes.
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    /**
+     * Gets the number of records appended since the journal was opened.
+     *
+     * @return The number of appended records.
+     */
+    public long getAppendedCount() {
+        synchronized (lock) {
+            return appendedRecords;
+        }
+    }
+
+    /**
+     * Gets the number of writes to the file. Since concurrently appended records are written
+     * together, this is at most the number of appended records.
+     *
+     * @return The number of writes.
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Gets the number of times the file has been forced to the storage device.
+     *
+     * @return The number of syncs.
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Gets the number of sealed segments that are kept because they hold sales not yet delivered
+     * everywhere, or precede such a segment.
+     *
+     * @return The number of sealed segments.
+     */
+    public int getSealedSegmentCount() {
+        synchronized (lock) {
+            return sealedSegments.size();
+        }
+    }
+
+    /**
+     * Gets the number of sealed segments deleted since the journal was opened, because every sale in
+     * them and in the segments before them had been delivered everywhere.
+     *
+     * @return The number of deleted segments.
+     */
+    public long getDeletedSegmentCount() {
+        return deletedSegments.sum();
+    }
+
+    /**
+     * Forces all written records to the storage device and closes the file.
+     *
+     * @throws IOException If the file cannot be forced or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.cancel(false);
+        }
+        synchronized (lock) {
+            while (writing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                if (channel.isOpen() && fsyncPolicy != FsyncPolicy.NEVER) {
+                    channel.force(false);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void replayTo(Destination destination, List<PendingSale> pendingSales,
+                          Function<List<SaleInfoDTO>, CompletableFuture<Void>> system) throws IOException {
+        List<SaleInfoDTO> sales = new ArrayList<>();
+        List<Long> saleIDs = new ArrayList<>();
+        for (PendingSale pending : pendingSales) {
+            if (pending.destinations().contains(destination)) {
+                sales.add(pending.saleInfo());
+                saleIDs.add(pending.saleInfo().saleID());
+            }
+        }
+        if (sales.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> recorded = system.apply(sales);
+        if (recorded.isDone() && !recorded.isCompletedExceptionally()) {
+            markDelivered(saleIDs, destination);
+            return;
+        }
+        recorded.thenRun(() -> {
+            try {
+                markDelivered(saleIDs, destination);
+            } catch (IOException e) {
+                AsyncLogger.getInstance().logException(e, "Marking " + saleIDs.size() + " replayed sales as delivered to "
+                        + destination);
+            }
+        });
+    }
+
+    private void append(List<JournalRecord> records) throws IOException {
+        Group group;
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+            group = pendingGroup;
+            group.records.addAll(records);
+            appendedRecords += records.size();
+        }
+        while (true) {
+            Group writtenGroup;
+            synchronized (lock) {
+                while (writing && !group.done && failure == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the sale journal", e);
+                    }
+                }
+                if (group.done) {
+                    if (group.failure != null) {
+                        throw group.failure;
+                    }
+                    return;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                writing = true;
+                writtenGroup = pendingGroup;
+                pendingGroup = new Group();
+            }
+            IOException groupFailure = null;
+            IOException journalFailure = null;
+            try {
+                writeGroup(writtenGroup.records);
+            } catch (IOException e) {
+                groupFailure = e;
+                journalFailure = discardGroup(e);
+            }
+            if (groupFailure == null) {
+                trackDeliveries(writtenGroup.records);
+            }
+            synchronized (lock) {
+                writing = false;
+                writtenGroup.done = true;
+                writtenGroup.failure = groupFailure;
+                failure = journalFailure;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Truncates the file to the end of the last written group, after the current group has failed.
+     *
+     * @return {@code null} if the journal can be used again, or the failure that every later append throws.
+     */
+    private IOException discardGroup(IOException groupFailure) {
+        try {
+            channel.truncate(writtenEnd);
+            channel.position(writtenEnd);
+            return null;
+        } catch (IOException e) {
+            groupFailure.addSuppressed(e);
+            return groupFailure;
+        }
+    }
+
+    private void writeGroup(List<JournalRecord> group) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[group.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = group.get(i).frame();
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        writes.increment();
+
+        long now = System.nanoTime();
+        if (fsyncPolicy == FsyncPolicy.EVERY_COMMIT
+                || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSyncNanos >= syncIntervalNanos) {
+            channel.force(false);
+            syncs.increment();
+            lastSyncNanos = now;
+            unsynced = false;
+        } else {
+            unsynced = fsyncPolicy == FsyncPolicy.INTERVAL;
+        }
+        writtenEnd = channel.position();
+    }
+
+    /**
+     * Forces the records written since the last sync, if any, when the sync interval has passed without
+     * an append doing it. Runs on the sync timer, and skips its turn while a group is being written,
+     * since the writer syncs it when it is due.
+     */
+    private void syncWrittenRecords() {
+        synchronized (lock) {
+            if (writing || !unsynced || !channel.isOpen()
+                    || System.nanoTime() - lastSyncNanos < syncIntervalNanos) {
+                return;
+            }
+            writing = true;
+        }
+        try {
+            channel.force(false);
+            syncs.increment();
+            lastSyncNanos = System.nanoTime();
+            unsynced = false;
+        } catch (IOException e) {
+            AsyncLogger.getInstance().logException(e, "Syncing the sale journal");
+        } finally {
+            synchronized (lock) {
+                writing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Keeps track of which segment holds the commit of every sale not yet delivered everywhere, after
+     * the records have been written. The journal file is sealed when it has grown beyond the maximum
+     * segment size, and sealed segments are deleted once their sales have been delivered.
+     */
+    private void trackDeliveries(List<JournalRecord> records) {
+        for (JournalRecord record : records) {
+            if (record.type() == COMMIT) {
+                trackCommit(record.saleID(), activeSegment);
+            } else {
+                trackDelivery(record.saleID(), record.destination());
+            }
+        }
+        if (writtenEnd >= maxSegmentBytes) {
+            sealActiveSegment();
+        }
+        deleteDeliveredSegments();
+    }
+
+    private void trackCommit(long saleID, Segment segment) {
+        OutstandingSale replaced = outstandingSales.put(saleID,
+                new OutstandingSale(segment, EnumSet.allOf(Destination.class)));
+        segment.outstandingSales++;
+        if (replaced != null) {
+            replaced.segment().outstandingSales--;
+        }
+    }
+
+    private void trackDelivery(long saleID, Destination destination) {
+        OutstandingSale outstanding = outstandingSales.get(saleID);
+        if (outstanding == null) {
+            return;
+        }
+        outstanding.destinations().remove(destination);
+        if (outstanding.destinations().isEmpty()) {
+            outstandingSales.remove(saleID);
+            outstanding.segment().outstandingSales--;
+        }
+    }
+
+    /**
+     * Syncs the journal file and renames it to the next sealed segment, and starts a new journal file.
+     * If the file cannot be sealed, the failure is logged and records go on being appended to it.
+     */
+    private void sealActiveSegment() {
+        Path sealedFile = journalFile.resolveSibling(journalFile.getFileName() + "." + nextSegmentNumber);
+        try {
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+                syncs.increment();
+                unsynced = false;
+            }
+            Files.move(journalFile, sealedFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            AsyncLogger.getInstance().logException(e, "Sealing the sale journal segment " + sealedFile);
+            return;
+        }
+        FileChannel newChannel;
+        try {
+            newChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            try {
+                Files.move(sealedFile, journalFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException moveBack) {
+                e.addSuppressed(moveBack);
+            }
+            AsyncLogger.getInstance().logException(e, "Starting a new sale journal file after " + sealedFile);
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            AsyncLogger.getInstance().logException(e, "Closing the sealed sale journal segment " + sealedFile);
+        }
+        activeSegment.file = sealedFile;
+        synchronized (lock) {
+            sealedSegments.add(activeSegment);
+        }
+        nextSegmentNumber++;
+        channel = newChannel;
+        activeSegment = new Segment(journalFile);
+        writtenEnd = 0;
+    }
+
+    /**
+     * Deletes the oldest sealed segments as long as every sale committed in them has been delivered
+     * everywhere. A later segment is kept while an earlier one is, since its delivered records may
+     * belong to the earlier segment's sales.
+     */
+    private void deleteDeliveredSegments() {
+        while (true) {
+            Segment oldest;
+            synchronized (lock) {
+                oldest = sealedSegments.peekFirst();
+            }
+            if (oldest == null || oldest.outstandingSales > 0) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                AsyncLogger.getInstance().logException(e, "Deleting the delivered sale journal segment " + oldest.file);
+                return;
+            }
+            synchronized (lock) {
+                sealedSegments.removeFirst();
+            }
+            deletedSegments.increment();
+        }
+    }
+
+    /**
+     * Finds the sealed segments next to the journal file.
+     *
+     * @return The sealed segment files by their sequence number, oldest first.
+     */
+    private Map<Long, Path> findSealedSegments() throws IOException {
+        Map<Long, Path> segments = new TreeMap<>();
+        Path directory = journalFile.toAbsolutePath().getParent();
+        String prefix = journalFile.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) && suffix.length() < 19) {
+                    segments.put(Long.parseLong(suffix), journalFile.resolveSibling(file.getFileName()));
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static ByteBuffer frame(byte type, byte[] payload) {
+        CRC32 checksum = new CRC32();
+        checksum.update(type);
+        checksum.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 1 + payload.length);
+        record.putInt(1 + payload.length);
+        record.putInt((int) checksum.getValue());
+        record.put(type);
+        record.put(payload);
+        return record.flip();
+    }
+
+    private long readRecords(FileChannel channel, Segment segment) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            int expectedChecksum = header.getInt(4);
+            if (length < 1 || length > MAX_RECORD_SIZE || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + RECORD_HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            checksum.update(body.array());
+            if ((int) checksum.getValue() != expectedChecksum || !apply(body.array(), segment)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private boolean apply(byte[] body, Segment segment) {
+        byte[] payload = new byte[body.length - 1];
+        System.arraycopy(body, 1, payload, 0, payload.length);
+        try {
+            switch (body[0]) {
+                case COMMIT -> {
+                    SaleInfoDTO saleInfo = SaleInfoCodec.decode(payload);
+                    undeliveredSales.put(saleInfo.saleID(), new PendingSale(saleInfo, EnumSet.allOf(Destination.class)));
+                    trackCommit(saleInfo.saleID(), segment);
+                }
+                case DELIVERED -> {
+                    ByteBuffer delivered = ByteBuffer.wrap(payload);
+                    long saleID = delivered.getLong();
+                    Destination destination = Destination.values()[delivered.get()];
+                    PendingSale pending = undeliveredSales.get(saleID);
+                    if (pending != null) {
+                        pending.destinations().remove(destination);
+                        if (pending.destinations().isEmpty()) {
+                            undeliveredSales.remove(saleID);
+                        }
+                    }
+                    trackDelivery(saleID, destination);
+                }
+                default -> {
+                    return false;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of the sale journal");
+            }
+        }
+    }
+
+    /**
+     * Records appended together, written and synced by one of their appenders.
+     */
+    private static final class Group {
+        private final List<JournalRecord> records = new ArrayList<>();
+        private boolean done;
+        private IOException failure;
+    }
+
+    /**
+     * A committed sale, with the external systems that have not yet received it.
+     */
+    private record PendingSale(SaleInfoDTO saleInfo, EnumSet<Destination> destinations) {
+    }
+
+    /**
+     * A framed record to append, with the sale it is about and, for a delivered record, the external
+     * system that received the sale.
+     */
+    private record JournalRecord(ByteBuffer frame, byte type, long saleID, Destination destination) {
+    }
+
+    /**
+     * A sale not yet delivered everywhere, with the segment holding its commit record and the external
+     * systems that have not yet received it.
+     */
+    private record OutstandingSale(Segment segment, EnumSet<Destination> destinations) {
+    }
+
+    /**
+     * A file of the journal, with the number of sales committed in it that are not yet delivered everywhere.
+     */
+    private static final class Segment {
+        private Path file;
+        private long outstandingSales;
+
+        private Segment(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Holds the timer that syncs the records of journals with the {@link FsyncPolicy#INTERVAL} policy when
+     * nothing more is appended, created the first time such a journal is opened. Its thread is a daemon,
+     * so it does not keep the JVM alive.
+     */
+    private static class SyncTimerHolder {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "sale-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
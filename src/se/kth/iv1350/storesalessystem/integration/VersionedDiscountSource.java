@@ -0,0 +1,27 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+/**
+ * A {@link DiscountSource} that tells when its rules change and which customers have discounts
+ * depending on the sale. This lets the discounts it finds be cached, see
+ * {@code se.kth.iv1350.storesalessystem.model.DiscountCache}.
+ */
+public interface VersionedDiscountSource extends DiscountSource {
+
+    /**
+     * Gets the version of the rules, which changes every time the rules are replaced. Anything derived
+     * from the rules of an older version is outdated.
+     *
+     * @return The current rules version.
+     */
+    long getRulesVersion();
+
+    /**
+     * Checks whether the discount of the specified customer may depend on the sale, such as on its items,
+     * its total or the time at which it is made. If not, the customer gets the same discount for every
+     * sale until the rules are replaced.
+     *
+     * @param customerID The unique identifier of the customer.
+     * @return {@code true} if different sales of the customer may get different discounts.
+     */
+    boolean dependsOnSale(int customerID);
+}
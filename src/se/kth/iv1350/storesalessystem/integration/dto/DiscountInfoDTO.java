@@ -6,22 +6,13 @@ import se.kth.iv1350.storesalessystem.model.Amount;
  * Data Transfer Object (DTO) for transferring discount information within the sales system.
  * This class encapsulates information related to a discount, such as the discount amount,
  * percentage, and type, ensuring immutability and safe encapsulation.
+ *
+ * @param discountAmount     The monetary value of the discount. This is represented as an immutable {@code Amount} object.
+ * @param discountPercentage The percentage value of the discount, represented as an integer.
+ * @param discountType       The type of the discount, represented as a string.
  */
 public record DiscountInfoDTO(Amount discountAmount, int discountPercentage, String discountType) {
 
-    /**
-     * Creates a new instance of DiscountInfoDTO with the specified discount amount, percentage, and type.
-     *
-     * @param discountAmount     The monetary value of the discount. This is represented as an {@code Amount} object.
-     * @param discountPercentage The percentage value of the discount, represented as an integer.
-     * @param discountType       The type of the discount, represented as a string.
-     */
-    public DiscountInfoDTO(Amount discountAmount, int discountPercentage, String discountType) {
-        this.discountAmount = new Amount(discountAmount.getAmount());
-        this.discountPercentage = discountPercentage;
-        this.discountType = discountType;
-    }
-
     /**
      * Creates a new instance of DiscountInfoDTO with default values.
      * The default values are:
@@ -38,10 +29,10 @@ public record DiscountInfoDTO(Amount discountAmount, int discountPercentage, Str
      * Retrieves the fixed discount amount encapsulated in this object.
      * This amount represents a specific monetary value for the discount.
      *
-     * @return A new {@code Amount} object containing the fixed discount value.
+     * @return The immutable {@code Amount} object containing the fixed discount value.
      */
     public Amount getDiscountAmount() {
-        return new Amount(discountAmount.getAmount());
+        return discountAmount;
     }
 
     /**
@@ -74,6 +65,6 @@ public record DiscountInfoDTO(Amount discountAmount, int discountPercentage, Str
      * {@code false} otherwise.
      */
     public boolean isApplicable() {
-        return discountAmount.getAmount() > 0 || discountPercentage > 0;
+        return discountAmount.getCents() > 0 || discountPercentage > 0;
     }
 }
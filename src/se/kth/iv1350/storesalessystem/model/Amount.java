@@ -1,34 +1,76 @@
 package se.kth.iv1350.storesalessystem.model;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 /**
  * Represents an immutable monetary amount with basic arithmetic operations.
+ * The amount is stored exactly as a whole number of öre (hundredths of a krona), so sums and
+ * differences never drift. Operations that can produce fractions of an öre, such as VAT and
+ * percentage discounts, round explicitly with a given {@link RoundingMode}.
+ * <p>
+ * Besides the object methods, this class offers static helpers that work directly on
+ * {@code long} öre values, for code that sums many amounts and should not allocate.
  */
-public class Amount {
-    private final double amount;
-    
+public final class Amount {
+    /**
+     * The number of öre in one krona.
+     */
+    public static final long CENTS_PER_UNIT = 100;
+    /**
+     * The denominator of rates expressed in basis points, where 10000 basis points is 100%.
+     */
+    public static final long BASIS_POINTS = 10_000;
+
+    private final long cents;
+
     /**
      * Creates a new instance with the specified amount.
-     * 
-     * @param amount The amount represented by this object.
+     * The amount is rounded half up to the nearest öre, based on its shortest decimal representation.
+     *
+     * @param amount The amount represented by this object, in kronor.
      */
     public Amount(double amount) {
-        this.amount = amount;
+        this(BigDecimal.valueOf(amount).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
     }
 
     /**
      * Creates a new instance of the Amount class with a default value of 0.
      */
     public Amount() {
-        this(0);
+        this(0L);
+    }
+
+    private Amount(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Creates a new instance representing the specified number of öre.
+     *
+     * @param cents The amount in öre.
+     * @return An {@code Amount} representing exactly the specified number of öre.
+     */
+    public static Amount ofCents(long cents) {
+        return new Amount(cents);
     }
 
     /**
      * Retrieves the monetary amount represented by this object.
      *
-     * @return The monetary amount as a double value.
+     * @return The monetary amount in kronor as a double value.
      */
     public double getAmount() {
-        return amount;
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    /**
+     * Retrieves the exact monetary amount represented by this object.
+     *
+     * @return The monetary amount as a whole number of öre.
+     */
+    public long getCents() {
+        return cents;
     }
     
     /**
@@ -38,7 +80,7 @@ public class Amount {
      * @return A new Amount object containing the sum.
      */
     public Amount plus(Amount other) {
-        return new Amount(this.amount + other.amount);
+        return new Amount(Math.addExact(this.cents, other.cents));
     }
     
     /**
@@ -48,16 +90,117 @@ public class Amount {
      * @return A new Amount object containing the difference.
      */
     public Amount minus(Amount other) {
-        return new Amount(this.amount - other.amount);
+        return new Amount(Math.subtractExact(this.cents, other.cents));
+    }
+
+    /**
+     * Multiplies this amount by a whole number, for example a quantity. The result is exact.
+     *
+     * @param quantity The number to multiply by.
+     * @return A new Amount object with the multiplied value.
+     */
+    public Amount multiply(int quantity) {
+        return new Amount(Math.multiplyExact(this.cents, quantity));
     }
     
     /**
-     * Multiplies this amount by the specified factor.
+     * Multiplies this amount by the specified factor, rounding half up to the nearest öre.
      * 
      * @param factor The factor to multiply by.
      * @return A new Amount object with the multiplied value.
      */
     public Amount multiply(double factor) {
-        return new Amount(this.amount * factor);
+        return multiply(factor, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Multiplies this amount by the specified factor, rounding to the nearest öre with the
+     * specified rounding mode. The factor is taken at its shortest decimal representation,
+     * so that for example a factor of {@code 0.12} is exactly twelve percent.
+     *
+     * @param factor       The factor to multiply by.
+     * @param roundingMode The rounding applied to fractions of an öre.
+     * @return A new Amount object with the multiplied value.
+     */
+    public Amount multiply(double factor, RoundingMode roundingMode) {
+        BigDecimal product = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(factor));
+        return new Amount(product.setScale(0, roundingMode).longValueExact());
+    }
+
+    /**
+     * Compares this amount to another object. Two amounts are equal if they represent the same number of öre.
+     *
+     * @param other The object to compare with.
+     * @return {@code true} if the other object is an {@code Amount} of the same value.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Amount amount && amount.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    /**
+     * Converts a rate, such as a VAT rate of {@code 0.25}, to basis points.
+     *
+     * @param rate The rate as a fraction of one.
+     * @return The rate in basis points, rounded to the nearest basis point.
+     */
+    public static long toBasisPoints(double rate) {
+        return Math.round(rate * BASIS_POINTS);
+    }
+
+    /**
+     * Calculates {@code cents * numerator / denominator} with an explicit rounding of the result,
+     * without allocating. Used for VAT ({@code rateBasisPoints / BASIS_POINTS}) and percentages
+     * ({@code percentage / 100}).
+     *
+     * @param cents        The amount in öre.
+     * @param numerator    The numerator of the fraction.
+     * @param denominator  The denominator of the fraction, which must be positive.
+     * @param roundingMode The rounding applied to fractions of an öre.
+     * @return The scaled amount in öre.
+     * @throws ArithmeticException If the result overflows, or if rounding is necessary
+     *                             and the rounding mode is {@link RoundingMode#UNNECESSARY}.
+     */
+    public static long scaleCents(long cents, long numerator, long denominator, RoundingMode roundingMode) {
+        return divide(Math.multiplyExact(cents, numerator), denominator, roundingMode);
+    }
+
+    /**
+     * Divides two whole numbers, rounding the quotient with the specified rounding mode.
+     *
+     * @param dividend     The number to divide.
+     * @param divisor      The positive number to divide by.
+     * @param roundingMode The rounding applied to the quotient.
+     * @return The rounded quotient.
+     */
+    private static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = dividend < 0 ? -1 : 1;
+        long twiceRemainder = Math.abs(remainder) * 2;
+        boolean roundAway = switch (roundingMode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> twiceRemainder >= divisor;
+            case HALF_DOWN -> twiceRemainder > divisor;
+            case HALF_EVEN -> twiceRemainder > divisor || twiceRemainder == divisor && (quotient & 1) != 0;
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary for " + dividend + " / " + divisor);
+        };
+        return roundAway ? quotient + sign : quotient;
     }
-}
\ No newline at end of file
+}
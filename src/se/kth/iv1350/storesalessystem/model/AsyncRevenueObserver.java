@@ -0,0 +1,290 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
+
+/**
+ * A {@link TotalRevenueObserver} that passes payments on to another observer on a thread of its own,
+ * so that a slow observer, such as one printing or writing to a file, is kept off the payment path.
+ * <p>
+ * Payments are placed in a bounded buffer and delivered to the wrapped observer in the order they were
+ * made. What happens when the wrapped observer falls behind and the buffer is full is decided by the
+ * {@link OverflowPolicy}; coalesced payments are delivered after the buffered ones. The number of
+ * delivered, dropped and coalesced payments is counted, together with how long payments wait before
+ * they reach the wrapped observer.
+ * <p>
+ * Once the observer is closed and its thread has delivered what was left, later payments are dropped.
+ * A payment made while the thread stops is either delivered or counted as dropped, never lost unseen.
+ */
+public class AsyncRevenueObserver implements TotalRevenueObserver, AutoCloseable {
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    /**
+     * Decides what happens to a new payment when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the payment and count it as dropped. The wrapped observer misses the payment.
+         */
+        DROP,
+        /**
+         * Make the paying lane wait until there is room in the buffer.
+         */
+        BLOCK,
+        /**
+         * Add the payment to a sum of all payments that did not fit, which is delivered to the wrapped
+         * observer as one payment once it catches up. The total revenue seen by the observer stays exact.
+         */
+        COALESCE
+    }
+
+    private final TotalRevenueObserver target;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<RevenueEvent> buffer;
+    private final Thread dispatcher;
+    private final AtomicReference<CoalescedPayments> coalesced = new AtomicReference<>(CoalescedPayments.NONE);
+    private final LongAdder publishedPayments = new LongAdder();
+    private final LongAdder deliveredEvents = new LongAdder();
+    private final LongAdder droppedPayments = new LongAdder();
+    private final LongAdder coalescedPayments = new LongAdder();
+    private final LongAdder blockedPayments = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new observer passing payments on to the specified observer, and starts its thread.
+     *
+     * @param target         The observer that receives the payments.
+     * @param capacity       The maximum number of payments waiting to be delivered.
+     * @param overflowPolicy Decides what happens to new payments when the buffer is full.
+     */
+    public AsyncRevenueObserver(TotalRevenueObserver target, int capacity, OverflowPolicy overflowPolicy) {
+        this.target = target;
+        this.overflowPolicy = overflowPolicy;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.dispatcher = new Thread(this::dispatchPayments, "revenue-observer-" + target.getClass().getSimpleName());
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Places the payment in the buffer, to be delivered to the wrapped observer by the thread of this observer.
+     *
+     * @param payment The payment amount that has been processed.
+     */
+    @Override
+    public void newPayment(Amount payment) {
+        publishedPayments.increment();
+        long now = System.nanoTime();
+        if (closed) {
+            droppedPayments.increment();
+            return;
+        }
+        RevenueEvent event = new RevenueEvent(payment, now);
+        if (buffer.offer(event)) {
+            dropIfStopped(event);
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP -> droppedPayments.increment();
+            case COALESCE -> coalesce(payment, now);
+            case BLOCK -> block(event);
+        }
+    }
+
+    /**
+     * Delivers all buffered and coalesced payments to the wrapped observer and stops the thread of
+     * this observer. Payments made after this method has been called are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (dispatcher.isAlive()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of payments that have been made to this observer.
+     *
+     * @return The number of published payments.
+     */
+    public long getPublishedCount() {
+        return publishedPayments.sum();
+    }
+
+    /**
+     * Gets the number of times the wrapped observer has been notified. A coalesced sum of
+     * payments counts as one notification.
+     *
+     * @return The number of delivered notifications.
+     */
+    public long getDeliveredCount() {
+        return deliveredEvents.sum();
+    }
+
+    /**
+     * Gets the number of payments that were discarded because the buffer was full or the observer closed.
+     *
+     * @return The number of dropped payments.
+     */
+    public long getDroppedCount() {
+        return droppedPayments.sum();
+    }
+
+    /**
+     * Gets the number of payments that did not fit in the buffer and were added to a coalesced sum.
+     *
+     * @return The number of coalesced payments.
+     */
+    public long getCoalescedCount() {
+        return coalescedPayments.sum();
+    }
+
+    /**
+     * Gets the number of payments whose lane had to wait for room in the buffer.
+     *
+     * @return The number of payments that were subject to backpressure.
+     */
+    public long getBlockedCount() {
+        return blockedPayments.sum();
+    }
+
+    /**
+     * Gets the number of payments waiting in the buffer.
+     *
+     * @return The current buffer depth.
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Gets the time the most recently delivered payment waited before it reached the wrapped observer.
+     *
+     * @return The latest lag in nanoseconds.
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /**
+     * Gets the longest time any payment has waited before it reached the wrapped observer.
+     *
+     * @return The maximum lag in nanoseconds.
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    private void coalesce(Amount payment, long now) {
+        coalesced.updateAndGet(sum -> sum.add(payment.getCents(), now));
+        coalescedPayments.increment();
+        if (stopped) {
+            dropCoalesced();
+        }
+    }
+
+    /**
+     * Waits for room in the buffer for as long as the thread of this observer runs. The payment is dropped
+     * if the thread stops, or if the paying lane is interrupted, whose interrupt status is then kept.
+     */
+    private void block(RevenueEvent event) {
+        blockedPayments.increment();
+        try {
+            while (!buffer.offer(event, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    droppedPayments.increment();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            droppedPayments.increment();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        dropIfStopped(event);
+    }
+
+    /**
+     * Takes back a buffered payment if the thread of this observer has stopped, since it would never be
+     * delivered. The thread drops whatever it finds in the buffer after stopping, so the payment is counted
+     * as dropped once, by whichever of the two removes it.
+     */
+    private void dropIfStopped(RevenueEvent event) {
+        if (stopped && buffer.remove(event)) {
+            droppedPayments.increment();
+        }
+    }
+
+    private void dropCoalesced() {
+        droppedPayments.add(coalesced.getAndSet(CoalescedPayments.NONE).count());
+    }
+
+    private void dispatchPayments() {
+        while (!closed || !buffer.isEmpty() || coalesced.get().count() != 0) {
+            RevenueEvent event = null;
+            try {
+                event = buffer.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Nothing interrupts this thread; close() is seen within IDLE_POLL_MILLIS.
+            }
+            if (event != null) {
+                deliver(event.payment(), event.publishedNanos());
+            }
+            if (buffer.isEmpty() && coalesced.get().count() != 0) {
+                CoalescedPayments sum = coalesced.getAndSet(CoalescedPayments.NONE);
+                deliver(Amount.ofCents(sum.cents()), sum.oldestNanos());
+            }
+        }
+        stopped = true;
+        while (buffer.poll() != null) {
+            droppedPayments.increment();
+        }
+        dropCoalesced();
+    }
+
+    private void deliver(Amount payment, long publishedNanos) {
+        try {
+            target.newPayment(payment);
+        } catch (RuntimeException e) {
+            AsyncLogger.getInstance().logException(e, "Notifying revenue observer " + target.getClass().getSimpleName());
+        }
+        long lag = System.nanoTime() - publishedNanos;
+        lastLagNanos = lag;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        deliveredEvents.increment();
+    }
+
+    private record RevenueEvent(Amount payment, long publishedNanos) {
+    }
+
+    /**
+     * The sum of the payments that did not fit in the buffer, with their number and the time the oldest
+     * of them was made. A sum is never changed, but replaced by adding a payment, so that the thread of
+     * the observer takes the amount and the number of the same payments in one swap.
+     */
+    private record CoalescedPayments(long cents, long count, long oldestNanos) {
+        private static final CoalescedPayments NONE = new CoalescedPayments(0, 0, 0);
+
+        private CoalescedPayments add(long paymentCents, long publishedNanos) {
+            return new CoalescedPayments(cents + paymentCents, count + 1, count == 0 ? publishedNanos : oldestNanos);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.List;
+
+/**
+ * A promotion where the customer buys a number of units of one item but only pays for fewer of them,
+ * such as 3-for-2. The promotion is given once for every complete group of units in the sale.
+ */
+public final class BuyXPayYPromotion implements Promotion {
+    private final String promotionID;
+    private final List<String> itemIDs;
+    private final int buyQuantity;
+    private final int payQuantity;
+    private final String description;
+
+    /**
+     * Creates a new promotion on the specified item.
+     *
+     * @param promotionID The unique identifier of the promotion.
+     * @param itemID      The ID of the item on promotion.
+     * @param buyQuantity The number of units in a group, 3 for 3-for-2.
+     * @param payQuantity The number of units paid for in a group, 2 for 3-for-2.
+     * @throws IllegalArgumentException If not at least one unit in a group is free.
+     */
+    public BuyXPayYPromotion(String promotionID, String itemID, int buyQuantity, int payQuantity) {
+        if (payQuantity < 0 || payQuantity >= buyQuantity) {
+            throw new IllegalArgumentException("Cannot pay for " + payQuantity + " of " + buyQuantity + " units");
+        }
+        this.promotionID = promotionID;
+        this.itemIDs = List.of(itemID);
+        this.buyQuantity = buyQuantity;
+        this.payQuantity = payQuantity;
+        this.description = buyQuantity + " for " + payQuantity + " on item " + itemID;
+    }
+
+    @Override
+    public String getPromotionID() {
+        return promotionID;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public List<String> getItemIDs() {
+        return itemIDs;
+    }
+
+    /**
+     * Calculates the reduction as the price of the free units of all complete groups.
+     *
+     * @param quantities     The quantity of the item in the sale.
+     * @param unitPriceCents The unit price including VAT of the item, in öre.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(int[] quantities, long[] unitPriceCents) {
+        long groups = quantities[0] / buyQuantity;
+        return groups * (buyQuantity - payQuantity) * unitPriceCents[0];
+    }
+}
@@ -1,21 +1,26 @@
 package se.kth.iv1350.storesalessystem.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a cash register for handling payments and maintaining a running balance.
+ * A single cash register may be shared by several checkout lanes without locking: the balance
+ * is kept in cents by a {@link LongAdder}, so concurrent payments do not contend on one counter,
+ * and the observers are kept in a copy-on-write list, which is read on every payment but
+ * changed only when an observer is added or removed. Observers may therefore be notified by
+ * several lanes at the same time.
  */
 public class CashRegister {
-    private Amount balance;
-    private final List<TotalRevenueObserver> observers = new ArrayList<>();
+    private final LongAdder balanceCents = new LongAdder();
+    private final List<TotalRevenueObserver> observers = new CopyOnWriteArrayList<>();
 
     /**
      * Creates a new instance of the CashRegister class.
      * Initializes the cash register with a balance of zero.
      */
     public CashRegister() {
-        this.balance = new Amount();
     }
 
     /**
@@ -24,17 +29,18 @@ public class CashRegister {
      * @param payment The payment amount to be added to the balance.
      */
     public void addPayment(Amount payment) {
-        this.balance = balance.plus(payment);
+        balanceCents.add(payment.getCents());
         notifyObservers(payment);
     }
 
     /**
-     * Retrieves the current balance of this cash register.
+     * Retrieves the current balance of this cash register. While payments are being added
+     * concurrently, the balance includes some of them; once they are added, it is exact.
      *
      * @return The current balance as an Amount object.
      */
     public Amount getBalance() {
-        return new Amount(balance.getAmount());
+        return Amount.ofCents(balanceCents.sum());
     }
 
     /**
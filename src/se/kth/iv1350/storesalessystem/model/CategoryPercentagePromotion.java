@@ -0,0 +1,81 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * A promotion giving a percentage off every unit of a category of items, such as 20% off all dairy.
+ * The category is given by the IDs of the items belonging to it. The reduction is rounded half up to
+ * the nearest öre, in favour of the customer.
+ */
+public final class CategoryPercentagePromotion implements Promotion {
+    private final String promotionID;
+    private final List<String> itemIDs;
+    private final int percentage;
+    private final String description;
+
+    /**
+     * Creates a new promotion on the specified category.
+     *
+     * @param promotionID  The unique identifier of the promotion.
+     * @param categoryName The name of the category, used in the description.
+     * @param itemIDs      The IDs of the items in the category.
+     * @param percentage   The percentage taken off the price of the items, between 1 and 100.
+     * @throws IllegalArgumentException If the category is empty or the percentage is out of range.
+     */
+    public CategoryPercentagePromotion(String promotionID, String categoryName, List<String> itemIDs, int percentage) {
+        if (itemIDs.isEmpty()) {
+            throw new IllegalArgumentException("Category " + categoryName + " holds no items");
+        }
+        if (percentage <= 0 || percentage > 100) {
+            throw new IllegalArgumentException("Percentage must be between 1 and 100, not " + percentage);
+        }
+        this.promotionID = promotionID;
+        this.itemIDs = List.copyOf(new LinkedHashSet<>(itemIDs));
+        this.percentage = percentage;
+        this.description = percentage + "% off " + categoryName;
+    }
+
+    @Override
+    public String getPromotionID() {
+        return promotionID;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public List<String> getItemIDs() {
+        return itemIDs;
+    }
+
+    /**
+     * Calculates the reduction as the percentage of the price of all units in the category.
+     *
+     * @param quantities     The quantity in the sale of each item in the category.
+     * @param unitPriceCents The unit price including VAT of each item in the category, in öre.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(int[] quantities, long[] unitPriceCents) {
+        long categoryCents = 0;
+        for (int i = 0; i < quantities.length; i++) {
+            categoryCents += quantities[i] * unitPriceCents[i];
+        }
+        return Amount.scaleCents(categoryCents, percentage, 100, PercentageDiscountStrategy.DISCOUNT_ROUNDING);
+    }
+
+    /**
+     * Calculates the reduction as the percentage of the running total price of the category in the sale.
+     *
+     * @param match The items of the category in the sale.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(SalePromotions.PromotionMatch match) {
+        return Amount.scaleCents(match.getTotalPriceCents(), percentage, 100,
+                PercentageDiscountStrategy.DISCOUNT_ROUNDING);
+    }
+}
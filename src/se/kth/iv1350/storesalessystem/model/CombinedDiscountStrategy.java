@@ -9,10 +9,12 @@ package se.kth.iv1350.storesalessystem.model;
  * <p>
  * This class implements the {@code DiscountStrategy} interface, which means it provides a
  * concrete implementation for applying discounts and retrieving a description of the strategy.
+ * Instances are immutable, provided that the combined strategies are, and may be shared by any number of sales.
  */
-public class CombinedDiscountStrategy implements DiscountStrategy {
+public final class CombinedDiscountStrategy implements DiscountStrategy {
     private final DiscountStrategy firstDiscount;
     private final DiscountStrategy secondDiscount;
+    private final String description;
 
     /**
      * Constructs a CombinedDiscountStrategy using two individual discount strategies.
@@ -25,6 +27,7 @@ public class CombinedDiscountStrategy implements DiscountStrategy {
     public CombinedDiscountStrategy(DiscountStrategy firstDiscount, DiscountStrategy secondDiscount) {
         this.firstDiscount = firstDiscount;
         this.secondDiscount = secondDiscount;
+        this.description = "Combined discount: " + firstDiscount.getDescription() + " and " + secondDiscount.getDescription();
     }
 
     /**
@@ -39,8 +42,18 @@ public class CombinedDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public Amount applyDiscount(Amount amount) {
-        Amount afterFirstDiscount = firstDiscount.applyDiscount(amount);
-        return secondDiscount.applyDiscount(afterFirstDiscount);
+        return Amount.ofCents(applyDiscount(amount.getCents()));
+    }
+
+    /**
+     * Applies both discounts, in order, to an amount given in öre, without allocating.
+     *
+     * @param cents The original amount in öre.
+     * @return The amount in öre after both discounts have been applied.
+     */
+    @Override
+    public long applyDiscount(long cents) {
+        return secondDiscount.applyDiscount(firstDiscount.applyDiscount(cents));
     }
 
     /**
@@ -52,6 +65,6 @@ public class CombinedDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public String getDescription() {
-        return "Combined discount: " + firstDiscount.getDescription() + " and " + secondDiscount.getDescription();
+        return description;
     }
 }
@@ -0,0 +1,209 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.kth.iv1350.storesalessystem.integration.DiscountSource;
+import se.kth.iv1350.storesalessystem.integration.VersionedDiscountSource;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+/**
+ * A cache in front of a {@link DiscountSource}, such as the discount database, remembering for every
+ * recent customer the discount found by the source as a ready-built {@link DiscountStrategy}, keyed by
+ * the customer and the version of the source's rules. A returning customer's discount is then found
+ * without asking the discount source and without building a new strategy.
+ * <p>
+ * Only a {@link VersionedDiscountSource} tells when its rules change and which customers have discounts
+ * that depend on the sale, such as on its items or total. The discounts of such customers, and all
+ * discounts of a source without versions, are found by asking the source for every sale.
+ * <p>
+ * Customers without any discount are cached as well, since they are the most common. An entry expires
+ * after a fixed time, and when the cache is full the least recently used entry is evicted. All entries
+ * become invalid as soon as the rules of the discount source are replaced. The number of hits, misses,
+ * evictions and expirations is counted.
+ * <p>
+ * The customers are spread over a number of stripes by customer ID, each stripe holding its share of
+ * the entries in least recently used order behind its own lock. Concurrent sales of different customers
+ * then seldom wait for each other, while a small cache keeps a single stripe and so an exact order.
+ * Eviction is least recently used within a stripe, which approximates the order of the whole cache.
+ */
+public class DiscountCache {
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_ENTRIES_PER_STRIPE = 64;
+
+    private final DiscountSource discountSource;
+    private final long timeToLiveNanos;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a new, empty cache in front of the specified discount source.
+     *
+     * @param discountSource   The source whose discounts are cached.
+     * @param maxEntries       The maximum number of customers in the cache.
+     * @param timeToLiveMillis The time after which a cached customer is looked up in the discount source again.
+     */
+    public DiscountCache(DiscountSource discountSource, int maxEntries, long timeToLiveMillis) {
+        this.discountSource = discountSource;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        int stripeCount = Math.clamp(maxEntries / MIN_ENTRIES_PER_STRIPE, 1, MAX_STRIPES);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            int stripeEntries = maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0);
+            stripes[i] = new Stripe(stripeEntries, evictions);
+        }
+    }
+
+    /**
+     * Finds the discount strategy for the specified customer and sale, giving the discount that the
+     * discount source finds for them.
+     *
+     * @param customerID The unique identifier of the customer.
+     * @param saleInfo   The sale for which a discount is requested.
+     * @return The strategy of the applicable discount, or a strategy giving no discount.
+     */
+    public DiscountStrategy findDiscountStrategy(int customerID, SaleInfoDTO saleInfo) {
+        if (!(discountSource instanceof VersionedDiscountSource versionedSource)) {
+            misses.increment();
+            return SaleDiscount.createStrategy(discountSource.findDiscount(customerID, saleInfo));
+        }
+        long now = System.nanoTime();
+        long rulesVersion = versionedSource.getRulesVersion();
+        Stripe stripe = stripes[Math.floorMod(customerID, stripes.length)];
+        synchronized (stripe) {
+            CustomerDiscount cached = stripe.get(customerID);
+            if (cached != null) {
+                if (cached.rulesVersion() == rulesVersion && now - cached.loadedNanos() < timeToLiveNanos) {
+                    hits.increment();
+                    return cached.strategy();
+                }
+                expirations.increment();
+                stripe.remove(customerID);
+            }
+        }
+        misses.increment();
+        boolean dependsOnSale = versionedSource.dependsOnSale(customerID);
+        DiscountStrategy strategy = SaleDiscount.createStrategy(discountSource.findDiscount(customerID, saleInfo));
+        if (!dependsOnSale) {
+            synchronized (stripe) {
+                stripe.put(customerID, new CustomerDiscount(strategy, rulesVersion, now));
+            }
+        }
+        return strategy;
+    }
+
+    /**
+     * Removes all customers from the cache.
+     */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to ask the discount source.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of customers removed because the cache was full.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of cached customers that were found to be too old, or to belong to replaced rules.
+     *
+     * @return The number of expirations.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Gets the number of customers in the cache.
+     *
+     * @return The cache size.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The cached discount of one customer, found with the rules of the specified version.
+     */
+    private record CustomerDiscount(DiscountStrategy strategy, long rulesVersion, long loadedNanos) {
+    }
+
+    /**
+     * One stripe of the cache, holding its customers in least recently used order. A stripe is only
+     * used while holding its lock.
+     */
+    private static final class Stripe {
+        private final Map<Integer, CustomerDiscount> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxEntries;
+        private final LongAdder evictions;
+
+        Stripe(int maxEntries, LongAdder evictions) {
+            this.maxEntries = maxEntries;
+            this.evictions = evictions;
+        }
+
+        CustomerDiscount get(int customerID) {
+            return entries.get(customerID);
+        }
+
+        void put(int customerID, CustomerDiscount discount) {
+            entries.put(customerID, discount);
+            if (entries.size() > maxEntries) {
+                Iterator<CustomerDiscount> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        void remove(int customerID) {
+            entries.remove(customerID);
+        }
+
+        void clear() {
+            entries.clear();
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+}
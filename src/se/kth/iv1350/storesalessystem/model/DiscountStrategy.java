@@ -18,6 +18,17 @@ public interface DiscountStrategy {
      */
     Amount applyDiscount(Amount amount);
 
+    /**
+     * Applies the discount to an amount given in öre, without allocating.
+     * The result is the same as that of {@link #applyDiscount(Amount)}.
+     *
+     * @param cents The original amount in öre.
+     * @return The amount in öre after the discount has been applied.
+     */
+    default long applyDiscount(long cents) {
+        return applyDiscount(Amount.ofCents(cents)).getCents();
+    }
+
     /**
      * Provides a description of the specific discount strategy being used.
      *
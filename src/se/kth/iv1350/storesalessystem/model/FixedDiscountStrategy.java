@@ -5,10 +5,11 @@ package se.kth.iv1350.storesalessystem.model;
  * to an initial monetary amount.
  * This class implements the DiscountStrategy interface and provides
  * methods to calculate the discounted amount and to retrieve a description
- * of the discount strategy.
+ * of the discount strategy. Instances are immutable and may be shared by any number of sales.
  */
-public class FixedDiscountStrategy implements DiscountStrategy {
+public final class FixedDiscountStrategy implements DiscountStrategy {
     private final Amount discountAmount;
+    private final String description;
 
     /**
      * Constructs a FixedDiscountStrategy with a specified fixed discount amount.
@@ -17,7 +18,8 @@ public class FixedDiscountStrategy implements DiscountStrategy {
      *                       It must be an instance of the Amount class.
      */
     public FixedDiscountStrategy(Amount discountAmount) {
-        this.discountAmount = new Amount(discountAmount.getAmount());
+        this.discountAmount = discountAmount;
+        this.description = "Fixed discount of " + discountAmount.getAmount() + " SEK";
     }
 
     /**
@@ -30,10 +32,19 @@ public class FixedDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public Amount applyDiscount(Amount amount) {
-        if (discountAmount.getAmount() > amount.getAmount()) {
-            return new Amount(0.0);
-        }
-        return amount.minus(discountAmount);
+        return Amount.ofCents(applyDiscount(amount.getCents()));
+    }
+
+    /**
+     * Applies the fixed discount to an amount given in öre, without allocating.
+     * If the discount amount is greater than the given amount, the result is zero.
+     *
+     * @param cents The original amount in öre.
+     * @return The amount in öre after the discount has been applied.
+     */
+    @Override
+    public long applyDiscount(long cents) {
+        return Math.max(0, cents - discountAmount.getCents());
     }
 
     /**
@@ -43,6 +54,6 @@ public class FixedDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public String getDescription() {
-        return "Fixed discount of " + discountAmount.getAmount() + " SEK";
+        return description;
     }
 }
@@ -1,6 +1,6 @@
 package se.kth.iv1350.storesalessystem.model;
 
-import se.kth.iv1350.storesalessystem.util.ErrorLogger;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
 
 /**
  * Represents an exception that is thrown when an item with a specific identifier cannot be found.
@@ -9,8 +9,6 @@ import se.kth.iv1350.storesalessystem.util.ErrorLogger;
  */
 public class IdentifierException extends Exception {
     private final String itemIdentifier;
-    private final ErrorLogger logger;
-    private final Exception exception = new Exception();
 
     /**
      * Creates a new instance of the {@code IdentifierException} class to indicate that
@@ -22,7 +20,6 @@ public class IdentifierException extends Exception {
     public IdentifierException(String itemIdentifier) {
         super("Item with identifier " + itemIdentifier + " was not found");
         this.itemIdentifier = itemIdentifier;
-        this.logger = new ErrorLogger();
     }
 
     /**
@@ -32,11 +29,12 @@ public class IdentifierException extends Exception {
      * The logged information includes:
      * - A description of the error, including the missing item's identifier.
      * - The type and details of the underlying exception.
-     * This method utilizes the {@code logException} method of the {@code ErrorLogger} class to
-     * write the error details to an error log.
+     * This method hands the error details to the process-wide {@code AsyncLogger}, which
+     * writes them to the error log in the background. Creating this exception does not
+     * touch the error log at all.
      */
     public void logError() {
-        logger.logException(exception, "Item with ID: " + itemIdentifier + " not found in the inventory.");
+        AsyncLogger.getInstance().logException(this, "Item with ID: " + itemIdentifier + " not found in the inventory.");
     }
 
     /**
@@ -47,4 +45,13 @@ public class IdentifierException extends Exception {
     public String getItemIdentifier() {
         return itemIdentifier;
     }
+
+    /**
+     * Retrieves a message describing the error in a way that is suitable to show to the user.
+     *
+     * @return A user-friendly description of the error.
+     */
+    public String getUserFriendlyMessage() {
+        return "The scanned item could not be found in the inventory. Please try again or contact assistance";
+    }
 }
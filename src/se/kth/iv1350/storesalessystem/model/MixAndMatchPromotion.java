@@ -0,0 +1,140 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * A promotion where any units of a set of items, mixed freely, are sold together for a fixed price,
+ * such as any 3 cheeses for 100 SEK. Groups are made up of the most expensive units in the sale first,
+ * which gives the customer the largest reduction, and a group is never made more expensive than its
+ * units at the ordinary price.
+ */
+public final class MixAndMatchPromotion implements Promotion {
+    private final String promotionID;
+    private final List<String> itemIDs;
+    private final int groupQuantity;
+    private final long groupPriceCents;
+    private final String description;
+
+    /**
+     * Creates a new promotion on the specified items.
+     *
+     * @param promotionID   The unique identifier of the promotion.
+     * @param setName       The name of the set of items, used in the description.
+     * @param itemIDs       The IDs of the items that may be mixed in a group.
+     * @param groupQuantity The number of units sold together.
+     * @param groupPrice    The price including VAT of a group of units.
+     * @throws IllegalArgumentException If the set is empty or a group holds no units.
+     */
+    public MixAndMatchPromotion(String promotionID, String setName, List<String> itemIDs, int groupQuantity,
+                                Amount groupPrice) {
+        if (itemIDs.isEmpty()) {
+            throw new IllegalArgumentException("Set " + setName + " holds no items");
+        }
+        if (groupQuantity <= 0) {
+            throw new IllegalArgumentException("A group must hold at least one unit, not " + groupQuantity);
+        }
+        this.promotionID = promotionID;
+        this.itemIDs = List.copyOf(new LinkedHashSet<>(itemIDs));
+        this.groupQuantity = groupQuantity;
+        this.groupPriceCents = groupPrice.getCents();
+        this.description = "Any " + groupQuantity + " " + setName + " for " + groupPrice + " SEK";
+    }
+
+    @Override
+    public String getPromotionID() {
+        return promotionID;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public List<String> getItemIDs() {
+        return itemIDs;
+    }
+
+    /**
+     * Calculates the reduction by filling the groups with units in order of decreasing price, and
+     * comparing the ordinary price of every complete group with the promotion price.
+     *
+     * @param quantities     The quantity in the sale of each item in the set.
+     * @param unitPriceCents The unit price including VAT of each item in the set, in öre.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(int[] quantities, long[] unitPriceCents) {
+        long totalUnits = 0;
+        for (int quantity : quantities) {
+            totalUnits += quantity;
+        }
+        return calculateReductionCents(quantities, unitPriceCents, positionsByDecreasingPrice(unitPriceCents),
+                totalUnits);
+    }
+
+    /**
+     * Calculates the reduction like {@link #calculateReductionCents(int[], long[])}, but takes the total
+     * number of units and the order of the items by price from the match instead of working them out,
+     * and stops as soon as the complete groups are filled.
+     *
+     * @param match The items of the set in the sale.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(SalePromotions.PromotionMatch match) {
+        return calculateReductionCents(match.quantities, match.unitPriceCents, match.positionsByDecreasingPrice,
+                match.getTotalQuantity());
+    }
+
+    private long calculateReductionCents(int[] quantities, long[] unitPriceCents, int[] positionsByDecreasingPrice,
+                                         long totalUnits) {
+        long unitsInGroups = totalUnits / groupQuantity * groupQuantity;
+        if (unitsInGroups == 0) {
+            return 0;
+        }
+
+        long reduction = 0;
+        long groupCents = 0;
+        long unitsInGroup = 0;
+        for (int i = 0; i < positionsByDecreasingPrice.length && unitsInGroups > 0; i++) {
+            int position = positionsByDecreasingPrice[i];
+            long price = unitPriceCents[position];
+            long remaining = Math.min(quantities[position], unitsInGroups);
+            unitsInGroups -= remaining;
+            while (remaining > 0) {
+                if (unitsInGroup == 0 && remaining >= groupQuantity) {
+                    long groups = remaining / groupQuantity;
+                    reduction += groups * Math.max(0, groupQuantity * price - groupPriceCents);
+                    remaining -= groups * groupQuantity;
+                    continue;
+                }
+                long units = Math.min(remaining, groupQuantity - unitsInGroup);
+                groupCents += units * price;
+                unitsInGroup += units;
+                remaining -= units;
+                if (unitsInGroup == groupQuantity) {
+                    reduction += Math.max(0, groupCents - groupPriceCents);
+                    groupCents = 0;
+                    unitsInGroup = 0;
+                }
+            }
+        }
+        return reduction;
+    }
+
+    private static int[] positionsByDecreasingPrice(long[] unitPriceCents) {
+        int[] positions = new int[unitPriceCents.length];
+        for (int i = 0; i < positions.length; i++) {
+            int position = i;
+            int j = i;
+            while (j > 0 && unitPriceCents[positions[j - 1]] < unitPriceCents[position]) {
+                positions[j] = positions[j - 1];
+                j--;
+            }
+            positions[j] = position;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,66 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.List;
+
+/**
+ * A promotion where a number of units of one item are sold together for a fixed price, such as
+ * 2 for 30 SEK. The promotion is given once for every complete group of units in the sale, and never
+ * makes a group more expensive than its units at the ordinary price.
+ */
+public final class MultiBuyPromotion implements Promotion {
+    private final String promotionID;
+    private final List<String> itemIDs;
+    private final int groupQuantity;
+    private final long groupPriceCents;
+    private final String description;
+
+    /**
+     * Creates a new promotion on the specified item.
+     *
+     * @param promotionID   The unique identifier of the promotion.
+     * @param itemID        The ID of the item on promotion.
+     * @param groupQuantity The number of units sold together.
+     * @param groupPrice    The price including VAT of a group of units.
+     * @throws IllegalArgumentException If a group holds no units.
+     */
+    public MultiBuyPromotion(String promotionID, String itemID, int groupQuantity, Amount groupPrice) {
+        if (groupQuantity <= 0) {
+            throw new IllegalArgumentException("A group must hold at least one unit, not " + groupQuantity);
+        }
+        this.promotionID = promotionID;
+        this.itemIDs = List.of(itemID);
+        this.groupQuantity = groupQuantity;
+        this.groupPriceCents = groupPrice.getCents();
+        this.description = groupQuantity + " for " + groupPrice + " SEK on item " + itemID;
+    }
+
+    @Override
+    public String getPromotionID() {
+        return promotionID;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public List<String> getItemIDs() {
+        return itemIDs;
+    }
+
+    /**
+     * Calculates the reduction as the difference between the ordinary price and the promotion price
+     * of all complete groups.
+     *
+     * @param quantities     The quantity of the item in the sale.
+     * @param unitPriceCents The unit price including VAT of the item, in öre.
+     * @return The reduction in öre.
+     */
+    @Override
+    public long calculateReductionCents(int[] quantities, long[] unitPriceCents) {
+        long groups = quantities[0] / groupQuantity;
+        long reductionPerGroup = groupQuantity * unitPriceCents[0] - groupPriceCents;
+        return reductionPerGroup > 0 ? groups * reductionPerGroup : 0;
+    }
+}
@@ -1,17 +1,36 @@
 package se.kth.iv1350.storesalessystem.model;
 
-public class NoDiscountStrategy implements DiscountStrategy {
+/**
+ * A discount strategy that gives no discount. Since it holds no state, the shared
+ * {@link #INSTANCE} is used wherever a sale has no discount.
+ */
+public final class NoDiscountStrategy implements DiscountStrategy {
+    /**
+     * The instance used by all sales without a discount.
+     */
+    public static final NoDiscountStrategy INSTANCE = new NoDiscountStrategy();
 
     /**
      * Applies a discount to the specified monetary amount.
      * In this implementation, no discount is applied, and the original amount is returned.
      *
      * @param amount The original monetary amount to which the discount is to be applied.
-     * @return A new Amount object representing the same monetary value as the input.
+     * @return The same monetary value as the input. Amounts are immutable, so no copy is made.
      */
     @Override
     public Amount applyDiscount(Amount amount) {
-        return new Amount(amount.getAmount());
+        return amount;
+    }
+
+    /**
+     * Returns the amount given in öre unchanged.
+     *
+     * @param cents The original amount in öre.
+     * @return The same amount in öre.
+     */
+    @Override
+    public long applyDiscount(long cents) {
+        return cents;
     }
 
     /**
@@ -1,12 +1,21 @@
 package se.kth.iv1350.storesalessystem.model;
 
+import java.math.RoundingMode;
 
 /**
  * A discount strategy that applies a percentage-based discount to a given amount.
  * This class implements the DiscountStrategy interface to provide percentage-based discounting functionality.
+ * The discount is rounded half up to the nearest öre, in favour of the customer.
+ * Instances are immutable and may be shared by any number of sales.
  */
-public class PercentageDiscountStrategy implements DiscountStrategy {
+public final class PercentageDiscountStrategy implements DiscountStrategy {
+    /**
+     * The rounding applied to the discount.
+     */
+    public static final RoundingMode DISCOUNT_ROUNDING = RoundingMode.HALF_UP;
+
     private final int discountPercentage;
+    private final String description;
 
     /**
      * Constructs a new instance of PercentageDiscountStrategy with the specified discount percentage.
@@ -17,6 +26,7 @@ public class PercentageDiscountStrategy implements DiscountStrategy {
      */
     public PercentageDiscountStrategy(int discountPercentage) {
         this.discountPercentage = discountPercentage;
+        this.description = discountPercentage + "% discount";
     }
 
     /**
@@ -28,9 +38,18 @@ public class PercentageDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public Amount applyDiscount(Amount amount) {
-        double discountRate = discountPercentage / 100.0;
-        Amount discount = amount.multiply(discountRate);
-        return amount.minus(discount);
+        return Amount.ofCents(applyDiscount(amount.getCents()));
+    }
+
+    /**
+     * Applies the percentage-based discount to an amount given in öre, without allocating.
+     *
+     * @param cents The original amount in öre.
+     * @return The amount in öre after the discount has been applied.
+     */
+    @Override
+    public long applyDiscount(long cents) {
+        return cents - Amount.scaleCents(cents, discountPercentage, 100, DISCOUNT_ROUNDING);
     }
 
     /**
@@ -41,6 +60,6 @@ public class PercentageDiscountStrategy implements DiscountStrategy {
      */
     @Override
     public String getDescription() {
-        return discountPercentage + "% discount";
+        return description;
     }
 }
@@ -0,0 +1,553 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import se.kth.iv1350.storesalessystem.integration.AccountingSystem;
+import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.SaleJournal;
+import se.kth.iv1350.storesalessystem.integration.SaleJournal.Destination;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
+
+/**
+ * Delivers completed sales to the inventory system and the accounting system in the background,
+ * so that a customer never waits for the external systems before getting change.
+ * <p>
+ * Every external system is served by a stage of its own, with a bounded queue and a worker thread
+ * that takes the sales from the queue in batches. A batch is started as soon as a sale arrives and
+ * is delivered when it holds the maximum batch size or when the linger time has passed, whichever
+ * comes first. The whole batch is handed to the external system in one call, see
+ * {@link InventorySystem#updateInventory(List)} and {@link AccountingSystem#updateAccounting(List)}.
+ * A slow external system therefore only delays its own stage.
+ * <p>
+ * A batch has been delivered once the external system has recorded it. The accounting system may
+ * record a batch some time after accepting it, when its server has acknowledged the sales. Its stage
+ * goes on collecting and handing over batches in the meantime, and marks each batch once it has
+ * been recorded.
+ * <p>
+ * Delivery is at-least-once: a batch whose delivery fails, or that the external system accepted but
+ * then failed to record, is retried in full, with a growing delay,
+ * until the external system has accepted it or the pipeline is closed and the time given to
+ * {@link #close(long)} runs out. Sales that are then still undelivered stay in the journal.
+ * When a queue is full, the thread submitting a sale waits until there is room, which slows the
+ * checkout lanes down instead of losing sales.
+ * If the pipeline has a {@link SaleJournal}, every batch that has reached an external system is
+ * marked as delivered to that system in the journal, so a sale is never replayed to a system that
+ * has already received it.
+ */
+public class PostSalePipeline implements AutoCloseable {
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+    private static final long IDLE_POLL_MILLIS = 50;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private final List<Stage> stages;
+    private final SaleJournal journal;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long retryDelayMillis;
+    private final LongAdder blockedSales = new LongAdder();
+    private final AtomicLong submittedSales = new AtomicLong();
+    private final Object deliveryMonitor = new Object();
+    private final CountDownLatch abandoned = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pipeline delivering completed sales to the specified external systems
+     * and starts its worker threads.
+     *
+     * @param accountingSystem The accounting system that receives every completed sale.
+     * @param inventorySystem  The inventory system that is updated with every completed sale.
+     * @param capacity         The maximum number of sales waiting to be delivered to each external system.
+     * @param batchSize        The maximum number of sales delivered in one batch.
+     * @param lingerMillis     The longest time a batch waits for more sales before it is delivered.
+     * @param retryDelayMillis The time before a failed delivery is first retried. The delay doubles
+     *                         with every further failure, up to one second.
+     */
+    public PostSalePipeline(AccountingSystem accountingSystem, InventorySystem inventorySystem, int capacity,
+                            int batchSize, long lingerMillis, long retryDelayMillis) {
+        this(accountingSystem, inventorySystem, capacity, batchSize, lingerMillis, retryDelayMillis, null);
+    }
+
+    /**
+     * Creates a new pipeline delivering completed sales to the specified external systems and
+     * marking them as delivered in the specified journal, and starts its worker threads.
+     *
+     * @param accountingSystem The accounting system that receives every completed sale.
+     * @param inventorySystem  The inventory system that is updated with every completed sale.
+     * @param capacity         The maximum number of sales waiting to be delivered to each external system.
+     * @param batchSize        The maximum number of sales delivered in one batch.
+     * @param lingerMillis     The longest time a batch waits for more sales before it is delivered.
+     * @param retryDelayMillis The time before a failed delivery is first retried. The delay doubles
+     *                         with every further failure, up to one second.
+     * @param journal          The journal in which delivered sales are marked, or {@code null} for none.
+     */
+    public PostSalePipeline(AccountingSystem accountingSystem, InventorySystem inventorySystem, int capacity,
+                            int batchSize, long lingerMillis, long retryDelayMillis, SaleJournal journal) {
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.retryDelayMillis = retryDelayMillis;
+        this.stages = List.of(
+                new Stage(Destination.INVENTORY, sales -> {
+                    inventorySystem.updateInventory(sales);
+                    return CompletableFuture.completedFuture(null);
+                }, capacity),
+                new Stage(Destination.ACCOUNTING, accountingSystem::updateAccounting, capacity));
+        for (Stage stage : stages) {
+            stage.worker.start();
+        }
+    }
+
+    /**
+     * Places a completed sale in the queue of every external system. If a queue is full, this
+     * method waits until there is room in it. A sale submitted while the pipeline is closing is
+     * either delivered or counted as abandoned, never left in a queue.
+     *
+     * @param saleInfo The information about the completed sale.
+     * @throws IllegalStateException If the pipeline has been closed.
+     */
+    public void submit(SaleInfoDTO saleInfo) {
+        if (closed) {
+            throw new IllegalStateException("The post-sale pipeline has been closed.");
+        }
+        submittedSales.incrementAndGet();
+        for (Stage stage : stages) {
+            stage.enqueue(saleInfo);
+        }
+    }
+
+    /**
+     * Waits until every submitted sale has been delivered to every external system.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return {@code true} if all sales were delivered, {@code false} if the time ran out first.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean awaitDelivery(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (deliveryMonitor) {
+            while (!allDelivered()) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                deliveryMonitor.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting new sales, delivers the sales that are already queued and stops the
+     * worker threads, waiting at most ten seconds for the deliveries. See {@link #close(long)}.
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops accepting new sales, delivers the sales that are already queued and stops the
+     * worker threads. The threads are not interrupted, since they write to the journal, and an
+     * interrupt would close the journal's file.
+     * <p>
+     * If the sales have not been delivered when the time runs out, for example because an external
+     * system keeps failing, the remaining deliveries are abandoned. Those sales are not marked as
+     * delivered in the journal, so they are delivered by {@link SaleJournal#replay} when the
+     * application is started again.
+     *
+     * @param timeoutMillis The longest time to wait for the queued sales to be delivered.
+     * @return {@code true} if all sales were delivered, {@code false} if deliveries were abandoned.
+     */
+    public boolean close(long timeoutMillis) {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean interrupted = false;
+        for (Stage stage : stages) {
+            while (stage.worker.isAlive() && abandoned.getCount() > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    abandoned.countDown();
+                    break;
+                }
+                try {
+                    stage.worker.join(remainingMillis);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Stage stage : stages) {
+            while (stage.worker.isAlive()) {
+                try {
+                    stage.worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        long undelivered = getAbandonedCount();
+        if (undelivered > 0) {
+            AsyncLogger.getInstance().logException(new IllegalStateException(undelivered
+                    + " sales were not delivered"), "Closing the post-sale pipeline"
+                    + (journal == null ? "" : "; the sales remain in the journal"));
+        }
+        return undelivered == 0;
+    }
+
+    /**
+     * Gets the number of sales whose delivery was abandoned when the pipeline was closed, including
+     * sales submitted while it was closing that arrived after the worker threads had stopped.
+     *
+     * @return The number of sales not delivered to all external systems, zero while the pipeline is open.
+     */
+    public long getAbandonedCount() {
+        for (Stage stage : stages) {
+            if (!stage.stopped) {
+                return 0;
+            }
+        }
+        return submittedSales.get() - getDeliveredCount();
+    }
+
+    /**
+     * Gets the number of sales that have been submitted to this pipeline.
+     *
+     * @return The number of submitted sales.
+     */
+    public long getSubmittedCount() {
+        return submittedSales.get();
+    }
+
+    /**
+     * Gets the number of sales that have been delivered to all external systems.
+     *
+     * @return The number of fully delivered sales.
+     */
+    public long getDeliveredCount() {
+        long delivered = Long.MAX_VALUE;
+        for (Stage stage : stages) {
+            delivered = Math.min(delivered, stage.deliveredSales.sum());
+        }
+        return delivered;
+    }
+
+    /**
+     * Gets the number of failed deliveries that have been retried.
+     *
+     * @return The number of retries.
+     */
+    public long getRetryCount() {
+        long retries = 0;
+        for (Stage stage : stages) {
+            retries += stage.retries.sum();
+        }
+        return retries;
+    }
+
+    /**
+     * Gets the number of submissions that had to wait because a queue was full.
+     *
+     * @return The number of sales that were subject to backpressure.
+     */
+    public long getBlockedCount() {
+        return blockedSales.sum();
+    }
+
+    /**
+     * Gets the number of sales waiting in the fullest queue.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Stage stage : stages) {
+            depth = Math.max(depth, stage.queue.size());
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the number of batches that have been delivered, summed over all external systems.
+     *
+     * @return The number of delivered batches.
+     */
+    public long getBatchCount() {
+        long batches = 0;
+        for (Stage stage : stages) {
+            batches += stage.batches.sum();
+        }
+        return batches;
+    }
+
+    /**
+     * Gets the average time from the first sale of a batch being taken from the queue until
+     * the whole batch has been delivered, over all batches and external systems.
+     *
+     * @return The average batch latency in nanoseconds, or zero if no batch has been delivered.
+     */
+    public long getAverageBatchLatencyNanos() {
+        long batches = getBatchCount();
+        if (batches == 0) {
+            return 0;
+        }
+        long latency = 0;
+        for (Stage stage : stages) {
+            latency += stage.batchLatencyNanos.sum();
+        }
+        return latency / batches;
+    }
+
+    /**
+     * Gets the longest time any batch has taken from its first sale being taken from the queue
+     * until the whole batch was delivered.
+     *
+     * @return The maximum batch latency in nanoseconds.
+     */
+    public long getMaxBatchLatencyNanos() {
+        long max = 0;
+        for (Stage stage : stages) {
+            max = Math.max(max, stage.maxBatchLatencyNanos.get());
+        }
+        return max;
+    }
+
+    private boolean allDelivered() {
+        return getDeliveredCount() >= submittedSales.get();
+    }
+
+    private void signalDelivery() {
+        synchronized (deliveryMonitor) {
+            deliveryMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * A batch that an external system has accepted, with the future completed when it has been recorded.
+     */
+    private record UnrecordedBatch(List<SaleInfoDTO> sales, CompletableFuture<Void> recorded, long startNanos) {
+    }
+
+    /**
+     * The queue and worker thread delivering sales to one external system.
+     */
+    private class Stage {
+        private final Destination destination;
+        private final Function<List<SaleInfoDTO>, CompletableFuture<Void>> system;
+        private final BlockingQueue<SaleInfoDTO> queue;
+        private final Thread worker;
+        private final LongAdder deliveredSales = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder batchLatencyNanos = new LongAdder();
+        private final AtomicLong maxBatchLatencyNanos = new AtomicLong();
+        private volatile boolean stopped;
+
+        private Stage(Destination destination, Function<List<SaleInfoDTO>, CompletableFuture<Void>> system,
+                      int capacity) {
+            this.destination = destination;
+            this.system = system;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.worker = new Thread(this::deliverBatches, "post-sale-" + destination.name().toLowerCase());
+            this.worker.setDaemon(true);
+        }
+
+        private void deliverBatches() {
+            List<SaleInfoDTO> batch = new ArrayList<>(batchSize);
+            List<UnrecordedBatch> unrecorded = new ArrayList<>();
+            while ((!closed || !queue.isEmpty() || !unrecorded.isEmpty()) && abandoned.getCount() > 0) {
+                collectBatch(batch);
+                if (!batch.isEmpty()) {
+                    long batchStart = System.nanoTime();
+                    List<SaleInfoDTO> sales = List.copyOf(batch);
+                    batch.clear();
+                    CompletableFuture<Void> recorded = deliver(sales);
+                    if (recorded == null) {
+                        break;
+                    }
+                    unrecorded.add(new UnrecordedBatch(sales, recorded, batchStart));
+                }
+                completeRecordedBatches(unrecorded);
+            }
+            stopped = true;
+            queue.clear();
+        }
+
+        /**
+         * Places a sale in the queue of this stage, waiting for room if it is full. A sale that is placed
+         * in the queue after the worker thread has stopped is taken back out and abandoned.
+         */
+        private void enqueue(SaleInfoDTO saleInfo) {
+            if (!queue.offer(saleInfo)) {
+                blockedSales.increment();
+                if (!awaitRoom(saleInfo)) {
+                    logAbandoned(1);
+                    return;
+                }
+            }
+            if (stopped && queue.remove(saleInfo)) {
+                logAbandoned(1);
+            }
+        }
+
+        /**
+         * Waits until the sale fits in the full queue, polling so that a submitter does not wait
+         * forever for a worker thread that has stopped.
+         *
+         * @return {@code true} if the sale was placed in the queue, {@code false} if the worker
+         *         thread stopped first.
+         */
+        private boolean awaitRoom(SaleInfoDTO saleInfo) {
+            boolean interrupted = false;
+            try {
+                while (!stopped) {
+                    try {
+                        if (queue.offer(saleInfo, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return true;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return false;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void logAbandoned(int sales) {
+            AsyncLogger.getInstance().logException(new IllegalStateException(sales + " sales were submitted while the "
+                    + "post-sale pipeline was closing"), "Delivering sales to " + destination
+                    + (journal == null ? "" : "; the sales remain in the journal"));
+        }
+
+        /**
+         * Marks the batches that the external system has recorded, and hands the batches that it
+         * failed to record over again.
+         */
+        private void completeRecordedBatches(List<UnrecordedBatch> unrecorded) {
+            boolean completed = false;
+            for (int i = 0; i < unrecorded.size(); i++) {
+                UnrecordedBatch batch = unrecorded.get(i);
+                if (!batch.recorded().isDone()) {
+                    continue;
+                }
+                if (batch.recorded().isCompletedExceptionally()) {
+                    AsyncLogger.getInstance().logException(new IllegalStateException(destination
+                            + " did not record " + batch.sales().size() + " sales, from sale "
+                            + batch.sales().getFirst().saleID(), batch.recorded().exceptionNow()), "Delivering sales");
+                    CompletableFuture<Void> recorded = deliver(batch.sales());
+                    if (recorded == null) {
+                        return;
+                    }
+                    unrecorded.set(i, new UnrecordedBatch(batch.sales(), recorded, batch.startNanos()));
+                    continue;
+                }
+                markDelivered(batch.sales());
+                long latency = System.nanoTime() - batch.startNanos();
+                batchLatencyNanos.add(latency);
+                maxBatchLatencyNanos.accumulateAndGet(latency, Math::max);
+                batches.increment();
+                deliveredSales.add(batch.sales().size());
+                completed = true;
+            }
+            if (completed) {
+                unrecorded.removeIf(batch -> batch.recorded().isDone() && !batch.recorded().isCompletedExceptionally());
+                signalDelivery();
+            }
+        }
+
+        private void collectBatch(List<SaleInfoDTO> batch) {
+            try {
+                SaleInfoDTO first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    return;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    SaleInfoDTO next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Deliver whatever has been collected without lingering.
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+
+        /**
+         * Hands the batch to the external system, retrying it in full with a growing delay until it
+         * is accepted or the deliveries are abandoned by {@link #close(long)}.
+         *
+         * @return The future completed when the batch has been recorded, or {@code null} if the
+         *         delivery was abandoned.
+         */
+        private CompletableFuture<Void> deliver(List<SaleInfoDTO> sales) {
+            long delay = retryDelayMillis;
+            while (true) {
+                try {
+                    return system.apply(sales);
+                } catch (RuntimeException e) {
+                    AsyncLogger.getInstance().logException(e, "Delivering " + sales.size() + " sales, from sale "
+                            + sales.getFirst().saleID() + ", to " + destination);
+                }
+                if (waitBeforeRetry(delay)) {
+                    return null;
+                }
+                retries.increment();
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+
+        /**
+         * Marks the delivered batch in the journal, so that its sales are not replayed to this stage's
+         * external system. The records of the whole batch are written together.
+         */
+        private void markDelivered(List<SaleInfoDTO> sales) {
+            if (journal == null) {
+                return;
+            }
+            List<Long> saleIDs = new ArrayList<>(sales.size());
+            for (SaleInfoDTO sale : sales) {
+                saleIDs.add(sale.saleID());
+            }
+            try {
+                journal.markDelivered(saleIDs, destination);
+            } catch (IOException e) {
+                AsyncLogger.getInstance().logException(e, "Marking " + saleIDs.size() + " sales as delivered to "
+                        + destination);
+            }
+        }
+
+        /**
+         * Waits before a failed delivery is retried, returning early if the deliveries are abandoned.
+         *
+         * @return {@code true} if the deliveries have been abandoned.
+         */
+        private boolean waitBeforeRetry(long delayMillis) {
+            try {
+                return abandoned.await(delayMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return abandoned.getCount() == 0;
+            }
+        }
+    }
+}
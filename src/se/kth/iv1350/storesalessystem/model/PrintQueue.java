@@ -0,0 +1,257 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.kth.iv1350.storesalessystem.integration.Printer;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
+import se.kth.iv1350.storesalessystem.util.AsyncLogger;
+
+/**
+ * Prints receipts on a thread of its own, so that a slow or stalled printer does not hold up the
+ * checkout lanes sharing it. There is one queue for every printer.
+ * <p>
+ * Receipts are printed one at a time, in the order they were submitted. A receipt that the printer
+ * fails to print is retried, with a delay that doubles with every failure, until it has been tried the
+ * maximum number of times; it is then logged and skipped so that the receipts behind it are printed.
+ * When the queue is full, the thread submitting a receipt waits until there is room. Receipts are
+ * submitted as {@link ReceiptDTO} snapshots, so the queue never reads a sale that a checkout lane
+ * may still be changing. The number of
+ * printed, retried and skipped receipts is counted, together with the time from submission until
+ * a receipt has been printed.
+ */
+public class PrintQueue implements AutoCloseable {
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    private final Printer printer;
+    private final BlockingQueue<PrintJob> queue;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final Thread worker;
+    private final LongAdder printedReceipts = new LongAdder();
+    private final LongAdder failedReceipts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder blockedReceipts = new LongAdder();
+    private final LongAdder printLatencyNanos = new LongAdder();
+    private final AtomicLong maxPrintLatencyNanos = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new queue in front of the specified printer and starts its thread.
+     *
+     * @param printer          The printer printing the receipts.
+     * @param capacity         The maximum number of receipts waiting to be printed.
+     * @param maxAttempts      The number of times a receipt is tried before it is skipped.
+     * @param retryDelayMillis The time before a failed receipt is first retried. The delay doubles
+     *                         with every further failure, up to one second.
+     */
+    public PrintQueue(Printer printer, int capacity, int maxAttempts, long retryDelayMillis) {
+        this.printer = printer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.worker = new Thread(this::printReceipts, "print-queue");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Places the receipt in the queue, to be printed after all receipts submitted before it.
+     * If the queue is full, this method waits until there is room in it.
+     *
+     * @param receiptData The receipt to print.
+     * @return Completed with {@code true} once the receipt has been printed, or with {@code false}
+     * if it was skipped after failing the maximum number of times or because the queue was closed
+     * while it was being submitted.
+     * @throws IllegalStateException If the queue has been closed.
+     */
+    public CompletableFuture<Boolean> submit(ReceiptDTO receiptData) {
+        if (closed) {
+            throw new IllegalStateException("The print queue has been closed.");
+        }
+        PrintJob job = new PrintJob(receiptData, System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(job)) {
+            blockedReceipts.increment();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(job);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stopped && queue.remove(job)) {
+            skip(job);
+        }
+        return job.printed();
+    }
+
+    /**
+     * Stops accepting new receipts, prints the receipts that are already queued and stops the thread.
+     * The thread is not interrupted, since an interrupt could close a printer's file in the middle of a receipt.
+     * A receipt submitted while the queue is closing is either printed or skipped, never left waiting.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of receipts that have been printed.
+     *
+     * @return The number of printed receipts.
+     */
+    public long getPrintedCount() {
+        return printedReceipts.sum();
+    }
+
+    /**
+     * Gets the number of receipts that were skipped after failing the maximum number of times.
+     *
+     * @return The number of skipped receipts.
+     */
+    public long getFailedCount() {
+        return failedReceipts.sum();
+    }
+
+    /**
+     * Gets the number of failed print attempts that have been retried.
+     *
+     * @return The number of retries.
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Gets the number of submissions that had to wait because the queue was full.
+     *
+     * @return The number of receipts that were subject to backpressure.
+     */
+    public long getBlockedCount() {
+        return blockedReceipts.sum();
+    }
+
+    /**
+     * Gets the number of receipts waiting to be printed.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the average time from a receipt being submitted until it was printed.
+     *
+     * @return The average print latency in nanoseconds, or zero if no receipt has been printed.
+     */
+    public long getAveragePrintLatencyNanos() {
+        long printed = printedReceipts.sum();
+        return printed == 0 ? 0 : printLatencyNanos.sum() / printed;
+    }
+
+    /**
+     * Gets the longest time from a receipt being submitted until it was printed.
+     *
+     * @return The maximum print latency in nanoseconds.
+     */
+    public long getMaxPrintLatencyNanos() {
+        return maxPrintLatencyNanos.get();
+    }
+
+    private void printReceipts() {
+        while (!closed || !queue.isEmpty()) {
+            PrintJob job;
+            try {
+                job = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                job = null;
+            }
+            if (job == null) {
+                continue;
+            }
+            boolean printed = print(job.receiptData());
+            if (printed) {
+                long latency = System.nanoTime() - job.submittedNanos();
+                printLatencyNanos.add(latency);
+                maxPrintLatencyNanos.accumulateAndGet(latency, Math::max);
+                printedReceipts.increment();
+            } else {
+                failedReceipts.increment();
+            }
+            job.printed().complete(printed);
+        }
+        stopped = true;
+        PrintJob leftover;
+        while ((leftover = queue.poll()) != null) {
+            skip(leftover);
+        }
+    }
+
+    /**
+     * Completes a receipt that was placed in the queue after its thread had stopped, so that no
+     * caller waits for it forever.
+     */
+    private void skip(PrintJob job) {
+        AsyncLogger.getInstance().logException(new IllegalStateException("The print queue has been closed."),
+                "Printing receipt submitted while the queue was closing");
+        failedReceipts.increment();
+        job.printed().complete(false);
+    }
+
+    private boolean print(ReceiptDTO receiptData) {
+        long delay = retryDelayMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                printer.tryPrintReceipt(receiptData);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                AsyncLogger.getInstance().logException(e, "Printing receipt, attempt " + attempt + " of " + maxAttempts);
+                if (attempt >= maxAttempts) {
+                    return false;
+                }
+            }
+            retries.increment();
+            sleepBeforeRetry(delay);
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private void sleepBeforeRetry(long delayMillis) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            // The receipt is retried at once.
+        }
+    }
+
+    /**
+     * A receipt waiting to be printed, with the time it was submitted and the future completed when it is printed.
+     */
+    private record PrintJob(ReceiptDTO receiptData, long submittedNanos, CompletableFuture<Boolean> printed) {
+    }
+}
@@ -0,0 +1,60 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.List;
+
+/**
+ * Defines an item-level promotion, such as 3-for-2 or a percentage off a category of items.
+ * A promotion involves a fixed list of items and calculates its price reduction from the quantity and
+ * unit price of each of those items in a sale. Other items in the sale never affect the reduction,
+ * which is what lets the {@link PromotionEngine} evaluate only the promotions of a scanned item.
+ * <p>
+ * All prices are in öre, including VAT. Implementations must be immutable, since one promotion is
+ * shared by all sales.
+ */
+public interface Promotion {
+
+    /**
+     * Gets the unique identifier of the promotion.
+     *
+     * @return The promotion ID.
+     */
+    String getPromotionID();
+
+    /**
+     * Provides a description of the promotion, suitable for a receipt.
+     *
+     * @return A string that describes the promotion.
+     */
+    String getDescription();
+
+    /**
+     * Gets the IDs of the items involved in the promotion. The position of an item in this list is the
+     * position of its quantity and unit price in the arrays given to {@link #calculateReductionCents}.
+     *
+     * @return The IDs of the involved items, without duplicates.
+     */
+    List<String> getItemIDs();
+
+    /**
+     * Calculates the price reduction given by the promotion for the specified quantities. The arrays
+     * must not be changed.
+     *
+     * @param quantities     The quantity in the sale of each involved item, zero if it is not in the sale.
+     * @param unitPriceCents The unit price including VAT of each involved item, in öre.
+     * @return The reduction in öre, never negative.
+     */
+    long calculateReductionCents(int[] quantities, long[] unitPriceCents);
+
+    /**
+     * Calculates the price reduction given by the promotion for the specified match in a sale. The match
+     * also holds the running totals of the quantities and prices of the involved items, and their order
+     * by price, which lets a promotion over many items avoid going through all of them on every scan.
+     * By default, the reduction is calculated from the quantities and unit prices of the match.
+     *
+     * @param match The quantities and unit prices of the involved items in the sale.
+     * @return The reduction in öre, never negative.
+     */
+    default long calculateReductionCents(SalePromotions.PromotionMatch match) {
+        return calculateReductionCents(match.quantities, match.unitPriceCents);
+    }
+}
@@ -0,0 +1,133 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates the item-level promotions of the store while items are scanned. The active promotions are
+ * indexed by item ID, so scanning an item only evaluates the promotions involving that item, however
+ * many promotions the store runs and however many lines the sale holds.
+ * <p>
+ * The engine itself is immutable apart from its statistics and is shared by all sales; the quantities
+ * seen by each promotion in one sale are kept by the {@link SalePromotions} of that sale. The time spent
+ * evaluating promotions is measured for every scan.
+ */
+public class PromotionEngine {
+    private static final PromotionSlot[] NO_SLOTS = new PromotionSlot[0];
+
+    private final List<Promotion> promotions;
+    private final Map<String, PromotionSlot[]> slotsByItemID;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+    private final AtomicLong maxEvaluationNanos = new AtomicLong();
+
+    /**
+     * Creates a new engine running the specified promotions. If several promotions involve the same
+     * item, the customer gets the reductions of all of them.
+     *
+     * @param promotions The active promotions.
+     */
+    public PromotionEngine(List<Promotion> promotions) {
+        this.promotions = List.copyOf(promotions);
+        Map<String, List<PromotionSlot>> slots = new HashMap<>();
+        for (int promotion = 0; promotion < this.promotions.size(); promotion++) {
+            List<String> itemIDs = this.promotions.get(promotion).getItemIDs();
+            for (int position = 0; position < itemIDs.size(); position++) {
+                slots.computeIfAbsent(itemIDs.get(position), itemID -> new ArrayList<>())
+                        .add(new PromotionSlot(promotion, position));
+            }
+        }
+        this.slotsByItemID = new HashMap<>();
+        slots.forEach((itemID, itemSlots) -> slotsByItemID.put(itemID, itemSlots.toArray(NO_SLOTS)));
+    }
+
+    /**
+     * Creates the promotion state of a new sale.
+     *
+     * @return An empty state, with no promotion matched.
+     */
+    public SalePromotions startSale() {
+        return new SalePromotions(this);
+    }
+
+    /**
+     * Gets the number of active promotions.
+     *
+     * @return The number of promotions.
+     */
+    public int getPromotionCount() {
+        return promotions.size();
+    }
+
+    /**
+     * Gets the number of scans for which promotions have been evaluated.
+     *
+     * @return The number of evaluations.
+     */
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Gets the average time spent evaluating the promotions of one scan.
+     *
+     * @return The average evaluation time in nanoseconds, or zero if nothing has been scanned.
+     */
+    public long getAverageEvaluationNanos() {
+        long count = evaluations.sum();
+        return count == 0 ? 0 : evaluationNanos.sum() / count;
+    }
+
+    /**
+     * Gets the longest time spent evaluating the promotions of one scan.
+     *
+     * @return The longest evaluation time in nanoseconds.
+     */
+    public long getMaxEvaluationNanos() {
+        return maxEvaluationNanos.get();
+    }
+
+    /**
+     * Gets the promotion at the specified position.
+     *
+     * @param promotion The position of the promotion.
+     * @return The promotion.
+     */
+    Promotion getPromotion(int promotion) {
+        return promotions.get(promotion);
+    }
+
+    /**
+     * Finds the promotions involving the specified item.
+     *
+     * @param itemID The ID of the item.
+     * @return The promotions involving the item. The array must not be changed.
+     */
+    PromotionSlot[] slotsFor(String itemID) {
+        return slotsByItemID.getOrDefault(itemID, NO_SLOTS);
+    }
+
+    /**
+     * Records the time spent evaluating the promotions of one scan.
+     *
+     * @param nanos The evaluation time in nanoseconds.
+     */
+    void recordEvaluation(long nanos) {
+        evaluations.increment();
+        evaluationNanos.add(nanos);
+        maxEvaluationNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * The position of an item within one of the promotions involving it.
+     *
+     * @param promotion The position of the promotion in the engine.
+     * @param position  The position of the item in the item list of the promotion.
+     */
+    record PromotionSlot(int promotion, int position) {
+    }
+}
@@ -3,6 +3,7 @@ package se.kth.iv1350.storesalessystem.model;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
@@ -12,8 +13,12 @@ import se.kth.iv1350.storesalessystem.model.dto.ReceiptItemDTO;
 /**
  * Represents a receipt for a completed sale, including details of the sale,
  * the amount paid by the customer, and the change to be returned.
+ * The receipt is a view of the sale: its lines are read straight from the sale when the
+ * receipt is printed, without being copied.
  */
 public class Receipt {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final Sale sale;
     private final Amount amountPaid;
     private final Amount change;
@@ -26,7 +31,7 @@ public class Receipt {
      */
     public Receipt(Sale sale, Amount amountPaid) {
         this.sale = sale;
-        this.amountPaid = new Amount(amountPaid.getAmount());
+        this.amountPaid = amountPaid;
         this.change = calculateChange();
     }
 
@@ -44,16 +49,78 @@ public class Receipt {
     /**
      * Creates a {@code ReceiptDTO} object that contains the details of the completed sale,
      * including the date and time of the sale, the purchased items, the total cost after discount,
-     * the total VAT, the total payment made, and the change to be returned.
+     * the total VAT, the total payment made, the change to be returned and the applied promotions.
      *
      * @return A {@code ReceiptDTO} object that holds the summary of the completed sale.
      */
     public ReceiptDTO createReceiptDTO() {
-        String dateTime = formatDateTime(sale.getSaleTime());
         List<ReceiptItemDTO> receiptItems = createReceiptItems();
-        String discountDescription = sale.getDiscountDescription();
 
-        return new ReceiptDTO(dateTime, receiptItems, sale.getTotalAfterDiscount(), sale.getTotalVAT(), amountPaid, change, discountDescription);
+        return new ReceiptDTO(getDateTime(), receiptItems, getTotalAmount(), getTotalVAT(), amountPaid, change,
+                getDiscountDescription(), getAppliedPromotions(), getPromotionReduction());
+    }
+
+    /**
+     * Gets the date and time of the sale, in the format "yyyy-MM-dd HH:mm:ss".
+     *
+     * @return The formatted date and time of the sale.
+     */
+    public String getDateTime() {
+        return formatDateTime(sale.getSaleTime());
+    }
+
+    /**
+     * Gets the lines of the sale, read straight from the sale.
+     *
+     * @return A read-only view of the lines of the sale.
+     */
+    public Collection<SaleItem> getLines() {
+        return sale.getLines();
+    }
+
+    /**
+     * Gets the total of the sale after discounts.
+     *
+     * @return The total amount.
+     */
+    public Amount getTotalAmount() {
+        return sale.getTotalAfterDiscount();
+    }
+
+    /**
+     * Gets the total VAT of the sale.
+     *
+     * @return The total VAT.
+     */
+    public Amount getTotalVAT() {
+        return sale.getTotalVAT();
+    }
+
+    /**
+     * Gets the description of the discount applied to the sale.
+     *
+     * @return A string describing the discount.
+     */
+    public String getDiscountDescription() {
+        return sale.getDiscountDescription();
+    }
+
+    /**
+     * Gets the descriptions of the item-level promotions giving a reduction in the sale.
+     *
+     * @return The descriptions of the applied promotions, empty if there are none.
+     */
+    public List<String> getAppliedPromotions() {
+        return sale.getAppliedPromotions();
+    }
+
+    /**
+     * Gets the total reduction of the item-level promotions in the sale.
+     *
+     * @return The promotion reduction, including VAT.
+     */
+    public Amount getPromotionReduction() {
+        return sale.getPromotionReduction();
     }
 
     /**
@@ -64,8 +131,7 @@ public class Receipt {
      * @return A formatted date and time string.
      */
     private String formatDateTime(LocalDateTime dateTime) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return dateTime.format(formatter);
+        return DATE_TIME_FORMATTER.format(dateTime);
     }
 
     /**
@@ -78,8 +144,9 @@ public class Receipt {
      * included in the sale.
      */
     private List<ReceiptItemDTO> createReceiptItems() {
-        List<ReceiptItemDTO> result = new ArrayList<>();
-        for (SaleItem saleItem : sale.getItems()) {
+        Collection<SaleItem> lines = sale.getLines();
+        List<ReceiptItemDTO> result = new ArrayList<>(lines.size());
+        for (SaleItem saleItem : lines) {
             ItemDTO item = saleItem.getItemDTO();
             int quantity = saleItem.getQuantity();
             result.add(new ReceiptItemDTO(item, quantity));
@@ -93,7 +160,7 @@ public class Receipt {
      * @return The change amount.
      */
     public Amount getChange() {
-        return new Amount(change.getAmount());
+        return change;
     }
 
     /**
@@ -102,6 +169,6 @@ public class Receipt {
      * @return The amount paid.
      */
     public Amount getAmountPaid() {
-        return new Amount(amountPaid.getAmount());
+        return amountPaid;
     }
 }
@@ -1,5 +1,7 @@
 package se.kth.iv1350.storesalessystem.model;
 
+import java.util.concurrent.CompletableFuture;
+
 import se.kth.iv1350.storesalessystem.integration.Printer;
 import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
 
@@ -8,9 +10,29 @@ import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
  * and sending it to a printer for output.
  * This class uses a Printer instance to handle the receipt printing
  * and a Receipt instance to generate structured receipt data from the sale and payment information.
+ * <p>
+ * A receipt printer created with a {@link PrintQueue} prints through the queue. In
+ * {@link PrintMode#CHANGE_FIRST} mode the customer then gets change without waiting for the printer.
  */
 public class ReceiptPrinter {
+    /**
+     * Decides whether a payment waits for its receipt to be printed.
+     */
+    public enum PrintMode {
+        /**
+         * The payment is completed once the receipt has been printed, or skipped by the print queue.
+         */
+        PRINT_BEFORE_CHANGE,
+        /**
+         * The payment is completed as soon as the receipt is in the print queue, and the receipt is
+         * printed afterward.
+         */
+        CHANGE_FIRST
+    }
+
     private final Printer printer;
+    private final PrintQueue printQueue;
+    private final PrintMode printMode;
 
     /**
      * Creates a new instance of ReceiptPrinter, which handles the printing of receipts
@@ -20,19 +42,40 @@ public class ReceiptPrinter {
      */
     public ReceiptPrinter(Printer printer){
         this.printer = printer;
+        this.printQueue = null;
+        this.printMode = PrintMode.PRINT_BEFORE_CHANGE;
+    }
+
+    /**
+     * Creates a new instance of ReceiptPrinter that prints receipts through the specified queue.
+     *
+     * @param printQueue The queue of the printer outputting the receipts.
+     * @param printMode  Decides whether a payment waits for its receipt to be printed.
+     */
+    public ReceiptPrinter(PrintQueue printQueue, PrintMode printMode) {
+        this.printer = null;
+        this.printQueue = printQueue;
+        this.printMode = printMode;
     }
 
     /**
      * Prints a receipt for a completed sale and the corresponding payment.
-     * The method creates a receipt object using the provided sale and payment information,
-     * generates a ReceiptDTO from that object, and sends it to the printer for output.
+     * The method creates a receipt object using the provided sale and payment information
+     * and sends it to the printer, which reads the lines of the sale while rendering them.
+     * A receipt printed through a queue is first copied into a {@link ReceiptDTO}, since the queue prints it on another thread, possibly after the sale has been changed.
      *
      * @param sale The sale containing details like items, total amount, and VAT information.
      * @param amountPaid The amount paid by the customer for the sale.
      */
     public void printReceipt(Sale sale, Amount amountPaid){
         Receipt receipt = new Receipt(sale, amountPaid);
-        ReceiptDTO receiptData = receipt.createReceiptDTO();
-        printer.printReceipt(receiptData);
+        if (printQueue == null) {
+            printer.printReceipt(receipt);
+            return;
+        }
+        CompletableFuture<Boolean> printed = printQueue.submit(receipt.createReceiptDTO());
+        if (printMode == PrintMode.PRINT_BEFORE_CHANGE) {
+            printed.join();
+        }
     }
 }
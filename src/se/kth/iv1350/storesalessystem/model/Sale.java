@@ -6,20 +6,48 @@ import java.util.*;
 import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
 
 /**
  * Represents a sale transaction. A sale consists of multiple items,
  * may have associated customer information, keeps track of the
  * running total and applicable VAT, and can apply discounts.
+ * The totals are maintained incrementally: every change to a line only applies the
+ * difference between the old and the new line, so scanning an item costs the same
+ * regardless of the number of lines already in the sale.
+ * <p>
+ * Every change to the lines or the discount increases the version of the sale. The total after
+ * discount is remembered together with the version it was calculated for, so the discount is only
+ * applied again when the sale has changed since the total was last read. The same holds for the
+ * {@link SaleInfoDTO} of the sale, which is built once per version and customer.
+ * <p>
+ * A sale started with a {@link PromotionEngine} also keeps track of the store's item-level promotions.
+ * Their reduction is updated as lines change and is taken off the running total, including VAT,
+ * before the sale discount is applied. The VAT in the reduction, see {@link SalePromotions}, is taken
+ * off the total VAT, so the total VAT is that of the prices the customer actually pays for the items.
+ * The running total stays the sum of the lines, before the promotions.
  */
 public class Sale {
     private final LocalDateTime saleTime;
-    private final int saleID;
+    private final long saleID;
     private final Map<String, SaleItem> items;
+    private final Collection<SaleItem> lines;
     private int customerID;
+    private long totalPriceCents;
+    private long totalVATCents;
     private Amount runningTotal;
     private Amount totalVAT;
+    private Amount totalAfterDiscount;
+    private long totalAfterDiscountVersion = -1;
+    private long version;
+    private SaleInfoDTO saleInfo;
+    private long saleInfoVersion = -1;
     private final SaleDiscount saleDiscount;
+    private final SalePromotions promotions;
+    private long promotionReductionCents;
+    private long promotionVATCents;
+    private Amount promotionReduction;
+    private boolean consistencyCheck;
 
     /**
      * Creates a new instance of the Sale class with the specified sale ID.
@@ -27,13 +55,25 @@ public class Sale {
      *
      * @param saleID The unique identifier for this sale.
      */
-    public Sale(int saleID) {
+    public Sale(long saleID) {
+        this(saleID, null);
+    }
+
+    /**
+     * Creates a new instance of the Sale class with the specified sale ID, in which the promotions of
+     * the specified engine are given.
+     *
+     * @param saleID          The unique identifier for this sale.
+     * @param promotionEngine The engine holding the store's promotions, or {@code null} if no promotions are given.
+     */
+    public Sale(long saleID, PromotionEngine promotionEngine) {
         this.saleID = saleID;
         this.saleTime = LocalDateTime.now();
         this.items = new LinkedHashMap<>();
-        this.runningTotal = new Amount();
-        this.totalVAT = new Amount();
+        this.lines = Collections.unmodifiableCollection(items.values());
         this.saleDiscount = new SaleDiscount();
+        this.promotions = promotionEngine == null || promotionEngine.getPromotionCount() == 0
+                ? null : promotionEngine.startSale();
     }
 
     /**
@@ -45,31 +85,135 @@ public class Sale {
      */
     public void addItem(ItemDTO item, int quantity) {
         SaleItem saleItem = new SaleItem(item, quantity);
-        items.put(item.itemID(), saleItem);
-        updateRunningTotal();
+        SaleItem replacedItem = items.put(item.itemID(), saleItem);
+        applyLineChange(replacedItem, saleItem);
+    }
+
+    /**
+     * Adds the specified quantity of an item to the current sale. If the sale already contains
+     * the item, the quantity of that line is increased; otherwise a new line is added.
+     * This is a single lookup in the sale and never throws, which makes it the preferred
+     * way of registering a scanned item.
+     *
+     * @param item     The item to be added to the sale, represented as an ItemDTO.
+     * @param quantity The quantity of the item to be added.
+     * @return The line of the sale holding the item after the update.
+     */
+    public SaleItem addOrIncreaseItem(ItemDTO item, int quantity) {
+        SaleItem existingItem = items.get(item.itemID());
+        SaleItem updatedItem = existingItem == null
+                ? new SaleItem(item, quantity)
+                : new SaleItem(existingItem.getItemDTO(), existingItem.getQuantity() + quantity);
+        items.put(item.itemID(), updatedItem);
+        applyLineChange(existingItem, updatedItem);
+        return updatedItem;
     }
 
     /**
-     * Updates the running total and total VAT for the current sale.
+     * Recalculates the running total and total VAT for the current sale from scratch.
      * This method calculates the total price and VAT for all items in the sale.
-     * It then updates the running total and total VAT fields with the computed values.
+     * It then updates the total price and total VAT fields with the computed values.
      * The running total is calculated as the sum of:
      * - The total price of all items.
      * - The total VAT of all items.
+     * The totals are otherwise kept up to date incrementally, so this method is only
+     * needed to resynchronize them.
      */
     public void updateRunningTotal() {
-        Amount newTotal = new Amount();
-        Amount newVAT = new Amount();
-        Amount newRunningTotal = new Amount();
+        long newTotal = 0;
+        long newVAT = 0;
 
         for (SaleItem item : items.values()) {
-            newTotal = newTotal.plus(item.getTotalPrice());
-            newVAT = newVAT.plus(item.getTotalVAT());
+            newTotal += item.getTotalPriceCents();
+            newVAT += item.getTotalVATCents();
         }
-        newRunningTotal = newRunningTotal.plus(newTotal).plus(newVAT);
 
-        this.runningTotal = newRunningTotal;
-        this.totalVAT = newVAT;
+        this.totalPriceCents = newTotal;
+        this.totalVATCents = newVAT;
+        invalidateTotals();
+    }
+
+    /**
+     * Applies the difference between an old and a new version of a line to the totals.
+     *
+     * @param oldItem The line before the change, or {@code null} if the line is new.
+     * @param newItem The line after the change.
+     */
+    private void applyLineChange(SaleItem oldItem, SaleItem newItem) {
+        totalPriceCents += newItem.getTotalPriceCents();
+        totalVATCents += newItem.getTotalVATCents();
+        if (oldItem != null) {
+            totalPriceCents -= oldItem.getTotalPriceCents();
+            totalVATCents -= oldItem.getTotalVATCents();
+        }
+        if (promotions != null) {
+            promotionReductionCents = promotions.updateLine(newItem.getItemDTO(), newItem.getQuantity());
+            promotionVATCents = promotions.getTotalReductionVATCents();
+        }
+        invalidateTotals();
+        if (consistencyCheck) {
+            verifyRunningTotal();
+        }
+    }
+
+    /**
+     * Drops the {@code Amount} objects of the totals, which are then recreated on the next read,
+     * and starts a new version of the sale.
+     */
+    private void invalidateTotals() {
+        runningTotal = null;
+        totalVAT = null;
+        promotionReduction = null;
+        version++;
+    }
+
+    /**
+     * Gets the version of the sale, which increases every time a line or the discount of the sale
+     * is changed. Two reads returning the same version saw the same lines and discount.
+     *
+     * @return The current version of the sale.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Turns the consistency check mode on or off. In this mode every incremental update of the
+     * totals, including the promotion reduction and its VAT, is compared against a full recalculation,
+     * which makes each update cost as much as the whole sale. Intended for tests only.
+     *
+     * @param enabled {@code true} to verify the totals after every update.
+     */
+    void setConsistencyCheck(boolean enabled) {
+        this.consistencyCheck = enabled;
+    }
+
+    /**
+     * Verifies that the incrementally maintained totals match a full recalculation.
+     *
+     * @throws IllegalStateException If the totals have drifted from the items of the sale.
+     */
+    void verifyRunningTotal() {
+        long expectedTotal = 0;
+        long expectedVAT = 0;
+        for (SaleItem item : items.values()) {
+            expectedTotal += item.getTotalPriceCents();
+            expectedVAT += item.getTotalVATCents();
+        }
+        if (expectedTotal != totalPriceCents || expectedVAT != totalVATCents) {
+            throw new IllegalStateException("Running total of sale " + saleID + " is inconsistent: expected "
+                    + expectedTotal + " + " + expectedVAT + " VAT but was " + totalPriceCents + " + " + totalVATCents + " VAT (öre)");
+        }
+        if (promotions == null) {
+            return;
+        }
+        SalePromotions expectedPromotions = promotions.evaluateAgain(items.values());
+        if (expectedPromotions.getTotalReductionCents() != promotionReductionCents
+                || expectedPromotions.getTotalReductionVATCents() != promotionVATCents) {
+            throw new IllegalStateException("Promotion reduction of sale " + saleID + " is inconsistent: expected "
+                    + expectedPromotions.getTotalReductionCents() + " incl. " + expectedPromotions.getTotalReductionVATCents()
+                    + " VAT but was " + promotionReductionCents + " incl. " + promotionVATCents + " VAT (öre)");
+        }
     }
 
     /**
@@ -83,37 +227,52 @@ public class Sale {
 
     /**
      * Retrieves detailed information about the current sale, including sale ID, running total,
-     * items in the sale, customer ID, and total VAT.
+     * items in the sale with their quantities, customer ID, and total VAT. The information is
+     * only built again if the sale or its customer has changed since the last call.
      *
      * @return A {@code SaleInfoDTO} object containing summarized details of the current sale.
      */
     public SaleInfoDTO getSaleInfo() {
-        List<ItemDTO> itemDTOs = new ArrayList<>();
-        for (SaleItem item : items.values()) {
-            itemDTOs.add(item.getItemDTO());
+        if (saleInfoVersion != version || saleInfo.customerID() != customerID) {
+            SaleLines.Builder lineSnapshot = new SaleLines.Builder(items.size());
+            for (SaleItem item : items.values()) {
+                lineSnapshot.add(item);
+            }
+            saleInfo = new SaleInfoDTO(saleID, getRunningTotal(), customerID, getTotalVAT(), lineSnapshot.build(),
+                    getPromotionReduction());
+            saleInfoVersion = version;
         }
-        return new SaleInfoDTO(saleID, runningTotal, itemDTOs, customerID, totalVAT);
+        return saleInfo;
     }
 
     /**
-     * Retrieves the total amount after applying the discount to the running total of the sale.
-     * The discount is calculated based on the current sale's discount information.
+     * Retrieves the total amount after applying the promotions and the discount to the running total
+     * of the sale. The discount is calculated based on the current sale's discount information, and only
+     * recalculated if the sale has changed since the last call.
      *
      * @return The total monetary amount after the discount, represented as an {@code Amount} object.
      */
     public Amount getTotalAfterDiscount() {
-        return saleDiscount.applyDiscountTo(runningTotal);
+        if (totalAfterDiscountVersion != version) {
+            long totalAfterPromotions = Math.max(0, totalPriceCents + totalVATCents - promotionReductionCents);
+            totalAfterDiscount = Amount.ofCents(saleDiscount.applyDiscountToCents(totalAfterPromotions));
+            totalAfterDiscountVersion = version;
+        }
+        return totalAfterDiscount;
     }
 
     /**
      * Retrieves the total VAT (Value Added Tax) for the current sale.
      * This amount represents the total tax collected based on the sale's items
-     * and their respective tax rates.
+     * and their respective tax rates, less the VAT in the reduction of the item-level promotions.
      *
      * @return The total VAT as an {@code Amount} object.
      */
     public Amount getTotalVAT() {
-        return new Amount(totalVAT.getAmount());
+        if (totalVAT == null) {
+            totalVAT = Amount.ofCents(totalVATCents - promotionVATCents);
+        }
+        return totalVAT;
     }
 
     /**
@@ -135,12 +294,22 @@ public class Sale {
         return new ArrayList<>(items.values());
     }
 
+    /**
+     * Gets a read-only view of the lines of the sale, in the order they were added. Unlike
+     * {@link #getItems()}, no copy is made; the view always shows the current lines.
+     *
+     * @return The lines of the sale.
+     */
+    public Collection<SaleItem> getLines() {
+        return lines;
+    }
+
     /**
      * Retrieves the unique identifier for the current sale.
      *
-     * @return The sale ID as an integer value.
+     * @return The sale ID.
      */
-    public int getSaleID() {
+    public long getSaleID() {
         return saleID;
     }
 
@@ -170,19 +339,43 @@ public class Sale {
         return saleDiscount.getDiscountDescription();
     }
 
+    /**
+     * Gets the reduction given by the item-level promotions in the sale.
+     *
+     * @return The promotion reduction, including VAT, as an Amount object.
+     */
+    public Amount getPromotionReduction() {
+        if (promotionReduction == null) {
+            promotionReduction = Amount.ofCents(promotionReductionCents);
+        }
+        return promotionReduction;
+    }
+
+    /**
+     * Gets the descriptions of the item-level promotions giving a reduction in the sale.
+     *
+     * @return The descriptions of the applied promotions, empty if there are none.
+     */
+    public List<String> getAppliedPromotions() {
+        return promotions == null ? List.of() : promotions.getAppliedPromotionDescriptions();
+    }
+
     /**
      * Gets the running total before any discount is applied.
      *
      * @return The running total as an Amount object.
      */
     public Amount getRunningTotal() {
-        return new Amount(runningTotal.getAmount());
+        if (runningTotal == null) {
+            runningTotal = Amount.ofCents(totalPriceCents + totalVATCents);
+        }
+        return runningTotal;
     }
 
     /**
      * Increases the quantity of a specific item in the current sale.
      * If the item exists, its quantity is updated by the specified amount,
-     * and the running total is recalculated.
+     * and the running total is adjusted by the change of that line.
      *
      * @param itemID             The unique identifier of the item whose quantity should be increased.
      * @param additionalQuantity The amount by which the item's quantity should be increased.
@@ -196,7 +389,7 @@ public class Sale {
             SaleItem updatedItem = new SaleItem(itemInfo, newQuantity);
             items.put(itemID, updatedItem);
 
-            updateRunningTotal();
+            applyLineChange(existingItem, updatedItem);
         }
     }
 
@@ -208,5 +401,16 @@ public class Sale {
      */
     public void applySaleDiscount(DiscountInfoDTO discountInfo) {
         saleDiscount.setDiscountInfo(discountInfo);
+        version++;
+    }
+
+    /**
+     * Applies a sale discount given by a discount strategy that has already been built.
+     *
+     * @param discountStrategy The strategy used to calculate the discount of the sale.
+     */
+    public void applyDiscountStrategy(DiscountStrategy discountStrategy) {
+        saleDiscount.setDiscountStrategy(discountStrategy);
+        version++;
     }
 }
@@ -2,14 +2,22 @@ package se.kth.iv1350.storesalessystem.model;
 
 import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a discount applied to a sale.
  * This class encapsulates the logic for managing and applying
  * discounts based on discount information.
+ * <p>
+ * Since discount strategies are immutable, one strategy is shared by all sales with the same discount
+ * percentage and fixed amount, instead of building new strategies for every discount request. A sale
+ * without a discount uses {@link NoDiscountStrategy#INSTANCE} and skips the strategy altogether.
  */
 public class SaleDiscount {
+    private static final int MAX_INTERNED_STRATEGIES = 1024;
+    private static final Map<StrategyKey, DiscountStrategy> INTERNED_STRATEGIES = new ConcurrentHashMap<>();
+
     private DiscountStrategy discountStrategy;
 
     /**
@@ -17,7 +25,7 @@ public class SaleDiscount {
      * Initializes a new instance of the SaleDiscount class with a no-discount strategy.
      */
     public SaleDiscount() {
-        this.discountStrategy = new NoDiscountStrategy();
+        this.discountStrategy = NoDiscountStrategy.INSTANCE;
     }
 
     /**
@@ -28,11 +36,46 @@ public class SaleDiscount {
      *                     including the discount amount, percentage, and type.
      */
     public void setDiscountInfo(DiscountInfoDTO discountInfo) {
+        this.discountStrategy = createStrategy(discountInfo);
+    }
+
+    /**
+     * Sets a discount strategy that has already been built, for example by a {@link DiscountCache}.
+     *
+     * @param discountStrategy The strategy used to calculate the discount.
+     */
+    public void setDiscountStrategy(DiscountStrategy discountStrategy) {
+        this.discountStrategy = discountStrategy instanceof NoDiscountStrategy
+                ? NoDiscountStrategy.INSTANCE : discountStrategy;
+    }
+
+    /**
+     * Gets the discount strategy described by the specified discount information. The same strategy
+     * is returned for all discounts with the same percentage and fixed amount.
+     *
+     * @param discountInfo The discount amount, percentage and type.
+     * @return The strategy giving the described discount.
+     */
+    static DiscountStrategy createStrategy(DiscountInfoDTO discountInfo) {
         if (!discountInfo.isApplicable()) {
-            this.discountStrategy = new NoDiscountStrategy();
-            return;
+            return NoDiscountStrategy.INSTANCE;
+        }
+
+        StrategyKey key = new StrategyKey(discountInfo.getDiscountPercentage(),
+                discountInfo.getDiscountAmount().getCents());
+        DiscountStrategy interned = INTERNED_STRATEGIES.get(key);
+        if (interned != null) {
+            return interned;
         }
+        DiscountStrategy strategy = buildStrategy(discountInfo);
+        if (INTERNED_STRATEGIES.size() >= MAX_INTERNED_STRATEGIES) {
+            return strategy;
+        }
+        DiscountStrategy previous = INTERNED_STRATEGIES.putIfAbsent(key, strategy);
+        return previous != null ? previous : strategy;
+    }
 
+    private static DiscountStrategy buildStrategy(DiscountInfoDTO discountInfo) {
         DiscountStrategy percentageStrategy = null;
         DiscountStrategy fixedStrategy = null;
 
@@ -40,15 +83,19 @@ public class SaleDiscount {
             percentageStrategy = new PercentageDiscountStrategy(discountInfo.getDiscountPercentage());
         }
 
-        if (discountInfo.getDiscountAmount().getAmount() > 0) {
+        if (discountInfo.getDiscountAmount().getCents() > 0) {
             fixedStrategy = new FixedDiscountStrategy(discountInfo.getDiscountAmount());
         }
 
         if (percentageStrategy != null && fixedStrategy != null) {
-            this.discountStrategy = new CombinedDiscountStrategy(percentageStrategy, fixedStrategy);
+            return new CombinedDiscountStrategy(percentageStrategy, fixedStrategy);
         } else if (percentageStrategy != null) {
-            this.discountStrategy = percentageStrategy;
-        } else this.discountStrategy = Objects.requireNonNullElseGet(fixedStrategy, NoDiscountStrategy::new);
+            return percentageStrategy;
+        } else if (fixedStrategy != null) {
+            return fixedStrategy;
+        } else {
+            return NoDiscountStrategy.INSTANCE;
+        }
     }
 
     /**
@@ -61,6 +108,20 @@ public class SaleDiscount {
         return discountStrategy.applyDiscount(amount);
     }
 
+    /**
+     * Applies the current discount strategy to an amount given in öre, without allocating.
+     *
+     * @param cents The original amount in öre.
+     * @return The amount in öre after applying the discount.
+     */
+    public long applyDiscountToCents(long cents) {
+        DiscountStrategy strategy = discountStrategy;
+        if (strategy == NoDiscountStrategy.INSTANCE) {
+            return cents;
+        }
+        return strategy.applyDiscount(cents);
+    }
+
     /**
      * Gets a description of the current discount strategy.
      *
@@ -69,4 +130,10 @@ public class SaleDiscount {
     public String getDiscountDescription() {
         return discountStrategy.getDescription();
     }
-}
\ No newline at end of file
+
+    /**
+     * The parameters that tell interned discount strategies apart.
+     */
+    private record StrategyKey(int percentage, long fixedCents) {
+    }
+}
@@ -1,12 +1,20 @@
 package se.kth.iv1350.storesalessystem.model;
 
+import java.math.RoundingMode;
+
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 
 /**
  * Represents an item in a sale, including the item details and its quantity.
  * This class is immutable and provides methods to calculate the total price and VAT for the item.
+ * The VAT of a line is calculated on the total price of the line and rounded half up to the nearest öre.
  */
 public class SaleItem {
+    /**
+     * The rounding applied to the VAT of each line.
+     */
+    public static final RoundingMode VAT_ROUNDING = RoundingMode.HALF_UP;
+
     private final ItemDTO item;
     private final int quantity;
 
@@ -27,19 +35,36 @@ public class SaleItem {
      * @return The total price as an {@code Amount} object.
      */
     public Amount getTotalPrice() {
-        return item.price().multiply(quantity);
+        return Amount.ofCents(getTotalPriceCents());
+    }
+
+    /**
+     * Calculates the total price of the sale item without allocating.
+     *
+     * @return The total price in öre.
+     */
+    public long getTotalPriceCents() {
+        return Math.multiplyExact(item.price().getCents(), quantity);
     }
 
     /**
      * Calculates the total VAT (Value Added Tax) for the sale item.
-     * The VAT is determined by multiplying the item's price by its tax rate
-     * and then by the quantity of the item in the sale.
+     * The VAT is determined by multiplying the item's price by the quantity of the item
+     * in the sale and then by its tax rate.
      *
      * @return The total VAT as an {@code Amount} object.
      */
     public Amount getTotalVAT() {
-        double vatAmount = item.price().getAmount() * item.tax() * quantity;
-        return new Amount(vatAmount);
+        return Amount.ofCents(getTotalVATCents());
+    }
+
+    /**
+     * Calculates the total VAT for the sale item without allocating.
+     *
+     * @return The total VAT in öre, rounded with {@link #VAT_ROUNDING}.
+     */
+    public long getTotalVATCents() {
+        return Amount.scaleCents(getTotalPriceCents(), Amount.toBasisPoints(item.tax()), Amount.BASIS_POINTS, VAT_ROUNDING);
     }
 
     /**
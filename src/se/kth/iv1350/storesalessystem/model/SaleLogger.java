@@ -1,17 +1,28 @@
 package se.kth.iv1350.storesalessystem.model;
 
+import java.io.IOException;
+
 import se.kth.iv1350.storesalessystem.integration.AccountingSystem;
+import se.kth.iv1350.storesalessystem.integration.DatabaseException;
 import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.SaleJournal;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
 
 /**
  * The SaleLogger class is responsible for logging completed sales by updating
  * both the accounting system and the inventory system. It acts as a mediator
  * for recording sale information in these external systems after a sale is completed.
+ * <p>
+ * The external systems are either updated directly by the thread completing the sale, or,
+ * when the logger is created with a {@link PostSalePipeline}, in the background. A logger with a
+ * {@link SaleJournal} commits every sale to the journal before the external systems are updated,
+ * so that the sale survives if the application stops before they have received it.
  */
 public class SaleLogger {
     private final AccountingSystem accountingSystem;
     private final InventorySystem inventorySystem;
+    private final PostSalePipeline pipeline;
+    private final SaleJournal journal;
 
     /**
      * Constructs an instance of SaleLogger to facilitate the logging of completed sales.
@@ -24,16 +35,56 @@ public class SaleLogger {
     public SaleLogger(AccountingSystem accountingSystem, InventorySystem inventorySystem) {
         this.accountingSystem = accountingSystem;
         this.inventorySystem = inventorySystem;
+        this.pipeline = null;
+        this.journal = null;
+    }
+
+    /**
+     * Constructs an instance of SaleLogger that hands completed sales to the specified pipeline,
+     * which updates the external systems in the background.
+     *
+     * @param pipeline The pipeline delivering completed sales to the accounting and inventory systems.
+     */
+    public SaleLogger(PostSalePipeline pipeline) {
+        this(pipeline, null);
+    }
+
+    /**
+     * Constructs an instance of SaleLogger that commits completed sales to the specified journal
+     * and then hands them to the specified pipeline. The pipeline should mark the sales as delivered
+     * in the same journal.
+     *
+     * @param pipeline The pipeline delivering completed sales to the accounting and inventory systems.
+     * @param journal  The journal in which completed sales are committed, or {@code null} for none.
+     */
+    public SaleLogger(PostSalePipeline pipeline, SaleJournal journal) {
+        this.accountingSystem = null;
+        this.inventorySystem = null;
+        this.pipeline = pipeline;
+        this.journal = journal;
     }
 
     /**
      * Logs a completed sale by updating both the inventory system and the accounting system
-     * with the details of the sale.
+     * with the details of the sale. If this logger uses a pipeline, the sale information is
+     * captured immediately and the external systems are updated later.
      *
      * @param sale The completed sale to be logged, containing all relevant sale information.
+     * @throws DatabaseException If the sale cannot be committed to the journal.
      */
-    public void logCompletedSale(Sale sale) {
+    public void logCompletedSale(Sale sale) throws DatabaseException {
         SaleInfoDTO saleInfo = sale.getSaleInfo();
+        if (journal != null) {
+            try {
+                journal.commit(saleInfo);
+            } catch (IOException e) {
+                throw new DatabaseException("journal sale " + saleInfo.saleID(), e);
+            }
+        }
+        if (pipeline != null) {
+            pipeline.submit(saleInfo);
+            return;
+        }
         inventorySystem.updateInventory(saleInfo);
         accountingSystem.updateAccounting(saleInfo);
     }
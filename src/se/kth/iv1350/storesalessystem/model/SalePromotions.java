@@ -0,0 +1,223 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+
+/**
+ * The partial matches of the store's promotions in one sale. For every promotion involving an item
+ * in the sale, the quantity and unit price of each of the promotion's items are remembered together
+ * with the reduction the promotion currently gives. When a line changes, only the promotions involving
+ * that item are evaluated again, and the total reduction is adjusted by the change of their reductions.
+ * Every match also keeps running totals of the quantities, prices and VAT of its items, adjusted by the
+ * change of the line, so that a promotion over many items is not evaluated over all of them on every scan.
+ * <p>
+ * A reduction includes VAT. The VAT in the reduction of a promotion is that of the promotion's items
+ * in the sale, in proportion to their price including VAT: a promotion on items with 25% VAT reduces
+ * the VAT of the sale by a fifth of its reduction, and a promotion spanning items with different rates
+ * by the weighted share. The VAT is rounded with {@link SaleItem#VAT_ROUNDING}.
+ * <p>
+ * Like the {@link Sale} it belongs to, an instance is used by one lane at a time.
+ */
+public class SalePromotions {
+    private final PromotionEngine engine;
+    private final Map<Integer, PromotionMatch> matches = new LinkedHashMap<>();
+    private long totalReductionCents;
+    private long totalReductionVATCents;
+
+    /**
+     * Creates an empty state. Instances are created by {@link PromotionEngine#startSale()}.
+     *
+     * @param engine The engine holding the promotions.
+     */
+    SalePromotions(PromotionEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Updates the promotions involving the specified item with its new quantity in the sale.
+     *
+     * @param item     The item whose line has changed.
+     * @param quantity The quantity of the item in the sale after the change.
+     * @return The total reduction of all promotions in the sale, in öre.
+     */
+    public long updateLine(ItemDTO item, int quantity) {
+        PromotionEngine.PromotionSlot[] slots = engine.slotsFor(item.itemID());
+        if (slots.length == 0) {
+            return totalReductionCents;
+        }
+        long start = System.nanoTime();
+        long unitVATCents = unitVATCents(item);
+        long unitPriceCents = item.price().getCents() + unitVATCents;
+        for (PromotionEngine.PromotionSlot slot : slots) {
+            PromotionMatch match = matches.computeIfAbsent(slot.promotion(),
+                    promotion -> new PromotionMatch(engine.getPromotion(promotion)));
+            match.updateSlot(slot.position(), quantity, unitPriceCents, unitVATCents);
+            long reduction = match.promotion.calculateReductionCents(match);
+            long reductionVAT = match.calculateReductionVATCents(reduction);
+            totalReductionCents += reduction - match.reductionCents;
+            totalReductionVATCents += reductionVAT - match.reductionVATCents;
+            match.reductionCents = reduction;
+            match.reductionVATCents = reductionVAT;
+        }
+        engine.recordEvaluation(System.nanoTime() - start);
+        return totalReductionCents;
+    }
+
+    /**
+     * Gets the total reduction of all promotions in the sale.
+     *
+     * @return The total reduction in öre.
+     */
+    public long getTotalReductionCents() {
+        return totalReductionCents;
+    }
+
+    /**
+     * Gets the VAT included in the total reduction of all promotions in the sale.
+     *
+     * @return The VAT of the reduction in öre.
+     */
+    public long getTotalReductionVATCents() {
+        return totalReductionVATCents;
+    }
+
+    /**
+     * Evaluates the promotions from scratch for the specified lines, leaving this state unchanged.
+     * Used to verify the incrementally maintained reduction.
+     *
+     * @param lines The lines of the sale.
+     * @return A new state holding the reductions of the lines.
+     */
+    SalePromotions evaluateAgain(Collection<SaleItem> lines) {
+        SalePromotions evaluated = new SalePromotions(engine);
+        for (SaleItem line : lines) {
+            evaluated.updateLine(line.getItemDTO(), line.getQuantity());
+        }
+        return evaluated;
+    }
+
+    /**
+     * Gets the descriptions of the promotions currently giving a reduction in the sale.
+     *
+     * @return The descriptions, in the order the promotions were first matched.
+     */
+    public List<String> getAppliedPromotionDescriptions() {
+        List<String> descriptions = new ArrayList<>();
+        for (PromotionMatch match : matches.values()) {
+            if (match.reductionCents > 0) {
+                descriptions.add(match.promotion.getDescription());
+            }
+        }
+        return descriptions;
+    }
+
+    private static long unitVATCents(ItemDTO item) {
+        return Amount.scaleCents(item.price().getCents(), Amount.toBasisPoints(item.tax()), Amount.BASIS_POINTS,
+                SaleItem.VAT_ROUNDING);
+    }
+
+    /**
+     * The quantities and prices of the items of one promotion in the sale, with their running totals
+     * and their order by price, and the promotion's current reduction. The arrays are indexed by the
+     * position of the items in {@link Promotion#getItemIDs()}, and must not be changed by promotions.
+     */
+    public static final class PromotionMatch {
+        private final Promotion promotion;
+        final int[] quantities;
+        final long[] unitPriceCents;
+        final int[] positionsByDecreasingPrice;
+        private final long[] unitVATCents;
+        private long totalQuantity;
+        private long totalPriceCents;
+        private long totalVATCents;
+        private long reductionCents;
+        private long reductionVATCents;
+
+        private PromotionMatch(Promotion promotion) {
+            this.promotion = promotion;
+            this.quantities = new int[promotion.getItemIDs().size()];
+            this.unitPriceCents = new long[quantities.length];
+            this.unitVATCents = new long[quantities.length];
+            this.positionsByDecreasingPrice = new int[quantities.length];
+            for (int i = 0; i < positionsByDecreasingPrice.length; i++) {
+                positionsByDecreasingPrice[i] = i;
+            }
+        }
+
+        /**
+         * Gets the number of units of all the promotion's items in the sale.
+         *
+         * @return The total quantity.
+         */
+        public long getTotalQuantity() {
+            return totalQuantity;
+        }
+
+        /**
+         * Gets the price including VAT of all units of the promotion's items in the sale.
+         *
+         * @return The total price in öre.
+         */
+        public long getTotalPriceCents() {
+            return totalPriceCents;
+        }
+
+        /**
+         * Sets the quantity and unit price of the item at the specified position, and adjusts the running
+         * totals by the change. The order by price is only updated when the unit price has changed.
+         */
+        private void updateSlot(int position, int quantity, long priceCents, long vatCents) {
+            int previousQuantity = quantities[position];
+            totalQuantity += quantity - previousQuantity;
+            totalPriceCents += quantity * priceCents - previousQuantity * unitPriceCents[position];
+            totalVATCents += quantity * vatCents - previousQuantity * unitVATCents[position];
+            quantities[position] = quantity;
+            unitVATCents[position] = vatCents;
+            if (unitPriceCents[position] != priceCents) {
+                unitPriceCents[position] = priceCents;
+                reorder(position);
+            }
+        }
+
+        /**
+         * Moves the specified position to its place in the order by decreasing price, after its price has
+         * changed. Items of the same price keep the order of their positions.
+         */
+        private void reorder(int position) {
+            int rank = 0;
+            while (positionsByDecreasingPrice[rank] != position) {
+                rank++;
+            }
+            while (rank > 0 && comesBefore(position, positionsByDecreasingPrice[rank - 1])) {
+                positionsByDecreasingPrice[rank] = positionsByDecreasingPrice[rank - 1];
+                rank--;
+            }
+            while (rank < positionsByDecreasingPrice.length - 1
+                    && comesBefore(positionsByDecreasingPrice[rank + 1], position)) {
+                positionsByDecreasingPrice[rank] = positionsByDecreasingPrice[rank + 1];
+                rank++;
+            }
+            positionsByDecreasingPrice[rank] = position;
+        }
+
+        private boolean comesBefore(int position, int other) {
+            return unitPriceCents[position] > unitPriceCents[other]
+                    || unitPriceCents[position] == unitPriceCents[other] && position < other;
+        }
+
+        /**
+         * Calculates the VAT in the specified reduction, as the VAT share of the promotion's items in the sale.
+         */
+        private long calculateReductionVATCents(long reduction) {
+            if (reduction == 0 || totalPriceCents == 0) {
+                return 0;
+            }
+            return Amount.scaleCents(reduction, totalVATCents, totalPriceCents, SaleItem.VAT_ROUNDING);
+        }
+    }
+}
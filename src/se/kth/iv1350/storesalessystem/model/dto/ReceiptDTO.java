@@ -1,7 +1,5 @@
 package se.kth.iv1350.storesalessystem.model.dto;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import se.kth.iv1350.storesalessystem.model.Amount;
@@ -11,88 +9,62 @@ import se.kth.iv1350.storesalessystem.model.Amount;
  * A Data Transfer Object (DTO) representing a receipt in the store sales system.
  * This class contains all necessary details about a completed sale,
  * including the purchased items, financial information, and transaction metadata.
+ * The class is immutable: the item list is copied into an unmodifiable list once, when the
+ * receipt is created, and the immutable amounts are shared, so reading a receipt never allocates.
+ * The item-level promotions giving a reduction in the sale are listed by their descriptions, together
+ * with their total reduction including VAT.
  */
 public record ReceiptDTO(String dateTime, List<ReceiptItemDTO> items, Amount totalAmount, Amount totalVAT,
-                         Amount totalPaid, Amount change, String discountDescription) {
-    /**
-     * Creates an instance of {@code ReceiptDTO}, representing the data of a completed sale.
-     * This constructor provides a default "No discount" description.
-     *
-     * @param dateTime    The date and time when the sale was completed.
-     * @param items       The list of items purchased during the sale.
-     * @param totalAmount The total cost of the items in the sale.
-     * @param totalVAT    The total value-added tax for the sale.
-     * @param totalPaid   The total amount paid by the customer.
-     * @param change      The change to be given back to the customer.
-     */
-    public ReceiptDTO(String dateTime, List<ReceiptItemDTO> items, Amount totalAmount, Amount totalVAT, Amount totalPaid, Amount change) {
-        this(dateTime,
-                new ArrayList<>(items),
-                new Amount(totalAmount.getAmount()),
-                new Amount(totalVAT.getAmount()),
-                new Amount(totalPaid.getAmount()),
-                new Amount(change.getAmount()),
-                "No discount");
-    }
-
-
-    /**
-     * Get the date and time of the sale.
-     *
-     * @return The date and time of the sale.
-     */
-    @Override
-    public String dateTime() {
-        return dateTime;
-    }
+                         Amount totalPaid, Amount change, String discountDescription,
+                         List<String> appliedPromotions, Amount promotionReduction) {
+    private static final Amount NO_REDUCTION = Amount.ofCents(0);
 
     /**
-     * Get the items purchased in the sale.
-     *
-     * @return An unmodifiable view of the items purchased in the sale.
-     */
-    @Override
-    public List<ReceiptItemDTO> items() {
-        return Collections.unmodifiableList(items);
-    }
-
-    /**
-     * Get the total amount for the sale.
-     *
-     * @return A copy of the total amount.
-     */
-    @Override
-    public Amount totalAmount() {
-        return new Amount(totalAmount.getAmount());
-    }
-
-    /**
-     * Get the total VAT for the sale.
+     * Creates an instance of {@code ReceiptDTO}, representing the data of a completed sale.
      *
-     * @return A copy of the total VAT.
+     * @param dateTime            The date and time when the sale was completed.
+     * @param items               The list of items purchased during the sale.
+     * @param totalAmount         The total cost of the items in the sale.
+     * @param totalVAT            The total value-added tax for the sale.
+     * @param totalPaid           The total amount paid by the customer.
+     * @param change              The change to be given back to the customer.
+     * @param discountDescription A description of the discount applied to the sale.
+     * @param appliedPromotions   The descriptions of the promotions giving a reduction in the sale.
+     * @param promotionReduction  The total reduction of the promotions, including VAT.
      */
-    @Override
-    public Amount totalVAT() {
-        return new Amount(totalVAT.getAmount());
+    public ReceiptDTO {
+        items = List.copyOf(items);
+        appliedPromotions = List.copyOf(appliedPromotions);
     }
 
     /**
-     * Get the total amount paid for the sale.
+     * Creates an instance of {@code ReceiptDTO}, representing the data of a completed sale without promotions.
      *
-     * @return A copy of the total amount paid.
+     * @param dateTime            The date and time when the sale was completed.
+     * @param items               The list of items purchased during the sale.
+     * @param totalAmount         The total cost of the items in the sale.
+     * @param totalVAT            The total value-added tax for the sale.
+     * @param totalPaid           The total amount paid by the customer.
+     * @param change              The change to be given back to the customer.
+     * @param discountDescription A description of the discount applied to the sale.
      */
-    @Override
-    public Amount totalPaid() {
-        return new Amount(totalPaid.getAmount());
+    public ReceiptDTO(String dateTime, List<ReceiptItemDTO> items, Amount totalAmount, Amount totalVAT,
+                      Amount totalPaid, Amount change, String discountDescription) {
+        this(dateTime, items, totalAmount, totalVAT, totalPaid, change, discountDescription, List.of(), NO_REDUCTION);
     }
 
     /**
-     * Get the change amount for the sale.
+     * Creates an instance of {@code ReceiptDTO}, representing the data of a completed sale.
+     * This constructor provides a default "No discount" description.
      *
-     * @return A copy of the change amount.
+     * @param dateTime    The date and time when the sale was completed.
+     * @param items       The list of items purchased during the sale.
+     * @param totalAmount The total cost of the items in the sale.
+     * @param totalVAT    The total value-added tax for the sale.
+     * @param totalPaid   The total amount paid by the customer.
+     * @param change      The change to be given back to the customer.
      */
-    @Override
-    public Amount change() {
-        return new Amount(change.getAmount());
+    public ReceiptDTO(String dateTime, List<ReceiptItemDTO> items, Amount totalAmount, Amount totalVAT, Amount totalPaid, Amount change) {
+        this(dateTime, items, totalAmount, totalVAT, totalPaid, change, "No discount");
     }
 }
@@ -10,11 +10,41 @@ import se.kth.iv1350.storesalessystem.model.Amount;
  * This class is immutable and provides methods to retrieve information about the sale
  * such as the running total, customer ID, and total VAT. The purpose of this class
  * is to facilitate secure transfer of sale-related data within the system.
+ * Since {@link Amount} is immutable, the amounts are shared rather than copied.
+ * The lines of the sale are held in a {@link SaleLines} snapshot, which tells how many units of each
+ * item were sold, at which unit price and with how much VAT.
+ * <p>
+ * The running total is the sum of the lines, before the item-level promotions of the sale. The
+ * promotion reduction, including VAT, is carried separately, and the total VAT is that of the sale
+ * after the promotions.
+ *
+ * @param saleID             The unique identifier of the sale.
+ * @param runningTotal       The running total amount of the sale, before promotions.
+ * @param customerID         The ID of the customer involved in the sale.
+ * @param totalVAT           The total value-added tax amount for the sale, after promotions.
+ * @param lines              The lines of the sale, holding each item with the quantity sold.
+ * @param promotionReduction The reduction given by the item-level promotions, including VAT.
  */
-public record SaleInfoDTO(int saleID, Amount runningTotal, Collection<ItemDTO> items, int customerID, Amount totalVAT) {
+public record SaleInfoDTO(long saleID, Amount runningTotal, int customerID, Amount totalVAT, SaleLines lines,
+                          Amount promotionReduction) {
+    private static final Amount NO_REDUCTION = Amount.ofCents(0);
 
     /**
-     * Creates an instance of {@code SaleInfoDTO}, representing summarized data about an ongoing sale.
+     * Creates an instance of {@code SaleInfoDTO} for a sale without promotions.
+     *
+     * @param saleID       The unique identifier of the sale.
+     * @param runningTotal The running total amount of the sale.
+     * @param customerID   The ID of the customer involved in the sale.
+     * @param totalVAT     The total value-added tax amount for the sale.
+     * @param lines        The lines of the sale, holding each item with the quantity sold.
+     */
+    public SaleInfoDTO(long saleID, Amount runningTotal, int customerID, Amount totalVAT, SaleLines lines) {
+        this(saleID, runningTotal, customerID, totalVAT, lines, NO_REDUCTION);
+    }
+
+    /**
+     * Creates an instance of {@code SaleInfoDTO} for a sale in which one unit of each of the
+     * specified items was sold.
      *
      * @param saleID       The unique identifier of the sale.
      * @param runningTotal The running total amount of the sale.
@@ -22,21 +52,35 @@ public record SaleInfoDTO(int saleID, Amount runningTotal, Collection<ItemDTO> i
      * @param customerID   The ID of the customer involved in the sale.
      * @param totalVAT     The total value-added tax amount for the sale.
      */
-    public SaleInfoDTO(int saleID, Amount runningTotal, Collection<ItemDTO> items, int customerID, Amount totalVAT) {
-        this.saleID = saleID;
-        this.runningTotal = new Amount(runningTotal.getAmount());
-        this.items = items;
-        this.customerID = customerID;
-        this.totalVAT = new Amount(totalVAT.getAmount());
+    public SaleInfoDTO(long saleID, Amount runningTotal, Collection<ItemDTO> items, int customerID, Amount totalVAT) {
+        this(saleID, runningTotal, customerID, totalVAT, SaleLines.ofItems(items));
+    }
+
+    /**
+     * Get the items included in the sale, in the order of the lines.
+     *
+     * @return The items of the sale.
+     */
+    public Collection<ItemDTO> items() {
+        return lines.getItems();
     }
 
     /**
      * Get the running total of the sale.
      *
-     * @return A copy of the running total amount.
+     * @return The running total amount.
      */
     public Amount getRunningTotal() {
-        return new Amount(runningTotal.getAmount());
+        return runningTotal;
+    }
+
+    /**
+     * Get the total of the sale after the item-level promotions, but before any sale discount.
+     *
+     * @return The running total less the promotion reduction.
+     */
+    public Amount getTotalAfterPromotions() {
+        return promotionReduction.getCents() == 0 ? runningTotal : runningTotal.minus(promotionReduction);
     }
 
     /**
@@ -51,9 +95,9 @@ public record SaleInfoDTO(int saleID, Amount runningTotal, Collection<ItemDTO> i
     /**
      * Get the total VAT amount.
      *
-     * @return A copy of the total VAT amount.
+     * @return The total VAT amount.
      */
     public Amount getTotalVAT() {
-        return new Amount(totalVAT.getAmount());
+        return totalVAT;
     }
 }
@@ -0,0 +1,13 @@
+package se.kth.iv1350.storesalessystem.model.dto;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+
+/**
+ * A Data Transfer Object (DTO) representing one line of a sale: an item and the number
+ * of units of it that were sold. This class is immutable.
+ *
+ * @param item     The item sold on this line.
+ * @param quantity The number of units of the item sold on this line.
+ */
+public record SaleLineDTO(ItemDTO item, int quantity) {
+}
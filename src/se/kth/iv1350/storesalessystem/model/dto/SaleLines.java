@@ -0,0 +1,251 @@
+package se.kth.iv1350.storesalessystem.model.dto;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.SaleItem;
+
+/**
+ * An immutable snapshot of the lines of a sale, stored column by column. Line {@code i} of the
+ * snapshot is the item at index {@code i}, sold in the quantity, at the unit price and with the VAT
+ * found at the same index of the other columns. The columns are primitive arrays, so a snapshot
+ * of a sale costs a few objects however many lines the sale has, and is read without unboxing.
+ * <p>
+ * The unit price is the price of the item excluding VAT, and the VAT is that of the whole line,
+ * rounded with {@link SaleItem#VAT_ROUNDING}. Both are in öre.
+ */
+public final class SaleLines {
+    /**
+     * The lines of a sale without lines.
+     */
+    public static final SaleLines EMPTY = new SaleLines(new ItemDTO[0], new int[0], new long[0], new long[0]);
+
+    private final ItemDTO[] items;
+    private final int[] quantities;
+    private final long[] unitPriceCents;
+    private final long[] vatCents;
+    private final List<ItemDTO> itemView;
+
+    private SaleLines(ItemDTO[] items, int[] quantities, long[] unitPriceCents, long[] vatCents) {
+        this.items = items;
+        this.quantities = quantities;
+        this.unitPriceCents = unitPriceCents;
+        this.vatCents = vatCents;
+        this.itemView = Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * Creates a snapshot of the specified lines.
+     *
+     * @param lines The lines, each holding an item with the quantity sold.
+     * @return The snapshot of the lines.
+     */
+    public static SaleLines of(List<SaleLineDTO> lines) {
+        Builder builder = new Builder(lines.size());
+        for (SaleLineDTO line : lines) {
+            builder.add(new SaleItem(line.item(), line.quantity()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a snapshot of lines in which one unit of each of the specified items was sold.
+     *
+     * @param items The items sold.
+     * @return The snapshot of the lines.
+     */
+    public static SaleLines ofItems(Collection<ItemDTO> items) {
+        Builder builder = new Builder(items.size());
+        for (ItemDTO item : items) {
+            builder.add(new SaleItem(item, 1));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of lines.
+     *
+     * @return The number of lines.
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Gets the item sold on the specified line.
+     *
+     * @param line The index of the line.
+     * @return The item of the line.
+     */
+    public ItemDTO getItem(int line) {
+        return items[line];
+    }
+
+    /**
+     * Gets the number of units sold on the specified line.
+     *
+     * @param line The index of the line.
+     * @return The quantity of the line.
+     */
+    public int getQuantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Gets the price of one unit, excluding VAT, on the specified line.
+     *
+     * @param line The index of the line.
+     * @return The unit price in öre.
+     */
+    public long getUnitPriceCents(int line) {
+        return unitPriceCents[line];
+    }
+
+    /**
+     * Gets the VAT of the whole specified line.
+     *
+     * @param line The index of the line.
+     * @return The VAT of the line in öre.
+     */
+    public long getVATCents(int line) {
+        return vatCents[line];
+    }
+
+    /**
+     * Gets the specified line as a separate object.
+     *
+     * @param line The index of the line.
+     * @return The item and quantity of the line.
+     */
+    public SaleLineDTO getLine(int line) {
+        return new SaleLineDTO(items[line], quantities[line]);
+    }
+
+    /**
+     * Gets a read-only view of the items of the lines, in the order of the lines. No copy is made.
+     *
+     * @return The items of the lines.
+     */
+    public List<ItemDTO> getItems() {
+        return itemView;
+    }
+
+    /**
+     * Gets the number of units sold on all lines together.
+     *
+     * @return The total quantity.
+     */
+    public long getTotalQuantity() {
+        long total = 0;
+        for (int quantity : quantities) {
+            total += quantity;
+        }
+        return total;
+    }
+
+    /**
+     * Two snapshots are equal if they hold equal lines in the same order.
+     *
+     * @param other The object to compare with.
+     * @return {@code true} if the object holds the same lines as this snapshot.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SaleLines lines)) {
+            return false;
+        }
+        return Arrays.equals(items, lines.items) && Arrays.equals(quantities, lines.quantities)
+                && Arrays.equals(unitPriceCents, lines.unitPriceCents) && Arrays.equals(vatCents, lines.vatCents);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(items);
+        hash = 31 * hash + Arrays.hashCode(quantities);
+        hash = 31 * hash + Arrays.hashCode(unitPriceCents);
+        return 31 * hash + Arrays.hashCode(vatCents);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("SaleLines[");
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(quantities[i]).append(" x ").append(items[i].itemID());
+        }
+        return text.append(']').toString();
+    }
+
+    /**
+     * Collects lines into a snapshot. The columns are sized for the expected number of lines and
+     * grow if more lines are added. A builder builds one snapshot and is not used after that.
+     */
+    public static final class Builder {
+        private ItemDTO[] items;
+        private int[] quantities;
+        private long[] unitPriceCents;
+        private long[] vatCents;
+        private int size;
+
+        /**
+         * Creates a builder for the specified number of lines.
+         *
+         * @param expectedLines The number of lines that will be added.
+         */
+        public Builder(int expectedLines) {
+            this.items = new ItemDTO[expectedLines];
+            this.quantities = new int[expectedLines];
+            this.unitPriceCents = new long[expectedLines];
+            this.vatCents = new long[expectedLines];
+        }
+
+        /**
+         * Adds a line of a sale.
+         *
+         * @param line The line to add.
+         * @return This builder.
+         */
+        public Builder add(SaleItem line) {
+            if (size == items.length) {
+                int capacity = Math.max(4, size * 2);
+                items = Arrays.copyOf(items, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                unitPriceCents = Arrays.copyOf(unitPriceCents, capacity);
+                vatCents = Arrays.copyOf(vatCents, capacity);
+            }
+            ItemDTO item = line.getItemDTO();
+            items[size] = item;
+            quantities[size] = line.getQuantity();
+            unitPriceCents[size] = item.price().getCents();
+            vatCents[size] = line.getTotalVATCents();
+            size++;
+            return this;
+        }
+
+        /**
+         * Creates the snapshot of the added lines.
+         *
+         * @return The snapshot.
+         */
+        public SaleLines build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (size < items.length) {
+                items = Arrays.copyOf(items, size);
+                quantities = Arrays.copyOf(quantities, size);
+                unitPriceCents = Arrays.copyOf(unitPriceCents, size);
+                vatCents = Arrays.copyOf(vatCents, size);
+            }
+            return new SaleLines(items, quantities, unitPriceCents, vatCents);
+        }
+    }
+}
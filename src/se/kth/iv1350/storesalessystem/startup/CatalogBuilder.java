@@ -0,0 +1,36 @@
+package se.kth.iv1350.storesalessystem.startup;
+
+import se.kth.iv1350.storesalessystem.integration.MappedItemCatalog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A command-line tool that converts an item list in CSV format into a binary catalog file,
+ * which can then be memory-mapped by {@link MappedItemCatalog}.
+ * Usage: {@code CatalogBuilder <items.csv> <catalog file>}
+ */
+public class CatalogBuilder {
+
+    /**
+     * Builds the catalog file. The CSV format is described at {@link MappedItemCatalog#buildFromCsv}.
+     * The process exits with status 2 if the arguments are wrong, and with status 1 if the catalog
+     * cannot be built.
+     *
+     * @param args The path of the CSV item list, followed by the path of the catalog file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogBuilder <items.csv> <catalog file>");
+            System.exit(2);
+        }
+        try {
+            long start = System.nanoTime();
+            int itemCount = MappedItemCatalog.buildFromCsv(Path.of(args[0]), Path.of(args[1]));
+            System.out.printf("Wrote %d items to %s in %d ms%n", itemCount, args[1], (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not build the catalog: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
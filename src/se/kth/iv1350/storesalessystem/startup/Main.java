@@ -4,19 +4,85 @@ import se.kth.iv1350.storesalessystem.controller.Controller;
 import se.kth.iv1350.storesalessystem.integration.*;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.AsyncRevenueObserver;
+import se.kth.iv1350.storesalessystem.model.CashRegister;
 import se.kth.iv1350.storesalessystem.model.IdentifierException;
-import se.kth.iv1350.storesalessystem.util.ErrorLogger;
+import se.kth.iv1350.storesalessystem.model.PostSalePipeline;
+import se.kth.iv1350.storesalessystem.model.PrintQueue;
+import se.kth.iv1350.storesalessystem.model.PromotionEngine;
+import se.kth.iv1350.storesalessystem.model.ReceiptPrinter;
+import se.kth.iv1350.storesalessystem.model.SaleLogger;
+import se.kth.iv1350.storesalessystem.util.SnowflakeSaleIdGenerator;
+import se.kth.iv1350.storesalessystem.view.TotalRevenueFileOutput;
+import se.kth.iv1350.storesalessystem.view.TotalRevenueView;
 import se.kth.iv1350.storesalessystem.view.View;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+
 public class Main {
-    public static void main(String[] args) {
-        InventorySystem inventorySystem = new InventorySystem();
-        AccountingSystem accountingSystem = new AccountingSystem();
+    private static final String SALE_JOURNAL_FILE_NAME = "salejournal.bin";
+    private static final int REVENUE_BUFFER_CAPACITY = 1024;
+    private static final int PRINT_QUEUE_CAPACITY = 64;
+    private static final int PRINT_ATTEMPTS = 5;
+    private static final String ACCOUNTING_SERVER_PROPERTY = "accounting.server";
+    private static final int DISCOUNT_CACHE_SIZE = 10_000;
+    private static final long DISCOUNT_CACHE_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+    private static final int ACCOUNTING_QUEUE_CAPACITY = 4096;
+    private static final int ACCOUNTING_BATCH_SIZE = 100;
+    private static final int ACCOUNTING_IN_FLIGHT_BATCHES = 16;
+
+    /**
+     * Runs a demonstration of the sale process.
+     *
+     * Completed sales are journaled, and sales that were paid for but never delivered to the
+     * accounting and inventory systems during an earlier run are delivered first.
+     * <p>
+     * If the system property {@code accounting.server} holds the address of an accounting server,
+     * as {@code host:port}, completed sales are sent to that server. Otherwise they are passed to
+     * an accounting system that only simulates the server.
+     *
+     * @param args Optionally the path of an item catalog file, as created by {@link CatalogBuilder},
+     *             in which items are looked up in addition to the demonstration items.
+     * @throws IOException If the item catalog file or the sale journal cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        InventorySystem inventorySystem = args.length > 0
+                ? new InventorySystem(new MappedItemCatalog(Path.of(args[0])))
+                : new InventorySystem();
+        AccountingSystem accountingSystem = createAccountingSystem(System.getProperty(ACCOUNTING_SERVER_PROPERTY));
         Printer printer = new Printer();
 
         populateInventory(inventorySystem);
 
-        Controller controller = new Controller(inventorySystem, accountingSystem, printer);
+        SaleJournal saleJournal = new SaleJournal(Path.of(SALE_JOURNAL_FILE_NAME),
+                SaleJournal.FsyncPolicy.EVERY_COMMIT, 0);
+        int replayedSales = saleJournal.replay(accountingSystem, inventorySystem);
+        if (replayedSales > 0) {
+            System.out.println("Delivered " + replayedSales + " sales from an earlier run.");
+        }
+        PostSalePipeline postSalePipeline = new PostSalePipeline(accountingSystem, inventorySystem,
+                1024, 64, 5, 50, saleJournal);
+        CashRegister cashRegister = new CashRegister();
+        AsyncRevenueObserver revenueView = new AsyncRevenueObserver(new TotalRevenueView(),
+                REVENUE_BUFFER_CAPACITY, AsyncRevenueObserver.OverflowPolicy.COALESCE);
+        TotalRevenueFileOutput revenueFile = TotalRevenueFileOutput.openBuffered(
+                TotalRevenueFileOutput.OutputFormat.TEXT, 64, 1000);
+        AsyncRevenueObserver revenueFileOutput = new AsyncRevenueObserver(revenueFile,
+                REVENUE_BUFFER_CAPACITY, AsyncRevenueObserver.OverflowPolicy.COALESCE);
+        cashRegister.addObserver(revenueView);
+        cashRegister.addObserver(revenueFileOutput);
+        PrintQueue printQueue = new PrintQueue(printer, PRINT_QUEUE_CAPACITY, PRINT_ATTEMPTS, 50);
+        Controller controller = new Controller.Builder(inventorySystem, new SaleLogger(postSalePipeline, saleJournal))
+                .discountSource(DiscountDatabase.getInstance())
+                .promotionEngine(new PromotionEngine(List.of()))
+                .receiptPrinter(new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.CHANGE_FIRST))
+                .cashRegister(cashRegister)
+                .saleIdGenerator(new SnowflakeSaleIdGenerator())
+                .discountCache(DISCOUNT_CACHE_SIZE, DISCOUNT_CACHE_TIME_TO_LIVE_MILLIS)
+                .build();
 
         View view = new View(controller);
 
@@ -64,7 +130,35 @@ public class Main {
             System.err.println("ERROR: " + e.getMessage());
         }
 
+        printQueue.close();
+        postSalePipeline.close();
+        accountingSystem.close();
+        saleJournal.close();
+        revenueView.close();
+        revenueFileOutput.close();
+        revenueFile.close();
+    }
 
+    /**
+     * Creates a client of the accounting server at the specified address, or an accounting system
+     * that only simulates the server if there is no address.
+     *
+     * @param serverAddress The address of the accounting server as {@code host:port}, or {@code null}.
+     * @return The accounting system receiving the completed sales.
+     * @throws IllegalArgumentException If the address has no valid port.
+     */
+    private static AccountingSystem createAccountingSystem(String serverAddress) {
+        if (serverAddress == null || serverAddress.isBlank()) {
+            return new AccountingSystem();
+        }
+        int separator = serverAddress.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("The accounting server address has no port: " + serverAddress);
+        }
+        String host = serverAddress.substring(0, separator);
+        int port = Integer.parseInt(serverAddress.substring(separator + 1));
+        return new AccountingSystem(new InetSocketAddress(host, port), ACCOUNTING_QUEUE_CAPACITY,
+                ACCOUNTING_BATCH_SIZE, 5, ACCOUNTING_IN_FLIGHT_BATCHES, 2000, 50);
     }
 
     /**
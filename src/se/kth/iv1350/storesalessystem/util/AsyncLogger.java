@@ -0,0 +1,283 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A process-wide, asynchronous implementation of the {@link Logger} interface.
+ * Logged exceptions are placed in a bounded ring buffer and written to the log by a single
+ * background thread, so the threads reporting errors never wait for the file system and
+ * the log file is opened exactly once. Entries are written in the same format as {@link ErrorLogger}.
+ * <p>
+ * When the buffer is full, entries are either dropped or the reporting thread waits for free space,
+ * depending on the {@link OverflowPolicy}. The number of written, dropped and delayed entries is
+ * counted so that a lossy log can be detected. An entry logged while the logger closes is either
+ * written or counted as dropped, never lost unseen.
+ */
+public class AsyncLogger implements Logger, AutoCloseable {
+    private static final String LOG_FILE_NAME = "errorlog.txt";
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    /**
+     * Decides when the written entries are flushed to the underlying log.
+     */
+    public enum FlushPolicy {
+        /**
+         * Flush after every entry. No entry is lost on a crash, but every entry costs a write.
+         */
+        EVERY_ENTRY,
+        /**
+         * Flush whenever the buffer has been emptied, so that bursts are written together.
+         */
+        WHEN_IDLE,
+        /**
+         * Flush at most once per flush interval.
+         */
+        PERIODIC
+    }
+
+    /**
+     * Decides what happens to a new entry when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the new entry and count it as dropped.
+         */
+        DROP,
+        /**
+         * Make the reporting thread wait until there is room in the buffer.
+         */
+        BLOCK
+    }
+
+    private final BlockingQueue<LogEntry> buffer;
+    private final PrintWriter logStream;
+    private final FlushPolicy flushPolicy;
+    private final OverflowPolicy overflowPolicy;
+    private final long flushIntervalMillis;
+    private final Thread writerThread;
+    private final LongAdder writtenEntries = new LongAdder();
+    private final LongAdder droppedEntries = new LongAdder();
+    private final LongAdder blockedEntries = new LongAdder();
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new logger writing to the specified output.
+     *
+     * @param output              The output that the entries are written to. It is closed when this logger is closed.
+     * @param capacity            The maximum number of entries waiting to be written.
+     * @param flushPolicy         Decides when the output is flushed.
+     * @param flushIntervalMillis The time between flushes when the flush policy is {@link FlushPolicy#PERIODIC}.
+     * @param overflowPolicy      Decides what happens to new entries when the buffer is full.
+     */
+    public AsyncLogger(Writer output, int capacity, FlushPolicy flushPolicy, long flushIntervalMillis,
+                       OverflowPolicy overflowPolicy) {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.logStream = new PrintWriter(output);
+        this.flushPolicy = flushPolicy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.writerThread = new Thread(this::writeEntries, "async-logger");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Gets the logger shared by the whole process. It appends to the error log file,
+     * flushes whenever the buffer has been emptied and drops entries when the buffer is full.
+     * The logger is created on first use and closed when the JVM shuts down.
+     *
+     * @return The process-wide logger.
+     */
+    public static AsyncLogger getInstance() {
+        return SharedLoggerHolder.INSTANCE;
+    }
+
+    /**
+     * Places an exception and its context in the buffer, to be written by the background thread.
+     *
+     * @param exception   The exception to log.
+     * @param contextInfo A string describing the context in which the exception occurred.
+     */
+    @Override
+    public void logException(Exception exception, String contextInfo) {
+        if (closed) {
+            droppedEntries.increment();
+            return;
+        }
+        LogEntry entry = new LogEntry(System.currentTimeMillis(), exception, contextInfo);
+        if (buffer.offer(entry)) {
+            dropIfStopped(entry);
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            droppedEntries.increment();
+            return;
+        }
+        block(entry);
+    }
+
+    /**
+     * Writes all buffered entries, flushes and closes the output. Entries logged after
+     * this method has been called are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logStream.close();
+    }
+
+    /**
+     * Gets the number of entries that have been written to the log.
+     *
+     * @return The number of written entries.
+     */
+    public long getWrittenCount() {
+        return writtenEntries.sum();
+    }
+
+    /**
+     * Gets the number of entries that were discarded because the buffer was full or the logger closed.
+     *
+     * @return The number of dropped entries.
+     */
+    public long getDroppedCount() {
+        return droppedEntries.sum();
+    }
+
+    /**
+     * Gets the number of entries whose reporting thread had to wait for room in the buffer.
+     *
+     * @return The number of entries that were subject to backpressure.
+     */
+    public long getBlockedCount() {
+        return blockedEntries.sum();
+    }
+
+    /**
+     * Gets the number of entries currently waiting to be written.
+     *
+     * @return The current buffer depth.
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * Waits for room in the buffer for as long as the background thread runs. The entry is dropped if the
+     * thread stops, or if the reporting thread is interrupted, whose interrupt status is then kept.
+     */
+    private void block(LogEntry entry) {
+        blockedEntries.increment();
+        try {
+            while (!buffer.offer(entry, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    droppedEntries.increment();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            droppedEntries.increment();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        dropIfStopped(entry);
+    }
+
+    /**
+     * Takes back a buffered entry if the background thread has stopped, since it would never be written.
+     * The thread writes whatever it finds in the buffer after stopping, so the entry is either written or
+     * counted as dropped, by whichever of the two removes it.
+     */
+    private void dropIfStopped(LogEntry entry) {
+        if (stopped && buffer.remove(entry)) {
+            droppedEntries.increment();
+        }
+    }
+
+    private void writeEntries() {
+        List<LogEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long lastFlush = System.currentTimeMillis();
+        while (!closed || !buffer.isEmpty()) {
+            try {
+                LogEntry first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by close(): write whatever is left and stop.
+            }
+            buffer.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            for (LogEntry entry : batch) {
+                write(entry);
+            }
+            batch.clear();
+
+            long now = System.currentTimeMillis();
+            if (flushPolicy == FlushPolicy.WHEN_IDLE && buffer.isEmpty()
+                    || flushPolicy == FlushPolicy.PERIODIC && now - lastFlush >= flushIntervalMillis) {
+                logStream.flush();
+                lastFlush = now;
+            }
+        }
+        stopped = true;
+        for (LogEntry entry = buffer.poll(); entry != null; entry = buffer.poll()) {
+            write(entry);
+        }
+        logStream.flush();
+    }
+
+    private void write(LogEntry entry) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timeMillis()), ZoneId.systemDefault());
+        ErrorLogger.writeEntry(logStream, time, entry.exception(), entry.contextInfo());
+        writtenEntries.increment();
+        if (flushPolicy == FlushPolicy.EVERY_ENTRY) {
+            logStream.flush();
+        }
+    }
+
+    private record LogEntry(long timeMillis, Exception exception, String contextInfo) {
+    }
+
+    /**
+     * Creates the process-wide logger the first time it is requested.
+     */
+    private static class SharedLoggerHolder {
+        private static final AsyncLogger INSTANCE = createSharedLogger();
+
+        private static AsyncLogger createSharedLogger() {
+            Writer output;
+            try {
+                output = new FileWriter(LOG_FILE_NAME, true);
+            } catch (IOException e) {
+                System.err.println("ERROR: Could not create or open the log file: " + e.getMessage());
+                output = Writer.nullWriter();
+            }
+            AsyncLogger logger = new AsyncLogger(output, DEFAULT_CAPACITY, FlushPolicy.WHEN_IDLE,
+                    DEFAULT_FLUSH_INTERVAL_MILLIS, OverflowPolicy.DROP);
+            Runtime.getRuntime().addShutdownHook(new Thread(logger::close, "async-logger-shutdown"));
+            return logger;
+        }
+    }
+}
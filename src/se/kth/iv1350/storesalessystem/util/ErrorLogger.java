@@ -40,7 +40,8 @@ public class ErrorLogger implements Logger {
     /**
      * Logs details of an exception, including a timestamp, context information,
      * exception type, message, and stack trace, into an error log file.
-     * This method ensures that errors are documented for later analysis.
+     * This method ensures that errors are documented for later analysis, and flushes the
+     * log file so that no entry is lost if the application terminates.
      *
      * @param exception   The exception to log. This includes details such as the type of exception,
      *                    the error message, and the stack trace.
@@ -52,8 +53,22 @@ public class ErrorLogger implements Logger {
             return;
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        String timestamp = now.format(TIME_FORMATTER);
+        writeEntry(logStream, LocalDateTime.now(), exception, contextInfo);
+        logStream.flush();
+    }
+
+    /**
+     * Writes one error log entry, consisting of the timestamp, context information,
+     * exception type, message, and stack trace, to the specified stream.
+     * This is the log format shared by all loggers writing to the error log file.
+     *
+     * @param logStream   The stream to write the entry to.
+     * @param time        The time at which the exception was logged.
+     * @param exception   The exception to log.
+     * @param contextInfo Contextual information where the exception occurred.
+     */
+    static void writeEntry(PrintWriter logStream, LocalDateTime time, Exception exception, String contextInfo) {
+        String timestamp = time.format(TIME_FORMATTER);
 
         logStream.println();
         logStream.println("\n-----------------------ERROR LOG---------------------");
@@ -0,0 +1,16 @@
+package se.kth.iv1350.storesalessystem.util;
+
+/**
+ * Represents a source of sale identifiers.
+ * Implementations must never hand out the same identifier twice, also when called
+ * concurrently from several checkout lanes.
+ */
+public interface SaleIdGenerator {
+
+    /**
+     * Generates the identifier for a new sale.
+     *
+     * @return A sale identifier that has not been returned before.
+     */
+    long nextSaleID();
+}
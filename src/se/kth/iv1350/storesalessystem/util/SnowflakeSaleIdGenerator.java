@@ -0,0 +1,105 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates 64-bit sale identifiers that are unique across lanes and nodes.
+ * Each identifier is composed of, from the most significant bit:
+ * - 41 bits of milliseconds since {@link #EPOCH_MILLIS}.
+ * - 10 bits identifying the node (store server) that generated it.
+ * - 12 bits of sequence number within the millisecond.
+ * The timestamp and sequence are kept together in one atomic value and advanced with
+ * compare-and-set, so no lock is ever taken. When more than 4096 identifiers are requested
+ * within the same millisecond, the generator borrows the next millisecond instead of waiting,
+ * which keeps the identifiers strictly increasing.
+ * <p>
+ * Within one process the identifiers keep increasing even if the clock steps backwards. A new
+ * process only knows the clock, so after a restart it could reissue identifiers if the clock has
+ * stepped backwards, or if the previous process had borrowed milliseconds that have not yet passed.
+ * To rule that out, create the generator with the highest sale ID that the node has already issued,
+ * see {@link #SnowflakeSaleIdGenerator(int, long)}.
+ */
+public class SnowflakeSaleIdGenerator implements SaleIdGenerator {
+    /**
+     * The start of the timestamp range, 2024-01-01T00:00:00Z.
+     */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    /**
+     * The highest node ID that fits in the identifier.
+     */
+    public static final int MAX_NODE_ID = 1023;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    /**
+     * Creates a new generator for node 0, for stores running a single server.
+     */
+    public SnowflakeSaleIdGenerator() {
+        this(0);
+    }
+
+    /**
+     * Creates a new generator for the specified node. Every process generating sale IDs
+     * at the same time must use a different node ID.
+     *
+     * @param nodeID The ID of this node, between 0 and {@link #MAX_NODE_ID}.
+     * @throws IllegalArgumentException If the node ID is out of range.
+     */
+    public SnowflakeSaleIdGenerator(int nodeID) {
+        if (nodeID < 0 || nodeID > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeID);
+        }
+        this.nodeBits = (long) nodeID << SEQUENCE_BITS;
+    }
+
+    /**
+     * Creates a new generator for the specified node that only generates sale IDs higher than the
+     * specified one, for example the highest sale ID the node issued before it was restarted.
+     *
+     * @param nodeID           The ID of this node, between 0 and {@link #MAX_NODE_ID}.
+     * @param lastIssuedSaleID The highest sale ID already issued by this node, or zero if none.
+     * @throws IllegalArgumentException If the node ID is out of range or the sale ID is negative.
+     */
+    public SnowflakeSaleIdGenerator(int nodeID, long lastIssuedSaleID) {
+        this(nodeID);
+        if (lastIssuedSaleID < 0) {
+            throw new IllegalArgumentException("Sale ID must not be negative: " + lastIssuedSaleID);
+        }
+        long timestamp = lastIssuedSaleID >>> (NODE_BITS + SEQUENCE_BITS);
+        lastTimeAndSequence.set((timestamp << SEQUENCE_BITS) | (lastIssuedSaleID & SEQUENCE_MASK));
+    }
+
+    /**
+     * Generates the next sale identifier of this node.
+     *
+     * @return A strictly increasing, positive sale identifier.
+     */
+    @Override
+    public long nextSaleID() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long last;
+        long next;
+        do {
+            last = lastTimeAndSequence.get();
+            next = Math.max(now, last + 1);
+        } while (!lastTimeAndSequence.compareAndSet(last, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * Extracts the node ID from a sale identifier created by this class.
+     *
+     * @param saleID The sale identifier.
+     * @return The ID of the node that generated the identifier.
+     */
+    public static int nodeOf(long saleID) {
+        return (int) ((saleID >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+}
@@ -3,22 +3,55 @@ package se.kth.iv1350.storesalessystem.view;
 import se.kth.iv1350.storesalessystem.model.Amount;
 import se.kth.iv1350.storesalessystem.model.TotalRevenueObserver;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles logging of total revenue to a file. This class observes payments made in the system
  * and keeps track of the total revenue, which is logged to a specified file upon updates.
  * Implements the {@link TotalRevenueObserver} interface for receiving payment notifications.
+ * <p>
+ * By default every update is written to the file at once. In buffered mode, updates are collected
+ * in memory and written when a number of updates have been buffered, when a timer shared by all
+ * outputs finds that the buffer time has passed, or when the output is closed. An output opened with
+ * {@link #openBuffered} is also closed when the JVM shuts down, unless it has been closed before.
+ * The revenue can be written either as readable text or as a CSV time series.
  */
-public class TotalRevenueFileOutput implements TotalRevenueObserver {
+public final class TotalRevenueFileOutput implements TotalRevenueObserver, AutoCloseable {
     private static final String REVENUE_LOG_FILE = "revenue.txt";
+    private static final String REVENUE_CSV_FILE = "revenue.csv";
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
 
+    /**
+     * The format in which the revenue is written.
+     */
+    public enum OutputFormat {
+        /**
+         * One readable line per update, holding a timestamp and the total revenue in SEK.
+         */
+        TEXT,
+        /**
+         * One {@code epochMillis,totalRevenueInCents} line per update.
+         */
+        CSV
+    }
+
+    private final OutputFormat format;
+    private final int maxBufferedEntries;
+    private final ScheduledFuture<?> flushTimer;
     private Amount totalRevenue;
     private PrintWriter logStream;
+    private int bufferedEntries;
+    private Thread shutdownHook;
 
     /**
      * Creates a new instance of {@code TotalRevenueFileOutput} and initializes logging to a file.
@@ -27,33 +60,107 @@ public class TotalRevenueFileOutput implements TotalRevenueObserver {
      * If the file cannot be created or opened, an error message is printed to the standard error stream.
      */
     public TotalRevenueFileOutput() {
+        this(openLogFile(REVENUE_LOG_FILE), OutputFormat.TEXT, 1, 0);
+    }
+
+    /**
+     * Creates a new instance of {@code TotalRevenueFileOutput} writing to the specified output.
+     *
+     * @param output             The output the revenue is written to, or {@code null} to write nothing.
+     *                           It is closed when this object is closed.
+     * @param format             The format in which the revenue is written.
+     * @param maxBufferedEntries The number of updates that are buffered before they are written.
+     *                           With one, every update is written at once.
+     * @param maxBufferMillis    The longest time an update is buffered before it is written by the
+     *                           flush timer. With zero, buffered updates wait for the size threshold.
+     */
+    public TotalRevenueFileOutput(Writer output, OutputFormat format, int maxBufferedEntries, long maxBufferMillis) {
         this.totalRevenue = new Amount();
-        try {
-            logStream = new PrintWriter(new FileWriter(REVENUE_LOG_FILE, true));
-        } catch (IOException e) {
-            System.err.println("ERROR: Could not create or open the log file: " + e.getMessage());
+        this.format = format;
+        this.maxBufferedEntries = maxBufferedEntries;
+        if (output != null) {
+            this.logStream = new PrintWriter(new BufferedWriter(output, WRITE_BUFFER_SIZE));
         }
+        this.flushTimer = output != null && maxBufferedEntries > 1 && maxBufferMillis > 0
+                ? FlushTimerHolder.TIMER.scheduleWithFixedDelay(this::flush, maxBufferMillis, maxBufferMillis,
+                        TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Opens an output that appends to the default log file in buffered mode. Text is written to
+     * {@code revenue.txt} and CSV to {@code revenue.csv}. The output is closed when the JVM shuts down,
+     * so that no buffered update is lost, unless it has been closed before.
+     *
+     * @param format             The format in which the revenue is written.
+     * @param maxBufferedEntries The number of updates that are buffered before they are written.
+     * @param maxBufferMillis    The longest time an update is buffered before it is written.
+     * @return The opened output.
+     */
+    public static TotalRevenueFileOutput openBuffered(OutputFormat format, int maxBufferedEntries,
+                                                      long maxBufferMillis) {
+        TotalRevenueFileOutput fileOutput = new TotalRevenueFileOutput(
+                openLogFile(format == OutputFormat.CSV ? REVENUE_CSV_FILE : REVENUE_LOG_FILE), format,
+                maxBufferedEntries, maxBufferMillis);
+        fileOutput.closeOnShutdown();
+        return fileOutput;
     }
 
     /**
      * Updates the total revenue with the specified payment and logs the current revenue to the file.
+     * Payments from several lanes are added one at a time.
      *
      * @param payment The payment amount to add to the total revenue.
      */
     @Override
-    public void newPayment(Amount payment) {
+    public synchronized void newPayment(Amount payment) {
         totalRevenue = totalRevenue.plus(payment);
         logCurrentRevenue();
     }
 
+    /**
+     * Writes all buffered updates to the file.
+     */
+    public synchronized void flush() {
+        if (logStream == null || bufferedEntries == 0) {
+            return;
+        }
+        logStream.flush();
+        bufferedEntries = 0;
+    }
+
+    /**
+     * Writes all buffered updates to the file and closes it. Later updates are not logged.
+     */
+    @Override
+    public synchronized void close() {
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is shutting down, and this is the hook closing the output.
+            }
+            shutdownHook = null;
+        }
+        if (logStream == null) {
+            return;
+        }
+        logStream.close();
+        logStream = null;
+    }
+
     /**
      * Logs the current total revenue along with a timestamp to the specified log file.
-     * This method formats the current timestamp and the total revenue as a log entry and writes it
-     * to the log file. If the log file is not available (indicated by a null stream), the method exits
-     * without performing any logging. The log file is flushed after writing the entries.
-     * The log entry includes:
+     * If the log file is not available (indicated by a null stream), the method exits
+     * without performing any logging. The log file is flushed when enough entries have been
+     * buffered; entries buffered for long enough are flushed by the flush timer.
+     * In text format, the log entry includes:
      * - A timestamp in the format "yyyy-MM-dd HH:mm:ss".
      * - The total revenue formatted to two decimal places, with the SEK currency symbol.
+     * In CSV format, the log entry holds the time in milliseconds and the total revenue in cents.
      * Logging is skipped if the output stream for the log file is not initialized.
      */
     private void logCurrentRevenue() {
@@ -61,10 +168,44 @@ public class TotalRevenueFileOutput implements TotalRevenueObserver {
             return;
         }
 
-        String timestamp = TIME_FORMATTER.format(java.time.LocalDateTime.now());
+        if (format == OutputFormat.CSV) {
+            logStream.print(System.currentTimeMillis());
+            logStream.print(',');
+            logStream.println(totalRevenue.getCents());
+        } else {
+            String timestamp = TIME_FORMATTER.format(java.time.LocalDateTime.now());
+            logStream.println(timestamp + " - Total Revenue: " + totalRevenue + " SEK");
+            logStream.println();
+        }
 
-        logStream.println(timestamp + " - Total Revenue: " + String.format(("%.2f"), totalRevenue.getAmount()) + " SEK");
-        logStream.println();
-        logStream.flush();
+        if (++bufferedEntries >= maxBufferedEntries) {
+            flush();
+        }
+    }
+
+    private synchronized void closeOnShutdown() {
+        shutdownHook = new Thread(this::close, "revenue-file-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private static Writer openLogFile(String fileName) {
+        try {
+            return new FileWriter(fileName, true);
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not create or open the log file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Holds the timer that writes the buffered updates of all outputs, created the first time an output
+     * is buffered. Its thread is a daemon, so it does not keep the JVM alive.
+     */
+    private static class FlushTimerHolder {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "revenue-file-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
@@ -29,11 +29,12 @@ public class TotalRevenueView implements TotalRevenueObserver {
      * Updates the total revenue by adding the specified payment amount.
      * This method is invoked when a new payment is processed, and it ensures
      * that the cumulative revenue is updated and displayed to the standard output.
+     * Payments from several lanes are added one at a time.
      *
      * @param payment The payment amount to be added to the total revenue.
      */
     @Override
-    public void newPayment(Amount payment) {
+    public synchronized void newPayment(Amount payment) {
         totalRevenue = totalRevenue.plus(payment);
         printCurrentRevenue();
     }
@@ -0,0 +1,124 @@
+package se.kth.iv1350.storesalessystem.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import se.kth.iv1350.storesalessystem.integration.AccountingSystem;
+import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.Printer;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.CashRegister;
+import se.kth.iv1350.storesalessystem.model.SaleLogger;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControllerLoadTest {
+    private static final int SALES_PER_LANE = 500;
+    private static final int[] LANE_COUNTS = {1, 2, 4, 8, 16};
+
+    private InventorySystem inventorySystem;
+    private AccountingSystem accountingSystem;
+    private Printer silentPrinter;
+
+    @BeforeEach
+    void setUp() {
+        inventorySystem = new InventorySystem();
+        accountingSystem = new AccountingSystem();
+        silentPrinter = new Printer(receipt -> receipt.position(receipt.limit()));
+
+        inventorySystem.addItem(new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100)));
+        inventorySystem.addItem(new ItemDTO("2", "Test Item 2", "Test Description 2", 0.12, new Amount(50)));
+    }
+
+    @Test
+    void testConcurrentLanesShareOneCashRegister() throws Exception {
+        for (int lanes : LANE_COUNTS) {
+            CashRegister cashRegister = new CashRegister();
+            AtomicInteger notifiedPayments = new AtomicInteger();
+            cashRegister.addObserver(payment -> notifiedPayments.incrementAndGet());
+            Controller controller = new Controller.Builder(inventorySystem,
+                    new SaleLogger(accountingSystem, inventorySystem))
+                    .printer(silentPrinter)
+                    .cashRegister(cashRegister)
+                    .build();
+
+            Set<Long> saleIDs = ConcurrentHashMap.newKeySet();
+            runLanes(controller, lanes, saleIDs);
+
+            int sales = lanes * SALES_PER_LANE;
+            // Every sale is 1 x 125 + 2 x 56 = 237 SEK including VAT.
+            assertEquals(sales * 237.0, cashRegister.getBalance().getAmount(), 0.0001,
+                    "Every payment from every lane should be in the shared cash register");
+            assertEquals(sales, notifiedPayments.get(), "Observers should be notified once per sale");
+            assertEquals(sales, saleIDs.size(), "Every sale should get its own sale ID");
+        }
+    }
+
+    @Benchmark
+    void benchmarkSalesPerSecondByLaneCount(TestReporter reporter) throws Exception {
+        Controller warmUp = new Controller.Builder(inventorySystem, new SaleLogger(accountingSystem, inventorySystem))
+                .printer(silentPrinter)
+                .build();
+        runLanes(warmUp, LANE_COUNTS[LANE_COUNTS.length - 1], ConcurrentHashMap.newKeySet());
+
+        for (int lanes : LANE_COUNTS) {
+            Controller controller = new Controller.Builder(inventorySystem,
+                    new SaleLogger(accountingSystem, inventorySystem))
+                    .printer(silentPrinter)
+                    .build();
+
+            long elapsedNanos = runLanes(controller, lanes, ConcurrentHashMap.newKeySet());
+
+            reporter.publishEntry(lanes + " lanes, sales/sec",
+                    String.format("%.0f", lanes * SALES_PER_LANE / (elapsedNanos / 1_000_000_000.0)));
+        }
+    }
+
+    /**
+     * Makes {@code SALES_PER_LANE} sales on each of the specified number of lanes at once.
+     *
+     * @return The time taken by the sales, in nanoseconds.
+     */
+    private long runLanes(Controller controller, int lanes, Set<Long> saleIDs) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int lane = 0; lane < lanes; lane++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < SALES_PER_LANE; i++) {
+                        SaleSession session = controller.startSale();
+                        saleIDs.add(session.getSaleID());
+                        session.enterItem("1", 1);
+                        session.enterItem("2", 1);
+                        session.enterItem("2", 1);
+                        Amount change = session.makePayment(new Amount(300));
+                        assertEquals(63.0, change.getAmount(), 0.0001, "Each lane should get its own change");
+                    }
+                    return null;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,10 +2,18 @@ package se.kth.iv1350.storesalessystem.controller;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import se.kth.iv1350.storesalessystem.integration.*;
+import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.BuyXPayYPromotion;
+import se.kth.iv1350.storesalessystem.model.CashRegister;
 import se.kth.iv1350.storesalessystem.model.IdentifierException;
+import se.kth.iv1350.storesalessystem.model.PostSalePipeline;
+import se.kth.iv1350.storesalessystem.model.PromotionEngine;
+import se.kth.iv1350.storesalessystem.model.SaleLogger;
+import se.kth.iv1350.storesalessystem.util.AllocationMeter;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,14 +31,16 @@ class ControllerTest {
     public void setUp() {
         InventorySystem inventorySystem = new InventorySystem();
         AccountingSystem accountingSystem = new AccountingSystem();
-        Printer printer = new Printer();
+        Printer printer = new Printer(new InMemoryReceiptSink());
 
         ItemDTO testItem1 = new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100));
         ItemDTO testItem2 = new ItemDTO("2", "Test Item 2", "Test Description 2", 0.12, new Amount(50));
         inventorySystem.addItem(testItem1);
         inventorySystem.addItem(testItem2);
 
-        controller = new Controller(inventorySystem, accountingSystem, printer);
+        controller = new Controller.Builder(inventorySystem, new SaleLogger(accountingSystem, inventorySystem))
+                .printer(printer)
+                .build();
 
         controller.startSale();
     }
@@ -127,4 +137,93 @@ class ControllerTest {
 
         assertDoesNotThrow(() -> controller.requestDiscount(12345), "Request discount should not throw an exception");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDiscountsComeFromInjectedSource() throws IdentifierException, DatabaseException {
+        InventorySystem inventorySystem = new InventorySystem();
+        inventorySystem.addItem(new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100)));
+        DiscountSource everyoneGetsHalf = new DiscountDatabase(List.of(
+                new DiscountRule(Integer.MIN_VALUE, Integer.MAX_VALUE, new DiscountInfoDTO(new Amount(0), 50, "Half Price"))));
+        Controller injected = new Controller.Builder(inventorySystem,
+                new SaleLogger(new AccountingSystem(), inventorySystem))
+                .discountSource(everyoneGetsHalf)
+                .build();
+
+        SaleSession session = injected.startSale();
+        session.enterItem("1", 1);
+        session.requestDiscount(1);
+
+        assertEquals(62.5, session.getCurrentTotal().getAmount(), "Discount should come from the injected source");
+        assertEquals("50% discount", session.getDiscountDescription(), "Description should describe the injected discount");
+    }
+
+    @Test
+    void testPromotionsComeFromInjectedEngine() throws IdentifierException, DatabaseException {
+        InventorySystem inventorySystem = new InventorySystem();
+        inventorySystem.addItem(new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100)));
+        PromotionEngine threeForTwo = new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "1", 3, 2)));
+        Controller injected = new Controller.Builder(inventorySystem,
+                new SaleLogger(new AccountingSystem(), inventorySystem))
+                .discountSource(new DiscountDatabase(List.of()))
+                .promotionEngine(threeForTwo)
+                .build();
+
+        SaleSession session = injected.startSale();
+        session.enterItem("1", 3);
+
+        assertEquals(375.0, session.getOriginalTotal().getAmount(), "Original total should not include promotions");
+        assertEquals(250.0, session.getCurrentTotal().getAmount(), "One of three items should be free");
+    }
+
+    @Test
+    void testFailedJournalLeavesCashRegisterUnchanged(@TempDir Path directory) throws Exception {
+        InventorySystem inventorySystem = new InventorySystem();
+        inventorySystem.addItem(new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100)));
+        SaleJournal journal = new SaleJournal(directory.resolve("journal.bin"), SaleJournal.FsyncPolicy.NEVER, 0);
+        journal.close();
+        CashRegister cashRegister = new CashRegister();
+        try (PostSalePipeline pipeline = new PostSalePipeline(new AccountingSystem(), inventorySystem, 4, 1, 0, 1)) {
+            Controller injected = new Controller.Builder(inventorySystem, new SaleLogger(pipeline, journal))
+                    .discountSource(new DiscountDatabase(List.of()))
+                    .cashRegister(cashRegister)
+                    .build();
+            SaleSession session = injected.startSale();
+            session.enterItem("1", 1);
+
+            assertThrows(DatabaseException.class, () -> session.makePayment(new Amount(200)),
+                    "A sale that cannot be journaled should not be paid");
+            assertEquals(0, cashRegister.getBalance().getAmount(), "The payment should not reach the cash register");
+            assertEquals(0, pipeline.getSubmittedCount(), "The sale should not reach the external systems");
+        }
+    }
+
+    @Test
+    void testSessionsKeepSeparateSales() throws IdentifierException, DatabaseException {
+        SaleSession firstLane = controller.startSale();
+        SaleSession secondLane = controller.startSale();
+
+        firstLane.enterItem("1", 1);
+        secondLane.enterItem("2", 2);
+
+        assertEquals(125.0, firstLane.getCurrentTotal().getAmount(), "First lane should only contain its own item");
+        assertEquals(112.0, secondLane.getCurrentTotal().getAmount(), "Second lane should only contain its own items");
+        assertEquals(112.0, controller.getCurrentTotal().getAmount(), "Controller should operate on the latest session");
+    }
+
+    @Test
+    void testScanningStaysWithinAllocationBudget() throws Exception {
+        long budgetPerScan = 128;
+        SaleSession session = controller.startSale();
+
+        long bytesPerScan = AllocationMeter.bytesPerRun(20_000, () -> scanAndReadTotals(session));
+
+        assertTrue(bytesPerScan <= budgetPerScan, "Scanning an item allocated " + bytesPerScan + " bytes, budget is " + budgetPerScan);
+    }
+
+    private void scanAndReadTotals(SaleSession session) throws IdentifierException, DatabaseException {
+        ItemDTO item = session.enterItem("1", 1);
+        item.price();
+        session.getOriginalTotal();
+        session.getTotalVAT();
+    }
+}
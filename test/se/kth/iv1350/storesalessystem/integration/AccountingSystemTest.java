@@ -2,12 +2,23 @@ package se.kth.iv1350.storesalessystem.integration;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.PostSalePipeline;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLineDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,4 +42,168 @@ class AccountingSystemTest {
                 "Update accounting should not throw exceptions");
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSalesAreSentInCompressedBatches() throws Exception {
+        try (LocalAccountingServer server = new LocalAccountingServer(0);
+             AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 100, 5, 4, 5000, 10)) {
+            long expectedCents = 0;
+            for (int i = 1; i <= 1000; i++) {
+                SaleInfoDTO sale = saleOf(i);
+                expectedCents += sale.runningTotal().getCents();
+                client.updateAccounting(sale);
+            }
+
+            assertTrue(client.awaitAcknowledged(10_000), "All sales should be acknowledged");
+            assertEquals(1000, server.getRecordedSaleCount());
+            assertEquals(expectedCents, server.getRecordedCents(), "Decoded sales should equal the sent sales");
+            assertTrue(client.getBatchCount() <= 100, "Sales should be sent in batches, not one by one");
+            assertTrue(client.getCompressedBytes() * 2 < client.getUncompressedBytes(),
+                    "Batches should be compressed");
+        }
+    }
+
+    @Test
+    void testLostAcknowledgementsAreSentAgainWithoutDuplicates() throws Exception {
+        try (LocalAccountingServer server = new LocalAccountingServer(0);
+             AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 10, 1, 4, 50, 10)) {
+            server.dropAcknowledgements(2);
+            for (int i = 1; i <= 100; i++) {
+                client.updateAccounting(saleOf(i));
+            }
+
+            assertTrue(client.awaitAcknowledged(10_000), "All sales should be acknowledged");
+            assertTrue(client.getRetransmitCount() >= 2, "Unacknowledged batches should be sent again");
+            assertEquals(100, server.getRecordedSaleCount(), "Every sale should be recorded once");
+            assertTrue(server.getDuplicateSaleCount() > 0, "The server should have received sales twice");
+        }
+    }
+
+    @Test
+    void testClientReconnectsAfterConnectionLoss() throws Exception {
+        try (LocalAccountingServer server = new LocalAccountingServer(20);
+             AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 10, 1, 4, 200, 10)) {
+            for (int i = 1; i <= 50; i++) {
+                client.updateAccounting(saleOf(i));
+            }
+            server.dropConnections();
+            for (int i = 51; i <= 100; i++) {
+                client.updateAccounting(saleOf(i));
+            }
+
+            assertTrue(client.awaitAcknowledged(10_000), "All sales should be acknowledged over a new connection");
+            assertEquals(100, server.getRecordedSaleCount(), "Every sale should be recorded once");
+        }
+    }
+
+    @Test
+    void testCloseWaitsForAcknowledgements() throws Exception {
+        try (LocalAccountingServer server = new LocalAccountingServer(20)) {
+            AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 10, 1, 2, 5000, 10);
+            for (int i = 1; i <= 100; i++) {
+                client.updateAccounting(saleOf(i));
+            }
+            client.close();
+
+            assertEquals(100, client.getAcknowledgedCount(), "Close should wait until all sales are acknowledged");
+            assertEquals(0, client.getInFlightCount());
+            assertThrows(IllegalStateException.class, () -> client.updateAccounting(saleOf(101)));
+        }
+    }
+
+    @Test
+    void testBatchIsRecordedWhenAcknowledged() throws Exception {
+        try (LocalAccountingServer server = new LocalAccountingServer(200);
+             AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 10, 1, 4, 5000, 10)) {
+            CompletableFuture<Void> recorded = client.updateAccounting(List.of(saleOf(1), saleOf(2)));
+
+            assertFalse(recorded.isDone(), "The batch should not be recorded before the server acknowledges it");
+            recorded.get(10, TimeUnit.SECONDS);
+            assertEquals(2, client.getAcknowledgedCount(), "Both sales should be acknowledged");
+        }
+    }
+
+    @Test
+    void testCloseAbandonsSalesWhenServerIsDown() throws Exception {
+        InetSocketAddress address;
+        try (LocalAccountingServer server = new LocalAccountingServer(0)) {
+            address = server.getAddress();
+        }
+        AccountingSystem client = new AccountingSystem(address, 1024, 10, 1, 4, 100, 10);
+        CompletableFuture<Void> recorded = client.updateAccounting(List.of(saleOf(1), saleOf(2)));
+
+        long start = System.nanoTime();
+        assertFalse(client.close(300), "Close should report that sales were abandoned");
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Close should not wait for an unreachable server");
+        assertEquals(2, client.getAbandonedCount());
+        assertTrue(recorded.isCompletedExceptionally(), "The sales should not be reported as recorded");
+    }
+
+    @Test
+    void testPipelineMarksAccountingOnlyWhenAcknowledged(@TempDir Path directory) throws Exception {
+        InetSocketAddress address;
+        try (LocalAccountingServer server = new LocalAccountingServer(0)) {
+            address = server.getAddress();
+        }
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            AccountingSystem client = new AccountingSystem(address, 1024, 10, 1, 4, 100, 10);
+            PostSalePipeline pipeline = new PostSalePipeline(client, new InventorySystem(), 16, 4, 1, 10, journal);
+            journal.commit(saleOf(1));
+            pipeline.submit(saleOf(1));
+
+            assertFalse(pipeline.close(300), "The sale should not count as delivered without an acknowledgement");
+            client.close(0);
+        }
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(1, journal.getUndeliveredSales().size(), "The unacknowledged sale should be left for replay");
+        }
+    }
+
+    @Benchmark
+    void benchmarkPipelinedThroughputOverOneConnection(TestReporter reporter) throws Exception {
+        int sales = 20_000;
+        long latencyMillis = 5;
+        double sequential = measureThroughput(reporter, sales, latencyMillis, 1);
+        double pipelined = measureThroughput(reporter, sales, latencyMillis, 16);
+        double unlimited = measureThroughput(reporter, sales, 0, 16);
+
+        reporter.publishEntry(latencyMillis + " ms latency, one batch in flight, sales/sec",
+                String.format("%.0f", sequential));
+        reporter.publishEntry(latencyMillis + " ms latency, 16 batches in flight, sales/sec",
+                String.format("%.0f", pipelined));
+        reporter.publishEntry("No latency, 16 batches in flight, sales/sec", String.format("%.0f", unlimited));
+        assertTrue(pipelined > sequential * 2, "Pipelining should not wait a round trip for every batch");
+    }
+
+    private double measureThroughput(TestReporter reporter, int sales, long latencyMillis, int maxInFlightBatches)
+            throws Exception {
+        List<SaleInfoDTO> saleInfos = new ArrayList<>(sales);
+        for (int i = 1; i <= sales; i++) {
+            saleInfos.add(saleOf(i));
+        }
+        try (LocalAccountingServer server = new LocalAccountingServer(latencyMillis);
+             AccountingSystem client = new AccountingSystem(server.getAddress(), 1024, 100, 1, maxInFlightBatches,
+                     5000, 10)) {
+            long start = System.nanoTime();
+            for (SaleInfoDTO sale : saleInfos) {
+                client.updateAccounting(sale);
+            }
+            assertTrue(client.awaitAcknowledged(60_000), "All sales should be acknowledged");
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(sales, server.getRecordedSaleCount());
+            reporter.publishEntry("Bytes per sale, uncompressed/compressed",
+                    client.getUncompressedBytes() / sales + "/" + client.getCompressedBytes() / sales);
+            reporter.publishEntry("Average acknowledgement ms", String.format("%.2f", client.getAverageAckLatencyNanos() / 1e6));
+            return sales / (elapsed / 1_000_000_000.0);
+        }
+    }
+
+    private static SaleInfoDTO saleOf(long saleID) {
+        ItemDTO milk = new ItemDTO("1", "Milk", "1 l", 0.25, new Amount(12.9));
+        ItemDTO bread = new ItemDTO("2", "Bread", "Rye", 0.12, new Amount(25));
+        int quantity = (int) (saleID % 3) + 1;
+        return new SaleInfoDTO(saleID, Amount.ofCents(1290L * quantity + 2500), 12345, Amount.ofCents(590),
+                SaleLines.of(List.of(new SaleLineDTO(milk, quantity), new SaleLineDTO(bread, 1))));
+    }
+}
@@ -2,13 +2,24 @@ package se.kth.iv1350.storesalessystem.integration;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
 import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,4 +47,225 @@ class DiscountDatabaseTest {
         assertEquals("Percentage Discount", discountInfo.getDiscountType(), "Should be percentage discount");
     }
 
-}
\ No newline at end of file
+    @Test
+    void testDefaultRulesKeepStandardDiscounts() {
+        assertEquals("Fixed Discount", discountDatabase.findDiscount(25000, saleInfo).getDiscountType(),
+                "Customers 20000-29999 should get the fixed discount");
+        assertEquals("Premium Discount", discountDatabase.findDiscount(39999, saleInfo).getDiscountType(),
+                "Customers 30000-39999 should get the premium discount");
+        assertFalse(discountDatabase.findDiscount(40000, saleInfo).isApplicable(),
+                "Customers outside all ranges should get no discount");
+        assertFalse(discountDatabase.findDiscount(9999, saleInfo).isApplicable(),
+                "Customers below all ranges should get no discount");
+    }
+
+    @Test
+    void testFirstMatchingRuleIsUsed() {
+        Instant campaignStart = Instant.parse("2025-06-01T00:00:00Z");
+        Instant campaignEnd = Instant.parse("2025-07-01T00:00:00Z");
+        DiscountInfoDTO summer = new DiscountInfoDTO(new Amount(0), 20, "Summer Campaign");
+        DiscountInfoDTO bigBasket = new DiscountInfoDTO(new Amount(30), 0, "Big Basket");
+        DiscountInfoDTO member = new DiscountInfoDTO(new Amount(0), 5, "Member");
+        DiscountDatabase database = new DiscountDatabase(List.of(
+                new DiscountRule(100, 200, Set.of("1"), 0, campaignStart, campaignEnd, summer),
+                new DiscountRule(150, 300, Set.of(), 50_000, Instant.MIN, Instant.MAX, bigBasket),
+                new DiscountRule(0, 1000, member)));
+        Instant duringCampaign = Instant.parse("2025-06-15T12:00:00Z");
+        Instant afterCampaign = Instant.parse("2025-08-01T12:00:00Z");
+
+        assertSame(summer, database.findDiscount(120, saleInfo, duringCampaign), "Campaign rule should apply first");
+        assertSame(member, database.findDiscount(120, saleInfo, afterCampaign), "Expired campaign should be skipped");
+        assertSame(member, database.findDiscount(250, saleInfo, duringCampaign), "Small basket should not get the basket discount");
+        SaleInfoDTO bigSale = new SaleInfoDTO(2, new Amount(600), List.of(), 250, new Amount(120));
+        assertSame(bigBasket, database.findDiscount(250, bigSale, duringCampaign), "Big basket should get the basket discount");
+        assertEquals(3, database.findCandidateRules(160).size(), "All covering rules should be candidates");
+        assertEquals(1, database.findCandidateRules(500).size(), "Only the wide rule should cover customer 500");
+    }
+
+    @Test
+    void testRulesAreReloadedFromFile(@TempDir Path directory) throws IOException {
+        Path ruleFile = directory.resolve("rules.csv");
+        Files.writeString(ruleFile, """
+                # from,to,items,minimumTotal,validFrom,validUntil,amount,percentage,description
+                500,599,,,,,,15,Staff Discount
+                600,699,1;2,99.50,2025-01-01T00:00:00Z,2030-01-01T00:00:00Z,10.25,,Bundle, with comma
+                """);
+        DiscountDatabase database = new DiscountDatabase(List.of());
+
+        assertEquals(2, database.reloadRules(ruleFile), "Both rules should be loaded");
+        DiscountInfoDTO staff = database.findDiscount(550, saleInfo);
+        assertEquals(15, staff.getDiscountPercentage(), "Staff discount should be loaded");
+        assertFalse(database.dependsOnSale(550), "Staff discount should not depend on the sale");
+        assertTrue(database.dependsOnSale(600), "Bundle discount should depend on the sale");
+        DiscountRule bundle = database.findCandidateRules(600).getFirst();
+        assertEquals(Set.of("1", "2"), bundle.requiredItemIDs(), "Required items should be loaded");
+        assertEquals(9950, bundle.minimumTotalCents(), "Minimum total should be loaded in cents");
+        assertEquals(1025, bundle.discount().getDiscountAmount().getCents(), "Discount amount should be loaded in cents");
+        assertEquals("Bundle, with comma", bundle.discount().getDiscountType(), "Description may hold commas");
+
+        Files.writeString(ruleFile, "1,2,not a rule\n");
+        assertThrows(IOException.class, () -> database.reloadRules(ruleFile), "Malformed rules should be rejected");
+        assertEquals(2, database.getRuleCount(), "Rules should be kept when a reload fails");
+    }
+
+    @Test
+    void testAmountsWithMoreThanTwoDecimalsAreRejected(@TempDir Path directory) throws IOException {
+        Path ruleFile = directory.resolve("rules.csv");
+        DiscountDatabase database = new DiscountDatabase(List.of());
+
+        Files.writeString(ruleFile, "# comment\n600,699,,12.345,,,,10,Too precise minimum\n");
+        IOException minimum = assertThrows(IOException.class, () -> database.reloadRules(ruleFile),
+                "Minimum total with three decimals should be a malformed rule");
+        assertTrue(minimum.getMessage().contains("line 2"), "The malformed line should be reported");
+
+        Files.writeString(ruleFile, "600,699,,,,,0.001,,Too precise amount\n");
+        assertThrows(IOException.class, () -> database.reloadRules(ruleFile),
+                "Discount amount with three decimals should be a malformed rule");
+        Files.writeString(ruleFile, "600,699,,,,,99999999999999999999,,Too large amount\n");
+        assertThrows(IOException.class, () -> database.reloadRules(ruleFile), "Too large amount should be a malformed rule");
+        assertEquals(0, database.getRuleCount(), "Rules should be kept when a reload fails");
+    }
+
+    @Test
+    void testLookupsWithTenThousandRules() {
+        Random random = new Random(42);
+        List<DiscountRule> rules = randomRules(random);
+        DiscountDatabase database = new DiscountDatabase(rules);
+
+        for (int i = 0; i < 10_000; i++) {
+            int customerID = random.nextInt(1_001_000);
+            DiscountInfoDTO expected = new DiscountInfoDTO();
+            for (DiscountRule rule : rules) {
+                if (rule.coversCustomer(customerID)) {
+                    expected = rule.discount();
+                    break;
+                }
+            }
+            assertEquals(expected, database.findDiscount(customerID, saleInfo), "Index should agree with a linear scan");
+        }
+    }
+
+    @Test
+    void testLookupsWithTenThousandOverlappingRules() {
+        Random random = new Random(42);
+        List<DiscountRule> rules = overlappingRules(random);
+        DiscountDatabase database = new DiscountDatabase(rules);
+        Instant now = Instant.now();
+
+        for (int i = 0; i < 1_000; i++) {
+            int customerID = random.nextInt(1_001_000);
+            List<DiscountRule> covering = rules.stream().filter(rule -> rule.coversCustomer(customerID)).toList();
+            DiscountInfoDTO expected = covering.stream().filter(rule -> rule.appliesTo(saleInfo, now))
+                    .map(DiscountRule::discount).findFirst().orElse(new DiscountInfoDTO());
+            assertEquals(covering, database.findCandidateRules(customerID), "Candidates should be in order of priority");
+            assertEquals(expected, database.findDiscount(customerID, saleInfo, now),
+                    "Index should agree with a linear scan");
+        }
+    }
+
+    @Benchmark
+    void benchmarkLookupsWithTenThousandRules(TestReporter reporter) {
+        Random random = new Random(42);
+        reportLookups(reporter, "disjoint", new DiscountDatabase(randomRules(random)), random);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        DiscountDatabase overlapping = new DiscountDatabase(overlappingRules(random));
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        reporter.publishEntry("Approximate KiB for " + overlapping.getRuleCount() + " overlapping rules",
+                String.valueOf(Math.max(0, usedAfter - usedBefore) / 1024));
+        reportLookups(reporter, "overlapping", overlapping, random);
+    }
+
+    private void reportLookups(TestReporter reporter, String kind, DiscountDatabase database, Random random) {
+        int lookups = 2_000_000;
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (database.findDiscount(random.nextInt(1_001_000), saleInfo).isApplicable()) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(found > 0, "Some customers should get a discount");
+        reporter.publishEntry("Discount lookups/sec with " + database.getRuleCount() + " " + kind + " rules",
+                String.format("%.0f", lookups / (elapsed / 1e9)));
+    }
+
+    @Benchmark
+    void benchmarkConcurrentSingletonAccess(TestReporter reporter) throws InterruptedException {
+        int threads = 8;
+        int callsPerThread = 2_000_000;
+        Object monitor = new Object();
+        DiscountDatabase[] lockedInstance = {null};
+
+        long locked = timeConcurrentCalls(threads, callsPerThread, () -> {
+            synchronized (monitor) {
+                if (lockedInstance[0] == null) {
+                    lockedInstance[0] = DiscountDatabase.getInstance();
+                }
+                return lockedInstance[0];
+            }
+        });
+        long holder = timeConcurrentCalls(threads, callsPerThread, DiscountDatabase::getInstance);
+
+        reporter.publishEntry("Singleton access from " + threads + " threads, synchronized ms",
+                String.valueOf(locked / 1_000_000));
+        reporter.publishEntry("Singleton access from " + threads + " threads, holder ms",
+                String.valueOf(holder / 1_000_000));
+    }
+
+    private static List<DiscountRule> randomRules(Random random) {
+        List<DiscountRule> rules = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int from = random.nextInt(1_000_000);
+            int to = from + random.nextInt(500);
+            rules.add(new DiscountRule(from, to, new DiscountInfoDTO(new Amount(0), 1 + i % 50, "Campaign " + i)));
+        }
+        return rules;
+    }
+
+    /**
+     * Creates rules that nearly all cover nearly all customers, of which only every hundredth applies to
+     * the test sale, so that a lookup has to look past many covering rules.
+     */
+    private static List<DiscountRule> overlappingRules(Random random) {
+        List<DiscountRule> rules = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int from = random.nextInt(1_000);
+            int to = 1_000_000 - random.nextInt(1_000);
+            Set<String> requiredItemIDs = i % 100 == 99 ? Set.of("1") : Set.of("absent");
+            rules.add(new DiscountRule(from, to, requiredItemIDs, 0, Instant.MIN, Instant.MAX,
+                    new DiscountInfoDTO(new Amount(0), 1 + i % 50, "Campaign " + i)));
+        }
+        return rules;
+    }
+
+    private static long timeConcurrentCalls(int threads, int callsPerThread,
+                                            Supplier<DiscountDatabase> accessor)
+            throws InterruptedException {
+        DiscountDatabase expected = DiscountDatabase.getInstance();
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < callsPerThread; i++) {
+                    if (accessor.get() != expected) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(0, mismatches.get(), "Every caller should get the same instance");
+        return elapsed;
+    }
+}
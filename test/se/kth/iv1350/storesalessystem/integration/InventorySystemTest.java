@@ -2,12 +2,22 @@ package se.kth.iv1350.storesalessystem.integration;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.Amount;
 import se.kth.iv1350.storesalessystem.model.IdentifierException;
 import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLineDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,4 +77,136 @@ class InventorySystemTest {
         assertDoesNotThrow(() -> inventorySystem.updateInventory(saleInfo),
                 "Update inventory should not throw exceptions");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUpdateInventoryDecreasesStockByQuantitySold() {
+        inventorySystem.setStockLevel("1", 10);
+
+        inventorySystem.updateInventory(saleOf(new SaleLineDTO(testItem, 3)));
+
+        assertEquals(7, inventorySystem.getStockLevel("1"), "Stock should decrease by the quantity sold");
+        assertEquals(0, inventorySystem.getOversoldUnits(), "Nothing should be oversold");
+    }
+
+    @Test
+    void testUpdateInventorySkipsUntrackedItems() {
+        ItemDTO untracked = new ItemDTO("2", "Untracked", "No stock level", 0.12, new Amount(50));
+
+        inventorySystem.updateInventory(saleOf(new SaleLineDTO(untracked, 5)));
+
+        assertEquals(0, inventorySystem.getStockLevel("2"), "Untracked item should have no stock level");
+        assertEquals(0, inventorySystem.getOversoldUnits(), "Untracked items should not count as oversold");
+    }
+
+    @Test
+    void testUpdateInventoryCountsOversoldUnits() {
+        inventorySystem.setStockLevel("1", 2);
+
+        inventorySystem.updateInventory(saleOf(new SaleLineDTO(testItem, 5)));
+        inventorySystem.updateInventory(saleOf(new SaleLineDTO(testItem, 1)));
+
+        assertEquals(-4, inventorySystem.getStockLevel("1"), "Stock should go below zero when oversold");
+        assertEquals(4, inventorySystem.getOversoldUnits(), "Units sold beyond the stock should be counted");
+    }
+
+    @Test
+    void testUpdateInventoryWithBatchMatchesSingleSales() {
+        InventorySystem singleSales = new InventorySystem();
+        inventorySystem.setStockLevel("1", 2);
+        singleSales.setStockLevel("1", 2);
+        List<SaleInfoDTO> batch = List.of(saleOf(new SaleLineDTO(testItem, 5)), saleOf(new SaleLineDTO(testItem, 1)));
+
+        inventorySystem.updateInventory(batch);
+        for (SaleInfoDTO sale : batch) {
+            singleSales.updateInventory(sale);
+        }
+
+        assertEquals(singleSales.getStockLevel("1"), inventorySystem.getStockLevel("1"),
+                "A batch should leave the same stock as its sales one by one");
+        assertEquals(singleSales.getOversoldUnits(), inventorySystem.getOversoldUnits(),
+                "A batch should count the same oversold units as its sales one by one");
+    }
+
+    @Test
+    void testAddStock() {
+        inventorySystem.addStock("1", 4);
+        inventorySystem.addStock("1", 6);
+
+        assertEquals(10, inventorySystem.getStockLevel("1"), "Added stock should accumulate");
+    }
+
+    @Test
+    void testConcurrentUpdatesGiveExactStockLevels() throws Exception {
+        int threads = 16;
+        int salesPerThread = 2_000;
+        int itemCount = 64;
+        long initialStock = 50_000;
+        updateConcurrently(threads, salesPerThread, itemCount, initialStock);
+
+        long sales = (long) threads * salesPerThread;
+        long oversold = 0;
+        for (int i = 0; i < itemCount; i++) {
+            long expected = initialStock - sales * (1 + i % 3);
+            assertEquals(expected, inventorySystem.getStockLevel("SKU" + i), "Stock of SKU" + i + " should be exact");
+            oversold += Math.max(0, -expected);
+        }
+        assertEquals(oversold, inventorySystem.getOversoldUnits(), "Oversold units should be exact");
+    }
+
+    @Benchmark
+    void benchmarkConcurrentUpdates(TestReporter reporter) throws Exception {
+        int threads = 16;
+        int salesPerThread = 20_000;
+        int itemCount = 64;
+        updateConcurrently(threads, salesPerThread, itemCount, 0);
+
+        long elapsed = updateConcurrently(threads, salesPerThread, itemCount, 0);
+
+        reporter.publishEntry("Line items/sec committed from " + threads + " threads",
+                String.format("%.0f", (double) threads * salesPerThread * itemCount / (elapsed / 1e9)));
+    }
+
+    /**
+     * Sets the stock of the specified number of items, and then updates the inventory with the same sale
+     * of all those items from several threads at once.
+     *
+     * @return The time taken by the updates, in nanoseconds.
+     */
+    private long updateConcurrently(int threads, int salesPerThread, int itemCount, long initialStock)
+            throws Exception {
+        List<SaleLineDTO> lines = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            ItemDTO item = new ItemDTO("SKU" + i, "Item " + i, "Stress item", 0.25, new Amount(10));
+            inventorySystem.setStockLevel(item.itemID(), initialStock);
+            lines.add(new SaleLineDTO(item, 1 + i % 3));
+        }
+        SaleInfoDTO sale = new SaleInfoDTO(1, new Amount(100), 0, new Amount(25), SaleLines.of(lines));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int s = 0; s < salesPerThread; s++) {
+                        inventorySystem.updateInventory(sale);
+                    }
+                    return null;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private SaleInfoDTO saleOf(SaleLineDTO line) {
+        return new SaleInfoDTO(1, new Amount(100), 0, new Amount(25), SaleLines.of(List.of(line)));
+    }
+}
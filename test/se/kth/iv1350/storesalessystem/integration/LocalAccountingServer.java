@@ -0,0 +1,156 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+
+/**
+ * A stand-in for the external accounting server, listening on a local port. It decodes every batch,
+ * records each sale once by its sale ID and acknowledges the batch after a simulated network latency.
+ * Acknowledgements can be dropped and connections cut, to test how the client recovers.
+ */
+class LocalAccountingServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final long latencyMillis;
+    private final ScheduledExecutorService acknowledger = Executors.newSingleThreadScheduledExecutor();
+    private final Set<Long> recordedSaleIDs = ConcurrentHashMap.newKeySet();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder recordedCents = new LongAdder();
+    private final LongAdder duplicateSales = new LongAdder();
+    private final LongAdder receivedBatches = new LongAdder();
+    private final AtomicInteger acknowledgementsToDrop = new AtomicInteger();
+
+    /**
+     * Starts a server on a free local port.
+     *
+     * @param latencyMillis The time from a batch being received until it is acknowledged.
+     */
+    LocalAccountingServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptConnections, "accounting-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    InetSocketAddress getAddress() {
+        return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+    }
+
+    long getRecordedSaleCount() {
+        return recordedSaleIDs.size();
+    }
+
+    long getRecordedCents() {
+        return recordedCents.sum();
+    }
+
+    long getDuplicateSaleCount() {
+        return duplicateSales.sum();
+    }
+
+    long getReceivedBatchCount() {
+        return receivedBatches.sum();
+    }
+
+    /**
+     * Makes the server record the next batches without acknowledging them.
+     */
+    void dropAcknowledgements(int batches) {
+        acknowledgementsToDrop.set(batches);
+    }
+
+    /**
+     * Cuts all open connections, as if the network failed.
+     */
+    void dropConnections() throws IOException {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+        acknowledger.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        try {
+            while (true) {
+                Socket connection = serverSocket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+                Thread reader = new Thread(() -> serve(connection), "accounting-server-connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (IOException e) {
+            // The server has been closed.
+        }
+    }
+
+    private void serve(Socket connection) {
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (true) {
+                long batchID = in.readLong();
+                int saleCount = in.readInt();
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                record(SaleInfoCodec.decompressBatch(compressed, saleCount, inflater));
+                receivedBatches.increment();
+                if (acknowledgementsToDrop.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                    continue;
+                }
+                acknowledger.schedule(() -> acknowledge(out, batchID), latencyMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            // The connection has been closed.
+        } finally {
+            inflater.end();
+            connections.remove(connection);
+        }
+    }
+
+    private void record(List<SaleInfoDTO> sales) {
+        for (SaleInfoDTO sale : sales) {
+            if (recordedSaleIDs.add(sale.saleID())) {
+                recordedCents.add(sale.runningTotal().getCents());
+            } else {
+                duplicateSales.increment();
+            }
+        }
+    }
+
+    private void acknowledge(DataOutputStream out, long batchID) {
+        synchronized (out) {
+            try {
+                out.writeLong(batchID);
+                out.flush();
+            } catch (IOException e) {
+                // The connection has been closed; the client sends the batch again.
+            }
+        }
+    }
+}
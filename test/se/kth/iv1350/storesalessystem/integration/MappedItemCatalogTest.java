@@ -0,0 +1,136 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.IdentifierException;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedItemCatalogTest {
+    private static final int ITEM_COUNT = 200_000;
+
+    @TempDir
+    Path tempDir;
+    private Path catalogFile;
+    private List<ItemDTO> items;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        items = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add(new ItemDTO("SKU" + i, "Item " + i, "Description of item " + i, i % 2 == 0 ? 0.25 : 0.12,
+                    Amount.ofCents(100 + i)));
+        }
+        catalogFile = tempDir.resolve("catalog.bin");
+        MappedItemCatalog.write(items, catalogFile);
+    }
+
+    @Test
+    void testFindItemReturnsStoredItem() throws IOException {
+        MappedItemCatalog catalog = new MappedItemCatalog(catalogFile);
+
+        assertEquals(ITEM_COUNT, catalog.size(), "Catalog should contain all items");
+        for (ItemDTO expected : items) {
+            assertEquals(expected, catalog.findItem(expected.itemID()), "Item read from catalog should match the written item");
+        }
+    }
+
+    @Test
+    void testFindItemReturnsNullForMissingItem() throws IOException {
+        MappedItemCatalog catalog = new MappedItemCatalog(catalogFile);
+
+        assertNull(catalog.findItem("NONEXISTENT"), "Missing item should not be found");
+        assertNull(catalog.findItem("SKU" + ITEM_COUNT), "Missing item should not be found");
+    }
+
+    @Test
+    void testInvalidFileIsRejected() throws IOException {
+        Path invalidFile = tempDir.resolve("invalid.bin");
+        Files.writeString(invalidFile, "not a catalog");
+
+        assertThrows(IOException.class, () -> new MappedItemCatalog(invalidFile), "File without catalog header should be rejected");
+    }
+
+    @Test
+    void testDamagedHeaderIsRejected() throws IOException {
+        assertHeaderRejected(12, 3, "Slot count that is not a power of two should be rejected");
+        assertHeaderRejected(12, 0, "Index without slots should be rejected");
+        assertHeaderRejected(8, Integer.MAX_VALUE, "Index without empty slots should be rejected");
+        assertHeaderRejected(20, Integer.MAX_VALUE, "Index beyond the end of the file should be rejected");
+        assertHeaderRejected(20, 0, "Index overlapping the header should be rejected");
+    }
+
+    private void assertHeaderRejected(int position, int value, String message) throws IOException {
+        Path damagedFile = tempDir.resolve("damaged.bin");
+        MappedItemCatalog.write(items.subList(0, 10), damagedFile);
+        try (FileChannel channel = FileChannel.open(damagedFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+
+        assertThrows(IOException.class, () -> new MappedItemCatalog(damagedFile), message);
+    }
+
+    @Test
+    void testBuildFromCsv() throws IOException {
+        Path csvFile = tempDir.resolve("items.csv");
+        Files.writeString(csvFile, """
+                # itemID,name,description,VAT rate,price
+                A1,Steak,Japanese Wagyu 250g,0.25,799.0
+                ABC123,Eggs,"12-Pack Eggs, free range",0.12,129.90
+                """);
+        Path builtCatalog = tempDir.resolve("built.bin");
+
+        assertEquals(2, MappedItemCatalog.buildFromCsv(csvFile, builtCatalog), "Both items should be written");
+
+        ItemDTO eggs = new MappedItemCatalog(builtCatalog).findItem("ABC123");
+        assertEquals("12-Pack Eggs, free range", eggs.description(), "Quoted field should keep its comma");
+        assertEquals(0.12, eggs.tax(), "VAT rate should match");
+        assertEquals(12990, eggs.price().getCents(), "Price should match");
+    }
+
+    @Test
+    void testInventorySystemUsesCatalog() throws IOException, IdentifierException, DatabaseException {
+        InventorySystem inventorySystem = new InventorySystem(new MappedItemCatalog(catalogFile));
+        ItemDTO overriding = new ItemDTO("SKU1", "Overriding Item", "Description", 0.06, new Amount(1));
+        inventorySystem.addItem(overriding);
+
+        assertEquals(items.get(2), inventorySystem.getItemInfo("SKU2"), "Item should be found in the catalog");
+        assertEquals(overriding, inventorySystem.getItemInfo("SKU1"), "Added item should take precedence over the catalog");
+        assertThrows(IdentifierException.class, () -> inventorySystem.getItemInfo("NONEXISTENT"), "Missing item should still throw");
+    }
+
+    @Benchmark
+    void benchmarkLookupLatency(TestReporter reporter) throws IOException {
+        MappedItemCatalog catalog = new MappedItemCatalog(catalogFile);
+        SplittableRandom random = new SplittableRandom(1);
+        int lookups = 200_000;
+        long[] latencies = new long[lookups];
+        for (int i = 0; i < lookups; i++) {
+            String itemID = "SKU" + random.nextInt(ITEM_COUNT);
+            long start = System.nanoTime();
+            ItemDTO item = catalog.findItem(itemID);
+            latencies[i] = System.nanoTime() - start;
+            assertNotNull(item, "Every looked up item should exist");
+        }
+        Arrays.sort(latencies);
+        reporter.publishEntry("Lookup p50 ns over " + ITEM_COUNT + " items", String.valueOf(latencies[lookups / 2]));
+        reporter.publishEntry("Lookup p99 ns over " + ITEM_COUNT + " items",
+                String.valueOf(latencies[lookups * 99 / 100]));
+    }
+}
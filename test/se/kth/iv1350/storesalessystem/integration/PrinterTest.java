@@ -0,0 +1,195 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptItemDTO;
+import se.kth.iv1350.storesalessystem.util.AllocationMeter;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinterTest {
+    private InMemoryReceiptSink sink;
+    private Printer printer;
+    private ReceiptDTO receiptData;
+
+    @BeforeEach
+    void setUp() {
+        sink = new InMemoryReceiptSink();
+        printer = new Printer(sink);
+        List<ReceiptItemDTO> items = List.of(
+                new ReceiptItemDTO(new ItemDTO("1", "Milk", "1 l", 0.25, new Amount(12.9)), 2),
+                new ReceiptItemDTO(new ItemDTO("2", "Bread", "Rye", 0.12, new Amount(25)), 1));
+        receiptData = new ReceiptDTO("2025-03-14 09:26:53", items, Amount.ofCents(6029), Amount.ofCents(945),
+                new Amount(100), Amount.ofCents(3971), "10% discount");
+    }
+
+    @Test
+    void testReceiptMatchesFormerLayout() {
+        printer.printReceipt(receiptData);
+
+        assertEquals(printLikeFormerPrinter(receiptData), sink.getContents(), "Receipt layout should not change");
+        assertEquals(1, sink.getReceiptCount());
+    }
+
+    @Test
+    void testAmountFormatting() {
+        assertEquals("0:00", formatAmount(0));
+        assertEquals("0:05", formatAmount(5));
+        assertEquals("12:50", formatAmount(1250));
+        assertEquals("-12:50", formatAmount(-1250));
+        assertEquals("-0:05", formatAmount(-5));
+        assertEquals("92233720368547758:07", formatAmount(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testNamesAreWrittenAsUtf8() {
+        String name = "Räksmörgås 🍤";
+        ReceiptDTO receipt = new ReceiptDTO("2025-03-14 09:26:53",
+                List.of(new ReceiptItemDTO(new ItemDTO("3", name, "Sandwich", 0.12, new Amount(59)), 1)),
+                new Amount(66.08), new Amount(7.08), new Amount(70), new Amount(3.92), "No discount");
+
+        printer.printReceipt(receipt);
+
+        assertTrue(sink.getContents().contains(name + "\t\t 1 x 59.00\t\t 59:00 SEK"), "Name should survive encoding");
+        assertFalse(sink.getContents().contains("Discount applied"), "No discount should not be printed");
+    }
+
+    @Test
+    void testPromotionsArePrinted() {
+        ReceiptDTO receipt = new ReceiptDTO("2025-03-14 09:26:53",
+                List.of(new ReceiptItemDTO(new ItemDTO("1", "Milk", "1 l", 0.25, new Amount(10)), 3)),
+                new Amount(25), new Amount(5), new Amount(30), new Amount(5), "No discount",
+                List.of("3 for 2 on item 1"), new Amount(12.5));
+
+        printer.printReceipt(receipt);
+
+        assertTrue(sink.getContents().contains("Promotion: 3 for 2 on item 1"), "The promotion should be printed");
+        assertTrue(sink.getContents().contains("Promotion reduction: -12:50 SEK"), "The reduction should be printed");
+    }
+
+    @Test
+    void testFileSinkAppendsReceipts(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("receipts.txt");
+        try (FileReceiptSink fileSink = new FileReceiptSink(file)) {
+            Printer filePrinter = new Printer(fileSink);
+            filePrinter.printReceipt(receiptData);
+            filePrinter.printReceipt(receiptData);
+        }
+
+        String expected = printLikeFormerPrinter(receiptData);
+        assertEquals(expected + expected, Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testLargeReceiptGrowsBuffer() {
+        List<ReceiptItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(new ReceiptItemDTO(new ItemDTO(String.valueOf(i), "Item " + i, "Description", 0.25, new Amount(i)), 1));
+        }
+        ReceiptDTO largeReceipt = new ReceiptDTO("2025-03-14 09:26:53", items, new Amount(1), new Amount(1),
+                new Amount(1), new Amount(0), "No discount");
+
+        printer.printReceipt(largeReceipt);
+        printer.printReceipt(receiptData);
+
+        assertEquals(printLikeFormerPrinter(largeReceipt) + printLikeFormerPrinter(receiptData), sink.getContents());
+    }
+
+    @Test
+    void testRendererAllocatesLessThanFormerPrinter() throws Exception {
+        int receipts = 50_000;
+        PrintStream discarded = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        Printer discardingPrinter = new Printer(receipt -> receipt.position(receipt.limit()));
+
+        long formerBytes = AllocationMeter.bytesPerRun(receipts, () -> printLikeFormerPrinter(receiptData, discarded));
+        long rendererBytes = AllocationMeter.bytesPerRun(receipts, () -> discardingPrinter.printReceipt(receiptData));
+
+        assertTrue(rendererBytes * 10 < formerBytes, "Rendering a receipt allocated " + rendererBytes
+                + " bytes, the former printer " + formerBytes);
+    }
+
+    @Benchmark
+    void benchmarkReceiptsPerSecond(TestReporter reporter) throws Exception {
+        int receipts = 50_000;
+        PrintStream discarded = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        Printer discardingPrinter = new Printer(receipt -> receipt.position(receipt.limit()));
+
+        long formerBytes = AllocationMeter.bytesPerRun(receipts, () -> printLikeFormerPrinter(receiptData, discarded));
+        long formerNanos = timeReceipts(receipts, () -> printLikeFormerPrinter(receiptData, discarded));
+        long rendererBytes = AllocationMeter.bytesPerRun(receipts, () -> discardingPrinter.printReceipt(receiptData));
+        long rendererNanos = timeReceipts(receipts, () -> discardingPrinter.printReceipt(receiptData));
+
+        reporter.publishEntry("Former printer receipts/sec", String.format("%.0f", receipts / (formerNanos / 1e9)));
+        reporter.publishEntry("Former printer bytes/receipt", String.valueOf(formerBytes));
+        reporter.publishEntry("Receipt renderer receipts/sec", String.format("%.0f", receipts / (rendererNanos / 1e9)));
+        reporter.publishEntry("Receipt renderer bytes/receipt", String.valueOf(rendererBytes));
+    }
+
+    private static long timeReceipts(int receipts, Runnable printing) {
+        long start = System.nanoTime();
+        for (int i = 0; i < receipts; i++) {
+            printing.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String formatAmount(long cents) {
+        StringBuilder text = new StringBuilder();
+        ReceiptRenderer.appendAmount(text, cents, ':');
+        return text.toString();
+    }
+
+    private static String printLikeFormerPrinter(ReceiptDTO receiptData) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        printLikeFormerPrinter(receiptData, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The receipt printing of the former printer, writing to the specified stream instead of the
+     * standard output, in a locale with a decimal point.
+     */
+    private static void printLikeFormerPrinter(ReceiptDTO receiptData, PrintStream out) {
+        out.println("------------------------ Begin receipt ------------------------");
+        out.println("Time of Sale: " + receiptData.dateTime().substring(0, 10) + " "
+                + receiptData.dateTime().substring(11, 16) + "\n");
+        for (ReceiptItemDTO item : receiptData.items()) {
+            out.printf(Locale.ROOT, "%s\t\t %d x %.2f\t\t %s SEK%n",
+                    item.item().name(),
+                    item.quantity(),
+                    item.item().price().getAmount(),
+                    formerFormatAmount(item.getTotalPrice().getAmount()));
+        }
+        out.println();
+        out.println("Total: " + formerFormatAmount(receiptData.totalAmount().getAmount()) + " SEK");
+        out.println("VAT: " + formerFormatAmount(receiptData.totalVAT().getAmount()) + " SEK");
+        if (receiptData.discountDescription() != null && !receiptData.discountDescription().equals("No discount")) {
+            out.println("Discount applied: " + receiptData.discountDescription());
+        }
+        out.println();
+        out.println("Cash: " + formerFormatAmount(receiptData.totalPaid().getAmount()) + " SEK");
+        out.println("Change: " + formerFormatAmount(receiptData.change().getAmount()) + " SEK");
+        out.println("------------------------ End receipt --------------------------");
+    }
+
+    private static String formerFormatAmount(double amount) {
+        return String.format(Locale.ROOT, "%.2f", amount).replace(".", ":");
+    }
+}
@@ -0,0 +1,286 @@
+package se.kth.iv1350.storesalessystem.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLineDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaleJournalTest {
+    private static final ItemDTO ITEM = new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testUndeliveredSalesSurviveReopening() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            journal.commit(saleOf(1, 2));
+            journal.commit(saleOf(2, 3));
+            journal.markDelivered(1, SaleJournal.Destination.INVENTORY);
+            journal.markDelivered(1, SaleJournal.Destination.ACCOUNTING);
+        }
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            List<SaleInfoDTO> undelivered = journal.getUndeliveredSales();
+            assertEquals(1, undelivered.size(), "Only the undelivered sale should be found");
+            SaleInfoDTO sale = undelivered.getFirst();
+            assertEquals(saleOf(2, 3), sale, "The journaled sale should equal the committed sale");
+            assertEquals(0, journal.getDiscardedBytes(), "Nothing should be discarded from a clean journal");
+        }
+    }
+
+    @Test
+    void testReplayDeliversUndeliveredSalesOnce() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            journal.commit(saleOf(1, 2));
+            journal.commit(saleOf(2, 3));
+        }
+        InventorySystem inventory = new InventorySystem();
+        inventory.setStockLevel("1", 10);
+        CountingAccountingSystem accounting = new CountingAccountingSystem();
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(2, journal.replay(accounting, inventory), "Both sales should be replayed");
+        }
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(0, journal.replay(accounting, inventory), "Replayed sales should not be replayed again");
+        }
+
+        assertEquals(2, accounting.received.get(), "Accounting should receive each sale once");
+        assertEquals(5, inventory.getStockLevel("1"), "Inventory should be updated with each sale once");
+    }
+
+    @Test
+    void testReplaySkipsSystemsThatReceivedTheSale() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            journal.commit(saleOf(1, 2));
+            journal.markDelivered(1, SaleJournal.Destination.INVENTORY);
+        }
+        InventorySystem inventory = new InventorySystem();
+        inventory.setStockLevel("1", 10);
+        CountingAccountingSystem accounting = new CountingAccountingSystem();
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(1, journal.getUndeliveredSales().size(), "The sale has not reached accounting");
+            assertEquals(1, journal.replay(accounting, inventory), "The sale should be replayed");
+        }
+
+        assertEquals(1, accounting.received.get(), "Accounting should receive the sale");
+        assertEquals(10, inventory.getStockLevel("1"), "Inventory should not be updated with the sale again");
+    }
+
+    @Test
+    void testPromotionReductionSurvivesReopening() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        SaleInfoDTO sale = saleOf(1, 3);
+        SaleInfoDTO promoted = new SaleInfoDTO(sale.saleID(), sale.runningTotal(), sale.customerID(),
+                Amount.ofCents(5000), sale.lines(), Amount.ofCents(12500));
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            journal.commit(promoted);
+        }
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(List.of(promoted), journal.getUndeliveredSales(), "The reduction should be journaled");
+        }
+    }
+
+    @Test
+    void testTornRecordAtEndIsDiscarded() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            journal.commit(saleOf(1, 1));
+            journal.commit(saleOf(2, 1));
+        }
+        long fullSize = Files.size(file);
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.setLength(fullSize - 5);
+        }
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            assertEquals(1, journal.getUndeliveredSales().size(), "Only the complete record should be read");
+            assertTrue(journal.getDiscardedBytes() > 0, "The torn record should be discarded");
+            journal.commit(saleOf(3, 1));
+        }
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            List<Long> saleIDs = journal.getUndeliveredSales().stream().map(SaleInfoDTO::saleID).toList();
+            assertEquals(List.of(1L, 3L), saleIDs, "Records appended after recovery should be readable");
+        }
+    }
+
+    @Test
+    void testDamagedRecordIsDetected() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            journal.commit(saleOf(1, 1));
+            journal.commit(saleOf(2, 1));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(raw.length() - 1);
+            int last = raw.read();
+            raw.seek(raw.length() - 1);
+            raw.write(last ^ 0xFF);
+        }
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            assertEquals(1, journal.getUndeliveredSales().size(), "The damaged record should not be read");
+        }
+    }
+
+    @Test
+    void testDeliveredSegmentsAreDeleted() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0, 1)) {
+            for (long saleID = 1; saleID <= 5; saleID++) {
+                journal.commit(saleOf(saleID, 1));
+                journal.markDelivered(saleID, SaleJournal.Destination.INVENTORY);
+                journal.markDelivered(saleID, SaleJournal.Destination.ACCOUNTING);
+            }
+            assertTrue(journal.getDeletedSegmentCount() > 0, "Delivered segments should be deleted");
+            assertEquals(0, journal.getSealedSegmentCount(), "No delivered segment should be kept");
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList(), "Only the journal file should remain");
+        }
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0, 1)) {
+            assertTrue(journal.getUndeliveredSales().isEmpty(), "Every sale was delivered");
+        }
+    }
+
+    @Test
+    void testUndeliveredSaleKeepsItsSegment() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0, 1)) {
+            journal.commit(saleOf(1, 2));
+            for (long saleID = 2; saleID <= 4; saleID++) {
+                journal.commit(saleOf(saleID, 1));
+                journal.markDelivered(saleID, SaleJournal.Destination.INVENTORY);
+                journal.markDelivered(saleID, SaleJournal.Destination.ACCOUNTING);
+            }
+            journal.markDelivered(1, SaleJournal.Destination.INVENTORY);
+            assertEquals(0, journal.getDeletedSegmentCount(), "The segment of an undelivered sale should be kept");
+        }
+        InventorySystem inventory = new InventorySystem();
+        inventory.setStockLevel("1", 10);
+        CountingAccountingSystem accounting = new CountingAccountingSystem();
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0, 1)) {
+            assertEquals(List.of(saleOf(1, 2)), journal.getUndeliveredSales(),
+                    "The undelivered sale should be read from its sealed segment");
+            assertTrue(journal.getSealedSegmentCount() > 0, "The sealed segments should be kept");
+            assertEquals(1, journal.replay(accounting, inventory), "The sale should be replayed");
+            assertEquals(0, journal.getSealedSegmentCount(), "Segments should be deleted once the sale is delivered");
+        }
+
+        assertEquals(1, accounting.received.get(), "Accounting should receive the sale");
+        assertEquals(10, inventory.getStockLevel("1"), "The delivery to inventory should be read from a later segment");
+    }
+
+    @Test
+    void testIntervalPolicySyncsWithoutLaterWrites() throws Exception {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.INTERVAL, 20)) {
+            journal.commit(saleOf(1, 1));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (journal.getSyncCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, journal.getSyncCount(), "The record should be synced once by the timer");
+        }
+    }
+
+    @Test
+    void testConcurrentCommitsPerFsyncPolicy() throws Exception {
+        for (SaleJournal.FsyncPolicy policy : SaleJournal.FsyncPolicy.values()) {
+            commitConcurrently(directory.resolve("journal-" + policy + ".bin"), policy, 8, 25);
+        }
+    }
+
+    @Benchmark
+    void benchmarkConcurrentCommitsPerFsyncPolicy(TestReporter reporter) throws Exception {
+        int lanes = 8;
+        int salesPerLane = 250;
+        for (SaleJournal.FsyncPolicy policy : SaleJournal.FsyncPolicy.values()) {
+            long elapsed = commitConcurrently(directory.resolve("journal-" + policy + ".bin"), policy, lanes,
+                    salesPerLane);
+            reporter.publishEntry(policy + " committed sales/sec",
+                    String.format("%.0f", lanes * salesPerLane / (elapsed / 1e9)));
+        }
+    }
+
+    /**
+     * Commits sales to a new journal from several lanes at once, and checks that every sale is in the
+     * journal when it is opened again.
+     *
+     * @return The time taken by the commits, in nanoseconds.
+     */
+    private static long commitConcurrently(Path file, SaleJournal.FsyncPolicy policy, int lanes, int salesPerLane)
+            throws Exception {
+        long elapsed;
+        try (SaleJournal journal = new SaleJournal(file, policy, 10)) {
+            ExecutorService executor = Executors.newFixedThreadPool(lanes);
+            AtomicInteger nextSaleID = new AtomicInteger();
+            List<Future<?>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int lane = 0; lane < lanes; lane++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < salesPerLane; i++) {
+                        journal.commit(saleOf(nextSaleID.incrementAndGet(), 1));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            elapsed = System.nanoTime() - start;
+            executor.shutdown();
+            assertTrue(journal.getWriteCount() <= journal.getAppendedCount(),
+                    "Records should never need more than one write each");
+        }
+
+        try (SaleJournal journal = new SaleJournal(file, policy, 10)) {
+            assertEquals(lanes * salesPerLane, journal.getUndeliveredSales().size(),
+                    "Every committed sale should be in the journal");
+        }
+        return elapsed;
+    }
+
+    private static SaleInfoDTO saleOf(long saleID, int quantity) {
+        Amount total = Amount.ofCents(12500L * quantity);
+        return new SaleInfoDTO(saleID, total, 12345, Amount.ofCents(2500L * quantity),
+                SaleLines.of(List.of(new SaleLineDTO(ITEM, quantity))));
+    }
+
+    private static class CountingAccountingSystem extends AccountingSystem {
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        public void updateAccounting(SaleInfoDTO saleInfoAccounting) {
+            received.incrementAndGet();
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package se.kth.iv1350.storesalessystem.model;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -51,4 +58,108 @@ class AmountTest {
         assertEquals(150.0, result.getAmount(), "Amount should be 150 after multiplying by 1.5");
         assertEquals(100.0, amount1.getAmount(), "Original amount should not be modified");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAmountIsStoredInWholeOre(){
+        Amount price = new Amount(129.90);
+        assertEquals(12990, price.getCents(), "129.90 should be exactly 12990 öre");
+        assertEquals(38970, price.multiply(3).getCents(), "Multiplying by a quantity should be exact");
+        assertEquals(new Amount(0.3), new Amount(0.1).plus(new Amount(0.2)), "Sums should not drift");
+    }
+
+    @Test
+    void testScaleCentsRoundingModes(){
+        assertEquals(3, Amount.scaleCents(25, 12, 100, RoundingMode.HALF_UP), "3.0 öre should stay 3");
+        assertEquals(2, Amount.scaleCents(5, 50, 100, RoundingMode.HALF_EVEN), "2.5 öre should round to even");
+        assertEquals(3, Amount.scaleCents(5, 50, 100, RoundingMode.HALF_UP), "2.5 öre should round up");
+        assertEquals(2, Amount.scaleCents(5, 50, 100, RoundingMode.DOWN), "2.5 öre should be truncated");
+        assertEquals(-3, Amount.scaleCents(-5, 50, 100, RoundingMode.HALF_UP), "-2.5 öre should round away from zero");
+        assertEquals(-2, Amount.scaleCents(-5, 50, 100, RoundingMode.CEILING), "-2.5 öre should round towards positive infinity");
+        assertThrows(ArithmeticException.class, () -> Amount.scaleCents(5, 50, 100, RoundingMode.UNNECESSARY), "Inexact result should be rejected");
+    }
+
+    @Test
+    void testScaleCentsMatchesBigDecimal(){
+        SplittableRandom random = new SplittableRandom(42);
+        RoundingMode[] modes = {RoundingMode.HALF_UP, RoundingMode.HALF_EVEN, RoundingMode.HALF_DOWN,
+                RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR};
+        for (int i = 0; i < 1_000_000; i++) {
+            long cents = random.nextLong(-10_000_000, 10_000_000);
+            long numerator = random.nextLong(0, 10_000);
+            RoundingMode mode = modes[i % modes.length];
+            long expected = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(numerator))
+                    .divide(BigDecimal.valueOf(Amount.BASIS_POINTS), 0, mode).longValueExact();
+            assertEquals(expected, Amount.scaleCents(cents, numerator, Amount.BASIS_POINTS, mode), "Scaled amount should be exact");
+        }
+    }
+
+    @Test
+    void testRandomBasketTotalsAreExact(){
+        SplittableRandom random = new SplittableRandom(7);
+        double[] vatRates = {0.25, 0.12, 0.06, 0.0};
+        ItemDTO[] items = new ItemDTO[64];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new ItemDTO("ID" + i, "Item", "Description", vatRates[i % vatRates.length],
+                    Amount.ofCents(random.nextLong(1, 500_000)));
+        }
+        for (int basket = 0; basket < 1_000_000; basket++) {
+            Sale sale = new Sale(basket);
+            BigDecimal expectedTotal = BigDecimal.ZERO;
+            int lines = random.nextInt(1, 8);
+            for (int line = 0; line < lines; line++) {
+                ItemDTO item = items[random.nextInt(items.length)];
+                int quantity = random.nextInt(1, 20);
+                sale.addOrIncreaseItem(item, quantity);
+                expectedTotal = expectedTotal.add(BigDecimal.valueOf(item.price().getCents()).multiply(BigDecimal.valueOf(quantity)));
+            }
+            BigDecimal expectedVAT = BigDecimal.ZERO;
+            for (SaleItem saleItem : sale.getItems()) {
+                BigDecimal lineTotal = BigDecimal.valueOf(saleItem.getTotalPriceCents());
+                expectedVAT = expectedVAT.add(lineTotal.multiply(BigDecimal.valueOf(saleItem.getItemDTO().tax()))
+                        .setScale(0, SaleItem.VAT_ROUNDING));
+            }
+            assertEquals(expectedVAT.longValueExact(), sale.getTotalVAT().getCents(), "VAT of random basket should be exact");
+            assertEquals(expectedTotal.add(expectedVAT).longValueExact(), sale.getRunningTotal().getCents(), "Total of random basket should be exact");
+        }
+    }
+
+    @Benchmark
+    void benchmarkBasketTotalsAgainstDouble(TestReporter reporter) {
+        SplittableRandom random = new SplittableRandom(11);
+        int lines = 10_000_000;
+        long[] priceCents = new long[lines];
+        int[] quantities = new int[lines];
+        long[] vatBasisPoints = {2500, 1200, 600, 0};
+        for (int i = 0; i < lines; i++) {
+            priceCents[i] = random.nextLong(1, 50_000);
+            quantities[i] = random.nextInt(1, 10);
+        }
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            Amount exactTotal = new Amount();
+            for (int i = 0; i < lines; i++) {
+                long lineCents = priceCents[i] * quantities[i];
+                long vatCents = Amount.scaleCents(lineCents, vatBasisPoints[i & 3], Amount.BASIS_POINTS,
+                        SaleItem.VAT_ROUNDING);
+                exactTotal = exactTotal.plus(Amount.ofCents(lineCents + vatCents));
+            }
+            long exactNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double doubleTotal = 0;
+            for (int i = 0; i < lines; i++) {
+                double lineAmount = priceCents[i] / 100.0 * quantities[i];
+                doubleTotal += lineAmount + lineAmount * (vatBasisPoints[i & 3] / 10_000.0);
+            }
+            long doubleNanos = System.nanoTime() - start;
+
+            if (round == 1) {
+                reporter.publishEntry("Exact long öre lines/sec", String.format("%.0f", lines / (exactNanos / 1e9)));
+                reporter.publishEntry("Double lines/sec", String.format("%.0f", lines / (doubleNanos / 1e9)));
+                reporter.publishEntry("Double total minus exact total, öre",
+                        String.format("%.2f", doubleTotal * 100 - exactTotal.getCents()));
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncRevenueObserverTest {
+
+    @Test
+    void testPaymentsReachObserverOnItsOwnThread() {
+        RecordingObserver target = new RecordingObserver(null);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 16, AsyncRevenueObserver.OverflowPolicy.BLOCK);
+        CashRegister cashRegister = new CashRegister();
+        cashRegister.addObserver(observer);
+
+        for (int i = 0; i < 1000; i++) {
+            cashRegister.addPayment(Amount.ofCents(250));
+        }
+        observer.close();
+
+        assertEquals(1000, target.calls.sum(), "Every payment should be delivered when blocking");
+        assertEquals(250_000, target.cents.sum(), "Observer should see the exact revenue");
+        assertEquals(0, observer.getDroppedCount(), "No payment should be dropped when blocking");
+        assertNotEquals(Thread.currentThread(), target.lastThread, "Observer should run on its own thread");
+        assertTrue(observer.getMaxLagNanos() >= observer.getLastLagNanos(), "Maximum lag should not be below the latest lag");
+    }
+
+    @Test
+    void testPaymentsAreDroppedWhenObserverFallsBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver target = new RecordingObserver(release);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 4, AsyncRevenueObserver.OverflowPolicy.DROP);
+
+        observer.newPayment(Amount.ofCents(100));
+        target.stalled.await();
+        for (int i = 0; i < 10; i++) {
+            observer.newPayment(Amount.ofCents(100));
+        }
+        assertEquals(4, observer.getPendingCount(), "Buffer should be full while the observer is stalled");
+        assertEquals(6, observer.getDroppedCount(), "Payments that do not fit should be dropped");
+
+        release.countDown();
+        observer.close();
+        assertEquals(5, target.calls.sum(), "Buffered payments should be delivered on close");
+    }
+
+    @Test
+    void testCoalescedPaymentsKeepRevenueExact() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver target = new RecordingObserver(release);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 4, AsyncRevenueObserver.OverflowPolicy.COALESCE);
+
+        observer.newPayment(Amount.ofCents(100));
+        target.stalled.await();
+        for (int i = 0; i < 100; i++) {
+            observer.newPayment(Amount.ofCents(100));
+        }
+        assertEquals(96, observer.getCoalescedCount(), "Payments that do not fit should be coalesced");
+
+        release.countDown();
+        observer.close();
+        assertEquals(10_100, target.cents.sum(), "Coalescing should not change the revenue");
+        assertEquals(6, target.calls.sum(), "Coalesced payments should be delivered as one");
+        assertEquals(0, observer.getDroppedCount(), "No payment should be dropped when coalescing");
+    }
+
+    @Test
+    void testBlockedLaneGivesUpWhenInterrupted() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver target = new RecordingObserver(release);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 1, AsyncRevenueObserver.OverflowPolicy.BLOCK);
+        observer.newPayment(Amount.ofCents(100));
+        target.stalled.await();
+        observer.newPayment(Amount.ofCents(100));
+        AtomicBoolean stillInterrupted = new AtomicBoolean();
+
+        Thread lane = new Thread(() -> {
+            observer.newPayment(Amount.ofCents(100));
+            stillInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        lane.start();
+        while (observer.getBlockedCount() == 0) {
+            Thread.sleep(1);
+        }
+        lane.interrupt();
+        lane.join(5000);
+
+        assertFalse(lane.isAlive(), "Interrupted lane should stop waiting for room");
+        assertTrue(stillInterrupted.get(), "Lane should keep its interrupt status");
+        assertEquals(1, observer.getDroppedCount(), "Payment of the interrupted lane should be dropped");
+        release.countDown();
+        observer.close();
+        assertEquals(2, target.calls.sum(), "Buffered payments should still be delivered");
+    }
+
+    @Test
+    void testPaymentsRacingCloseAreDeliveredOrDropped() throws InterruptedException {
+        RecordingObserver target = new RecordingObserver(null);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 64, AsyncRevenueObserver.OverflowPolicy.BLOCK);
+        Thread[] lanes = new Thread[4];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Thread(() -> {
+                for (int payment = 0; payment < 20_000; payment++) {
+                    observer.newPayment(Amount.ofCents(1));
+                }
+            });
+            lanes[i].start();
+        }
+        while (target.calls.sum() < 1000) {
+            Thread.sleep(1);
+        }
+        observer.close();
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+
+        assertEquals(80_000, observer.getPublishedCount(), "Every payment should be published");
+        assertEquals(observer.getPublishedCount(), target.calls.sum() + observer.getDroppedCount(),
+                "Every payment should be either delivered or counted as dropped");
+        assertEquals(0, observer.getPendingCount(), "No payment should be left in the buffer");
+    }
+
+    @Test
+    void testCoalescedPaymentsRacingCloseAreDeliveredOrDropped() throws InterruptedException {
+        RecordingObserver target = new RecordingObserver(null);
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(target, 4, AsyncRevenueObserver.OverflowPolicy.COALESCE);
+        Thread[] lanes = new Thread[4];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Thread(() -> {
+                for (int payment = 0; payment < 50_000; payment++) {
+                    observer.newPayment(Amount.ofCents(1));
+                }
+            });
+            lanes[i].start();
+        }
+        while (observer.getCoalescedCount() < 1000) {
+            Thread.sleep(1);
+        }
+        observer.close();
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+
+        assertEquals(200_000, observer.getPublishedCount(), "Every payment should be published");
+        assertEquals(observer.getPublishedCount(), target.cents.sum() + observer.getDroppedCount(),
+                "Every coalesced payment should be either delivered or counted as dropped");
+    }
+
+    @Test
+    void testSlowObserverDoesNotDelayPayments() {
+        RecordingObserver slowTarget = new RecordingObserver(null) {
+            @Override
+            public void newPayment(Amount payment) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.newPayment(payment);
+            }
+        };
+        AsyncRevenueObserver observer = new AsyncRevenueObserver(slowTarget, 64, AsyncRevenueObserver.OverflowPolicy.COALESCE);
+        CashRegister cashRegister = new CashRegister();
+        cashRegister.addObserver(observer);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            cashRegister.addPayment(Amount.ofCents(100));
+        }
+        long elapsed = System.nanoTime() - start;
+        observer.close();
+
+        assertTrue(elapsed < 100_000_000L, "Payments should not wait for the slow observer");
+        assertEquals(1000, slowTarget.cents.sum(), "Slow observer should eventually see every payment");
+    }
+
+    private static class RecordingObserver implements TotalRevenueObserver {
+        private final CountDownLatch release;
+        private final CountDownLatch stalled = new CountDownLatch(1);
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+        private volatile Thread lastThread;
+
+        private RecordingObserver(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void newPayment(Amount payment) {
+            stalled.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            calls.increment();
+            cents.add(payment.getCents());
+            lastThread = Thread.currentThread();
+        }
+    }
+}
@@ -3,6 +3,11 @@ package se.kth.iv1350.storesalessystem.model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CashRegisterTest {
@@ -39,4 +44,75 @@ class CashRegisterTest {
 
         assertEquals(100.0, cashRegister.getBalance().getAmount(), "Modifying the returned balance should not affect the cash register");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConcurrentPaymentsGiveExactBalance() throws InterruptedException {
+        int threads = 32;
+        int paymentsPerThread = 10_000;
+        CountingObserver first = new CountingObserver();
+        CountingObserver second = new CountingObserver();
+        cashRegister.addObserver(first);
+        cashRegister.addObserver(second);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> lanes = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Amount payment = Amount.ofCents(100 + t);
+            Thread lane = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < paymentsPerThread; i++) {
+                    cashRegister.addPayment(payment);
+                }
+            });
+            lanes.add(lane);
+            lane.start();
+        }
+        start.countDown();
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+
+        long expectedCents = 0;
+        for (int t = 0; t < threads; t++) {
+            expectedCents += (100L + t) * paymentsPerThread;
+        }
+        long expectedCalls = (long) threads * paymentsPerThread;
+        assertEquals(expectedCents, cashRegister.getBalance().getCents(), "Balance should include every payment exactly once");
+        assertEquals(expectedCalls, first.calls.sum(), "First observer should be notified of every payment");
+        assertEquals(expectedCalls, second.calls.sum(), "Second observer should be notified of every payment");
+        assertEquals(expectedCents, first.cents.sum(), "Observer should see every payment amount");
+    }
+
+    @Test
+    void testObserversCanBeAddedWhilePaymentsAreMade() throws InterruptedException {
+        CountingObserver observer = new CountingObserver();
+        Thread lane = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                cashRegister.addPayment(Amount.ofCents(1));
+            }
+        });
+        lane.start();
+        for (int i = 0; i < 100; i++) {
+            cashRegister.addObserver(observer);
+            cashRegister.removeObserver(observer);
+        }
+        lane.join();
+
+        assertEquals(10_000, cashRegister.getBalance().getCents(), "Changing observers should not disturb payments");
+    }
+
+    private static class CountingObserver implements TotalRevenueObserver {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+
+        @Override
+        public void newPayment(Amount payment) {
+            calls.increment();
+            cents.add(payment.getCents());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.iv1350.storesalessystem.integration.DiscountDatabase;
+import se.kth.iv1350.storesalessystem.integration.DiscountRule;
+import se.kth.iv1350.storesalessystem.integration.DiscountSource;
+import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscountCacheTest {
+    private DiscountDatabase discountDatabase;
+    private SaleInfoDTO saleInfo;
+
+    @BeforeEach
+    void setUp() {
+        discountDatabase = new DiscountDatabase(List.of(
+                new DiscountRule(100, 199, new DiscountInfoDTO(new Amount(0), 10, "Percentage Discount")),
+                new DiscountRule(200, 299, new DiscountInfoDTO(new Amount(50), 5, "Premium Discount"))));
+        ItemDTO item = new ItemDTO("1", "Test Item", "Description", 0.25, new Amount(100));
+        saleInfo = new SaleInfoDTO(1, new Amount(1000), List.of(item), 150, new Amount(200));
+    }
+
+    @Test
+    void testRepeatedCustomerIsServedFromCache() {
+        DiscountCache cache = new DiscountCache(discountDatabase, 100, 60_000);
+
+        DiscountStrategy first = cache.findDiscountStrategy(150, saleInfo);
+        DiscountStrategy second = cache.findDiscountStrategy(150, saleInfo);
+
+        assertSame(first, second, "The built strategy should be reused");
+        assertEquals(1, cache.getMissCount(), "Only the first lookup should ask the database");
+        assertEquals(1, cache.getHitCount(), "The second lookup should be a hit");
+        assertEquals(90_000, first.applyDiscount(100_000), "Cached strategy should give the customer's discount");
+    }
+
+    @Test
+    void testCustomersWithoutDiscountAreCached() {
+        DiscountCache cache = new DiscountCache(discountDatabase, 100, 60_000);
+
+        DiscountStrategy strategy = cache.findDiscountStrategy(5000, saleInfo);
+        cache.findDiscountStrategy(5000, saleInfo);
+
+        assertEquals(100_000, strategy.applyDiscount(100_000), "Customer without rules should get no discount");
+        assertEquals(1, cache.getHitCount(), "No-discount result should be cached");
+    }
+
+    @Test
+    void testLeastRecentlyUsedCustomerIsEvicted() {
+        DiscountCache cache = new DiscountCache(discountDatabase, 2, 60_000);
+
+        cache.findDiscountStrategy(150, saleInfo);
+        cache.findDiscountStrategy(250, saleInfo);
+        cache.findDiscountStrategy(150, saleInfo);
+        cache.findDiscountStrategy(5000, saleInfo);
+
+        assertEquals(1, cache.getEvictionCount(), "One customer should be evicted");
+        assertEquals(2, cache.size(), "Cache should not grow beyond its size");
+        cache.findDiscountStrategy(150, saleInfo);
+        assertEquals(2, cache.getHitCount(), "Recently used customer should stay cached");
+        cache.findDiscountStrategy(250, saleInfo);
+        assertEquals(4, cache.getMissCount(), "Least recently used customer should have been evicted");
+    }
+
+    @Test
+    void testConcurrentLookupsKeepCacheWithinItsSize() throws InterruptedException {
+        DiscountCache cache = new DiscountCache(discountDatabase, 1000, 60_000);
+        Thread[] cashiers = new Thread[4];
+        for (int t = 0; t < cashiers.length; t++) {
+            int offset = t;
+            cashiers[t] = new Thread(() -> {
+                for (int round = 0; round < 2; round++) {
+                    for (int customerID = offset; customerID < 5000; customerID += cashiers.length) {
+                        cache.findDiscountStrategy(customerID, saleInfo);
+                    }
+                }
+            });
+            cashiers[t].start();
+        }
+        for (Thread cashier : cashiers) {
+            cashier.join();
+        }
+
+        assertEquals(1000, cache.size(), "Cache should be full but not beyond its size");
+        assertEquals(10_000, cache.getHitCount() + cache.getMissCount(), "Every lookup should be counted");
+        assertEquals(cache.getMissCount() - cache.size(), cache.getEvictionCount(),
+                "Every customer loaded but no longer cached should have been evicted");
+    }
+
+    @Test
+    void testEntriesExpire() throws InterruptedException {
+        DiscountCache cache = new DiscountCache(discountDatabase, 100, 10);
+
+        cache.findDiscountStrategy(150, saleInfo);
+        Thread.sleep(20);
+        cache.findDiscountStrategy(150, saleInfo);
+
+        assertEquals(1, cache.getExpirationCount(), "Old entry should expire");
+        assertEquals(2, cache.getMissCount(), "Expired entry should be looked up again");
+    }
+
+    @Test
+    void testReplacedRulesInvalidateCache() {
+        DiscountCache cache = new DiscountCache(discountDatabase, 100, 60_000);
+        cache.findDiscountStrategy(150, saleInfo);
+
+        discountDatabase.replaceRules(List.of(
+                new DiscountRule(100, 199, new DiscountInfoDTO(new Amount(0), 20, "Campaign"))));
+        DiscountStrategy strategy = cache.findDiscountStrategy(150, saleInfo);
+
+        assertEquals(80_000, strategy.applyDiscount(100_000), "New rules should be used at once");
+        assertEquals(1, cache.getExpirationCount(), "Entry of the old rules should be expired");
+    }
+
+    @Test
+    void testSaleConditionsAreCheckedForEverySale() {
+        discountDatabase.replaceRules(List.of(
+                new DiscountRule(100, 199, Set.of("2"), 0, Instant.MIN, Instant.MAX,
+                        new DiscountInfoDTO(new Amount(0), 10, "Bundle"))));
+        DiscountCache cache = new DiscountCache(discountDatabase, 100, 60_000);
+        ItemDTO bundled = new ItemDTO("2", "Bundled Item", "Description", 0.25, new Amount(100));
+        SaleInfoDTO bundleSale = new SaleInfoDTO(2, new Amount(1000), List.of(bundled), 150, new Amount(200));
+
+        assertEquals(100_000, cache.findDiscountStrategy(150, saleInfo).applyDiscount(100_000),
+                "Sale without the bundled item should get no discount");
+        assertEquals(90_000, cache.findDiscountStrategy(150, bundleSale).applyDiscount(100_000),
+                "Sale with the bundled item should get the discount");
+        assertEquals(0, cache.getHitCount(), "Discounts depending on the sale should not be cached");
+        assertEquals(0, cache.size(), "Customer with sale conditions should not be cached");
+    }
+
+    @Test
+    void testSourceWithoutVersionsIsAskedForEverySale() {
+        int[] lookups = new int[1];
+        DiscountSource source = (customerID, sale) -> {
+            lookups[0]++;
+            return new DiscountInfoDTO(new Amount(0), 10, "Remote Discount");
+        };
+        DiscountCache cache = new DiscountCache(source, 100, 60_000);
+
+        DiscountStrategy strategy = cache.findDiscountStrategy(150, saleInfo);
+        cache.findDiscountStrategy(150, saleInfo);
+
+        assertEquals(90_000, strategy.applyDiscount(100_000), "Source's discount should be given");
+        assertEquals(2, lookups[0], "Source without rules versions should be asked every time");
+        assertEquals(0, cache.getHitCount(), "Nothing should be served from the cache");
+    }
+}
@@ -0,0 +1,249 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.storesalessystem.integration.AccountingSystem;
+import se.kth.iv1350.storesalessystem.integration.DatabaseException;
+import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.SaleJournal;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostSalePipelineTest {
+    private static final ItemDTO ITEM = new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100));
+
+    @Test
+    void testPaymentDoesNotWaitForSlowAccounting() throws InterruptedException, DatabaseException {
+        CountingAccountingSystem accounting = new CountingAccountingSystem(50, 0);
+        InventorySystem inventory = new InventorySystem();
+        inventory.setStockLevel("1", 100);
+        SaleLogger saleLogger;
+        long elapsed;
+        try (PostSalePipeline pipeline = new PostSalePipeline(accounting, inventory, 16, 4, 1, 1)) {
+            saleLogger = new SaleLogger(pipeline);
+            long start = System.nanoTime();
+            for (int i = 0; i < 5; i++) {
+                saleLogger.logCompletedSale(saleOf(i, 2));
+            }
+            elapsed = System.nanoTime() - start;
+
+            assertTrue(pipeline.awaitDelivery(5000), "All sales should be delivered");
+            assertEquals(5, pipeline.getDeliveredCount(), "Every sale should be delivered");
+        }
+
+        assertTrue(elapsed < 50_000_000L, "Logging sales should not wait for the accounting system");
+        assertEquals(5, accounting.accepted.get(), "Accounting should receive every sale");
+        assertEquals(90, inventory.getStockLevel("1"), "Inventory should be updated with every sale");
+    }
+
+    @Test
+    void testFailedDeliveriesAreRetried() throws InterruptedException {
+        CountingAccountingSystem accounting = new CountingAccountingSystem(0, 2);
+        try (PostSalePipeline pipeline = new PostSalePipeline(accounting, new InventorySystem(), 16, 4, 1, 1)) {
+            pipeline.submit(saleOf(1, 1).getSaleInfo());
+
+            assertTrue(pipeline.awaitDelivery(5000), "The sale should be delivered after the failures");
+            assertEquals(2, pipeline.getRetryCount(), "Each failed delivery should be retried");
+        }
+        assertEquals(1, accounting.accepted.get(), "The sale should be accepted once");
+    }
+
+    @Test
+    void testSubmissionsWaitWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AccountingSystem stalledAccounting = new AccountingSystem() {
+            @Override
+            public void updateAccounting(SaleInfoDTO saleInfoAccounting) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try (PostSalePipeline pipeline = new PostSalePipeline(stalledAccounting, new InventorySystem(), 2, 1, 0, 1)) {
+            Thread lane = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    pipeline.submit(saleOf(i, 1).getSaleInfo());
+                }
+            });
+            lane.start();
+            lane.join(200);
+
+            assertTrue(lane.isAlive(), "The lane should wait while the queue is full");
+            assertTrue(pipeline.getBlockedCount() > 0, "Backpressure should be counted");
+            assertEquals(2, pipeline.getQueueDepth(), "The queue should be full");
+
+            release.countDown();
+            lane.join();
+            assertTrue(pipeline.awaitDelivery(5000), "All sales should be delivered once accounting resumes");
+            assertEquals(10, pipeline.getDeliveredCount(), "No sale should be lost");
+        }
+    }
+
+    @Test
+    void testSalesAreDeliveredInBatches() throws InterruptedException {
+        CountingAccountingSystem accounting = new CountingAccountingSystem(0, 0);
+        try (PostSalePipeline pipeline = new PostSalePipeline(accounting, new InventorySystem(), 1000, 10, 20, 1)) {
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit(saleOf(i, 1).getSaleInfo());
+            }
+            assertTrue(pipeline.awaitDelivery(5000), "All sales should be delivered");
+
+            long batches = pipeline.getBatchCount();
+            assertTrue(batches >= 20, "No batch should hold more than the batch size");
+            assertTrue(batches < 200, "Sales should be delivered in batches");
+            assertTrue(pipeline.getMaxBatchLatencyNanos() >= pipeline.getAverageBatchLatencyNanos(),
+                    "Maximum latency should not be below the average");
+        }
+        assertEquals(100, accounting.accepted.get(), "Accounting should receive every sale");
+        assertTrue(accounting.batchCalls.get() >= 10, "No call should hold more than the batch size");
+        assertTrue(accounting.batchCalls.get() < 100, "Accounting should receive each batch in one call");
+    }
+
+    @Test
+    void testCloseLeavesJournalUsable(@TempDir Path directory) throws IOException {
+        try (SaleJournal journal = new SaleJournal(directory.resolve("journal.bin"), SaleJournal.FsyncPolicy.EVERY_COMMIT, 0)) {
+            CountingAccountingSystem accounting = new CountingAccountingSystem(0, 3);
+            PostSalePipeline pipeline = new PostSalePipeline(accounting, new InventorySystem(), 16, 4, 1, 10, journal);
+            for (int i = 0; i < 5; i++) {
+                SaleInfoDTO saleInfo = saleOf(i, 1).getSaleInfo();
+                journal.commit(saleInfo);
+                pipeline.submit(saleInfo);
+            }
+            pipeline.close();
+
+            assertEquals(5, pipeline.getDeliveredCount(), "Close should deliver the queued sales");
+            assertDoesNotThrow(() -> journal.commit(saleOf(6, 1).getSaleInfo()),
+                    "Closing the pipeline should not close the journal");
+        }
+    }
+
+    @Test
+    void testCloseAbandonsDeliveriesThatKeepFailing(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            CountingAccountingSystem accounting = new CountingAccountingSystem(0, Integer.MAX_VALUE);
+            PostSalePipeline pipeline = new PostSalePipeline(accounting, new InventorySystem(), 16, 4, 1, 10, journal);
+            SaleInfoDTO saleInfo = saleOf(1, 1).getSaleInfo();
+            journal.commit(saleInfo);
+            pipeline.submit(saleInfo);
+
+            long start = System.nanoTime();
+            assertFalse(pipeline.close(200), "Close should report that the sale was not delivered");
+            assertTrue(System.nanoTime() - start < 2_000_000_000L, "Close should not wait for a failing system");
+            assertEquals(1, pipeline.getAbandonedCount());
+        }
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(1, journal.getUndeliveredSales().size(), "The abandoned sale should be left for replay");
+        }
+    }
+
+    @Test
+    void testReplayAfterAbandonedDeliverySkipsInventory(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("journal.bin");
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            CountingAccountingSystem accounting = new CountingAccountingSystem(0, Integer.MAX_VALUE);
+            PostSalePipeline pipeline = new PostSalePipeline(accounting, new InventorySystem(), 16, 4, 1, 10, journal);
+            SaleInfoDTO saleInfo = saleOf(1, 3).getSaleInfo();
+            journal.commit(saleInfo);
+            pipeline.submit(saleInfo);
+            pipeline.close(200);
+        }
+        InventorySystem inventory = new InventorySystem();
+        inventory.setStockLevel("1", 10);
+        CountingAccountingSystem accounting = new CountingAccountingSystem(0, 0);
+
+        try (SaleJournal journal = new SaleJournal(file, SaleJournal.FsyncPolicy.NEVER, 0)) {
+            journal.replay(accounting, inventory);
+        }
+
+        assertEquals(1, accounting.accepted.get(), "Accounting should receive the abandoned sale");
+        assertEquals(10, inventory.getStockLevel("1"), "The inventory had received the sale before closing");
+    }
+
+    @Test
+    void testSubmitAfterCloseFails() {
+        PostSalePipeline pipeline = new PostSalePipeline(new AccountingSystem(), new InventorySystem(), 4, 1, 0, 1);
+        pipeline.close();
+
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(saleOf(1, 1).getSaleInfo()),
+                "A closed pipeline should not accept sales");
+    }
+
+    @Test
+    void testSaleSubmittedWhileClosingIsDeliveredOrAbandoned() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            PostSalePipeline pipeline = new PostSalePipeline(new AccountingSystem(), new InventorySystem(), 4, 2, 0, 1);
+            AtomicInteger nextSaleID = new AtomicInteger();
+            Thread lane = new Thread(() -> {
+                try {
+                    while (true) {
+                        pipeline.submit(saleOf(nextSaleID.incrementAndGet(), 1).getSaleInfo());
+                    }
+                } catch (IllegalStateException e) {
+                    // The pipeline has been closed.
+                }
+            });
+            lane.start();
+            Thread.sleep(1);
+            pipeline.close();
+            lane.join();
+
+            assertEquals(pipeline.getSubmittedCount(), pipeline.getDeliveredCount() + pipeline.getAbandonedCount(),
+                    "Every submitted sale should be delivered or counted as abandoned");
+        }
+    }
+
+    private static Sale saleOf(long saleID, int quantity) {
+        Sale sale = new Sale(saleID);
+        sale.addItem(ITEM, quantity);
+        return sale;
+    }
+
+    /**
+     * An accounting system that takes a fixed time per sale and fails a number of times before
+     * accepting sales.
+     */
+    private static class CountingAccountingSystem extends AccountingSystem {
+        private final long delayMillis;
+        private final AtomicInteger remainingFailures;
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger batchCalls = new AtomicInteger();
+
+        private CountingAccountingSystem(long delayMillis, int failures) {
+            this.delayMillis = delayMillis;
+            this.remainingFailures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public void updateAccounting(SaleInfoDTO saleInfoAccounting) {
+            if (remainingFailures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Accounting system unavailable");
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            accepted.incrementAndGet();
+        }
+
+        @Override
+        public CompletableFuture<Void> updateAccounting(List<SaleInfoDTO> sales) {
+            batchCalls.incrementAndGet();
+            return super.updateAccounting(sales);
+        }
+    }
+}
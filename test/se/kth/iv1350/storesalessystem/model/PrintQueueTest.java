@@ -0,0 +1,263 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import se.kth.iv1350.storesalessystem.controller.Controller;
+import se.kth.iv1350.storesalessystem.controller.SaleSession;
+import se.kth.iv1350.storesalessystem.integration.AccountingSystem;
+import se.kth.iv1350.storesalessystem.integration.DatabaseException;
+import se.kth.iv1350.storesalessystem.integration.DiscountDatabase;
+import se.kth.iv1350.storesalessystem.integration.InMemoryReceiptSink;
+import se.kth.iv1350.storesalessystem.integration.InventorySystem;
+import se.kth.iv1350.storesalessystem.integration.Printer;
+import se.kth.iv1350.storesalessystem.integration.ReceiptSink;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrintQueueTest {
+    private static final long SLOW_PRINTER_MILLIS = 50;
+
+    @Test
+    void testReceiptsArePrintedInOrder() {
+        InMemoryReceiptSink sink = new InMemoryReceiptSink();
+        int receipts = 50;
+        try (PrintQueue printQueue = new PrintQueue(new Printer(sink), 8, 3, 1)) {
+            ReceiptPrinter receiptPrinter = new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.CHANGE_FIRST);
+            for (int i = 0; i < receipts; i++) {
+                receiptPrinter.printReceipt(saleOf("Item " + i), new Amount(100));
+            }
+        }
+
+        String contents = sink.getContents();
+        int previous = -1;
+        for (int i = 0; i < receipts; i++) {
+            int position = contents.indexOf("Item " + i + "\t");
+            assertTrue(position > previous, "Receipt " + i + " should be printed after the receipts before it");
+            previous = position;
+        }
+        assertEquals(receipts, sink.getReceiptCount(), "Closing the queue should print all queued receipts");
+    }
+
+    @Test
+    void testFailedReceiptIsRetried() {
+        FailingReceiptSink sink = new FailingReceiptSink(2);
+        try (PrintQueue printQueue = new PrintQueue(new Printer(sink), 8, 5, 1)) {
+            CompletableFuture<Boolean> printed = printQueue.submit(new Receipt(saleOf("Milk"), new Amount(100)).createReceiptDTO());
+
+            assertTrue(printed.join(), "Receipt should be printed once the printer works again");
+            assertEquals(2, printQueue.getRetryCount(), "Both failures should be retried");
+            assertEquals(1, printQueue.getPrintedCount());
+        }
+        assertEquals(1, sink.printed.getReceiptCount(), "Receipt should be printed exactly once");
+    }
+
+    @Test
+    void testReceiptIsSkippedAfterMaxAttempts() {
+        FailingReceiptSink sink = new FailingReceiptSink(3);
+        try (PrintQueue printQueue = new PrintQueue(new Printer(sink), 8, 3, 1)) {
+            CompletableFuture<Boolean> skipped = printQueue.submit(new Receipt(saleOf("Milk"), new Amount(100)).createReceiptDTO());
+            CompletableFuture<Boolean> printed = printQueue.submit(new Receipt(saleOf("Bread"), new Amount(100)).createReceiptDTO());
+
+            assertFalse(skipped.join(), "Receipt should be skipped after three failed attempts");
+            assertTrue(printed.join(), "Receipt behind the skipped one should be printed");
+            assertEquals(1, printQueue.getFailedCount());
+        }
+        assertTrue(sink.printed.getContents().contains("Bread"));
+        assertFalse(sink.printed.getContents().contains("Milk"));
+    }
+
+    @Test
+    void testPrintBeforeChangeWaitsForReceipt() {
+        SlowReceiptSink sink = new SlowReceiptSink();
+        try (PrintQueue printQueue = new PrintQueue(new Printer(sink), 8, 3, 1)) {
+            ReceiptPrinter receiptPrinter = new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.PRINT_BEFORE_CHANGE);
+
+            receiptPrinter.printReceipt(saleOf("Milk"), new Amount(100));
+
+            assertEquals(1, sink.printedReceipts.get(), "Receipt should be printed before the payment completes");
+        }
+    }
+
+    @Test
+    void testReceiptSubmittedWhileClosingIsCompleted() throws Exception {
+        ReceiptDTO receiptData = new Receipt(saleOf("Milk"), new Amount(100)).createReceiptDTO();
+        for (int round = 0; round < 50; round++) {
+            PrintQueue printQueue = new PrintQueue(new Printer(new InMemoryReceiptSink()), 4, 1, 1);
+            List<CompletableFuture<Boolean>> submitted = new ArrayList<>();
+            Thread lane = new Thread(() -> {
+                try {
+                    while (true) {
+                        submitted.add(printQueue.submit(receiptData));
+                    }
+                } catch (IllegalStateException e) {
+                    // The queue has been closed.
+                }
+            });
+            lane.start();
+            Thread.sleep(1);
+            printQueue.close();
+            lane.join();
+
+            for (CompletableFuture<Boolean> printed : submitted) {
+                assertNotNull(printed.get(1, TimeUnit.SECONDS), "Every submitted receipt should be completed");
+            }
+            assertEquals(submitted.size(), printQueue.getPrintedCount() + printQueue.getFailedCount());
+        }
+    }
+
+    @Test
+    void testQueuedReceiptIsNotChangedByLaterChangesToSale() {
+        SlowReceiptSink sink = new SlowReceiptSink();
+        Sale sale = saleOf("Milk");
+        try (PrintQueue printQueue = new PrintQueue(new Printer(sink), 8, 3, 1)) {
+            new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.CHANGE_FIRST).printReceipt(sale, new Amount(100));
+            sale.addItem(new ItemDTO("Bread", "Bread", "Rye", 0.12, new Amount(25)), 1);
+        }
+
+        assertTrue(sink.printed.getContents().contains("Milk"));
+        assertFalse(sink.printed.getContents().contains("Bread"), "Receipt should show the sale as it was paid");
+    }
+
+    @Test
+    void testChangeIsReturnedBeforeReceiptIsPrinted() throws Exception {
+        int payments = 10;
+        GatedReceiptSink sink = new GatedReceiptSink();
+        PrintQueue printQueue = new PrintQueue(new Printer(sink), payments, 3, 1);
+
+        measurePayments(new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.CHANGE_FIRST), payments);
+
+        assertEquals(0, printQueue.getPrintedCount(), "Every payment should return before its receipt is printed");
+        sink.open.countDown();
+        printQueue.close();
+        assertEquals(payments, printQueue.getPrintedCount(), "All receipts should be printed after the payments");
+        assertEquals(payments, sink.printed.getReceiptCount(), "Every receipt should reach the printer");
+    }
+
+    @Benchmark
+    void benchmarkMakePaymentLatencyWithSlowPrinter(TestReporter reporter) throws Exception {
+        int payments = 10;
+        Printer slowPrinter = new Printer(new SlowReceiptSink());
+
+        long[] withoutQueue = measurePayments(new ReceiptPrinter(slowPrinter), payments);
+        PrintQueue printQueue = new PrintQueue(slowPrinter, payments, 3, 1);
+        long[] withQueue = measurePayments(new ReceiptPrinter(printQueue, ReceiptPrinter.PrintMode.CHANGE_FIRST),
+                payments);
+        printQueue.close();
+
+        reporter.publishEntry("Payment to printed receipt, average ms",
+                String.format("%.2f", printQueue.getAveragePrintLatencyNanos() / 1e6));
+        reporter.publishEntry("Payment to printed receipt, max ms",
+                String.format("%.2f", printQueue.getMaxPrintLatencyNanos() / 1e6));
+        reporter.publishEntry("makePayment with slow printer, average ms", String.format("%.2f", withoutQueue[0] / 1e6));
+        reporter.publishEntry("makePayment with slow printer, max ms", String.format("%.2f", withoutQueue[1] / 1e6));
+        reporter.publishEntry("makePayment with print queue, average ms", String.format("%.2f", withQueue[0] / 1e6));
+        reporter.publishEntry("makePayment with print queue, max ms", String.format("%.2f", withQueue[1] / 1e6));
+        assertTrue(withoutQueue[0] >= SLOW_PRINTER_MILLIS * 1_000_000, "Payment should wait for the slow printer");
+        assertTrue(withQueue[0] * 5 < withoutQueue[0], "Change should be returned without waiting for the printer");
+    }
+
+    /**
+     * Makes the specified number of payments and measures how long they take.
+     *
+     * @return The average and the maximum time of a payment, in nanoseconds.
+     */
+    private static long[] measurePayments(ReceiptPrinter receiptPrinter, int payments)
+            throws IdentifierException, DatabaseException {
+        InventorySystem inventorySystem = new InventorySystem();
+        inventorySystem.addItem(new ItemDTO("1", "Milk", "1 l", 0.25, new Amount(10)));
+        Controller controller = new Controller.Builder(inventorySystem,
+                new SaleLogger(new AccountingSystem(), inventorySystem))
+                .discountSource(new DiscountDatabase(List.of()))
+                .receiptPrinter(receiptPrinter)
+                .build();
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < payments; i++) {
+            SaleSession session = controller.startSale();
+            session.enterItem("1", 1);
+            long start = System.nanoTime();
+            session.makePayment(new Amount(20));
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            max = Math.max(max, elapsed);
+        }
+        return new long[]{total / payments, max};
+    }
+
+    private static Sale saleOf(String itemName) {
+        Sale sale = new Sale(1);
+        sale.addItem(new ItemDTO(itemName, itemName, "Description", 0.25, new Amount(10)), 1);
+        return sale;
+    }
+
+    /**
+     * A stand-in for a slow receipt printer, taking a fixed time to print every receipt.
+     */
+    private static class SlowReceiptSink implements ReceiptSink {
+        private final InMemoryReceiptSink printed = new InMemoryReceiptSink();
+        private final AtomicInteger printedReceipts = new AtomicInteger();
+
+        @Override
+        public void write(ByteBuffer receipt) throws IOException {
+            try {
+                Thread.sleep(SLOW_PRINTER_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            printed.write(receipt);
+            printedReceipts.incrementAndGet();
+        }
+    }
+
+    /**
+     * A stand-in for a receipt printer that prints nothing until it is opened.
+     */
+    private static class GatedReceiptSink implements ReceiptSink {
+        private final InMemoryReceiptSink printed = new InMemoryReceiptSink();
+        private final CountDownLatch open = new CountDownLatch(1);
+
+        @Override
+        public void write(ByteBuffer receipt) throws IOException {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the printer", e);
+            }
+            printed.write(receipt);
+        }
+    }
+
+    /**
+     * A stand-in for a receipt printer that fails a number of times before it starts working.
+     */
+    private static class FailingReceiptSink implements ReceiptSink {
+        private final InMemoryReceiptSink printed = new InMemoryReceiptSink();
+        private int remainingFailures;
+
+        private FailingReceiptSink(int failures) {
+            this.remainingFailures = failures;
+        }
+
+        @Override
+        public void write(ByteBuffer receipt) throws IOException {
+            if (remainingFailures > 0) {
+                remainingFailures--;
+                throw new IOException("Printer is out of paper");
+            }
+            printed.write(receipt);
+        }
+    }
+}
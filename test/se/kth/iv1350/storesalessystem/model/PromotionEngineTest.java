@@ -0,0 +1,300 @@
+package se.kth.iv1350.storesalessystem.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromotionEngineTest {
+    private ItemDTO milk;
+    private ItemDTO cheddar;
+    private ItemDTO brie;
+    private ItemDTO bread;
+
+    @BeforeEach
+    void setUp() {
+        milk = new ItemDTO("milk", "Milk", "1 l", 0.25, new Amount(10));
+        cheddar = new ItemDTO("cheddar", "Cheddar", "200 g", 0.25, new Amount(40));
+        brie = new ItemDTO("brie", "Brie", "150 g", 0.25, new Amount(32));
+        bread = new ItemDTO("bread", "Bread", "Rye", 0.12, new Amount(25));
+    }
+
+    @Test
+    void testBuyThreePayTwo() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2))));
+
+        sale.addOrIncreaseItem(milk, 2);
+        assertEquals(0.0, sale.getPromotionReduction().getAmount(), "Two items should not complete a group");
+        sale.addOrIncreaseItem(milk, 5);
+
+        assertEquals(25.0, sale.getPromotionReduction().getAmount(), "Two of seven items should be free");
+        assertEquals(62.5, sale.getTotalAfterDiscount().getAmount(), "Total should be reduced by the free items");
+        assertEquals(List.of("3 for 2 on item milk"), sale.getAppliedPromotions());
+    }
+
+    @Test
+    void testMultiBuy() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new MultiBuyPromotion("P1", "cheddar", 2, new Amount(80)))));
+
+        sale.addOrIncreaseItem(cheddar, 5);
+
+        assertEquals(40.0, sale.getPromotionReduction().getAmount(), "Each pair should cost 80 instead of 100");
+        assertEquals(210.0, sale.getTotalAfterDiscount().getAmount(), "The fifth item should be at the ordinary price");
+    }
+
+    @Test
+    void testMultiBuyNeverRaisesPrice() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new MultiBuyPromotion("P1", "milk", 2, new Amount(30)))));
+
+        sale.addOrIncreaseItem(milk, 2);
+
+        assertEquals(0.0, sale.getPromotionReduction().getAmount(), "A group price above the ordinary price gives nothing");
+        assertEquals(25.0, sale.getTotalAfterDiscount().getAmount());
+    }
+
+    @Test
+    void testCategoryPercentage() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(
+                new CategoryPercentagePromotion("P1", "cheese", List.of("cheddar", "brie"), 20))));
+
+        sale.addOrIncreaseItem(cheddar, 1);
+        sale.addOrIncreaseItem(brie, 1);
+        sale.addOrIncreaseItem(bread, 1);
+
+        assertEquals(18.0, sale.getPromotionReduction().getAmount(), "20% of the cheese should be taken off");
+        assertEquals(100.0, sale.getTotalAfterDiscount().getAmount(), "Bread should be at the ordinary price");
+    }
+
+    @Test
+    void testMixAndMatchUsesMostExpensiveUnitsFirst() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(
+                new MixAndMatchPromotion("P1", "cheeses", List.of("cheddar", "brie"), 3, new Amount(100)))));
+
+        sale.addOrIncreaseItem(brie, 2);
+        assertEquals(0.0, sale.getPromotionReduction().getAmount(), "Two cheeses should not complete a group");
+        sale.addOrIncreaseItem(cheddar, 2);
+
+        assertEquals(40.0, sale.getPromotionReduction().getAmount(),
+                "Both cheddars and one brie should make up the group");
+        assertEquals(140.0, sale.getTotalAfterDiscount().getAmount());
+    }
+
+    @Test
+    void testReductionFollowsChangedLines() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2))));
+
+        sale.addOrIncreaseItem(milk, 3);
+        sale.addItem(milk, 1);
+
+        assertEquals(0.0, sale.getPromotionReduction().getAmount(), "Replaced line should no longer give the promotion");
+        assertTrue(sale.getAppliedPromotions().isEmpty(), "No promotion should be applied");
+    }
+
+    @Test
+    void testPromotionsAreTakenOffBeforeDiscount() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2))));
+
+        sale.addOrIncreaseItem(milk, 3);
+        sale.applySaleDiscount(new DiscountInfoDTO(new Amount(0), 10, "Percentage Discount"));
+
+        assertEquals(22.5, sale.getTotalAfterDiscount().getAmount(), "Discount should apply to the promotion price");
+    }
+
+    @Test
+    void testPromotionReducesVATOfPromotedItems() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2))));
+
+        sale.addOrIncreaseItem(milk, 3);
+        sale.addOrIncreaseItem(bread, 1);
+
+        assertEquals(5.0 + 3.0, sale.getTotalVAT().getAmount(),
+                "The VAT of the free milk should be taken off, the VAT of the bread kept");
+    }
+
+    @Test
+    void testPromotionOverMixedRatesReducesVATByWeightedShare() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(
+                new CategoryPercentagePromotion("P1", "lunch", List.of("cheddar", "bread"), 20))));
+
+        sale.addOrIncreaseItem(cheddar, 1);
+        sale.addOrIncreaseItem(bread, 1);
+
+        assertEquals(15.6, sale.getPromotionReduction().getAmount(), "20% of 50 + 28 should be taken off");
+        assertEquals(10.4, sale.getTotalVAT().getAmount(), "13 of the 78 in the reduction should be VAT");
+    }
+
+    @Test
+    void testSaleInfoCarriesPromotionReduction() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2))));
+
+        sale.addOrIncreaseItem(milk, 3);
+        SaleInfoDTO saleInfo = sale.getSaleInfo();
+
+        assertEquals(37.5, saleInfo.runningTotal().getAmount(), "The running total should be before promotions");
+        assertEquals(12.5, saleInfo.promotionReduction().getAmount(), "The reduction should be carried");
+        assertEquals(25.0, saleInfo.getTotalAfterPromotions().getAmount());
+        assertEquals(5.0, saleInfo.totalVAT().getAmount(), "The VAT should be after promotions");
+    }
+
+    @Test
+    void testConsistencyCheckCoversPromotions() {
+        Sale sale = new Sale(1, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "milk", 3, 2),
+                new MixAndMatchPromotion("P2", "cheeses", List.of("cheddar", "brie"), 3, new Amount(100)),
+                new CategoryPercentagePromotion("P3", "lunch", List.of("cheddar", "bread"), 20))));
+        sale.setConsistencyCheck(true);
+
+        assertDoesNotThrow(() -> {
+            for (int i = 0; i < 10; i++) {
+                sale.addOrIncreaseItem(milk, 1);
+                sale.addOrIncreaseItem(i % 2 == 0 ? cheddar : brie, 1);
+                sale.addOrIncreaseItem(bread, 1);
+            }
+            sale.addItem(milk, 1);
+        }, "Incremental promotion reductions should match a full evaluation");
+    }
+
+    @Test
+    void testOnlyPromotionsOfScannedItemAreEvaluated() {
+        int[] evaluations = new int[2];
+        PromotionEngine engine = new PromotionEngine(List.of(
+                countingPromotion("P1", "milk", evaluations, 0), countingPromotion("P2", "bread", evaluations, 1)));
+        Sale sale = new Sale(1, engine);
+
+        sale.addOrIncreaseItem(milk, 1);
+        sale.addOrIncreaseItem(milk, 1);
+        sale.addOrIncreaseItem(cheddar, 1);
+
+        assertEquals(2, evaluations[0], "Promotion on the scanned item should be evaluated on every scan");
+        assertEquals(0, evaluations[1], "Promotion on an item not scanned should never be evaluated");
+        assertEquals(2, engine.getEvaluationCount(), "Scans of items without promotions should not be measured");
+        assertTrue(engine.getMaxEvaluationNanos() >= engine.getAverageEvaluationNanos());
+    }
+
+    @Test
+    void testInvalidPromotionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BuyXPayYPromotion("P1", "milk", 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new MultiBuyPromotion("P1", "milk", 0, new Amount(10)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CategoryPercentagePromotion("P1", "dairy", List.of("milk"), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MixAndMatchPromotion("P1", "cheeses", List.of(), 3, new Amount(100)));
+    }
+
+    @Test
+    void testScansWithManyPromotions() {
+        int scans = 100_000;
+        PromotionEngine engine = new PromotionEngine(buyThreePayTwoPromotions(10_000));
+        Sale sale = new Sale(1, engine);
+
+        scanItems(sale, scans);
+
+        assertEquals(scans, engine.getEvaluationCount());
+        assertEquals(1000 * 33 * 12.5, sale.getPromotionReduction().getAmount(), "Every item should give 33 free units");
+    }
+
+    @Benchmark
+    void benchmarkScanLatencyWithManyPromotions(TestReporter reporter) {
+        int promotionCount = 10_000;
+        PromotionEngine engine = new PromotionEngine(buyThreePayTwoPromotions(promotionCount));
+        scanItems(new Sale(1, engine), 1_000_000);
+
+        reporter.publishEntry(promotionCount + " promotions, average ns per scan",
+                String.valueOf(engine.getAverageEvaluationNanos()));
+        reporter.publishEntry(promotionCount + " promotions, max ns per scan",
+                String.valueOf(engine.getMaxEvaluationNanos()));
+    }
+
+    @Test
+    void testRunningTotalsMatchEvaluationOverAllItems() {
+        Random random = new Random(42);
+        List<ItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(new ItemDTO("item-" + i, "Item", "Description", 0, Amount.ofCents(100 + random.nextInt(5000))));
+        }
+        List<String> itemIDs = items.stream().map(ItemDTO::itemID).toList();
+        Promotion category = new CategoryPercentagePromotion("P1", "all", itemIDs, 15);
+        Promotion mixAndMatch = new MixAndMatchPromotion("P2", "all", itemIDs, 4, new Amount(20));
+        Sale sale = new Sale(1, new PromotionEngine(List.of(category, mixAndMatch)));
+        int[] quantities = new int[items.size()];
+        long[] unitPriceCents = new long[items.size()];
+
+        for (int scan = 0; scan < 500; scan++) {
+            int position = random.nextInt(items.size());
+            int quantity = 1 + random.nextInt(3);
+            sale.addOrIncreaseItem(items.get(position), quantity);
+            quantities[position] += quantity;
+            unitPriceCents[position] = items.get(position).price().getCents();
+
+            long expected = category.calculateReductionCents(quantities, unitPriceCents)
+                    + mixAndMatch.calculateReductionCents(quantities, unitPriceCents);
+            assertEquals(expected, sale.getPromotionReduction().getCents(),
+                    "The running totals should give the reduction of a full evaluation after scan " + scan);
+        }
+    }
+
+    @Benchmark
+    void benchmarkScanLatencyWithLargeSetPromotions(TestReporter reporter) {
+        int itemCount = 1000;
+        List<String> itemIDs = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            itemIDs.add("item-" + i);
+        }
+        PromotionEngine engine = new PromotionEngine(List.of(
+                new CategoryPercentagePromotion("P1", "all", itemIDs, 10),
+                new MixAndMatchPromotion("P2", "all", itemIDs, 3, new Amount(20))));
+        scanItems(new Sale(1, engine), 1_000_000);
+
+        reporter.publishEntry(itemCount + " items per promotion, average ns per scan",
+                String.valueOf(engine.getAverageEvaluationNanos()));
+        reporter.publishEntry(itemCount + " items per promotion, max ns per scan",
+                String.valueOf(engine.getMaxEvaluationNanos()));
+    }
+
+    private static List<Promotion> buyThreePayTwoPromotions(int promotionCount) {
+        List<Promotion> promotions = new ArrayList<>(promotionCount);
+        for (int i = 0; i < promotionCount; i++) {
+            promotions.add(new BuyXPayYPromotion("P" + i, "item-" + i, 3, 2));
+        }
+        return promotions;
+    }
+
+    private static void scanItems(Sale sale, int scans) {
+        for (int i = 0; i < scans; i++) {
+            sale.addOrIncreaseItem(new ItemDTO("item-" + (i % 1000), "Item", "Description", 0.25, new Amount(10)), 1);
+        }
+    }
+
+    private static Promotion countingPromotion(String promotionID, String itemID, int[] evaluations, int counter) {
+        return new Promotion() {
+            @Override
+            public String getPromotionID() {
+                return promotionID;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Counting promotion";
+            }
+
+            @Override
+            public List<String> getItemIDs() {
+                return List.of(itemID);
+            }
+
+            @Override
+            public long calculateReductionCents(int[] quantities, long[] unitPriceCents) {
+                evaluations[counter]++;
+                return 0;
+            }
+        };
+    }
+}
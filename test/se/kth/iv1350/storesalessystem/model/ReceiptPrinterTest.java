@@ -2,8 +2,11 @@ package se.kth.iv1350.storesalessystem.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import se.kth.iv1350.storesalessystem.integration.InMemoryReceiptSink;
 import se.kth.iv1350.storesalessystem.integration.Printer;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.util.AllocationMeter;
+
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,7 +16,7 @@ class ReceiptPrinterTest {
 
     @BeforeEach
     void setUp() {
-        Printer printer = new Printer();
+        Printer printer = new Printer(new InMemoryReceiptSink());
         receiptPrinter = new ReceiptPrinter(printer);
         sale = new Sale(1);
         ItemDTO item = new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100));
@@ -22,10 +25,46 @@ class ReceiptPrinterTest {
 
     @Test
     void testPrintReceipt(){
-        // Since the actual implementation in Printer mostly involves System.out,
-        // we can only test that the method doesn't throw exceptions
         Amount amountPaid = new Amount(300);
         assertDoesNotThrow(() -> receiptPrinter.printReceipt(sale, amountPaid),
                 "Printing receipt should not throw exceptions");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPrintedReceiptMatchesReceiptData() {
+        InMemoryReceiptSink sink = new InMemoryReceiptSink();
+        Printer printer = new Printer(sink);
+        sale.addItem(new ItemDTO("2", "Räksmörgås", "Sandwich", 0.12, new Amount(59)), 3);
+        Amount amountPaid = new Amount(500);
+
+        new ReceiptPrinter(printer).printReceipt(sale, amountPaid);
+        String printedFromSale = sink.getContents();
+        sink.clear();
+        printer.printReceipt(new Receipt(sale, amountPaid).createReceiptDTO());
+
+        assertEquals(sink.getContents(), printedFromSale, "Receipt read from the sale should match the receipt data");
+    }
+
+    @Test
+    void testPrintingDoesNotCopyLines() throws Exception {
+        ReceiptPrinter discardingPrinter = new ReceiptPrinter(new Printer(receipt -> receipt.position(receipt.limit())));
+        Sale smallSale = saleWithLines(10);
+        Sale largeSale = saleWithLines(1000);
+        Amount amountPaid = new Amount(1_000_000);
+
+        long smallBytes = AllocationMeter.bytesPerRun(2_000, () -> discardingPrinter.printReceipt(smallSale, amountPaid));
+        long largeBytes = AllocationMeter.bytesPerRun(2_000, () -> discardingPrinter.printReceipt(largeSale, amountPaid));
+
+        assertTrue(largeBytes < smallBytes + 256, "Printing 1000 lines allocated " + largeBytes
+                + " bytes, 10 lines " + smallBytes + " bytes");
+    }
+
+    private static Sale saleWithLines(int lines) {
+        Sale sale = new Sale(lines);
+        for (int i = 0; i < lines; i++) {
+            sale.addItem(new ItemDTO(String.valueOf(i), "Item " + i, "Description", 0.25, new Amount(10 + i)), 1 + i % 3);
+        }
+        return sale;
+    }
+
+}
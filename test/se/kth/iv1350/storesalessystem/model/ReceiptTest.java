@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
 import se.kth.iv1350.storesalessystem.model.dto.ReceiptDTO;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ReceiptTest {
@@ -39,6 +41,19 @@ class ReceiptTest {
         assertEquals(300.0, receiptDTO.totalPaid().getAmount(), "Total paid should be match");
     }
 
+    @Test
+    void testReceiptListsAppliedPromotions() {
+        Sale sale = new Sale(2, new PromotionEngine(List.of(new BuyXPayYPromotion("P1", "1", 3, 2))));
+        sale.addItem(new ItemDTO("1", "Test Item", "Test Description", 0.25, new Amount(100)), 3);
+
+        ReceiptDTO receiptDTO = new Receipt(sale, new Amount(300)).createReceiptDTO();
+
+        assertEquals(List.of("3 for 2 on item 1"), receiptDTO.appliedPromotions(), "The promotion should be listed");
+        assertEquals(125.0, receiptDTO.promotionReduction().getAmount(), "The reduction should be on the receipt");
+        assertEquals(250.0, receiptDTO.totalAmount().getAmount());
+        assertEquals(50.0, receiptDTO.totalVAT().getAmount(), "The VAT should be after promotions");
+    }
+
     @Test
     void testGetAmountPaid() {
         assertEquals(amountPaid.getAmount(), receipt.getAmountPaid().getAmount(), "Amount paid should match constructor argument");
@@ -2,7 +2,10 @@ package se.kth.iv1350.storesalessystem.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
 import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
+import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,4 +68,70 @@ class SaleDiscountTest {
 
         assertEquals(0.0, afterDiscount.getAmount(), "Discount cannot exceed original amount");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEqualDiscountsShareOneStrategy(){
+        DiscountStrategy first = SaleDiscount.createStrategy(new DiscountInfoDTO(new Amount(10), 10, "Campaign A"));
+        DiscountStrategy second = SaleDiscount.createStrategy(new DiscountInfoDTO(new Amount(10), 10, "Campaign B"));
+        DiscountStrategy other = SaleDiscount.createStrategy(new DiscountInfoDTO(new Amount(10), 20, "Campaign C"));
+
+        assertSame(first, second, "Discounts with the same parameters should share one strategy");
+        assertNotSame(first, other, "Discounts with different parameters should have different strategies");
+        assertSame(NoDiscountStrategy.INSTANCE, SaleDiscount.createStrategy(new DiscountInfoDTO()),
+                "A discount of nothing should use the shared no-discount strategy");
+    }
+
+    @Test
+    void testDescriptionIsBuiltOnce(){
+        saleDiscount.setDiscountInfo(new DiscountInfoDTO(new Amount(10), 10, "Combined Discount"));
+
+        String description = saleDiscount.getDiscountDescription();
+
+        assertEquals("Combined discount: 10% discount and Fixed discount of 10.0 SEK", description);
+        assertSame(description, saleDiscount.getDiscountDescription(), "The description should not be rebuilt");
+    }
+
+    @Benchmark
+    void benchmarkTotalAfterDiscount(TestReporter reporter) {
+        DiscountInfoDTO[] discounts = {
+                new DiscountInfoDTO(),
+                new DiscountInfoDTO(new Amount(0), 10, "Percentage Discount"),
+                new DiscountInfoDTO(new Amount(25), 5, "Premium Discount")};
+        Sale sale = new Sale(1);
+        sale.addItem(new ItemDTO("1", "Item 1", "Description 1", 0.25, new Amount(100)), 3);
+        sale.addItem(new ItemDTO("2", "Item 2", "Description 2", 0.12, new Amount(50)), 2);
+        int iterations = 2_000_000;
+
+        for (DiscountInfoDTO discount : discounts) {
+            SaleDiscount strategyOnly = new SaleDiscount();
+            strategyOnly.setDiscountInfo(discount);
+            long uncachedChecksum = 0;
+            for (int i = 0; i < iterations / 10; i++) {
+                uncachedChecksum += strategyOnly.applyDiscountToCents(35_000 + (i & 1023));
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                uncachedChecksum += strategyOnly.applyDiscountToCents(35_000 + (i & 1023));
+            }
+            long uncachedNanos = System.nanoTime() - start;
+
+            sale.applySaleDiscount(discount);
+            long cachedChecksum = 0;
+            for (int i = 0; i < iterations / 10; i++) {
+                cachedChecksum += sale.getTotalAfterDiscount().getCents();
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                cachedChecksum += sale.getTotalAfterDiscount().getCents();
+            }
+            long cachedNanos = System.nanoTime() - start;
+
+            assertTrue(uncachedChecksum > 0, "Every discounted total should be counted");
+            assertEquals((iterations + iterations / 10) * sale.getTotalAfterDiscount().getCents(), cachedChecksum);
+            reporter.publishEntry(sale.getDiscountDescription() + " strategy totals/sec",
+                    String.format("%.0f", iterations / (uncachedNanos / 1_000_000_000.0)));
+            reporter.publishEntry(sale.getDiscountDescription() + " cached totals/sec",
+                    String.format("%.0f", iterations / (cachedNanos / 1_000_000_000.0)));
+        }
+    }
+}
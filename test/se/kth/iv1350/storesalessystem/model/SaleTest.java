@@ -2,10 +2,16 @@ package se.kth.iv1350.storesalessystem.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
 import se.kth.iv1350.storesalessystem.integration.dto.DiscountInfoDTO;
 import se.kth.iv1350.storesalessystem.integration.dto.ItemDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleInfoDTO;
+import se.kth.iv1350.storesalessystem.model.dto.SaleLines;
+import se.kth.iv1350.storesalessystem.util.AllocationMeter;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -112,4 +118,279 @@ class SaleTest {
     void testGetSaleID() {
         assertEquals(1, sale.getSaleID(), "Sale ID should match the cunstructer argument");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIncrementalTotalsMatchFullRecalculation() {
+        for (int lines : new int[]{10, 100, 1000}) {
+            Sale largeSale = new Sale(lines);
+            largeSale.setConsistencyCheck(true);
+            long expectedTotalCents = 0;
+            for (int i = 0; i < lines; i++) {
+                ItemDTO item = new ItemDTO("ID" + i, "Item " + i, "Description", 0.12, new Amount(10 + i % 7));
+                largeSale.addItem(item, 1);
+                largeSale.increaseItemQuantity(item.itemID(), 2);
+                expectedTotalCents += 3 * (1000 + 100 * (i % 7)) * 112 / 100;
+            }
+
+            assertEquals(expectedTotalCents, largeSale.getRunningTotal().getCents(), "Running total of " + lines + " lines should be correct");
+            assertDoesNotThrow(largeSale::verifyRunningTotal, "Incremental totals should match a full recalculation");
+        }
+    }
+
+    @Test
+    void testReplacingLineOnlyCountsNewLine() {
+        sale.setConsistencyCheck(true);
+        sale.addItem(testItem, 2);
+        sale.addItem(testItem, 1);
+
+        assertEquals(125.0, sale.getRunningTotal().getAmount(), "Replaced line should no longer be part of the total");
+    }
+
+    @Test
+    void testAddOrIncreaseItem() throws IdentifierException {
+        sale.setConsistencyCheck(true);
+        sale.addOrIncreaseItem(testItem, 1);
+        SaleItem line = sale.addOrIncreaseItem(testItem, 2);
+
+        assertEquals(3, line.getQuantity(), "Existing line should be increased");
+        assertEquals(1, sale.getItems().size(), "Sale should still contain one line");
+        assertSame(line, sale.findItemByID("1"), "Returned line should be the line stored in the sale");
+        assertEquals(375.0, sale.getRunningTotal().getAmount(), "Running total should include all three items");
+    }
+
+    @Test
+    void testTotalAfterDiscountIsOnlyRecalculatedAfterChange() {
+        int[] calculations = new int[1];
+        DiscountStrategy countingStrategy = new DiscountStrategy() {
+            @Override
+            public Amount applyDiscount(Amount amount) {
+                calculations[0]++;
+                return amount.minus(new Amount(10));
+            }
+
+            @Override
+            public String getDescription() {
+                return "Counting discount";
+            }
+        };
+        sale.addItem(testItem, 2);
+        sale.applyDiscountStrategy(countingStrategy);
+
+        Amount first = sale.getTotalAfterDiscount();
+        Amount second = sale.getTotalAfterDiscount();
+
+        assertSame(first, second, "Unchanged sale should return the remembered total");
+        assertEquals(1, calculations[0], "Discount should only be applied once for an unchanged sale");
+        assertEquals(240.0, first.getAmount(), "Total after discount should be correct");
+
+        sale.addOrIncreaseItem(testItem, 1);
+        assertEquals(365.0, sale.getTotalAfterDiscount().getAmount(), "Added item should be part of the total");
+        sale.applySaleDiscount(new DiscountInfoDTO(new Amount(0), 20, "Percentage Discount"));
+        assertEquals(300.0, sale.getTotalAfterDiscount().getAmount(), "New discount should be part of the total");
+        assertEquals(2, calculations[0], "Discount should be applied once per version of the sale");
+    }
+
+    @Test
+    void testVersionChangesWithLinesAndDiscount() {
+        long initial = sale.getVersion();
+        sale.addItem(testItem, 1);
+        long afterItem = sale.getVersion();
+        sale.setCustomerID(12345);
+        sale.getTotalAfterDiscount();
+        assertEquals(afterItem, sale.getVersion(), "Reading the sale should not change its version");
+        sale.applySaleDiscount(new DiscountInfoDTO());
+
+        assertTrue(afterItem > initial, "Adding an item should start a new version");
+        assertTrue(sale.getVersion() > afterItem, "Applying a discount should start a new version");
+    }
+
+    @Test
+    void testLinesViewFollowsSale() {
+        Collection<SaleItem> lines = sale.getLines();
+        sale.addItem(testItem, 1);
+        sale.addItem(anotherTestItem, 2);
+
+        assertEquals(2, lines.size(), "View should show lines added after it was taken");
+        assertSame(lines, sale.getLines(), "The same view should be returned every time");
+        assertThrows(UnsupportedOperationException.class, lines::clear, "View should be read-only");
+    }
+
+    @Test
+    void testSaleInfoHoldsQuantitiesPricesAndVAT() {
+        sale.addItem(testItem, 2);
+        sale.addItem(anotherTestItem, 3);
+
+        SaleLines lines = sale.getSaleInfo().lines();
+
+        assertEquals(2, lines.size(), "Every line of the sale should be in the sale info");
+        assertEquals("1", lines.getItem(0).itemID());
+        assertEquals(2, lines.getQuantity(0), "Quantity of the first line should be kept");
+        assertEquals(10_000, lines.getUnitPriceCents(0));
+        assertEquals(5_000, lines.getVATCents(0), "VAT should be that of the whole line");
+        assertEquals(3, lines.getQuantity(1), "Quantity of the second line should be kept");
+        assertEquals(1_800, lines.getVATCents(1));
+        assertEquals(5, lines.getTotalQuantity());
+        assertEquals(sale.getTotalVAT().getCents(), lines.getVATCents(0) + lines.getVATCents(1),
+                "Line VAT should add up to the VAT of the sale");
+    }
+
+    @Test
+    void testSaleInfoIsOnlyBuiltAgainAfterChange() {
+        sale.addItem(testItem, 2);
+        SaleInfoDTO first = sale.getSaleInfo();
+
+        assertSame(first, sale.getSaleInfo(), "Unchanged sale should return the same sale info");
+
+        sale.setCustomerID(12345);
+        SaleInfoDTO withCustomer = sale.getSaleInfo();
+        assertNotSame(first, withCustomer, "New customer should give new sale info");
+        assertEquals(12345, withCustomer.customerID());
+
+        sale.addOrIncreaseItem(testItem, 1);
+        SaleInfoDTO withMoreItems = sale.getSaleInfo();
+        assertEquals(3, withMoreItems.lines().getQuantity(0), "Changed line should be in the new sale info");
+        assertEquals(2, withCustomer.lines().getQuantity(0), "Earlier sale info should not change");
+    }
+
+    @Test
+    void testSaleInfoBuildCost() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            sale.addItem(new ItemDTO(String.valueOf(i), "Item " + i, "Description", 0.25, new Amount(i + 1)), 1 + i % 3);
+        }
+        int builds = 10_000;
+
+        long buildBytes = AllocationMeter.bytesPerRun(builds, () -> {
+            sale.increaseItemQuantity("0", 1);
+            sale.getSaleInfo();
+        });
+        long cachedBytes = AllocationMeter.bytesPerRun(builds, sale::getSaleInfo);
+
+        assertEquals(0, cachedBytes, "Unchanged sale info should not be built again");
+        assertTrue(buildBytes < 100 * 48, "Sale info should not allocate an object per line, but took "
+                + buildBytes + " bytes");
+    }
+
+    @Benchmark
+    void benchmarkBasketBuildByLineCount(TestReporter reporter) {
+        for (int lines : new int[]{10, 100, 1000}) {
+            ItemDTO[] items = new ItemDTO[lines];
+            for (int i = 0; i < lines; i++) {
+                items[i] = new ItemDTO("ID" + i, "Item " + i, "Description", 0.12, new Amount(10 + i % 7));
+            }
+            int baskets = Math.max(10, 200_000 / lines);
+            buildBaskets(items, baskets, false);
+            long incremental = buildBaskets(items, baskets, false);
+            buildBaskets(items, baskets, true);
+            long recalculated = buildBaskets(items, baskets, true);
+
+            reporter.publishEntry(lines + " lines, incremental ns per basket",
+                    String.format("%.0f", (double) incremental / baskets));
+            reporter.publishEntry(lines + " lines, recalculated ns per basket",
+                    String.format("%.0f", (double) recalculated / baskets));
+        }
+    }
+
+    @Benchmark
+    void benchmarkScanOfNewItem(TestReporter reporter) throws Exception {
+        ItemDTO[] items = new ItemDTO[100];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new ItemDTO("ID" + i, "Item " + i, "Description", 0.25, new Amount(10));
+        }
+        int baskets = 20_000;
+        Sale[] basket = {new Sale(1)};
+        int[] next = {0};
+        AllocationMeter.Work lookupThenAdd = () -> {
+            ItemDTO item = nextItem(items, basket, next);
+            try {
+                basket[0].findItemByID(item.itemID()).getQuantity();
+                basket[0].increaseItemQuantity(item.itemID(), 1);
+            } catch (IdentifierException e) {
+                basket[0].addItem(item, 1);
+            }
+        };
+        AllocationMeter.Work addOrIncrease = () -> basket[0].addOrIncreaseItem(nextItem(items, basket, next), 1);
+
+        long throwingBytes = AllocationMeter.bytesPerRun(baskets * items.length, lookupThenAdd);
+        long throwingNanos = timeScans(baskets * items.length, lookupThenAdd);
+        long addOrIncreaseBytes = AllocationMeter.bytesPerRun(baskets * items.length, addOrIncrease);
+        long addOrIncreaseNanos = timeScans(baskets * items.length, addOrIncrease);
+
+        reporter.publishEntry("New item scan with throwing lookup, ns", String.valueOf(throwingNanos));
+        reporter.publishEntry("New item scan with throwing lookup, bytes", String.valueOf(throwingBytes));
+        reporter.publishEntry("New item scan with addOrIncreaseItem, ns", String.valueOf(addOrIncreaseNanos));
+        reporter.publishEntry("New item scan with addOrIncreaseItem, bytes", String.valueOf(addOrIncreaseBytes));
+    }
+
+    /**
+     * Gets the next item to scan, starting a new sale once every item has been scanned, so that every
+     * scan is the first scan of its item in the sale.
+     */
+    private static ItemDTO nextItem(ItemDTO[] items, Sale[] basket, int[] next) {
+        if (next[0] == items.length) {
+            basket[0] = new Sale(1);
+            next[0] = 0;
+        }
+        return items[next[0]++];
+    }
+
+    /**
+     * Runs the specified scans and gets their average time.
+     *
+     * @return The average time of a scan, in nanoseconds.
+     */
+    private static long timeScans(int scans, AllocationMeter.Work scan) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            scan.run();
+        }
+        return (System.nanoTime() - start) / scans;
+    }
+
+    /**
+     * Builds the specified number of baskets holding each item once, reading the running total after
+     * every scan like the display of a till.
+     *
+     * @param recalculate {@code true} to recalculate the totals from all lines after every scan, as
+     *                    before the totals were kept incrementally.
+     * @return The time taken, in nanoseconds.
+     */
+    private static long buildBaskets(ItemDTO[] items, int baskets, boolean recalculate) {
+        long centsSeen = 0;
+        long start = System.nanoTime();
+        for (int basket = 0; basket < baskets; basket++) {
+            Sale basketSale = new Sale(basket);
+            for (ItemDTO item : items) {
+                basketSale.addOrIncreaseItem(item, 1);
+                if (recalculate) {
+                    basketSale.updateRunningTotal();
+                }
+                centsSeen += basketSale.getRunningTotal().getCents();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(centsSeen > 0, "Running totals should have been read");
+        return elapsed;
+    }
+
+    @Benchmark
+    void benchmarkSaleInfoBuild(TestReporter reporter) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            sale.addItem(new ItemDTO(String.valueOf(i), "Item " + i, "Description", 0.25, new Amount(i + 1)), 1 + i % 3);
+        }
+        int builds = 100_000;
+        long buildBytes = AllocationMeter.bytesPerRun(builds, () -> {
+            sale.increaseItemQuantity("0", 1);
+            sale.getSaleInfo();
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < builds; i++) {
+            sale.increaseItemQuantity("0", 1);
+            sale.getSaleInfo();
+        }
+        long buildNanos = (System.nanoTime() - start) / builds;
+
+        reporter.publishEntry("Sale info of 100 lines, ns to build", String.valueOf(buildNanos));
+        reporter.publishEntry("Sale info of 100 lines, bytes to build", String.valueOf(buildBytes));
+    }
+}
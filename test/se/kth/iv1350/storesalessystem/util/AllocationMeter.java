@@ -0,0 +1,56 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the memory allocated by the current thread, for tests that keep code within an allocation
+ * budget. Tests are skipped on JVMs that cannot count the bytes allocated by a thread.
+ */
+public final class AllocationMeter {
+    /**
+     * Work whose allocations are measured.
+     */
+    @FunctionalInterface
+    public interface Work {
+        /**
+         * Does the work once.
+         *
+         * @throws Exception If the work fails, which fails the test.
+         */
+        void run() throws Exception;
+    }
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Runs the specified work the specified number of times to warm it up, and then as many times again
+     * while counting the bytes allocated by the current thread. The calling test is skipped if the JVM
+     * cannot count them.
+     *
+     * @param runs The number of times the work is done while measuring.
+     * @param work The work to measure.
+     * @return The average number of bytes allocated by one run of the work.
+     * @throws Exception If the work fails.
+     */
+    public static long bytesPerRun(int runs, Work work) throws Exception {
+        ThreadMXBean platformBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(platformBean instanceof com.sun.management.ThreadMXBean,
+                "Allocation counter is not available on this JVM");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) platformBean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Allocation counter is not available on this JVM");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < runs; i++) {
+            work.run();
+        }
+        long threadID = Thread.currentThread().threadId();
+        long before = threadBean.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < runs; i++) {
+            work.run();
+        }
+        return (threadBean.getThreadAllocatedBytes(threadID) - before) / runs;
+    }
+}
@@ -0,0 +1,110 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLoggerTest {
+
+    @Test
+    void testAllEntriesAreWrittenFromManyThreads() throws InterruptedException {
+        StringWriter output = new StringWriter();
+        AsyncLogger logger = new AsyncLogger(output, 64, AsyncLogger.FlushPolicy.WHEN_IDLE, 100, AsyncLogger.OverflowPolicy.BLOCK);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    logger.logException(new Exception("failure"), "context");
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        logger.close();
+
+        assertEquals(4000, logger.getWrittenCount(), "Every entry should be written when blocking on overflow");
+        assertEquals(0, logger.getDroppedCount(), "No entry should be dropped when blocking on overflow");
+        assertEquals(4000, output.toString().split("-----ERROR LOG-----", -1).length - 1, "Log should contain one block per entry");
+    }
+
+    @Test
+    void testEntriesAreDroppedWhenBufferIsFull() throws InterruptedException {
+        CountDownLatch writerStalled = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Writer stalledOutput = new StringWriter() {
+            @Override
+            public void write(String str, int off, int len) {
+                writerStalled.countDown();
+                try {
+                    releaseWriter.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str, off, len);
+            }
+        };
+        AsyncLogger logger = new AsyncLogger(stalledOutput, 4, AsyncLogger.FlushPolicy.EVERY_ENTRY, 100, AsyncLogger.OverflowPolicy.DROP);
+
+        logger.logException(new Exception("first"), "context");
+        writerStalled.await();
+        for (int i = 0; i < 10; i++) {
+            logger.logException(new Exception("overflow"), "context");
+        }
+        assertEquals(4, logger.getQueueDepth(), "Buffer should be full while the writer is stalled");
+        assertEquals(6, logger.getDroppedCount(), "Entries that do not fit in the buffer should be dropped");
+
+        releaseWriter.countDown();
+        logger.close();
+        assertEquals(5, logger.getWrittenCount(), "Entries in the buffer should be written on close");
+    }
+
+    @Test
+    void testEntriesAfterCloseAreDropped() {
+        AsyncLogger logger = new AsyncLogger(new StringWriter(), 4, AsyncLogger.FlushPolicy.PERIODIC, 10, AsyncLogger.OverflowPolicy.DROP);
+        logger.close();
+        logger.logException(new Exception("late"), "context");
+
+        assertEquals(1, logger.getDroppedCount(), "Entry logged after close should be dropped");
+        assertEquals(0, logger.getWrittenCount(), "Nothing should be written after close");
+    }
+
+    @Test
+    void testEntriesRacingCloseAreWrittenOrDropped() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            AsyncLogger logger = new AsyncLogger(new StringWriter(), 4, AsyncLogger.FlushPolicy.WHEN_IDLE, 100,
+                    AsyncLogger.OverflowPolicy.BLOCK);
+            Exception failure = new Exception("failure");
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        logger.logException(failure, "context");
+                    }
+                });
+                threads[t].start();
+            }
+            while (logger.getWrittenCount() < 100) {
+                Thread.sleep(1);
+            }
+            logger.close();
+            for (Thread thread : threads) {
+                thread.join(5000);
+                assertFalse(thread.isAlive(), "A blocked thread should stop waiting once the logger has closed");
+            }
+
+            assertEquals(8_000, logger.getWrittenCount() + logger.getDroppedCount(),
+                    "Every entry should be either written or counted as dropped");
+            assertEquals(0, logger.getQueueDepth(), "No entry should be left in the buffer");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Marks a test that measures performance rather than behaviour. Benchmarks are tagged
+ * {@code benchmark} and only run when the system property {@code benchmarks} is {@code true}, so that
+ * the unit tests stay fast and do not depend on the speed of the machine. A benchmark reports its
+ * measurements through the JUnit {@link org.junit.jupiter.api.TestReporter}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Test
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public @interface Benchmark {
+}
@@ -0,0 +1,126 @@
+package se.kth.iv1350.storesalessystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeSaleIdGeneratorTest {
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 100_000;
+
+    @Test
+    void testIDsAreStrictlyIncreasing() {
+        SnowflakeSaleIdGenerator generator = new SnowflakeSaleIdGenerator(7);
+        long previous = generator.nextSaleID();
+        for (int i = 0; i < 100_000; i++) {
+            long next = generator.nextSaleID();
+            assertTrue(next > previous, "Sale IDs should be strictly increasing");
+            previous = next;
+        }
+    }
+
+    @Test
+    void testNodeIDIsEncoded() {
+        SnowflakeSaleIdGenerator generator = new SnowflakeSaleIdGenerator(42);
+        assertEquals(42, SnowflakeSaleIdGenerator.nodeOf(generator.nextSaleID()), "Node ID should be part of the sale ID");
+    }
+
+    @Test
+    void testDifferentNodesNeverCollide() {
+        SnowflakeSaleIdGenerator firstNode = new SnowflakeSaleIdGenerator(1);
+        SnowflakeSaleIdGenerator secondNode = new SnowflakeSaleIdGenerator(2);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(ids.add(firstNode.nextSaleID()), "Sale ID of node 1 should be unique");
+            assertTrue(ids.add(secondNode.nextSaleID()), "Sale ID of node 2 should be unique");
+        }
+    }
+
+    @Test
+    void testRestartedGeneratorContinuesAfterLastIssuedID() {
+        long oneHour = 3_600_000L << 22;
+        long aheadOfClock = new SnowflakeSaleIdGenerator(3).nextSaleID() + oneHour;
+
+        SnowflakeSaleIdGenerator afterRestart = new SnowflakeSaleIdGenerator(3, aheadOfClock);
+
+        long next = afterRestart.nextSaleID();
+        assertTrue(next > aheadOfClock, "Sale IDs after a restart should follow the last issued one");
+        assertEquals(3, SnowflakeSaleIdGenerator.nodeOf(next), "Node ID should be kept");
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeSaleIdGenerator(3, -1),
+                "Negative sale ID should be rejected");
+    }
+
+    @Test
+    void testInvalidNodeIDIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeSaleIdGenerator(-1), "Negative node ID should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeSaleIdGenerator(SnowflakeSaleIdGenerator.MAX_NODE_ID + 1), "Too large node ID should be rejected");
+    }
+
+    @Test
+    void testIDsAreUniqueUnderContention() throws Exception {
+        List<long[]> idsPerThread = new ArrayList<>();
+        generateConcurrently(new SnowflakeSaleIdGenerator(), idsPerThread);
+
+        Set<Long> allIDs = new HashSet<>();
+        for (long[] ids : idsPerThread) {
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(allIDs.add(ids[i]), "Sale ID should never be handed out twice");
+                assertTrue(i == 0 || ids[i] > ids[i - 1], "Sale IDs seen by one thread should be increasing");
+            }
+        }
+    }
+
+    @Benchmark
+    void benchmarkIDsPerSecondUnderContention(TestReporter reporter) throws Exception {
+        SnowflakeSaleIdGenerator generator = new SnowflakeSaleIdGenerator();
+        generateConcurrently(generator, new ArrayList<>());
+
+        long elapsedNanos = generateConcurrently(generator, new ArrayList<>());
+
+        reporter.publishEntry(THREADS + " threads, sale IDs/sec",
+                String.format("%.0f", THREADS * IDS_PER_THREAD / (elapsedNanos / 1_000_000_000.0)));
+    }
+
+    /**
+     * Generates {@code IDS_PER_THREAD} sale IDs on each of {@code THREADS} threads at once, adding the IDs
+     * of every thread to the specified list.
+     *
+     * @return The time taken to generate the IDs, in nanoseconds.
+     */
+    private static long generateConcurrently(SnowflakeSaleIdGenerator generator, List<long[]> idsPerThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextSaleID();
+                    }
+                    return ids;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<long[]> result : results) {
+                idsPerThread.add(result.get());
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package se.kth.iv1350.storesalessystem.view;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.iv1350.storesalessystem.model.Amount;
+import se.kth.iv1350.storesalessystem.model.CashRegister;
+import se.kth.iv1350.storesalessystem.util.Benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotalRevenueFileOutputTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testTextOutputHoldsTotalRevenue() {
+        StringWriter output = new StringWriter();
+        TotalRevenueFileOutput fileOutput = new TotalRevenueFileOutput(output, TotalRevenueFileOutput.OutputFormat.TEXT, 1, 0);
+
+        fileOutput.newPayment(new Amount(100));
+        fileOutput.newPayment(new Amount(50.5));
+
+        String text = output.toString();
+        assertTrue(text.contains("Total Revenue: 100.00 SEK"), "First update should be written");
+        assertTrue(text.contains("Total Revenue: 150.50 SEK"), "Second update should hold the total revenue");
+    }
+
+    @Test
+    void testBufferedUpdatesAreWrittenAtSizeThreshold() {
+        StringWriter output = new StringWriter();
+        TotalRevenueFileOutput fileOutput = new TotalRevenueFileOutput(output, TotalRevenueFileOutput.OutputFormat.CSV, 3, 60_000);
+
+        fileOutput.newPayment(Amount.ofCents(100));
+        fileOutput.newPayment(Amount.ofCents(100));
+        assertEquals("", output.toString(), "Updates below the threshold should stay buffered");
+
+        fileOutput.newPayment(Amount.ofCents(100));
+        List<String> lines = output.toString().lines().toList();
+        assertEquals(3, lines.size(), "All buffered updates should be written at the threshold");
+        assertTrue(lines.get(2).endsWith(",300"), "CSV line should hold the total revenue in cents");
+    }
+
+    @Test
+    void testBufferedUpdatesAreWrittenByTimerAfterTimeThreshold() throws InterruptedException {
+        StringWriter output = new StringWriter();
+        TotalRevenueFileOutput fileOutput = new TotalRevenueFileOutput(output, TotalRevenueFileOutput.OutputFormat.CSV, 1000, 20);
+
+        fileOutput.newPayment(Amount.ofCents(100));
+        assertEquals("", output.toString(), "A fresh update should stay buffered");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (output.toString().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        fileOutput.close();
+
+        assertEquals(1, output.toString().lines().count(), "Update should be written without waiting for another update");
+    }
+
+    @Test
+    void testCloseWritesBufferedUpdates() {
+        StringWriter output = new StringWriter();
+        TotalRevenueFileOutput fileOutput = new TotalRevenueFileOutput(output, TotalRevenueFileOutput.OutputFormat.CSV, 1000, 60_000);
+
+        fileOutput.newPayment(Amount.ofCents(100));
+        fileOutput.close();
+        fileOutput.newPayment(Amount.ofCents(100));
+
+        assertEquals(1, output.toString().lines().count(), "Buffered update should be written on close");
+    }
+
+    @Benchmark
+    void benchmarkPaymentsWithFileOutput(TestReporter reporter) throws IOException {
+        int payments = 50_000;
+        long disabled = measurePayments(null, payments);
+        Path unbufferedFile = directory.resolve("unbuffered.txt");
+        long unbuffered;
+        try (Writer writer = Files.newBufferedWriter(unbufferedFile)) {
+            unbuffered = measurePayments(new TotalRevenueFileOutput(writer, TotalRevenueFileOutput.OutputFormat.TEXT, 1, 0), payments);
+        }
+        Path bufferedFile = directory.resolve("buffered.csv");
+        TotalRevenueFileOutput buffered = new TotalRevenueFileOutput(Files.newBufferedWriter(bufferedFile),
+                TotalRevenueFileOutput.OutputFormat.CSV, 4096, 1000);
+        long bufferedTime = measurePayments(buffered, payments);
+        buffered.close();
+
+        List<String> lines = Files.readAllLines(bufferedFile);
+        assertEquals(payments, lines.size(), "Every update should be written");
+        assertTrue(lines.getLast().endsWith("," + payments), "Last line should hold the final revenue");
+        reporter.publishEntry("Payments/sec without file output", String.format("%.0f", payments / (disabled / 1e9)));
+        reporter.publishEntry("Payments/sec with per-payment flush", String.format("%.0f", payments / (unbuffered / 1e9)));
+        reporter.publishEntry("Payments/sec with buffered CSV", String.format("%.0f", payments / (bufferedTime / 1e9)));
+    }
+
+    private static long measurePayments(TotalRevenueFileOutput fileOutput, int payments) {
+        CashRegister cashRegister = new CashRegister();
+        if (fileOutput != null) {
+            cashRegister.addObserver(fileOutput);
+        }
+        Amount payment = Amount.ofCents(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < payments; i++) {
+            cashRegister.addPayment(payment);
+        }
+        return System.nanoTime() - start;
+    }
+}